@@ -0,0 +1,49 @@
+package service;
+
+import model.Produit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** L'export écrit la copie figée relevée au départ, quelles que soient les écritures qui suivent. */
+class ExportCatalogueTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void exporteLaVueDeLInstantDuReleve() throws Exception {
+        ProduitService service = new ProduitService(() -> true, Runnable::run);
+        List<Produit> lot = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) lot.add(new Produit("Produit " + i, "Liants", 1_000 + i, i % 7, "Fournisseur " + i % 9));
+        service.ajouterTous(lot);
+
+        CatalogueFige catalogue = service.instantane();
+        List<Produit> vue = service.getProduits();
+        int[] ids = new int[vue.size()];
+        for (int i = 0; i < ids.length; i++) ids[ids.length - 1 - i] = vue.get(i).getId(); // ordre inversé
+
+        // Écritures après le relevé : renommages longs (arène agrandie puis compactée), retraits, ajouts
+        for (int tour = 0; tour < 3; tour++) {
+            for (Produit p : vue) p.setNom(p.getNom() + " — renommé, renommé, renommé " + tour);
+        }
+        service.supprimerTous(new ArrayList<>(vue.subList(0, 1_000)));
+        service.ajouter(new Produit("Nouveau", "Liants", 1, 1, "F"));
+
+        Path fichier = dossier.resolve("vue.csv");
+        long n = ExportCatalogue.exporter(catalogue, ids, fichier, ExportCatalogue.Format.CSV, null, null);
+
+        List<String> lignes = Files.readAllLines(fichier, StandardCharsets.UTF_8);
+        assertEquals(5_000, n);
+        assertEquals(5_001, lignes.size());
+        assertEquals("Produit 4999", lignes.get(1).substring(0, lignes.get(1).indexOf(';')));
+        assertEquals("Produit 0", lignes.get(5_000).substring(0, lignes.get(5_000).indexOf(';')));
+    }
+}
@@ -0,0 +1,94 @@
+package service;
+
+import model.Produit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/** Historique par produit (clé persistante) relu après fermeture, et conversion de l'ancien journal par nom. */
+class JournalMouvementsTest {
+
+    @TempDir
+    Path dossier;
+
+    private final LocalDate aujourdhui = LocalDate.now();
+
+    @Test
+    void historiqueSuitLeProduitEtNonSonNom() throws Exception {
+        ProduitService service = ouvrir();
+        Produit a = new Produit("Ciment", "Liants", 10, 100, "F1");
+        Produit b = new Produit("Ciment", "Liants", 10, 100, "F2"); // homonyme
+        service.ajouterTous(List.of(a, b));
+        a.setQuantite(90);
+        a.setNom("Ciment 42.5");
+        a.setQuantite(70);
+        b.setQuantite(95);
+        assertEquals(30, sorties(service, a));
+        assertEquals(5, sorties(service, b));
+        service.fermer();
+
+        ProduitService relu = ouvrir();
+        assertEquals(30, sorties(relu, produit(relu, "Ciment 42.5")));
+        assertEquals(5, sorties(relu, produit(relu, "Ciment")));
+        assertEquals(35, relu.getMouvements().cumul(JournalMouvements.Dimension.CATEGORIE, "Liants", aujourdhui, aujourdhui).getSorties());
+        relu.fermer();
+    }
+
+    @Test
+    void ancienJournalParNomEstConverti() throws Exception {
+        ProduitService service = ouvrir();
+        service.ajouterTous(List.of(new Produit("Sable fin", "Granulats", 5, 10, "F1"),
+                new Produit("Brique", "Granulats", 5, 10, "F1"), new Produit("Brique", "Granulats", 5, 10, "F2")));
+        service.fermer();
+
+        long maintenant = System.currentTimeMillis();
+        try (FileChannel c = FileChannel.open(dossier.resolve(JournalMouvements.FICHIER_JOURNAL_NOMS), CREATE, WRITE)) {
+            c.write(ancien(maintenant, -4, "Sable fin", "Granulats", "F1"));
+            c.write(ancien(maintenant, -3, "Brique", "Granulats", "F2")); // nom ambigu : catégorie seulement
+        }
+
+        ProduitService relu = ouvrir();
+        assertFalse(Files.exists(dossier.resolve(JournalMouvements.FICHIER_JOURNAL_NOMS)));
+        assertEquals(4, sorties(relu, produit(relu, "Sable fin")));
+        assertEquals(7, relu.getMouvements().cumul(JournalMouvements.Dimension.CATEGORIE, "Granulats", aujourdhui, aujourdhui).getSorties());
+        relu.fermer();
+
+        ProduitService encore = ouvrir(); // déjà converti : pas compté deux fois
+        assertEquals(4, sorties(encore, produit(encore, "Sable fin")));
+        encore.fermer();
+    }
+
+    private ProduitService ouvrir() throws Exception {
+        ProduitService service = new ProduitService(() -> true, Runnable::run);
+        service.ouvrirPersistance(dossier);
+        return service;
+    }
+
+    private long sorties(ProduitService service, Produit p) {
+        return service.getMouvements().cumul(p, aujourdhui, aujourdhui).getSorties();
+    }
+
+    private static Produit produit(ProduitService service, String nom) {
+        return service.getProduits().stream().filter(p -> nom.equals(p.getNom())).findFirst().orElseThrow();
+    }
+
+    private static ByteBuffer ancien(long instant, int delta, String nom, String categorie, String fournisseur) {
+        ByteBuffer b = FichierJournal.nouveau(8 + 4 + FichierJournal.taille(nom) + FichierJournal.taille(categorie) + FichierJournal.taille(fournisseur));
+        b.putLong(instant).putInt(delta);
+        FichierJournal.ecrireTexte(b, nom);
+        FichierJournal.ecrireTexte(b, categorie);
+        FichierJournal.ecrireTexte(b, fournisseur);
+        return FichierJournal.sceller(b);
+    }
+}
@@ -0,0 +1,94 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reprise après arrêt brutal : les écritures en file sont faites, puis le journal est abandonné
+ * sans fermer() ; un stock neuf rechargé depuis le même dossier doit être identique.
+ */
+class PersistanceCatalogueTest {
+
+    @TempDir
+    Path dossier;
+
+    @Test
+    void rejoueLeJournalApresArretBrutal() throws Exception {
+        StockColonnes stock = new StockColonnes();
+        PersistanceCatalogue persistance = PersistanceCatalogue.ouvrir(dossier, stock);
+        stock.addAll(produits(0, 1_000));
+        for (int i = 0; i < 300; i++) stock.get(i).setPrix(i * 2.5);
+        stock.get(10).setNom("Renommé");
+        stock.get(11).setCategorie("Liants");
+        stock.get(12).setFournisseur(null);
+        stock.get(13).setQuantite(-4);
+        stock.remove(500);
+        stock.removeAll(List.copyOf(stock.subList(600, 650)));
+        stock.add(produit(5_000));
+        persistance.attendreEcritures();
+
+        assertEquals(lignes(stock), lignes(recharger()));
+    }
+
+    /**
+     * Compaction déclenchée par un ajout groupé : elle attend la fin du lot, sinon l'instantané
+     * contiendrait des produits sans clé, rechargés puis rejoués une seconde fois depuis le journal.
+     */
+    @Test
+    void ajoutGroupeAuSeuilDeCompactionNeDupliquePas() throws Exception {
+        StockColonnes stock = new StockColonnes();
+        PersistanceCatalogue persistance = PersistanceCatalogue.ouvrir(dossier, stock);
+        stock.addAll(produits(0, 60_000));
+        for (int i = 0; i < 30_000; i++) stock.get(i).setPrix(i + 0.5);
+        stock.addAll(produits(60_000, 20_000)); // franchit le seuil de 100 000 enregistrements
+        persistance.attendreEcritures();
+
+        StockColonnes recharge = recharger();
+        assertEquals(80_000, recharge.size());
+        assertEquals(lignes(stock), lignes(recharge));
+
+        // Les produits du lot ont leur clé : leurs modifications et retraits sont journalisés
+        StockColonnes repris = new StockColonnes();
+        PersistanceCatalogue reprise = PersistanceCatalogue.ouvrir(dossier, repris);
+        for (int i = 0; i < repris.size(); i++) {
+            if (repris.get(i).getNom().equals("Produit 79999")) repris.get(i).setQuantite(123_456);
+        }
+        repris.removeIf(p -> p.getNom().equals("Produit 70000"));
+        reprise.attendreEcritures();
+        assertEquals(lignes(repris), lignes(recharger()));
+    }
+
+    private StockColonnes recharger() throws Exception {
+        StockColonnes stock = new StockColonnes();
+        PersistanceCatalogue.ouvrir(dossier, stock);
+        return stock;
+    }
+
+    private static List<Produit> produits(int debut, int nombre) {
+        List<Produit> l = new ArrayList<>(nombre);
+        for (int i = debut; i < debut + nombre; i++) l.add(produit(i));
+        return l;
+    }
+
+    private static Produit produit(int i) {
+        return new Produit("Produit " + i, i % 3 == 0 ? "Granulats" : "Ciment", i * 10.0, i % 500, "Fournisseur " + i % 40);
+    }
+
+    /** Lignes triées : l'ordre de la liste n'est pas persistant. */
+    private static List<String> lignes(StockColonnes stock) {
+        List<String> l = new ArrayList<>(stock.size());
+        for (Produit p : stock) {
+            l.add(p.getNom() + '|' + p.getCategorie() + '|' + p.getPrix() + '|' + p.getQuantite() + '|' + p.getFournisseur());
+        }
+        l.sort(null);
+        return l;
+    }
+}
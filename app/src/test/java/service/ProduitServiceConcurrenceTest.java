@@ -0,0 +1,186 @@
+package service;
+
+import model.Produit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contrat à écrivain unique de ProduitService : plusieurs threads soumettent en même temps
+ * ajustements, modifications optimistes (reprises sur conflit), ajouts et retraits ; l'état
+ * final doit refléter chacune d'elles, y compris après un arrêt brutal et un rechargement.
+ */
+class ProduitServiceConcurrenceTest {
+
+    private static final int ECRIVAINS = 8, ECRITURES = 4_000, TAILLE = 200;
+
+    @TempDir
+    Path dossier;
+
+    private final AtomicReference<Thread> proprietaire = new AtomicReference<>();
+    private final ExecutorService publication = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "publication-test");
+        t.setDaemon(true);
+        proprietaire.set(t);
+        return t;
+    });
+
+    @AfterEach
+    void arreter() {
+        publication.shutdownNow();
+    }
+
+    @Test
+    void aucuneEcritureConcurrenteNEstPerdue() throws Exception {
+        ProduitService service = nouveauService();
+        List<Produit> produits = catalogue(service);
+        Resultat r = ecrire(service, produits);
+
+        CatalogueFige fin = service.instantane();
+        assertEquals(TAILLE + r.ajouts.sum() - r.retraits.sum(), fin.taille());
+        assertEquals(r.quantiteAttendue(produits), quantites(fin));
+        assertEquals(r.modifications.sum(), prixTotal(fin, produits));
+    }
+
+    @Test
+    void setterHorsThreadDePublicationRefuse() throws Exception {
+        ProduitService service = nouveauService();
+        List<Produit> produits = catalogue(service);
+        assertThrows(IllegalStateException.class, () -> produits.get(0).setQuantite(1));
+        assertTrue(service.ajusterQuantite(produits.get(0), 1).get());
+        assertEquals(produits.get(0).getQuantite(), service.instantane().getQuantite(0));
+    }
+
+    @Test
+    void ecrituresConcurrentesRetrouveesApresArretBrutal() throws Exception {
+        ProduitService service = nouveauService();
+        publication.submit(() -> {
+            service.ouvrirPersistance(dossier);
+            return null;
+        }).get();
+        List<Produit> produits = catalogue(service);
+        Resultat r = ecrire(service, produits);
+        publication.submit(() -> {
+            service.getPersistance().attendreEcritures();
+            return null;
+        }).get();
+        Map<String, Integer> attendu = parNom(service.instantane());
+        // Arrêt brutal : ni fermer() ni compaction ; un service neuf relit le même dossier
+
+        ProduitService relu = new ProduitService(() -> true, Runnable::run);
+        relu.ouvrirPersistance(dossier);
+        assertEquals(attendu, parNom(relu.instantane()));
+        assertEquals(r.quantiteAttendue(produits), quantites(relu.instantane()));
+    }
+
+    // ---------------- Écritures concurrentes
+    private static final class Resultat {
+        final LongAdder deltas = new LongAdder(), modifications = new LongAdder(), conflits = new LongAdder(),
+                ajouts = new LongAdder(), retraits = new LongAdder(), quantitesAjoutees = new LongAdder();
+
+        long quantiteAttendue(List<Produit> produits) {
+            return produits.size() * 100L + deltas.sum() + quantitesAjoutees.sum();
+        }
+    }
+
+    /**
+     * Chaque écrivain : entrées/sorties sur le catalogue initial, prix +1 par modification
+     * optimiste, et ajout puis retrait d'un produit sur dix (jamais du catalogue initial).
+     */
+    private Resultat ecrire(ProduitService service, List<Produit> produits) throws Exception {
+        Resultat r = new Resultat();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> erreurs = new ArrayList<>();
+        for (int e = 0; e < ECRIVAINS; e++) {
+            int numero = e;
+            Thread t = new Thread(() -> {
+                SplittableRandom aleatoire = new SplittableRandom(numero);
+                CompletableFuture<Boolean> dernier = CompletableFuture.completedFuture(true);
+                for (int i = 0; i < ECRITURES; i++) {
+                    Produit p = produits.get(aleatoire.nextInt(TAILLE));
+                    switch (i % 10) {
+                        case 0 -> {
+                            Produit neuf = new Produit("Ajout " + numero + "-" + i, "Liants", 0, 7, "F");
+                            service.ajouter(neuf);
+                            r.ajouts.increment();
+                            if (aleatoire.nextBoolean()) {
+                                service.supprimer(neuf);
+                                r.retraits.increment();
+                            } else {
+                                r.quantitesAjoutees.add(7);
+                            }
+                        }
+                        case 1, 2, 3 -> {
+                            while (!service.modifier(p, p.getVersion(), q -> q.setPrix(q.getPrix() + 1)).join()) r.conflits.increment();
+                            r.modifications.increment();
+                        }
+                        default -> {
+                            int delta = aleatoire.nextInt(21) - 10;
+                            dernier = service.ajusterQuantite(p, delta);
+                            r.deltas.add(delta);
+                        }
+                    }
+                }
+                dernier.join();
+            }, "ecrivain-" + e);
+            t.setUncaughtExceptionHandler((th, ex) -> {
+                synchronized (erreurs) {
+                    erreurs.add(ex);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) t.join();
+        publication.submit(() -> { }).get(); // dernières écritures publiées
+        assertEquals(List.of(), erreurs);
+        return r;
+    }
+
+    // ---------------- Outils
+    private ProduitService nouveauService() {
+        return new ProduitService(() -> Thread.currentThread() == proprietaire.get(), publication);
+    }
+
+    private List<Produit> catalogue(ProduitService service) throws Exception {
+        List<Produit> produits = new ArrayList<>();
+        for (int i = 0; i < TAILLE; i++) produits.add(new Produit("Produit " + i, "Granulats", 0, 100, "F" + i % 5));
+        service.ajouterTous(produits);
+        publication.submit(() -> { }).get();
+        return produits;
+    }
+
+    private static long quantites(CatalogueFige c) {
+        long s = 0;
+        for (int i = 0; i < c.taille(); i++) s += c.getQuantite(i);
+        return s;
+    }
+
+    private static long prixTotal(CatalogueFige c, List<Produit> produits) {
+        long s = 0;
+        for (Produit p : produits) s += (long) c.getPrix(c.indexDe(p.getId()));
+        return s;
+    }
+
+    private static Map<String, Integer> parNom(CatalogueFige c) {
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < c.taille(); i++) m.put(c.getNom(i) + '|' + c.getPrix(i), c.getQuantite(i));
+        return m;
+    }
+}
@@ -0,0 +1,39 @@
+package benchmark;
+
+import model.Produit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Catalogue synthétique reproductible (graine fixe) de 10k à 10M produits,
+ * avec la même forme que les données du dépôt : noms avec unité, deux catégories
+ * réelles, quelques catégories "anciennes" (nom de produit) et des milliers de fournisseurs.
+ */
+public final class CatalogueSynthetique {
+
+    private static final String[] NOMS = {
+            "Sable fin", "Gros sable", "Gravillon", "Brique", "Moellon", "4/7", "Ciment 32.5R", "Fer torsadé Ø10"
+    };
+    private static final String[] UNITES = {"m³", "tonnes", "sacs", "pièces"};
+    private static final String[] CATEGORIES = {"Granulats", "Liants", "Sable fin", "Ciment"};
+
+    private CatalogueSynthetique() {}
+
+    public static List<Produit> generer(int taille, long graine) {
+        SplittableRandom r = new SplittableRandom(graine);
+        int nbFournisseurs = Math.max(10, taille / 100);
+        List<Produit> produits = new ArrayList<>(taille);
+        for (int i = 0; i < taille; i++) {
+            String nom = NOMS[r.nextInt(NOMS.length)] + " " + i + " (" + UNITES[r.nextInt(UNITES.length)] + ")";
+            // ~5 % d'enregistrements hérités dont la catégorie est un nom de produit
+            String categorie = CATEGORIES[r.nextInt(100) < 95 ? r.nextInt(2) : 2 + r.nextInt(2)];
+            double prix = 1000 + r.nextInt(60_000);
+            int quantite = r.nextInt(1_000);
+            String fournisseur = "Fournisseur " + r.nextInt(nbFournisseurs);
+            produits.add(new Produit(nom, categorie, prix, quantite, fournisseur));
+        }
+        return produits;
+    }
+}
@@ -0,0 +1,139 @@
+package benchmark;
+
+import service.ProduitService;
+import service.ServeurApi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Test de charge de l'API HTTP : des clients en boucle fermée interrogent la liste paginée
+ * (avec If-None-Match, comme un lecteur qui scrute), un produit, les indicateurs et,
+ * pour une requête sur 20, ajustent une quantité. Affiche débit, codes et latences.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar benchmark.ChargeApi [url|taille] [clients] [secondes]
+ *
+ * Avec une URL (ex. http://localhost:8080), vise un serveur lancé par Main --api ; sinon démarre
+ * un serveur local sur un catalogue synthétique de la taille donnée (100 000 par défaut).
+ */
+public final class ChargeApi {
+
+    public static void main(String[] args) throws Exception {
+        String cible = args.length > 0 ? args[0] : "100000";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int secondes = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        ServeurApi local = null;
+        ExecutorService publication = null;
+        String base = cible;
+        if (!cible.startsWith("http")) {
+            AtomicReference<Thread> proprietaire = new AtomicReference<>();
+            publication = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "publication-catalogue");
+                t.setDaemon(true);
+                proprietaire.set(t);
+                return t;
+            });
+            ProduitService service = new ProduitService(() -> Thread.currentThread() == proprietaire.get(), publication);
+            service.ajouterTous(CatalogueSynthetique.generer(Integer.parseInt(cible), 42));
+            local = ServeurApi.demarrer(service, new InetSocketAddress("127.0.0.1", 0));
+            base = "http://127.0.0.1:" + local.getPort();
+        }
+        System.out.printf("Cible %s, %d clients, %d s%n", base, clients, secondes);
+
+        LongAdder[] parStatut = new LongAdder[6];
+        for (int i = 0; i < parStatut.length; i++) parStatut[i] = new LongAdder();
+        LongAdder nonModifies = new LongAdder();
+        List<long[]> latences = new ArrayList<>();
+        long fin = System.nanoTime() + secondes * 1_000_000_000L;
+        String racine = base;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long[] mesures = new long[1 << 18];
+            latences.add(mesures);
+            int numero = c;
+            Thread t = new Thread(() -> {
+                SplittableRandom r = new SplittableRandom(numero);
+                String[] etags = new String[8];
+                int n = 0;
+                while (System.nanoTime() < fin && n < mesures.length - 1) {
+                    int choix = r.nextInt(20), page = 1 + r.nextInt(etags.length);
+                    long t0 = System.nanoTime();
+                    try {
+                        HttpURLConnection requete;
+                        if (choix == 0) {
+                            requete = connexion(racine + "/api/produits/" + (1 + r.nextInt(1000)) + "/quantite?delta=" + (r.nextInt(11) - 5));
+                            requete.setRequestMethod("POST");
+                        } else if (choix == 1) {
+                            requete = connexion(racine + "/api/indicateurs");
+                        } else if (choix == 2) {
+                            requete = connexion(racine + "/api/produits/" + (1 + r.nextInt(1000)));
+                        } else {
+                            requete = connexion(racine + "/api/produits?taille=20&page=" + page);
+                            if (etags[page - 1] != null) requete.setRequestProperty("If-None-Match", etags[page - 1]);
+                        }
+                        int statut = lire(requete);
+                        mesures[++n] = System.nanoTime() - t0;
+                        parStatut[Math.min(5, statut / 100)].increment();
+                        if (statut == 304) nonModifies.increment();
+                        if (choix > 2) etags[page - 1] = requete.getHeaderField("ETag");
+                    } catch (IOException e) {
+                        parStatut[0].increment();
+                    }
+                }
+                mesures[0] = n;
+            }, "client-" + c);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) t.join();
+
+        long total = 0;
+        for (long[] m : latences) total += m[0];
+        long[] toutes = new long[(int) total];
+        int k = 0;
+        for (long[] m : latences) {
+            System.arraycopy(m, 1, toutes, k, (int) m[0]);
+            k += (int) m[0];
+        }
+        Arrays.sort(toutes);
+        System.out.printf("%d requêtes, %.0f req/s ; 2xx %d, 304 %d, 4xx %d, 5xx %d, échecs %d%n",
+                total, total / (double) secondes, parStatut[2].sum(), nonModifies.sum(),
+                parStatut[4].sum(), parStatut[5].sum(), parStatut[0].sum());
+        if (total > 0) {
+            System.out.printf("latence p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    toutes[(int) (total * 0.50)] / 1e6, toutes[(int) (total * 0.99)] / 1e6, toutes[toutes.length - 1] / 1e6);
+        }
+        if (local != null) local.arreter();
+        if (publication != null) publication.shutdown();
+        System.exit(0);
+    }
+
+    private static HttpURLConnection connexion(String url) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+        c.setConnectTimeout(5000);
+        c.setReadTimeout(30_000);
+        return c;
+    }
+
+    /** Lit la réponse jusqu'au bout pour que la connexion soit réutilisée (keep-alive). */
+    private static int lire(HttpURLConnection c) throws IOException {
+        int statut = c.getResponseCode();
+        try (InputStream in = statut >= 400 ? c.getErrorStream() : c.getInputStream()) {
+            if (in != null) in.readAllBytes();
+        }
+        return statut;
+    }
+}
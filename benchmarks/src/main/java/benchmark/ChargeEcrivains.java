@@ -0,0 +1,96 @@
+package benchmark;
+
+import model.Produit;
+import service.CatalogueFige;
+import service.ProduitService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Test de contention des écritures : plusieurs threads écrivent en même temps sur un petit
+ * catalogue (beaucoup de conflits), par entrées/sorties de stock (ajusterQuantite) et par
+ * modifications optimistes du prix (modifier, reprise sur conflit comme le formulaire).
+ * Vérifie à la fin qu'aucune écriture n'est perdue (sommes des quantités et des prix attendues)
+ * et qu'un setter appelé hors du thread de publication est refusé. Code de sortie 1 sinon.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar benchmark.ChargeEcrivains [écrivains] [produits] [écritures par écrivain]
+ */
+public final class ChargeEcrivains {
+
+    public static void main(String[] args) throws Exception {
+        int ecrivains = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int taille = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int ecritures = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        AtomicReference<Thread> proprietaire = new AtomicReference<>();
+        ExecutorService publication = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "publication-catalogue");
+            t.setDaemon(true);
+            proprietaire.set(t);
+            return t;
+        });
+        ProduitService service = new ProduitService(() -> Thread.currentThread() == proprietaire.get(), publication);
+        List<Produit> produits = CatalogueSynthetique.generer(taille, 42);
+        for (Produit p : produits) p.setPrix(0); // hors catalogue : valeurs propres
+        service.ajouterTous(produits);
+        long quantiteInitiale = somme(service.instantane(), false);
+        System.out.printf("%d écrivains, %d produits, %d écritures chacun%n", ecrivains, taille, ecritures);
+
+        LongAdder deltas = new LongAdder(), modifications = new LongAdder(), conflits = new LongAdder(), refus = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        long t0 = System.nanoTime();
+        for (int e = 0; e < ecrivains; e++) {
+            int numero = e;
+            Thread t = new Thread(() -> {
+                SplittableRandom r = new SplittableRandom(numero);
+                CompletableFuture<Boolean> dernier = null;
+                for (int i = 0; i < ecritures; i++) {
+                    Produit p = produits.get(r.nextInt(taille));
+                    if ((i & 1) == 0) {
+                        int delta = r.nextInt(21) - 10;
+                        dernier = service.ajusterQuantite(p, delta);
+                        deltas.add(delta);
+                    } else {
+                        // Modification optimiste : relue et reprise tant que la version a changé
+                        while (!service.modifier(p, p.getVersion(), q -> q.setPrix(q.getPrix() + 1)).join()) conflits.increment();
+                        modifications.increment();
+                    }
+                }
+                if (dernier != null) dernier.join();
+                try {
+                    produits.get(0).setQuantite(-1);
+                } catch (IllegalStateException attendu) {
+                    refus.increment();
+                }
+            }, "ecrivain-" + e);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) t.join();
+        double secondes = (System.nanoTime() - t0) / 1e9;
+
+        CatalogueFige fin = service.instantane();
+        long quantiteAttendue = quantiteInitiale + deltas.sum(), quantite = somme(fin, false);
+        long prixAttendu = modifications.sum(), prix = somme(fin, true);
+        System.out.printf("%.0f écritures/s, %d conflits repris%n", ecrivains * (double) ecritures / secondes, conflits.sum());
+        System.out.printf("quantités %d (attendu %d), prix %d (attendu %d), setters refusés %d/%d%n",
+                quantite, quantiteAttendue, prix, prixAttendu, refus.sum(), ecrivains);
+        boolean ok = quantite == quantiteAttendue && prix == prixAttendu && refus.sum() == ecrivains;
+        System.out.println(ok ? "Aucune écriture perdue." : "ÉCHEC : écritures perdues ou setter accepté hors publication.");
+        publication.shutdown();
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static long somme(CatalogueFige c, boolean prix) {
+        long s = 0;
+        for (int i = 0; i < c.taille(); i++) s += prix ? (long) c.getPrix(i) : c.getQuantite(i);
+        return s;
+    }
+}
@@ -0,0 +1,137 @@
+package benchmark;
+
+import model.Produit;
+import model.StockColonnes;
+import service.CatalogueConsolide;
+import service.ProduitService;
+import service.ServeurReplication;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de charge de la réplication sur la boucle locale : plusieurs dépôts (chacun son
+ * catalogue synthétique, son thread de publication et son {@link ServeurReplication}) et une
+ * vue consolidée qui les suit. Chaque dépôt reçoit des sorties de stock à débit fixe ; affiche
+ * le délai entre la modification au dépôt et son application dans la vue consolidée.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar benchmark.ChargeReplication [dépôts] [produits] [modifs/s] [secondes]
+ *
+ * Pour des instances séparées, lancer Lanceur --api --replication=port --depot=nom par dépôt
+ * et --sources=port,port,... sur l'instance qui consolide, puis lire /api/depots.
+ */
+public final class ChargeReplication {
+
+    public static void main(String[] args) throws Exception {
+        int nbDepots = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int taille = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int debit = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        int secondes = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        List<ProduitService> depots = new ArrayList<>();
+        List<ExecutorService> threads = new ArrayList<>();
+        List<ServeurReplication> serveurs = new ArrayList<>();
+        for (int d = 0; d < nbDepots; d++) {
+            ExecutorService publication = publication("depot-" + d);
+            ProduitService service = service(publication);
+            String nom = "Dépôt " + (d + 1);
+            int graine = d;
+            publication.submit(() -> {
+                service.ajouterTous(CatalogueSynthetique.generer(taille, graine));
+                service.ouvrirFluxChangements(nom);
+            }).get();
+            depots.add(service);
+            threads.add(publication);
+            serveurs.add(ServeurReplication.demarrer(service, new InetSocketAddress("127.0.0.1", 0)));
+        }
+
+        // Quantité écrite -> instant d'écriture (valeurs uniques, négatives : jamais dans le catalogue)
+        Map<Integer, Long> envois = new ConcurrentHashMap<>();
+        long[] delais = new long[1 << 22];
+        AtomicInteger recus = new AtomicInteger();
+        ExecutorService publicationConsolide = publication("consolide");
+        ProduitService vue = service(publicationConsolide);
+        publicationConsolide.submit(() -> ((StockColonnes) vue.getProduits()).ajouterEcouteur(new StockColonnes.Ecouteur() {
+            @Override public void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+                Long t0 = envois.remove(nouvelle);
+                if (t0 == null) return;
+                int i = recus.getAndIncrement();
+                if (i < delais.length) delais[i] = System.nanoTime() - t0;
+            }
+        })).get();
+        CatalogueConsolide consolide = new CatalogueConsolide(vue);
+        long debutSynchro = System.nanoTime();
+        for (ServeurReplication s : serveurs) consolide.ajouterSource(new InetSocketAddress("127.0.0.1", s.getPort()));
+        int attendu = nbDepots * taille;
+        while (publicationConsolide.submit(() -> vue.getProduits().size()).get() < attendu) Thread.sleep(10);
+        System.out.printf("%d dépôts × %d produits synchronisés en %d ms%n", nbDepots, taille, (System.nanoTime() - debutSynchro) / 1_000_000);
+
+        AtomicInteger marque = new AtomicInteger(-1);
+        long intervalle = 1_000_000_000L * nbDepots / debit;
+        long fin = System.nanoTime() + secondes * 1_000_000_000L;
+        List<Thread> ecrivains = new ArrayList<>();
+        for (int d = 0; d < nbDepots; d++) {
+            ProduitService service = depots.get(d);
+            ExecutorService publication = threads.get(d);
+            int numero = d;
+            Thread t = new Thread(() -> {
+                SplittableRandom r = new SplittableRandom(numero);
+                long prochain = System.nanoTime();
+                while (prochain < fin) {
+                    long attente = prochain - System.nanoTime();
+                    if (attente > 0) LockSupport.parkNanos(attente);
+                    int q = marque.getAndDecrement();
+                    publication.execute(() -> {
+                        Produit p = service.getProduits().get(r.nextInt(service.getProduits().size()));
+                        envois.put(q, System.nanoTime());
+                        p.setQuantite(q);
+                    });
+                    prochain += intervalle;
+                }
+            }, "ecrivain-" + d);
+            ecrivains.add(t);
+            t.start();
+        }
+        for (Thread t : ecrivains) t.join();
+        Thread.sleep(1_000); // derniers lots en route
+
+        int n = Math.min(recus.get(), delais.length);
+        long[] d = Arrays.copyOf(delais, n);
+        Arrays.sort(d);
+        System.out.printf("%d modifications, %d appliquées dans la vue consolidée, %d perdues%n", -marque.get() - 1, n, envois.size());
+        if (n > 0) {
+            System.out.printf("délai dépôt -> vue (ms) : p50 %.2f  p99 %.2f  p99,9 %.2f  max %.2f%n",
+                    d[n / 2] / 1e6, d[(int) (n * 0.99)] / 1e6, d[(int) (n * 0.999)] / 1e6, d[n - 1] / 1e6);
+        }
+        for (CatalogueConsolide.Source s : consolide.getSources()) {
+            System.out.printf("  %s : séquence %d, dernière trame il y a %d ms%n", s.getDepot(), s.getSeq(), s.getAgeMs());
+        }
+        consolide.arreter();
+        for (ServeurReplication s : serveurs) s.arreter();
+        System.exit(0);
+    }
+
+    private static ExecutorService publication(String nom) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "publication-" + nom);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static ProduitService service(ExecutorService publication) throws Exception {
+        AtomicReference<Thread> proprietaire = new AtomicReference<>();
+        publication.submit(() -> proprietaire.set(Thread.currentThread())).get();
+        return new ProduitService(() -> Thread.currentThread() == proprietaire.get(), publication);
+    }
+}
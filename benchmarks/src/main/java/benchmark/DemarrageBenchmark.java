@@ -0,0 +1,112 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temps jusqu'à la première image de l'application, mesuré de l'extérieur : du lancement du
+ * processus java jusqu'à la ligne « premiere-image » (Main en mode -Dgestionnaire.demarrage=mesure).
+ * Les configurations sont lancées à tour de rôle, pour répartir le bruit de la machine.
+ *
+ *   mvn -pl app -am -Pcds package
+ *   java -cp benchmarks/target/benchmarks.jar benchmark.DemarrageBenchmark \
+ *        app/target/gestionnaire-produits.jar [lancements] [app/target/gestionnaire.jsa]
+ *
+ * Nécessite un écran (ou Xvfb). Le catalogue utilisé est celui de -Dgestionnaire.donnees si
+ * l'option est donnée au benchmark, sinon un dossier temporaire (données de démo).
+ */
+public final class DemarrageBenchmark {
+
+    private static final class Configuration {
+        final String nom;
+        final List<String> options;
+
+        Configuration(String nom, List<String> options) {
+            this.nom = nom;
+            this.options = options;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage : DemarrageBenchmark <gestionnaire-produits.jar> [lancements] [archive.jsa]");
+            System.exit(2);
+        }
+        Path jar = Path.of(args[0]);
+        int lancements = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path archive = args.length > 2 ? Path.of(args[2]) : jar.resolveSibling("gestionnaire.jsa");
+        String donnees = System.getProperty("gestionnaire.donnees");
+        if (donnees == null) donnees = Files.createTempDirectory("demarrage").toString();
+
+        List<Configuration> configurations = new ArrayList<>();
+        configurations.add(new Configuration("Tout construit au démarrage",
+                List.of("-Dgestionnaire.ongletsDifferes=false", "-Dgestionnaire.prechargement=non")));
+        configurations.add(new Configuration("Onglet Produits différé + préchargement", List.of()));
+        if (Files.exists(archive)) {
+            configurations.add(new Configuration("Différé + préchargement + AppCDS",
+                    List.of("-XX:SharedArchiveFile=" + archive.toAbsolutePath())));
+        } else {
+            System.out.println("Pas d'archive AppCDS (" + archive + ") : configuration ignorée");
+        }
+
+        lancer(jar, donnees, configurations.get(0).options); // chauffe du cache disque, non comptée
+        long[][] externes = new long[configurations.size()][lancements];
+        long[][] internes = new long[configurations.size()][lancements];
+        for (int n = 0; n < lancements; n++) {
+            for (int c = 0; c < configurations.size(); c++) {
+                long[] mesure = lancer(jar, donnees, configurations.get(c).options);
+                externes[c][n] = mesure[0];
+                internes[c][n] = mesure[1];
+            }
+        }
+
+        double reference = mediane(externes[0]);
+        System.out.printf("%n%-42s %12s %10s %14s %8s%n", "Configuration", "médiane ms", "min ms", "JVM (uptime)", "gain");
+        for (int c = 0; c < configurations.size(); c++) {
+            double m = mediane(externes[c]);
+            System.out.printf("%-42s %12.0f %10d %14.0f %7.0f%%%n", configurations.get(c).nom, m,
+                    Arrays.stream(externes[c]).min().orElse(0), mediane(internes[c]), 100 * (1 - m / reference));
+        }
+    }
+
+    /** Un lancement : {ms jusqu'à la première image vus du parent, ms d'uptime rapportés par la JVM}. */
+    private static long[] lancer(Path jar, String donnees, List<String> options) throws IOException, InterruptedException {
+        List<String> commande = new ArrayList<>();
+        commande.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        commande.addAll(options);
+        commande.add("-Dgestionnaire.demarrage=mesure");
+        commande.add("-Dgestionnaire.donnees=" + donnees);
+        commande.add("-jar");
+        commande.add(jar.toString());
+
+        long debut = System.nanoTime();
+        Process p = new ProcessBuilder(commande).redirectErrorStream(true).start();
+        long externe = -1, interne = -1;
+        try (BufferedReader sortie = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String ligne; (ligne = sortie.readLine()) != null; ) {
+                if (externe < 0 && ligne.startsWith("premiere-image ")) {
+                    externe = (System.nanoTime() - debut) / 1_000_000;
+                    interne = Long.parseLong(ligne.substring("premiere-image ".length()).strip());
+                }
+            }
+        }
+        if (!p.waitFor(60, TimeUnit.SECONDS)) p.destroyForcibly();
+        if (externe < 0) throw new IllegalStateException("Pas de première image (code " + p.exitValue() + ") : " + commande);
+        return new long[]{externe, interne};
+    }
+
+    private static double mediane(long[] valeurs) {
+        long[] tri = valeurs.clone();
+        Arrays.sort(tri);
+        int m = tri.length / 2;
+        return tri.length % 2 == 1 ? tri[m] : (tri[m - 1] + tri[m]) / 2.0;
+    }
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import model.Produit;
+import org.openjdk.jmh.annotations.*;
+import service.CritereFiltres;
+import service.FiltresProduits;
+import service.ProduitService;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Prédicat texte + catégorie de l'écran Produits (ProduitService.filtre), évalué sur
+ * tout le catalogue comme le fait le FilteredList, comparé au contains() historique ;
+ * filtre de catégorie seul : index bitmap, taxonomie à chaque test, listes d'origine ;
+ * filtre multicritère : index bitmap contre évaluation ligne par ligne.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FiltreBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int taille;
+
+    @Param({"sa", "ciment", "fournisseur 12"})
+    public String recherche;
+
+    @Param({"", "Liants"})
+    public String categorie;
+
+    private ProduitService service;
+    private List<Produit> produits;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        service = new ProduitService(() -> true, Runnable::run); // le thread du benchmark tient lieu de thread de publication
+        service.getProduits().addAll(CatalogueSynthetique.generer(taille, 42));
+        produits = service.getProduits();
+    }
+
+    /** Chemin actuel : index de trigrammes ∩ index bitmap des catégories, puis un test de bit par ligne. */
+    @Benchmark
+    public int filtreIndexe() {
+        return compter(service.filtre(new CritereFiltres(recherche, categorie, Set.of(), null, null, null, null)));
+    }
+
+    /** Référence : prédicat d'origine (toLowerCase().contains() par produit et par frappe). */
+    @Benchmark
+    public int filtreHistorique() {
+        String q = recherche.toLowerCase().trim();
+        Predicate<Produit> predicat = ((Predicate<Produit>) p -> p.getNom().toLowerCase().contains(q)
+                || p.getFournisseur().toLowerCase().contains(q)).and(categorieHistorique(categorie));
+        return compter(predicat);
+    }
+
+    /** Catégorie seule : union des bitmaps de la catégorie et de ses sous-catégories (IndexFiltres). */
+    @Benchmark
+    public int categorieIndexee() {
+        return compter(service.filtre(new CritereFiltres(null, categorie, Set.of(), null, null, null, null)));
+    }
+
+    /** Catégorie seule, résolue dans la taxonomie à chaque test (table de hachage par produit). */
+    @Benchmark
+    public int categorieTaxonomie() {
+        return compter(FiltresProduits.categorie(categorie));
+    }
+
+    /** Catégorie seule, filtre d'origine (listes codées en dur parcourues par anyMatch). */
+    @Benchmark
+    public int categorieListes() {
+        return compter(categorieHistorique(categorie));
+    }
+
+    /** Filtre d'acheteur : 3 fournisseurs, une catégorie, prix 30 000–50 000 Ar, quantité ≤ 100, compilé en opérations bitmap. */
+    @Benchmark
+    public int multicriteresBitmaps() {
+        return compter(service.filtre(critereAcheteur()));
+    }
+
+    /** Même filtre évalué ligne par ligne (un lambda par produit). */
+    @Benchmark
+    public int multicriteresParLigne() {
+        CritereFiltres c = critereAcheteur();
+        Set<String> fournisseurs = c.getFournisseurs();
+        Predicate<Produit> categorie = FiltresProduits.categorie(c.getCategorie());
+        return compter(p -> p.getPrix() >= c.getPrixMin() && p.getPrix() <= c.getPrixMax()
+                && p.getQuantite() <= c.getQuantiteMax() && fournisseurs.contains(p.getFournisseur()) && categorie.test(p));
+    }
+
+    private CritereFiltres critereAcheteur() {
+        return new CritereFiltres(null, categorie.isEmpty() ? "Liants" : categorie,
+                Set.of("Fournisseur 1", "Fournisseur 2", "Fournisseur 3"), 30_000.0, 50_000.0, null, 100);
+    }
+
+    private static final List<String> CATEGORIES = Arrays.asList("Granulats", "Liants");
+    private static final List<String> PRODUITS_GRANULATS = Arrays.asList(
+            "Sable fin", "Gravillon", "Gros sable", "Brique", "Moellon", "4/7");
+    private static final List<String> PRODUITS_LIANTS = Arrays.asList("Fer", "Ciment");
+
+    /** Filtre de catégorie d'avant la taxonomie, gardé comme référence. */
+    private static Predicate<Produit> categorieHistorique(String catFiltre) {
+        if (catFiltre == null || catFiltre.isEmpty()) return p -> true;
+        return p -> {
+            String catProduit = p.getCategorie();
+            if (CATEGORIES.contains(catProduit)) return catFiltre.equalsIgnoreCase(catProduit);
+            List<String> produits = "Granulats".equals(catFiltre) ? PRODUITS_GRANULATS : PRODUITS_LIANTS;
+            return produits.stream().anyMatch(x -> x.equalsIgnoreCase(catProduit));
+        };
+    }
+
+    private int compter(Predicate<Produit> predicat) {
+        int n = 0;
+        for (int i = 0, fin = produits.size(); i < fin; i++) if (predicat.test(produits.get(i))) n++;
+        return n;
+    }
+}
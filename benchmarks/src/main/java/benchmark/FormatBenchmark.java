@@ -0,0 +1,53 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import util.Utils;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Formatage des montants : valeurs répétées (cellules au défilement) et valeurs toutes distinctes. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    private static final int NB_VALEURS = 1024;
+
+    @Param({"repetees", "distinctes"})
+    public String jeu;
+
+    private double[] montants;
+    private int i;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        SplittableRandom r = new SplittableRandom(7);
+        montants = new double[NB_VALEURS];
+        for (int k = 0; k < NB_VALEURS; k++) {
+            montants[k] = "repetees".equals(jeu) ? 1000 * (1 + r.nextInt(64)) : r.nextDouble() * 1e9;
+        }
+    }
+
+    @Benchmark
+    public String formaterMontant() {
+        return Utils.formaterMontant(montants[i++ & (NB_VALEURS - 1)]);
+    }
+
+    /** Référence : implémentation d'origine (nouveau DecimalFormat à chaque appel). */
+    @Benchmark
+    public void formaterMontantHistorique(Blackhole bh) {
+        DecimalFormatSymbols sym = new DecimalFormatSymbols(Locale.FRANCE);
+        sym.setGroupingSeparator(' ');
+        sym.setDecimalSeparator(',');
+        DecimalFormat df = new DecimalFormat("#,##0", sym);
+        bh.consume(df.format(montants[i++ & (NB_VALEURS - 1)]));
+    }
+}
@@ -0,0 +1,32 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Point d'entrée de benchmarks.jar : mêmes options que JMH en ligne de commande,
+ * avec par défaut le profileur GC (taux d'allocation) et un export JSON horodaté
+ * pour comparer les versions entre elles.
+ */
+public final class LancerBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions ligne = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(ligne);
+
+        if (ligne.getProfilers().isEmpty()) options.addProfiler(GCProfiler.class);
+        if (!ligne.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        if (!ligne.getResult().hasValue()) {
+            String horodatage = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            options.result("jmh-resultats-" + horodatage + ".json");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,119 @@
+package benchmark;
+
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
+import model.Produit;
+import org.openjdk.jmh.annotations.*;
+import service.ProduitService;
+import service.VueTriee;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Agrégations de ProduitService sur des catalogues de taille croissante. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ServiceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int taille;
+
+    private ProduitService service;
+    private FilteredList<Produit> vueFiltree;
+    private VueTriee vueTriee;
+    // Produits neufs pour chargerCatalogue : un produit ne peut appartenir qu'à un seul stock
+    private List<Produit> aCharger;
+    private int rang;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        service = new ProduitService(() -> true, Runnable::run); // le thread du benchmark tient lieu de thread de publication
+        service.getProduits().addAll(CatalogueSynthetique.generer(taille, 42));
+        vueFiltree = new FilteredList<>(service.getProduits(), p -> p.getQuantite() < 500);
+        vueTriee = service.creerVueTriee();
+        vueTriee.filtrer(p -> p.getQuantite() < 500);
+    }
+
+    @Setup(Level.Iteration)
+    public void preparerChargement() {
+        aCharger = CatalogueSynthetique.generer(taille, 7);
+    }
+
+    @Benchmark
+    public double calculerValeurTotale() {
+        return service.calculerValeurTotale();
+    }
+
+    /** Référence : valeur d'une vue filtrée calculée par parcours. */
+    @Benchmark
+    public double calculerValeurTotaleVue() {
+        return service.calculerValeurTotale(vueFiltree);
+    }
+
+    /** Même filtre dans la vue du tableau : valeur tenue par delta après une modification de quantité. */
+    @Benchmark
+    public double valeurVueTriee() {
+        modifierUneQuantite();
+        return vueTriee.getValeur();
+    }
+
+    @Benchmark
+    public List<String> getToutesCategories() {
+        return service.getToutesCategories();
+    }
+
+    @Benchmark
+    public String getCategorieLaPlusFrequente() {
+        return service.getCategorieLaPlusFrequente();
+    }
+
+    /** Graphique des fournisseurs après une modification de quantité : top 10 + Autres reporté par deltas. */
+    @Benchmark
+    public ObservableList<XYChart.Series<String, Number>> getDataBarChart() {
+        modifierUneQuantite();
+        service.getRepartitionFournisseurs().appliquer(); // fait à l'impulsion suivante sur le thread FX
+        return service.getDataBarChart();
+    }
+
+    @Benchmark
+    public ObservableList<PieChart.Data> getDataPieChart() {
+        modifierUneQuantite();
+        service.getRepartitionCategories().appliquer();
+        return service.getDataPieChart();
+    }
+
+    /** Référence : group-by complet et série neuve à chaque appel (getDataBarChart d'origine). */
+    @Benchmark
+    public XYChart.Series<String, Number> barChartReconstruit() {
+        modifierUneQuantite();
+        Map<String, Long> parFournisseur = new HashMap<>();
+        for (Produit p : service.getProduits()) parFournisseur.merge(p.getFournisseur(), (long) p.getQuantite(), Long::sum);
+        XYChart.Series<String, Number> serie = new XYChart.Series<>();
+        parFournisseur.forEach((f, q) -> serie.getData().add(new XYChart.Data<>(f, q)));
+        return serie;
+    }
+
+    private void modifierUneQuantite() {
+        Produit p = service.getProduits().get(rang++ % taille);
+        p.setQuantite(p.getQuantite() + 1);
+    }
+
+    /** Coût de chargement : ajout groupé d'un catalogue complet dans un service neuf (index inclus). */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public ProduitService chargerCatalogue() {
+        ProduitService neuf = new ProduitService(() -> true, Runnable::run);
+        neuf.getProduits().setAll(aCharger);
+        return neuf;
+    }
+}
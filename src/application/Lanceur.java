@@ -0,0 +1,121 @@
+package application;
+
+import controller.MainController;
+import javafx.application.Application;
+import service.CatalogueConsolide;
+import service.ProduitService;
+import service.ServeurApi;
+import service.ServeurReplication;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Point d'entrée : fenêtre JavaFX ({@link Main}) ou, avec --api, catalogue servi en HTTP sans
+ * fenêtre. Classe distincte de Main : le lanceur java démarre le toolkit JavaFX avant main()
+ * pour toute sous-classe d'Application, ce qui échoue sur un serveur sans écran.
+ */
+public final class Lanceur {
+
+    private Lanceur() {}
+
+    public static void main(String[] args) throws Exception {
+        for (String a : args) {
+            if (a.equals("--api") || a.startsWith("--api=")) {
+                lancerSansInterface(a.equals("--api") ? "" : a.substring("--api=".length()), args);
+                return;
+            }
+        }
+        PrechargementClasses.demarrer();
+        Application.launch(Main.class, args);
+    }
+
+    /**
+     * Mode sans fenêtre : --api, --api=port ou --api=hôte:port (par défaut 127.0.0.1:8080).
+     * Le catalogue enregistré est rechargé et servi en HTTP ; un thread dédié tient le rôle
+     * du thread FX pour les écritures. Arrêt par Ctrl+C (journal compacté et synchronisé).
+     * Réplication entre dépôts (une instance par dépôt, chacune avec son -Dgestionnaire.donnees) :
+     * --replication=[hôte:]port sert le flux de changements du dépôt nommé par --depot=nom ;
+     * --sources=hôte:port,... suit ces flux dans une vue consolidée servie sur /api/depots.
+     */
+    private static void lancerSansInterface(String option, String[] args) throws Exception {
+        InetSocketAddress adresseApi = adresse(option, 8080);
+        String depot = valeur(args, "--depot=");
+        String replication = valeur(args, "--replication=");
+        String sources = valeur(args, "--sources=");
+
+        AtomicReference<Thread> proprietaire = new AtomicReference<>();
+        ExecutorService publication = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "publication-catalogue");
+            proprietaire.set(t);
+            return t;
+        });
+        BooleanSupplier surPublication = () -> Thread.currentThread() == proprietaire.get();
+        ProduitService service = new ProduitService(surPublication, publication);
+        String nomDepot = depot != null ? depot : nomMachine();
+        publication.submit(() -> {
+            service.getAlertesStock().definirSeuilParDefaut(MainController.SEUIL_STOCK_BAS);
+            service.ouvrirPersistance(ProduitService.DOSSIER_DONNEES);
+            if (replication != null) service.ouvrirFluxChangements(nomDepot);
+            return null;
+        }).get();
+
+        ServeurReplication serveurReplication = replication == null ? null
+                : ServeurReplication.demarrer(service, adresse(replication, 0));
+        CatalogueConsolide consolide = null;
+        if (sources != null) {
+            // Vue consolidée : catalogue à part, mêmes règles de thread que celui du dépôt
+            consolide = new CatalogueConsolide(new ProduitService(surPublication, publication));
+            for (String source : sources.split(",")) {
+                if (!source.isBlank()) consolide.ajouterSource(adresse(source.trim(), 0));
+            }
+        }
+        CatalogueConsolide vueConsolidee = consolide;
+
+        ServeurApi api = ServeurApi.demarrer(service, consolide, adresseApi);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.arreter();
+            if (vueConsolidee != null) vueConsolidee.arreter();
+            if (serveurReplication != null) serveurReplication.arreter();
+            try {
+                publication.submit(service::fermer).get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            publication.shutdown();
+        }, "arret-api"));
+        System.out.println("API du catalogue (" + service.getProduits().size() + " produits) : http://"
+                + adresseApi.getHostString() + ":" + api.getPort() + "/api/produits");
+        if (serveurReplication != null) {
+            System.out.println("Flux de changements du dépôt " + nomDepot + " : port " + serveurReplication.getPort());
+        }
+    }
+
+    /** « port » ou « hôte:port » (hôte par défaut 127.0.0.1). */
+    private static InetSocketAddress adresse(String option, int portDefaut) {
+        String hote = "127.0.0.1";
+        int port = portDefaut;
+        int deuxPoints = option.lastIndexOf(':');
+        if (deuxPoints >= 0) hote = option.substring(0, deuxPoints);
+        if (!option.isEmpty()) port = Integer.parseInt(option.substring(deuxPoints + 1));
+        return new InetSocketAddress(hote, port);
+    }
+
+    private static String valeur(String[] args, String prefixe) {
+        for (String a : args) if (a.startsWith(prefixe)) return a.substring(prefixe.length());
+        return null;
+    }
+
+    private static String nomMachine() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "depot";
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package application;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import controller.MainController;
+
+import java.lang.management.ManagementFactory;
 
 public class Main extends Application {
+    private MainController controleur;
+
+    /**
+     * -Dgestionnaire.demarrage=mesure : affiche « premiere-image &lt;ms depuis le lancement de la JVM&gt; »
+     * puis quitte dès la première image (benchmark de démarrage, exécution d'entraînement AppCDS).
+     */
+    private static final boolean MESURE_DEMARRAGE = "mesure".equals(System.getProperty("gestionnaire.demarrage"));
+
     @Override
     public void start(Stage primaryStage) throws Exception {
-        Parent root = FXMLLoader.load(getClass().getResource("/view/MainView.fxml"));
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/MainView.fxml"));
+        Parent root = loader.load();
+        controleur = loader.getController();
         Scene scene = new Scene(root);
         scene.getStylesheets().add(getClass().getResource("/style/style.css").toExternalForm());
 
@@ -17,6 +31,30 @@ public class Main extends Application {
         primaryStage.setScene(scene);
         primaryStage.setMaximized(true);
         primaryStage.show();
+
+        quandPremiereImage(scene, () -> {
+            if (MESURE_DEMARRAGE) {
+                System.out.println("premiere-image " + ManagementFactory.getRuntimeMXBean().getUptime());
+                Platform.exit();
+            } else {
+                controleur.apresPremiereImage();
+            }
+        });
+    }
+
+    /** Exécute action juste après le rendu de la première impulsion qui met la scène en page. */
+    private static void quandPremiereImage(Scene scene, Runnable action) {
+        Runnable[] ecouteur = new Runnable[1];
+        ecouteur[0] = () -> {
+            scene.removePostLayoutPulseListener(ecouteur[0]);
+            Platform.runLater(action); // après la fin de l'impulsion, donc après son rendu
+        };
+        scene.addPostLayoutPulseListener(ecouteur[0]);
+    }
+
+    @Override
+    public void stop() {
+        if (controleur != null) controleur.fermer();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,58 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Profil de préchargement : pendant que le toolkit JavaFX démarre (initialisation native,
+ * thread FX), un thread de fond charge les classes FXML/CSS/contrôles dont la vue principale
+ * aura besoin, pour que le thread FX les trouve déjà chargées.
+ *
+ * Liste par défaut : /demarrage/classes-demarrage.txt. -Dgestionnaire.prechargement=&lt;fichier&gt;
+ * en désigne une autre (par ex. target/classes-demarrage.lst, écrite par le profil Maven cds) ;
+ * -Dgestionnaire.prechargement=non désactive le préchargement.
+ */
+final class PrechargementClasses {
+
+    private static final String LISTE_PAR_DEFAUT = "/demarrage/classes-demarrage.txt";
+
+    private PrechargementClasses() {}
+
+    static void demarrer() {
+        String option = System.getProperty("gestionnaire.prechargement", "");
+        if (option.equals("non")) return;
+        Thread t = new Thread(() -> precharger(option), "prechargement-classes");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    private static void precharger(String fichier) {
+        ClassLoader chargeur = PrechargementClasses.class.getClassLoader();
+        try (InputStream in = fichier.isEmpty()
+                ? PrechargementClasses.class.getResourceAsStream(LISTE_PAR_DEFAUT)
+                : Files.newInputStream(Path.of(fichier))) {
+            if (in == null) return;
+            BufferedReader lignes = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String ligne; (ligne = lignes.readLine()) != null; ) {
+                ligne = ligne.strip();
+                if (ligne.isEmpty() || ligne.startsWith("#") || ligne.startsWith("@")) continue;
+                int espace = ligne.indexOf(' ');
+                String nom = (espace < 0 ? ligne : ligne.substring(0, espace)).replace('/', '.');
+                try {
+                    // Chargée sans être initialisée : aucun bloc static (ni toolkit) exécuté hors du thread FX
+                    Class.forName(nom, false, chargeur);
+                } catch (ClassNotFoundException | LinkageError ignoree) {
+                    // Liste d'une autre version : la classe sera simplement chargée à la demande
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Préchargement des classes ignoré : " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package controller;
+
+import javafx.animation.FadeTransition;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import model.Produit;
+import util.FormateurNombres;
+import util.Mesures;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+
+/**
+ * Grille de cartes virtualisée : chaque ligne du ListView (VirtualFlow) porte
+ * plusieurs cartes. Seules les lignes visibles (+ tampon du VirtualFlow) existent
+ * et les cartes sont recyclées puis re-liées au produit affiché lors du défilement.
+ */
+public class GrilleProduits extends ListView<Integer> {
+
+    private static final double LARGEUR_CARTE = 240;
+    private static final double ESPACE = 16;
+
+    private final Lignes lignes = new Lignes();
+    /** Produits déjà apparus depuis le dernier filtrage : pas de nouveau fondu au re-défilement. */
+    private final BitSet dejaAffiches = new BitSet();
+    // Modification du catalogue : seules les lignes touchées sont re-liées, sans fondu (seul un produit jamais vu apparaît en fondu)
+    private final ListChangeListener<Produit> ecouteurSource = this::sourceModifiee;
+
+    private ObservableList<Produit> source;
+    private int colonnes = 1;
+
+    public GrilleProduits() {
+        getStyleClass().add("grille-produits");
+        setItems(lignes);
+        setFocusTraversable(false);
+        setCellFactory(lv -> new LigneCartes());
+        widthProperty().addListener((o, a, b) -> {
+            int c = Math.max(1, (int) ((b.doubleValue() - 2 * ESPACE) / (LARGEUR_CARTE + ESPACE)));
+            if (c != colonnes) {
+                colonnes = c;
+                lignes.actualiser();
+                refresh();
+            }
+        });
+    }
+
+    /** Liste (filtrée/triée) à présenter en cartes. */
+    public void setSource(ObservableList<Produit> source) {
+        if (this.source != null) this.source.removeListener(ecouteurSource);
+        this.source = source;
+        if (source != null) source.addListener(ecouteurSource);
+        rafraichir();
+    }
+
+    /** Nouveau résultat de filtre : seules les cartes visibles sont re-liées, avec fondu. */
+    public void rafraichir() {
+        dejaAffiches.clear();
+        actualiser();
+    }
+
+    /** Même résultat (liste modifiée, grille ré-affichée) : cartes visibles re-liées, sans fondu. */
+    public void actualiser() {
+        lignes.actualiser();
+        refresh();
+    }
+
+    /**
+     * Lignes de cartes à re-lier : celles des produits modifiés ou permutés, et pour un ajout
+     * ou un retrait toutes les suivantes (leurs cartes se décalent). Les cellules hors de cette
+     * plage gardent leurs cartes ; refresh() reste réservé au changement de largeur.
+     */
+    private void sourceModifiee(ListChangeListener.Change<? extends Produit> c) {
+        int de = Integer.MAX_VALUE, a = 0;
+        while (c.next()) {
+            de = Math.min(de, c.getFrom() / colonnes);
+            if (c.wasPermutated() || c.wasUpdated()) a = Math.max(a, (c.getTo() - 1) / colonnes + 1);
+            else a = Integer.MAX_VALUE;
+        }
+        lignes.actualiser(de, a);
+    }
+
+    /** Mise en page du VirtualFlow : c'est ici que les lignes visibles sont (re)liées. */
+    @Override protected void layoutChildren() {
+        long t0 = Mesures.debut();
+        super.layoutChildren();
+        Mesures.fin(Mesures.Operation.GRILLE, t0);
+    }
+
+    /** Nombre de lignes de cartes, calculé sans matérialiser de liste. */
+    private final class Lignes extends ObservableListBase<Integer> {
+        private int taille;
+
+        @Override public Integer get(int index) { return index; }
+        @Override public int size() { return taille; }
+
+        void actualiser() {
+            actualiser(0, 0);
+        }
+
+        /** Nombre de lignes recalculé ; les lignes [de, a) restées en place sont signalées modifiées. */
+        void actualiser(int de, int a) {
+            int n = source == null ? 0 : source.size();
+            int nouvelle = (n + colonnes - 1) / colonnes;
+            int ancienne = taille;
+            a = Math.min(a, Math.min(ancienne, nouvelle));
+            if (nouvelle == ancienne && de >= a) return;
+            taille = nouvelle;
+            beginChange();
+            for (int i = de; i < a; i++) nextUpdate(i);
+            if (nouvelle > ancienne) nextAdd(ancienne, nouvelle);
+            else if (nouvelle < ancienne) nextRemove(nouvelle, new AbstractList<Integer>() {
+                @Override public Integer get(int i) { return nouvelle + i; }
+                @Override public int size() { return ancienne - nouvelle; }
+            });
+            endChange();
+        }
+    }
+
+    /** Ligne recyclable : un HBox de cartes ajusté au nombre de colonnes. */
+    private final class LigneCartes extends ListCell<Integer> {
+        private final HBox contenu = new HBox(ESPACE);
+
+        LigneCartes() {
+            contenu.setPadding(new Insets(ESPACE / 2, ESPACE, ESPACE / 2, ESPACE));
+            getStyleClass().add("ligne-cartes");
+        }
+
+        @Override protected void updateItem(Integer ligne, boolean empty) {
+            long t0 = Mesures.debut();
+            super.updateItem(ligne, empty);
+            if (empty || ligne == null || source == null) {
+                setGraphic(null);
+                return;
+            }
+            while (contenu.getChildren().size() < colonnes) contenu.getChildren().add(new Carte());
+            if (contenu.getChildren().size() > colonnes) contenu.getChildren().remove(colonnes, contenu.getChildren().size());
+
+            int debut = ligne * colonnes;
+            for (int k = 0; k < colonnes; k++) {
+                Carte carte = (Carte) contenu.getChildren().get(k);
+                int index = debut + k;
+                carte.lier(index < source.size() ? source.get(index) : null);
+            }
+            setGraphic(contenu);
+            Mesures.fin(Mesures.Operation.CELLULE, t0);
+        }
+    }
+
+    /** Carte produit réutilisable : seuls les textes changent lors d'un re-lien. */
+    private final class Carte extends VBox {
+        private final Label nom = new Label();
+        private final Label prix = new Label();
+        private final Label qte = new Label();
+        private final Label cat = new Label();
+        private final Label frn = new Label();
+        private final FadeTransition fondu = new FadeTransition(Duration.millis(160), this);
+
+        Carte() {
+            super(6);
+            nom.getStyleClass().add("carte-nom");
+            getChildren().addAll(nom, prix, qte, cat, frn);
+            getStyleClass().add("carte-produit");
+            setPrefWidth(LARGEUR_CARTE);
+            fondu.setFromValue(0);
+            fondu.setToValue(1);
+        }
+
+        void lier(Produit p) {
+            setVisible(p != null);
+            if (p == null) return;
+            nom.setText(p.getNom());
+            prix.setText(FormateurNombres.montant(p.getPrix(), "Prix : ", " Ar"));
+            qte.setText(FormateurNombres.quantite(p.getQuantite(), "Quantité : ", ""));
+            cat.setText("Catégorie : " + p.getCategorie());
+            frn.setText("Fournisseur : " + p.getFournisseur());
+
+            if (!dejaAffiches.get(p.getId())) {
+                dejaAffiches.set(p.getId());
+                fondu.playFromStart();
+            } else {
+                fondu.stop();
+                setOpacity(1);
+            }
+        }
+    }
+}
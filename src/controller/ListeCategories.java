@@ -0,0 +1,34 @@
+package controller;
+
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.ListCell;
+import service.Taxonomie;
+
+/**
+ * Liste déroulante des catégories de la taxonomie : chaque catégorie suivie de ses
+ * sous-catégories, indentées dans la liste ; le bouton affiche le libellé seul.
+ */
+final class ListeCategories extends ListCell<String> {
+
+    private static final String RETRAIT = "    ";
+
+    private final Taxonomie taxonomie;
+    private final boolean indenter;
+
+    private ListeCategories(Taxonomie taxonomie, boolean indenter) {
+        this.taxonomie = taxonomie;
+        this.indenter = indenter;
+    }
+
+    static void installer(ComboBox<String> combo, Taxonomie taxonomie) {
+        combo.getItems().setAll(taxonomie.libelles());
+        combo.setCellFactory(l -> new ListeCategories(taxonomie, true));
+        combo.setButtonCell(new ListeCategories(taxonomie, false));
+    }
+
+    @Override protected void updateItem(String categorie, boolean empty) {
+        super.updateItem(categorie, empty);
+        if (empty || categorie == null) setText(null);
+        else setText(indenter ? RETRAIT.repeat(taxonomie.profondeur(categorie)) + categorie : categorie);
+    }
+}
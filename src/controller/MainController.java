@@ -1,42 +1,66 @@
 package controller;
 
-import javafx.animation.FadeTransition;
-import javafx.animation.SequentialTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
+import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
-import javafx.scene.layout.FlowPane;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.StackPane;
-import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.util.Duration;
 import model.Produit;
+import service.CatalogueFige;
+import service.CritereFiltres;
+import service.ExportCatalogue;
+import service.FiltresEnregistres;
+import service.IndexTri;
+import service.ImportCsv;
+import service.ProduitService;
+import service.ValidationProduit;
+import service.VueTriee;
+import util.FormateurNombres;
+import util.Mesures;
 import util.Utils;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
- * Accueil : KPI + Alertes + Top fournisseurs
+ * Accueil : KPI + Alertes + Top fournisseurs + Consommation
  * Produits : Tableau/Grille, filtres par catégories RÉELLES ("Granulats", "Liants")
  */
 public class MainController {
 
     @FXML private StackPane rootPane;
     @FXML private TabPane tabPane;
+    @FXML private Tab ongletProduits;
 
     // KPI Accueil
     @FXML private Label labelNbProduits, labelValeurTotale, labelTopCategorie, labelTopFournisseur;
@@ -44,52 +68,101 @@ public class MainController {
     // Accueil – listes
     @FXML private TableView<Produit> tableAlertes;
     @FXML private TableColumn<Produit, String>  colAlerteNom;
-    @FXML private TableColumn<Produit, Integer> colAlerteQuantite;
+    @FXML private TableColumn<Produit, Number> colAlerteQuantite;
     @FXML private ListView<String> listTopFournisseurs;
+    @FXML private LineChart<String, Number> chartConsommation;
+    @FXML private BarChart<String, Number> chartFournisseurs;
+    @FXML private PieChart chartCategories;
 
-    // Produits
+    // Produits (view/ProduitsView.fxml, injectés à la première sélection de l'onglet)
     @FXML private TableView<Produit> tableProduits;
     @FXML private TableColumn<Produit, String>  colNom, colCategorie, colFournisseur;
-    @FXML private TableColumn<Produit, Double>  colPrix;
-    @FXML private TableColumn<Produit, Integer> colQuantite;
+    @FXML private TableColumn<Produit, Number>  colPrix, colQuantite;
     @FXML private TextField txtRecherche;
-    @FXML private ComboBox<String> comboFiltre; // <- filtre par catégorie réelle
+    @FXML private ComboBox<String> comboFiltre; // <- filtre par catégorie (sous-catégories comprises)
+    @FXML private MenuButton menuFournisseurs;
+    @FXML private TextField txtPrixMin, txtPrixMax, txtQuantiteMin, txtQuantiteMax;
+    @FXML private ComboBox<String> comboFiltresEnregistres;
     @FXML private Label labelValeurStock;
 
-    // Vue Grille
+    // Vue Grille (virtualisée)
     @FXML private Button btnBasculeVue;
-    @FXML private ScrollPane scrollGrille;
-    @FXML private FlowPane grilleProduits;
-
-    private final ObservableList<Produit> produits = FXCollections.observableArrayList();
-    private FilteredList<Produit> filtered;
-    private SortedList<Produit> sorted;
+    @FXML private GrilleProduits grilleProduits;
+
+    // Import / export (une opération longue à la fois)
+    @FXML private Button btnImporter, btnExporter, btnAnnulerTache;
+    @FXML private ProgressBar progressionTache;
+    @FXML private Label labelTache;
+    private final AtomicBoolean tacheAnnulee = new AtomicBoolean();
+
+    private final ProduitService service = new ProduitService();
+    private final ObservableList<Produit> produits = service.getProduits();
+    private VueTriee vue; // filtrée + triée par les index de colonnes, partagée tableau/grille/export
+    private PagesProduits pages; // lignes de la vue lues par pages pour le tableau et la grille
+    // Critères du dernier filtrage demandé / affiché (un nouveau critère relance le fondu de la grille)
+    private CritereFiltres critereDemande = CritereFiltres.AUCUN, critereAffiche = CritereFiltres.AUCUN;
+    private PipelineFiltres pipelineFiltres;
+    private final Set<String> fournisseursFiltre = new LinkedHashSet<>(); // vide : tous
+    private FiltresEnregistres filtresEnregistres;
+    private boolean restaurationFiltre; // champs remplis depuis un filtre enregistré : une seule évaluation à la fin
+    private SurcouchePerformances surcouchePerformances;
+
+    // Rafraîchissements et notifications regroupés : au plus une fois par image
+    private PlanificateurAffichage affichage;
+    private PlanificateurAffichage.Tache majAccueil, majTableau, majFiltres, majValeurStock;
+
+    // Formulaire Ajouter/Modifier : une seule instance, re-liée à chaque ouverture
+    private CompletableFuture<FXMLLoader> chargementFormulaire;
+    private ProduitFormController formulaire;
+    private Stage modalFormulaire;
+    private long debutOuverture;
+    private final ProduitFormController.FormCallback rappelFormulaire = new ProduitFormController.FormCallback() {
+        @Override public void onProduitAjoute(Produit produit) {
+            service.ajouter(produit);
+            rafraichirApresModification();
+            affichage.notifier("Produit ajouté.", "%d produits ajoutés.");
+        }
+        @Override public boolean onProduitModifie(Produit produit, int versionLue, ValidationProduit.Resultat saisie) {
+            // Sur le thread FX : appliquée (ou refusée) immédiatement
+            if (!service.modifier(produit, versionLue, saisie::appliquer).getNow(false)) return false;
+            rafraichirApresModification();
+            affichage.notifier("Produit modifié.", "%d produits modifiés.");
+            return true;
+        }
+    };
 
-    private static final int SEUIL_STOCK_BAS = 50;
+    public static final int SEUIL_STOCK_BAS = 50;
 
-    // Référentiels
-    private static final List<String> CATEGORIES = Arrays.asList("Granulats", "Liants");
-    private static final List<String> PRODUITS_GRANULATS = Arrays.asList(
-            "Sable fin", "Gravillon", "Gros sable", "Brique", "Moellon", "4/7"
-    );
-    private static final List<String> PRODUITS_LIANTS = Arrays.asList("Fer", "Ciment");
+    /** -Dgestionnaire.ongletsDifferes=false : onglet Produits construit dès le démarrage (ancien comportement). */
+    private static final boolean ONGLETS_DIFFERES =
+            Boolean.parseBoolean(System.getProperty("gestionnaire.ongletsDifferes", "true"));
+    private boolean accueilInitialise;
 
     @FXML
     public void initialize() {
-        // Colonnes
-        colNom.setCellValueFactory(d -> d.getValue().nomProperty());
-        colCategorie.setCellValueFactory(d -> d.getValue().categorieProperty());
-        colPrix.setCellValueFactory(d -> d.getValue().prixProperty().asObject());
-        colQuantite.setCellValueFactory(d -> d.getValue().quantiteProperty().asObject());
-        colFournisseur.setCellValueFactory(d -> d.getValue().fournisseurProperty());
+        // Appelée une seconde fois au chargement de view/ProduitsView.fxml (même contrôleur)
+        if (accueilInitialise) {
+            initialiserProduits();
+            return;
+        }
 
-        // Prix formaté
-        colPrix.setCellFactory(col -> new TableCell<>() {
-            @Override protected void updateItem(Double value, boolean empty) {
-                super.updateItem(value, empty);
-                setText(empty || value == null ? null : Utils.formaterMontant(value) + " Ar");
-            }
-        });
+        affichage = new PlanificateurAffichage(rootPane);
+        majAccueil = affichage.enregistrer(this::mettreAJourAccueil);
+
+        // Alertes : seuil par défaut + liste maintenue par l'index (aucun tri au rafraîchissement)
+        service.getAlertesStock().definirSeuilParDefaut(SEUIL_STOCK_BAS);
+        if (tableAlertes != null) {
+            if (colAlerteNom != null) colAlerteNom.setCellValueFactory(d -> d.getValue().nomProperty());
+            if (colAlerteQuantite != null) colAlerteQuantite.setCellValueFactory(d -> d.getValue().quantiteProperty());
+            tableAlertes.setItems(service.getAlertesStock().getAlertes());
+        }
+
+        // Catalogue enregistré (instantané + fin de journal) ; la démo ne sert qu'au premier lancement
+        try {
+            service.ouvrirPersistance(ProduitService.DOSSIER_DONNEES);
+        } catch (IOException e) {
+            Utils.afficherAlerte("Données", "Impossible de relire le catalogue enregistré : " + e.getMessage());
+        }
 
         // Données de démo si vide
         if (produits.isEmpty()) {
@@ -101,113 +174,344 @@ public class MainController {
             );
         }
 
-        // Filtre par CATÉGORIE réelle
-        comboFiltre.setItems(FXCollections.observableArrayList(CATEGORIES));
+        // Init tableaux accueil
+        mettreAJourAccueil();
 
-        // Filtres + tri
-        filtered = new FilteredList<>(produits, p -> true);
-        txtRecherche.textProperty().addListener((o, a, b) -> appliquerFiltres());
-        comboFiltre.setOnAction(e -> appliquerFiltres());
+        // Franchissement de seuil en cours d'utilisation : notification immédiate
+        service.getAlertesStock().ajouterEcouteur((p, enAlerte, seuil) -> {
+            if (enAlerte) affichage.notifier("Stock bas : " + p.getNom() + " (seuil " + seuil + ")", "%d produits passés en stock bas");
+        });
+
+        // Mesures : surcouche (F12, construite au premier affichage) et chien de garde du thread FX
+        rootPane.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (e.getCode() == KeyCode.F12) {
+                basculerPerformances();
+                e.consume();
+            }
+        });
+        Mesures.surveillerThreadFx();
 
-        sorted = new SortedList<>(filtered);
-        sorted.comparatorProperty().bind(tableProduits.comparatorProperty());
-        tableProduits.setItems(sorted);
+        // Onglet Produits : construit à sa première sélection (ou tout de suite si non différé)
+        tabPane.getSelectionModel().selectedItemProperty().addListener((o, a, onglet) -> {
+            if (onglet == ongletProduits) construireOngletProduits();
+        });
+        if (!ONGLETS_DIFFERES) construireOngletProduits();
+        accueilInitialise = true;
+    }
 
-        // Init tableaux accueil
-        mettreAJourValeurStock();
-        mettreAJourAccueil();
+    /** Une fois la première image affichée : préchargements et graphiques qui ne doivent pas la retarder. */
+    public void apresPremiereImage() {
+        prechargerFormulaire();
+        // Graphiques vivants : données attachées une fois, tenues à jour par deltas (au plus une fois par image)
+        if (chartFournisseurs != null) chartFournisseurs.setData(service.getDataBarChart());
+        if (chartCategories != null) chartCategories.setData(service.getDataPieChart());
+    }
+
+    private void construireOngletProduits() {
+        if (ongletProduits.getContent() != null) return;
+        long t0 = Mesures.debut();
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/ProduitsView.fxml"));
+        loader.setController(this); // rappelle initialize(), qui délègue à initialiserProduits()
+        try {
+            ongletProduits.setContent(loader.load());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Mesures.fin(Mesures.Operation.ONGLET_PRODUITS, t0);
+    }
+
+    /** Contrôles de l'onglet Produits, juste injectés depuis view/ProduitsView.fxml. */
+    private void initialiserProduits() {
+        // Colonnes (propriétés liées sans asObject() : plus aucun écouteur une fois la ligne sortie de l'écran)
+        colNom.setCellValueFactory(d -> d.getValue().nomProperty());
+        colCategorie.setCellValueFactory(d -> d.getValue().categorieProperty());
+        colPrix.setCellValueFactory(d -> d.getValue().prixProperty());
+        colQuantite.setCellValueFactory(d -> d.getValue().quantiteProperty());
+        colFournisseur.setCellValueFactory(d -> d.getValue().fournisseurProperty());
+
+        // Prix formaté
+        colPrix.setCellFactory(col -> new TableCell<>() {
+            @Override protected void updateItem(Number value, boolean empty) {
+                long t0 = Mesures.debut();
+                super.updateItem(value, empty);
+                setText(empty || value == null ? null : FormateurNombres.montant(value.doubleValue(), "", " Ar"));
+                Mesures.fin(Mesures.Operation.CELLULE, t0);
+            }
+        });
+
+        // Filtre par catégorie de la taxonomie
+        ListeCategories.installer(comboFiltre, service.getTaxonomie());
+
+        // Filtres (évalués hors thread FX, après 150 ms sans frappe) + tri par parcours d'index
+        vue = service.creerVueTriee();
+        pipelineFiltres = new PipelineFiltres(produits, Duration.millis(150), this::publierFiltres);
+        comboFiltre.setOnAction(e -> { if (!restaurationFiltre) appliquerFiltres(); });
+        for (TextField champ : List.of(txtRecherche, txtPrixMin, txtPrixMax, txtQuantiteMin, txtQuantiteMax)) {
+            champ.textProperty().addListener((o, a, b) -> { if (!restaurationFiltre) pipelineFiltres.demander(critereFiltres()); });
+        }
+        txtPrixMin.setTextFormatter(Utils.textFormatterDecimal());
+        txtPrixMax.setTextFormatter(Utils.textFormatterDecimal());
+        txtQuantiteMin.setTextFormatter(Utils.textFormatterEntier());
+        txtQuantiteMax.setTextFormatter(Utils.textFormatterEntier());
+        menuFournisseurs.setOnShowing(e -> remplirMenuFournisseurs());
+
+        // Filtres enregistrés (dossier des données)
+        filtresEnregistres = new FiltresEnregistres(ProduitService.DOSSIER_DONNEES.resolve("filtres.txt"));
+        comboFiltresEnregistres.getItems().setAll(filtresEnregistres.noms());
+        comboFiltresEnregistres.setOnAction(e -> {
+            CritereFiltres c = filtresEnregistres.obtenir(comboFiltresEnregistres.getValue());
+            if (c != null && !restaurationFiltre) restaurerFiltre(c);
+        });
+
+        colNom.setUserData(IndexTri.Colonne.NOM);
+        colCategorie.setUserData(IndexTri.Colonne.CATEGORIE);
+        colPrix.setUserData(IndexTri.Colonne.PRIX);
+        colQuantite.setUserData(IndexTri.Colonne.QUANTITE);
+        colFournisseur.setUserData(IndexTri.Colonne.FOURNISSEUR);
+        // Clic d'en-tête : seule la première colonne de tri compte (un index par colonne)
+        tableProduits.setSortPolicy(table -> {
+            TableColumn<Produit, ?> c = table.getSortOrder().isEmpty() ? null : table.getSortOrder().get(0);
+            vue.trier(c == null ? null : (IndexTri.Colonne) c.getUserData(),
+                    c == null || c.getSortType() == TableColumn.SortType.ASCENDING);
+            return true;
+        });
+        pages = new PagesProduits(vue);
+        tableProduits.setItems(pages);
+        tableProduits.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        if (grilleProduits != null) grilleProduits.setSource(pages);
 
-        if (scrollGrille != null) scrollGrille.setVisible(false);
+        majTableau = affichage.enregistrer(tableProduits::refresh);
+        majFiltres = affichage.enregistrer(this::appliquerFiltres);
+        majValeurStock = affichage.enregistrer(() -> afficherValeurStock(vue.getValeur()));
+
+        afficherValeurStock(vue.getValeur());
+        if (grilleProduits != null) grilleProduits.setVisible(false);
         if (btnBasculeVue != null) btnBasculeVue.setText("Basculer en vue Grille");
     }
 
+    /** Arrêt de l'application : filtres annulés, journal compacté et synchronisé sur disque. */
+    public void fermer() {
+        if (pipelineFiltres != null) pipelineFiltres.annuler();
+        service.fermer();
+    }
+
     // ---------------- Navigation
-    @FXML private void afficherAccueil() { tabPane.getSelectionModel().select(0); mettreAJourAccueil(); }
+    @FXML private void afficherAccueil() { tabPane.getSelectionModel().select(0); majAccueil.marquer(); }
     @FXML private void afficherProduits() { tabPane.getSelectionModel().select(1); }
 
+    // ---------------- Performances
+    @FXML private void basculerPerformances() {
+        if (surcouchePerformances == null) {
+            surcouchePerformances = new SurcouchePerformances(produits::size);
+            surcouchePerformances.getBoutonEnregistrer().setOnAction(e -> enregistrerMesures());
+            rootPane.getChildren().add(surcouchePerformances);
+        }
+        surcouchePerformances.basculer();
+    }
+
+    /** Rapport des mesures (et copie JFR si un enregistrement tourne) dans le dossier de données. */
+    private void enregistrerMesures() {
+        try {
+            List<Path> fichiers = Mesures.ecrireRapport(ProduitService.DOSSIER_DONNEES, produits.size());
+            affichage.notifier("Mesures enregistrées : "
+                    + fichiers.stream().map(f -> f.getFileName().toString()).collect(Collectors.joining(", ")));
+        } catch (IOException e) {
+            Utils.afficherAlerte("Mesures", "Impossible d'enregistrer les mesures : " + e.getMessage());
+        }
+    }
+
     // ---------------- Accueil
     private void mettreAJourAccueil() {
+        long t0 = Mesures.debut();
+        // KPI lus directement dans le moteur d'agrégats (aucun parcours du catalogue)
         labelNbProduits.setText("Nombre total de produits : " + produits.size());
-        double total = produits.stream().mapToDouble(p -> p.getPrix() * p.getQuantite()).sum();
-        labelValeurTotale.setText("Valeur totale du stock : " + Utils.formaterMontant(total) + " Ar");
-
-        String topCat = produits.stream()
-                .collect(Collectors.groupingBy(Produit::getCategorie, Collectors.counting()))
-                .entrySet().stream().max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey).orElse("-");
-        labelTopCategorie.setText("Catégorie la plus fréquente : " + topCat);
-
-        String topFourn = produits.stream()
-                .collect(Collectors.groupingBy(Produit::getFournisseur, Collectors.counting()))
-                .entrySet().stream().max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey).orElse("-");
-        labelTopFournisseur.setText("Fournisseur principal : " + topFourn);
-
-        // Alertes
-        ObservableList<Produit> bas = FXCollectors.toObservableList(
-                produits.stream()
-                        .filter(p -> p.getQuantite() <= SEUIL_STOCK_BAS)
-                        .sorted(Comparator.comparingInt(Produit::getQuantite))
-        );
+        labelValeurTotale.setText(FormateurNombres.montant(service.calculerValeurTotale(), "Valeur totale du stock : ", " Ar"));
+        labelTopCategorie.setText("Catégorie la plus fréquente : " + service.getCategorieLaPlusFrequente());
+        labelTopFournisseur.setText("Fournisseur principal : " + service.getFournisseurPrincipal());
 
-        if (tableAlertes != null) {
-            if (colAlerteNom != null) colAlerteNom.setCellValueFactory(d -> d.getValue().nomProperty());
-            if (colAlerteQuantite != null) colAlerteQuantite.setCellValueFactory(d -> d.getValue().quantiteProperty().asObject());
-            tableAlertes.setItems(bas);
-        }
+        // Alertes : tableAlertes est liée à l'index maintenu par le service (voir initialize)
 
-        // Top fournisseurs (quantités)
+        // Top fournisseurs (quantités) : lus dans le classement maintenu par le service
         ObservableList<String> top = FXCollectors.toObservableList(
-                produits.stream()
-                        .collect(Collectors.groupingBy(Produit::getFournisseur, Collectors.summingInt(Produit::getQuantite)))
-                        .entrySet().stream()
-                        .sorted(Map.Entry.<String,Integer>comparingByValue().reversed())
-                        .limit(5)
-                        .map(e -> e.getKey() + " — " + e.getValue() + " unités")
+                service.getTopFournisseurs(5).stream()
+                        .map(e -> e.getFournisseur() + " — " + e.getQuantite() + " unités")
         );
         if (listTopFournisseurs != null) listTopFournisseurs.setItems(top);
+
+        // Tendances de consommation : séries gardées, points relus dans les cumuls hebdomadaires
+        // seulement après de nouveaux mouvements
+        if (chartConsommation != null) {
+            ObservableList<XYChart.Series<String, Number>> sorties = service.getDataTendanceSorties(12);
+            if (chartConsommation.getData() != sorties) chartConsommation.setData(sorties);
+        }
+        Mesures.fin(Mesures.Operation.ACCUEIL, t0);
     }
 
     // ---------------- Filtres Produits
     private void appliquerFiltres() {
-        String recherche = txtRecherche.getText() == null ? "" : txtRecherche.getText().toLowerCase().trim();
-        String catFiltre = comboFiltre.getValue(); // "Granulats" | "Liants" | null
-
-        filtered.setPredicate(p -> {
-            boolean txtOk = p.getNom().toLowerCase().contains(recherche)
-                    || p.getFournisseur().toLowerCase().contains(recherche);
-
-            // Compat rétro : si l’enregistrement porte une "catégorie ancienne" (nom de produit),
-            // on le fait correspondre au filtre choisi.
-            String catProduit = p.getCategorie();
-            boolean catOk;
-            if (catFiltre == null || catFiltre.isEmpty()) {
-                catOk = true;
-            } else if (CATEGORIES.contains(catProduit)) {
-                catOk = catFiltre.equalsIgnoreCase(catProduit);
-            } else {
-                // 'catProduit' n’est pas une vraie catégorie → on mappe
-                if ("Granulats".equals(catFiltre)) {
-                    catOk = PRODUITS_GRANULATS.stream().anyMatch(x -> x.equalsIgnoreCase(catProduit));
-                } else { // "Liants"
-                    catOk = PRODUITS_LIANTS.stream().anyMatch(x -> x.equalsIgnoreCase(catProduit));
-                }
-            }
-            return txtOk && catOk;
-        });
+        pipelineFiltres.demanderImmediatement(critereFiltres());
+    }
 
-        if (isGrilleVisible()) afficherGrilleProduits();
-        mettreAJourValeurStock();
-        mettreAJourAccueil();
+    /** Critère capturé sur le thread FX, compilé puis évalué par le pipeline en arrière-plan. */
+    private Supplier<Predicate<Produit>> critereFiltres() {
+        CritereFiltres critere = lireCritere();
+        critereDemande = critere;
+        // Opérations sur les index bitmap et de trigrammes ; le pipeline ne fait plus qu'un test de bit par ligne
+        return () -> service.filtre(critere);
+    }
+
+    private CritereFiltres lireCritere() {
+        return new CritereFiltres(txtRecherche.getText(), comboFiltre.getValue(), fournisseursFiltre,
+                decimal(txtPrixMin), decimal(txtPrixMax), entier(txtQuantiteMin), entier(txtQuantiteMax));
+    }
+
+    private static Double decimal(TextField champ) {
+        String t = champ.getText();
+        try {
+            return t == null || t.isBlank() ? null : Double.valueOf(t.trim());
+        } catch (NumberFormatException e) {
+            return null; // "." seul, saisie en cours
+        }
+    }
+
+    /** Sans exposant ni ".0" : accepté tel quel par le filtre de saisie décimal. */
+    private static String texteDecimal(Double valeur) {
+        return valeur == null ? "" : BigDecimal.valueOf(valeur).stripTrailingZeros().toPlainString();
+    }
+
+    private static Integer entier(TextField champ) {
+        String t = champ.getText();
+        try {
+            return t == null || t.isBlank() ? null : Integer.valueOf(t.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Fournisseurs actuels du catalogue, cochés s'ils font partie du filtre (le menu reste ouvert). */
+    private void remplirMenuFournisseurs() {
+        List<MenuItem> items = new ArrayList<>();
+        for (String f : service.getFournisseurs()) {
+            CheckBox coche = new CheckBox(f);
+            coche.setSelected(fournisseursFiltre.contains(f));
+            coche.setOnAction(e -> {
+                if (coche.isSelected()) fournisseursFiltre.add(f);
+                else fournisseursFiltre.remove(f);
+                afficherFournisseursFiltre();
+                appliquerFiltres();
+            });
+            items.add(new CustomMenuItem(coche, false));
+        }
+        menuFournisseurs.getItems().setAll(items);
+    }
+
+    private void afficherFournisseursFiltre() {
+        menuFournisseurs.setText(fournisseursFiltre.isEmpty() ? "Fournisseurs" : "Fournisseurs (" + fournisseursFiltre.size() + ")");
+    }
+
+    /** Remplit les champs depuis un filtre enregistré, puis une seule évaluation. */
+    private void restaurerFiltre(CritereFiltres c) {
+        restaurationFiltre = true;
+        try {
+            txtRecherche.setText(c.getRecherche() == null ? "" : c.getRecherche());
+            comboFiltre.setValue(c.getCategorie());
+            fournisseursFiltre.clear();
+            fournisseursFiltre.addAll(c.getFournisseurs());
+            afficherFournisseursFiltre();
+            txtPrixMin.setText(texteDecimal(c.getPrixMin()));
+            txtPrixMax.setText(texteDecimal(c.getPrixMax()));
+            txtQuantiteMin.setText(c.getQuantiteMin() == null ? "" : c.getQuantiteMin().toString());
+            txtQuantiteMax.setText(c.getQuantiteMax() == null ? "" : c.getQuantiteMax().toString());
+        } finally {
+            restaurationFiltre = false;
+        }
+        appliquerFiltres();
+    }
+
+    @FXML private void enregistrerFiltre() {
+        CritereFiltres critere = lireCritere();
+        if (critere.estVide()) {
+            Utils.afficherAlerte("Filtres enregistrés", "Aucun critère à enregistrer.");
+            return;
+        }
+        TextInputDialog dialogue = new TextInputDialog(comboFiltresEnregistres.getValue());
+        dialogue.setTitle("Enregistrer le filtre");
+        dialogue.setHeaderText(null);
+        dialogue.setContentText("Nom du filtre :");
+        Optional<String> nom = dialogue.showAndWait().map(String::strip).filter(n -> !n.isEmpty());
+        if (nom.isEmpty()) return;
+        try {
+            filtresEnregistres.enregistrer(nom.get(), critere);
+        } catch (IOException e) {
+            Utils.afficherAlerte("Filtres enregistrés", "Impossible d'enregistrer le filtre : " + e.getMessage());
+            return;
+        }
+        restaurationFiltre = true;
+        try {
+            comboFiltresEnregistres.getItems().setAll(filtresEnregistres.noms());
+            comboFiltresEnregistres.setValue(nom.get());
+        } finally {
+            restaurationFiltre = false;
+        }
+        affichage.notifier("Filtre « " + nom.get() + " » enregistré.");
+    }
+
+    @FXML private void supprimerFiltre() {
+        String nom = comboFiltresEnregistres.getValue();
+        if (nom == null) return;
+        try {
+            filtresEnregistres.supprimer(nom);
+        } catch (IOException e) {
+            Utils.afficherAlerte("Filtres enregistrés", "Impossible de supprimer le filtre : " + e.getMessage());
+            return;
+        }
+        comboFiltresEnregistres.getItems().setAll(filtresEnregistres.noms());
+    }
+
+    /** Résultat final du pipeline : un seul passage sur le thread FX. */
+    private void publierFiltres(Predicate<Produit> predicat) {
+        long t0 = Mesures.debut();
+        vue.filtrer(predicat); // parcours de l'ordre courant ; la grille suit les mêmes pages
+        // Fondu de la grille seulement pour de nouveaux critères, pas après chaque modification du catalogue
+        if (!critereDemande.equals(critereAffiche)) {
+            critereAffiche = critereDemande;
+            if (grilleProduits != null) grilleProduits.rafraichir();
+        }
+        afficherValeurStock(vue.getValeur());
+        Mesures.fin(Mesures.Operation.PUBLICATION_FILTRES, t0);
     }
 
     @FXML private void reinitialiserFiltres() {
-        txtRecherche.clear();
-        comboFiltre.getSelectionModel().clearSelection();
-        filtered.setPredicate(p -> true);
-        if (isGrilleVisible()) afficherGrilleProduits();
-        mettreAJourValeurStock();
-        mettreAJourAccueil();
+        restaurationFiltre = true;
+        try {
+            txtRecherche.clear();
+            comboFiltre.getSelectionModel().clearSelection();
+            txtPrixMin.clear();
+            txtPrixMax.clear();
+            txtQuantiteMin.clear();
+            txtQuantiteMax.clear();
+            fournisseursFiltre.clear();
+            afficherFournisseursFiltre();
+            comboFiltresEnregistres.getSelectionModel().clearSelection();
+        } finally {
+            restaurationFiltre = false;
+        }
+        pipelineFiltres.annuler();
+        critereDemande = CritereFiltres.AUCUN;
+        publierFiltres(null);
+    }
+
+    /**
+     * Après ajout/modification/suppression : tableau, filtres, valeur du stock et accueil marqués,
+     * rafraîchis une seule fois à l'image suivante même après une série de modifications.
+     */
+    private void rafraichirApresModification() {
+        if (vue != null) {
+            majTableau.marquer();
+            majFiltres.marquer();
+            majValeurStock.marquer();
+        }
+        majAccueil.marquer();
     }
 
     // ---------------- CRUD
@@ -218,104 +522,214 @@ public class MainController {
         ouvrirFormulaire(sel);
     }
     @FXML private void supprimerProduit() {
-        Produit p = tableProduits.getSelectionModel().getSelectedItem();
-        if (p == null) { Utils.afficherAlerte("Suppression", "Aucun produit sélectionné."); return; }
+        List<Produit> selection = new ArrayList<>(tableProduits.getSelectionModel().getSelectedItems());
+        if (selection.isEmpty()) { Utils.afficherAlerte("Suppression", "Aucun produit sélectionné."); return; }
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
-                "Supprimer : " + p.getNom() + " ?", ButtonType.OK, ButtonType.CANCEL);
+                selection.size() == 1 ? "Supprimer : " + selection.get(0).getNom() + " ?"
+                        : "Supprimer les " + selection.size() + " produits sélectionnés ?",
+                ButtonType.OK, ButtonType.CANCEL);
         Optional<ButtonType> res = confirm.showAndWait();
         if (res.isPresent() && res.get() == ButtonType.OK) {
-            produits.remove(p);
-            tableProduits.refresh();
-            appliquerFiltres();
-            Utils.afficherNotification(rootPane, "Produit supprimé.");
+            service.supprimerTous(selection); // un seul retrait groupé
+            rafraichirApresModification();
+            affichage.notifier("Produit supprimé.", "%d produits supprimés.", selection.size());
         }
     }
 
-    private void ouvrirFormulaire(Produit produitExistant) {
-        try {
+    /**
+     * Formulaire chargé (FXML) hors thread FX juste après le démarrage ; la scène et la fenêtre
+     * sont construites ensuite sur le thread FX, une seule fois, puis réutilisées.
+     */
+    private void prechargerFormulaire() {
+        chargementFormulaire = CompletableFuture.supplyAsync(() -> {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/ProduitForm.fxml"));
-            Parent root = loader.load();
-
-            ProduitFormController controller = loader.getController();
-            controller.initialiser(new ProduitFormController.FormCallback() {
-                @Override public void onProduitAjoute(Produit produit) {
-                    produits.add(produit);
-                    tableProduits.refresh();
-                    appliquerFiltres();
-                    Utils.afficherNotification(rootPane, "Produit ajouté.");
-                }
-                @Override public void onProduitModifie() {
-                    tableProduits.refresh();
-                    appliquerFiltres();
-                    Utils.afficherNotification(rootPane, "Produit modifié.");
-                }
-            }, produitExistant);
-
-            Stage modal = new Stage();
-            Scene scene = new Scene(root);
-            scene.getStylesheets().add(getClass().getResource("/style/style.css").toExternalForm());
-            modal.initStyle(StageStyle.UNDECORATED);
-            modal.initModality(Modality.APPLICATION_MODAL);
-            modal.setScene(scene);
-            modal.setResizable(false);
-            modal.setTitle(produitExistant != null ? "Modifier un produit" : "Ajouter un produit");
-            modal.showAndWait();
+            try {
+                loader.load();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return loader;
+        }, r -> {
+            Thread t = new Thread(r, "prechargement-formulaire");
+            t.setDaemon(true);
+            t.start();
+        });
+        chargementFormulaire.thenAcceptAsync(this::construireFormulaire, Platform::runLater);
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-            Utils.afficherAlerte("Erreur", "Impossible d’ouvrir le formulaire.\n" + e.getMessage());
-        }
+    private void construireFormulaire(FXMLLoader loader) {
+        if (modalFormulaire != null) return;
+        Scene scene = new Scene(loader.getRoot());
+        scene.getStylesheets().add(getClass().getResource("/style/style.css").toExternalForm());
+        scene.getRoot().applyCss(); // feuille de style résolue dès maintenant, pas à la première ouverture
+
+        formulaire = loader.getController();
+        modalFormulaire = new Stage();
+        modalFormulaire.initStyle(StageStyle.UNDECORATED);
+        modalFormulaire.initModality(Modality.APPLICATION_MODAL);
+        modalFormulaire.setScene(scene);
+        modalFormulaire.setResizable(false);
+        modalFormulaire.setOnShown(e -> Mesures.fin(Mesures.Operation.FORMULAIRE, debutOuverture));
     }
 
-    // ---------------- Valeur stock
-    private void mettreAJourValeurStock() {
-        double total = sorted == null ? 0
-                : sorted.stream().mapToDouble(p -> p.getPrix() * p.getQuantite()).sum();
-        labelValeurStock.setText("Valeur du stock : " + Utils.formaterMontant(total) + " Ar");
+    private void ouvrirFormulaire(Produit produitExistant) {
+        debutOuverture = Mesures.debut();
+        if (modalFormulaire == null) {
+            try {
+                construireFormulaire(chargementFormulaire.join()); // préchargement pas encore terminé
+            } catch (CompletionException e) {
+                prechargerFormulaire(); // nouvel essai à la prochaine ouverture
+                Utils.afficherAlerte("Erreur", "Impossible d’ouvrir le formulaire.\n" + e.getCause().getMessage());
+                return;
+            }
+        }
+
+        formulaire.initialiser(rappelFormulaire, produitExistant);
+        modalFormulaire.setTitle(produitExistant != null ? "Modifier un produit" : "Ajouter un produit");
+        // Déjà ouvert (double clic rapide) : le formulaire est simplement re-lié au nouveau produit
+        if (modalFormulaire.isShowing()) modalFormulaire.toFront();
+        else modalFormulaire.showAndWait();
     }
 
-    // ---------------- Vue Grille
-    @FXML private void basculerVue() {
-        if (scrollGrille == null || tableProduits == null || btnBasculeVue == null) return;
-        boolean afficherGrille = !scrollGrille.isVisible();
-        scrollGrille.setVisible(afficherGrille);
-        tableProduits.setVisible(!afficherGrille);
-        btnBasculeVue.setText(afficherGrille ? "Basculer en vue Tableau" : "Basculer en vue Grille");
-        if (afficherGrille) afficherGrilleProduits();
+    // ---------------- Import CSV
+    /** Lecture/validation hors thread FX ; insertion du lot en un seul changement à la fin. */
+    @FXML private void importerCsv() {
+        FileChooser choix = new FileChooser();
+        choix.setTitle("Importer une liste de produits");
+        choix.getExtensionFilters().add(new FileChooser.ExtensionFilter("Fichiers CSV", "*.csv", "*.txt"));
+        File fichier = choix.showOpenDialog(rootPane.getScene().getWindow());
+        if (fichier == null) return;
+
+        AtomicBoolean majEnAttente = demarrerTache(false);
+        Thread lecture = new Thread(() -> {
+            try {
+                ImportCsv.Resultat r = ImportCsv.lire(fichier.toPath(), (lus, total, valides, rejetees) ->
+                        afficherAvancement(majEnAttente, total == 0 ? 1 : (double) lus / total,
+                                valides + " valides, " + rejetees + " rejetées"));
+                Platform.runLater(() -> terminerImport(r, null));
+            } catch (IOException e) {
+                Platform.runLater(() -> terminerImport(null, e));
+            }
+        }, "import-csv-lecture");
+        lecture.setDaemon(true);
+        lecture.start();
     }
-    private boolean isGrilleVisible() { return scrollGrille != null && scrollGrille.isVisible(); }
 
-    private void afficherGrilleProduits() {
-        if (grilleProduits == null) return;
-        grilleProduits.getChildren().clear();
+    private void terminerImport(ImportCsv.Resultat r, IOException erreur) {
+        terminerTache();
+        if (erreur != null) {
+            Utils.afficherAlerte("Import CSV", "Import impossible : " + erreur.getMessage());
+            return;
+        }
 
-        SequentialTransition seq = new SequentialTransition();
-        int i = 0;
-        for (Produit p : sorted) {
-            VBox card = creerCarteProduit(p);
-            grilleProduits.getChildren().add(card);
+        service.ajouterTous(r.getProduits()); // index, filtres, tri et KPI recalculés une fois
+        rafraichirApresModification();
+        affichage.notifier(r.getProduits().size() + " produits importés"
+                + (r.getLignesRejetees() > 0 ? ", " + r.getLignesRejetees() + " lignes rejetées." : "."));
 
-            FadeTransition fade = new FadeTransition(Duration.millis(160), card);
-            fade.setFromValue(0); fade.setToValue(1); fade.setDelay(Duration.millis(60L * i++));
-            seq.getChildren().add(fade);
+        if (r.getLignesRejetees() > 0) {
+            StringBuilder details = new StringBuilder();
+            r.getErreurs().stream().limit(20).forEach(e -> details.append(e).append('\n'));
+            if (r.getLignesRejetees() > 20) details.append("… ").append(r.getLignesRejetees() - 20).append(" autres lignes");
+            Utils.afficherAlerte("Lignes rejetées", details.toString());
         }
-        seq.play();
-    }
-
-    private VBox creerCarteProduit(Produit p) {
-        Label nom = new Label(p.getNom());
-        nom.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
-        Label prix = new Label("Prix : " + Utils.formaterMontant(p.getPrix()) + " Ar");
-        Label qte  = new Label("Quantité : " + p.getQuantite());
-        Label cat  = new Label("Catégorie : " + p.getCategorie());
-        Label frn  = new Label("Fournisseur : " + p.getFournisseur());
-        VBox v = new VBox(6, nom, prix, qte, cat, frn);
-        VBox card = new VBox(10, v);
-        card.setStyle("-fx-background-color: white; -fx-background-radius: 12; -fx-padding: 14; "
-                + "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.07), 12, 0, 0, 2);");
-        card.setPrefWidth(240);
-        card.setOpacity(0);
-        return card;
+    }
+
+    // ---------------- Export
+    /**
+     * Export de la vue courante (filtrée + triée, telle qu'affichée) en CSV ou JSON, en flux sur
+     * un thread dédié. Copie figée du catalogue et ordre de la vue (identifiants) relevés ici, sur
+     * le thread FX : l'export écrit la vue de l'instant du clic, même si elle change ensuite.
+     */
+    @FXML private void exporterVue() {
+        FileChooser choix = new FileChooser();
+        choix.setTitle("Exporter la vue");
+        choix.setInitialFileName("produits.csv");
+        choix.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV (tableur)", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON", "*.json"));
+        File fichier = choix.showSaveDialog(rootPane.getScene().getWindow());
+        if (fichier == null) return;
+
+        CatalogueFige catalogue = service.instantane();
+        ObservableList<Produit> lignes = vue.getListe();
+        int[] ids = new int[lignes.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = lignes.get(i).getId();
+        AtomicBoolean majEnAttente = demarrerTache(true);
+        Thread ecriture = new Thread(() -> {
+            String message;
+            try {
+                long n = ExportCatalogue.exporter(catalogue, ids, fichier.toPath(), ExportCatalogue.formatPour(fichier.toPath()),
+                        (ecrites, total) -> afficherAvancement(majEnAttente, total == 0 ? 1 : (double) ecrites / total,
+                                ecrites + " / " + total + " lignes"),
+                        tacheAnnulee::get);
+                message = n + " lignes exportées.";
+            } catch (InterruptedIOException e) {
+                message = "Export annulé.";
+            } catch (IOException | RuntimeException e) {
+                message = "Export impossible : " + e.getMessage();
+            }
+            String resultat = message;
+            Platform.runLater(() -> {
+                terminerTache();
+                affichage.notifier(resultat);
+            });
+        }, "export-vue");
+        ecriture.setDaemon(true);
+        ecriture.start();
+    }
+
+    // ---------------- Opération longue (progression commune import/export)
+    private AtomicBoolean demarrerTache(boolean annulable) {
+        tacheAnnulee.set(false);
+        btnImporter.setDisable(true);
+        btnExporter.setDisable(true);
+        progressionTache.setProgress(0);
+        afficher(progressionTache, true);
+        afficher(btnAnnulerTache, annulable);
+        return new AtomicBoolean();
+    }
+
+    /** Depuis le thread de travail : une seule mise à jour en attente sur le thread FX à la fois. */
+    private void afficherAvancement(AtomicBoolean majEnAttente, double avancement, String texte) {
+        if (!majEnAttente.compareAndSet(false, true)) return;
+        Platform.runLater(() -> {
+            majEnAttente.set(false);
+            progressionTache.setProgress(avancement);
+            labelTache.setText(texte);
+        });
+    }
+
+    private void terminerTache() {
+        btnImporter.setDisable(false);
+        btnExporter.setDisable(false);
+        afficher(progressionTache, false);
+        afficher(btnAnnulerTache, false);
+        labelTache.setText("");
+    }
+
+    @FXML private void annulerTache() {
+        tacheAnnulee.set(true);
+    }
+
+    private static void afficher(Node noeud, boolean visible) {
+        noeud.setVisible(visible);
+        noeud.setManaged(visible);
+    }
+
+    // ---------------- Valeur stock (tenue par la vue, sans parcours)
+    private void afficherValeurStock(double total) {
+        labelValeurStock.setText(FormateurNombres.montant(total, "Valeur du stock : ", " Ar"));
+    }
+
+    // ---------------- Vue Grille
+    @FXML private void basculerVue() {
+        if (grilleProduits == null || tableProduits == null || btnBasculeVue == null) return;
+        boolean afficherGrille = !grilleProduits.isVisible();
+        grilleProduits.setVisible(afficherGrille);
+        tableProduits.setVisible(!afficherGrille);
+        btnBasculeVue.setText(afficherGrille ? "Basculer en vue Tableau" : "Basculer en vue Grille");
+        if (afficherGrille) grilleProduits.actualiser();
     }
 }
 
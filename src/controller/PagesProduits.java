@@ -0,0 +1,107 @@
+package controller;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import model.Produit;
+import service.VueTriee;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Source paginée de tableProduits et de la grille : la taille est celle de la vue filtrée/triée
+ * (la barre de défilement couvre toutes les lignes), mais les lignes ne sont lues dans la vue
+ * que par pages, à la demande du VirtualFlow, avec la page suivante dans le sens du défilement.
+ * Les pages lues forment un cache LRU borné ; une page évincée oublie les propriétés JavaFX de
+ * ses produits, qui sinon resteraient matérialisées pour chaque ligne affichée une fois.
+ *
+ * Seule cette éviction des propriétés est gagnée : VueTriee garde toujours toutes les lignes
+ * filtrées dans un Produit[] (une référence par ligne, vers les produits du stock en colonnes),
+ * et les pages en sont des copies. Lire les fenêtres dans IndexTri sans ce tableau demanderait
+ * un index capable de donner la k-ième ligne du filtre, ce qu'il ne sait pas faire.
+ */
+public class PagesProduits extends ObservableListBase<Produit> {
+
+    static final int TAILLE_PAGE = 64;
+    /** Pages gardées : largement plus que l'écran (≈ 30 lignes) et le tampon du VirtualFlow. */
+    static final int PAGES_MAX = 16;
+
+    private final VueTriee vue;
+    private final ObservableList<Produit> lignes;
+    private final Map<Integer, Produit[]> pages = new LinkedHashMap<>(PAGES_MAX * 2, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Integer, Produit[]> plusAncienne) {
+            if (size() <= PAGES_MAX) return false;
+            oublier(plusAncienne.getValue());
+            return true;
+        }
+    };
+    private int dernierePage;
+
+    public PagesProduits(VueTriee vue) {
+        this.vue = vue;
+        this.lignes = vue.getListe();
+        lignes.addListener(this::relayer);
+    }
+
+    @Override public int size() { return lignes.size(); }
+
+    @Override public Produit get(int index) {
+        Objects.checkIndex(index, lignes.size());
+        int n = index / TAILLE_PAGE;
+        Produit[] page = pages.get(n);
+        if (page == null) {
+            page = charger(n);
+            // Défilement : la page suivante dans le même sens est lue d'avance
+            int voisine = n >= dernierePage ? n + 1 : n - 1;
+            if (voisine >= 0 && voisine * TAILLE_PAGE < lignes.size() && !pages.containsKey(voisine)) charger(voisine);
+            pages.get(n); // la page demandée reste la plus récente
+        }
+        dernierePage = n;
+        return page[index - n * TAILLE_PAGE];
+    }
+
+    private Produit[] charger(int n) {
+        int debut = n * TAILLE_PAGE;
+        Produit[] page = new Produit[Math.min(TAILLE_PAGE, lignes.size() - debut)];
+        vue.lire(debut, page);
+        pages.put(n, page);
+        return page;
+    }
+
+    /** Les lignes à partir de la première modifiée ont pu changer de place : leurs pages sont relues. */
+    private void relayer(ListChangeListener.Change<? extends Produit> c) {
+        int premiere = Integer.MAX_VALUE;
+        while (c.next()) premiere = Math.min(premiere, c.getFrom());
+        int pagePremiere = premiere / TAILLE_PAGE;
+        for (Iterator<Map.Entry<Integer, Produit[]>> it = pages.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Produit[]> e = it.next();
+            if (e.getKey() < pagePremiere) continue;
+            oublier(e.getValue());
+            it.remove();
+        }
+
+        c.reset();
+        beginChange();
+        while (c.next()) {
+            if (c.wasPermutated()) {
+                int[] permutation = new int[c.getTo() - c.getFrom()];
+                for (int i = c.getFrom(); i < c.getTo(); i++) permutation[i - c.getFrom()] = c.getPermutation(i);
+                nextPermutation(c.getFrom(), c.getTo(), permutation);
+            } else if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) nextUpdate(i);
+            } else {
+                if (c.wasRemoved()) nextRemove(c.getFrom(), c.getRemoved());
+                if (c.wasAdded()) nextAdd(c.getFrom(), c.getTo());
+            }
+        }
+        endChange();
+    }
+
+    /** Les produits encore affichés (propriétés écoutées par une cellule) gardent les leurs. */
+    private static void oublier(Produit[] page) {
+        for (Produit p : page) p.oublierProprietes();
+    }
+}
@@ -0,0 +1,120 @@
+package controller;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.util.Duration;
+import model.Produit;
+import util.Mesures;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Filtrage asynchrone du catalogue :
+ * - anti-rebond sur la saisie (une seule évaluation après la dernière frappe) ;
+ * - évaluation du prédicat hors thread FX, par blocs parallèles sur un instantané de la liste ;
+ * - annulation des requêtes périmées, publication du seul résultat final en un Platform.runLater.
+ */
+public class PipelineFiltres {
+
+    /** Reçoit, sur le thread FX, le prédicat final (la valeur du stock retenu est tenue par la vue). */
+    public interface Publication {
+        void publier(Predicate<Produit> predicat);
+    }
+
+    private static final int TAILLE_BLOC = 16_384;
+
+    private final ObservableList<Produit> produits;
+    private final Publication publication;
+    private final PauseTransition antiRebond;
+    private final AtomicLong generation = new AtomicLong();
+    private final ExecutorService executeur = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "filtres-produits");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Supplier<Predicate<Produit>> critereEnAttente;
+    private Future<?> enCours;
+
+    public PipelineFiltres(ObservableList<Produit> produits, Duration delai, Publication publication) {
+        this.produits = produits;
+        this.publication = publication;
+        this.antiRebond = new PauseTransition(delai);
+        this.antiRebond.setOnFinished(e -> lancer());
+    }
+
+    /** Frappe clavier : relance le délai, seule la dernière demande sera évaluée. */
+    public void demander(Supplier<Predicate<Produit>> critere) {
+        critereEnAttente = critere;
+        antiRebond.playFromStart();
+    }
+
+    /** Changement explicite (catégorie, ajout, suppression) : évaluation sans délai. */
+    public void demanderImmediatement(Supplier<Predicate<Produit>> critere) {
+        critereEnAttente = critere;
+        antiRebond.stop();
+        lancer();
+    }
+
+    /** Abandonne toute évaluation en cours ou en attente. */
+    public void annuler() {
+        antiRebond.stop();
+        critereEnAttente = null;
+        generation.incrementAndGet();
+        if (enCours != null) enCours.cancel(true);
+    }
+
+    private void lancer() {
+        Supplier<Predicate<Produit>> critere = critereEnAttente;
+        if (critere == null) return;
+        critereEnAttente = null;
+
+        long gen = generation.incrementAndGet();
+        long t0 = Mesures.debut();
+        if (enCours != null) enCours.cancel(true);
+
+        // Instantané pris sur le thread FX : le fond ne touche jamais à la liste observable.
+        Produit[] instantane = produits.toArray(new Produit[0]);
+        int idMax = 0;
+        for (Produit p : instantane) idMax = Math.max(idMax, p.getId());
+        int idMaxInstantane = idMax;
+
+        enCours = executeur.submit(() -> {
+            Predicate<Produit> predicat = critere.get();
+            int nbBlocs = (instantane.length + TAILLE_BLOC - 1) / TAILLE_BLOC;
+            BitSet[] retenus = new BitSet[nbBlocs];
+
+            // Hors thread FX, seul l'identifiant (final) de chaque produit est lu ; le prédicat a été
+            // calculé sur une copie figée du catalogue, au pire d'une frappe de retard.
+            IntStream.range(0, nbBlocs).parallel().forEach(b -> {
+                if (generation.get() != gen) return;
+                BitSet bits = new BitSet();
+                for (int i = b * TAILLE_BLOC, fin = Math.min(instantane.length, i + TAILLE_BLOC); i < fin; i++) {
+                    Produit p = instantane[i];
+                    if (predicat.test(p)) bits.set(p.getId());
+                }
+                retenus[b] = bits;
+            });
+            if (generation.get() != gen) return;
+
+            BitSet resultat = new BitSet(idMaxInstantane + 1);
+            for (int b = 0; b < nbBlocs; b++) resultat.or(retenus[b]);
+            // Produit ajouté après l'instantané : évalué directement par le prédicat.
+            Predicate<Produit> finale = p -> p.getId() > idMaxInstantane ? predicat.test(p) : resultat.get(p.getId());
+
+            Platform.runLater(() -> {
+                if (generation.get() != gen) return;
+                publication.publier(finale);
+                Mesures.fin(Mesures.Operation.FILTRES, t0);
+            });
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package controller;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.FadeTransition;
+import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
+import javafx.util.Duration;
+import util.Mesures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mises à jour de l'interface regroupées par image : une modification marque les vues à
+ * rafraîchir (filtres, accueil, grille...) et les notifications à afficher ; tout est fait
+ * une seule fois à l'impulsion suivante (AnimationTimer), quel que soit le nombre de
+ * modifications de la même image (suppression d'une sélection, import, synchronisation).
+ * Les notifications se fondent en un seul bandeau, compté par genre (« 12 produits modifiés. »),
+ * qui reste le même tant qu'il est affiché. Thread FX uniquement.
+ */
+public class PlanificateurAffichage {
+
+    /** Vue à rafraîchir : marquée autant de fois que l'on veut, rafraîchie une fois par image. */
+    public final class Tache {
+        private final Runnable miseAJour;
+        private boolean marquee;
+
+        private Tache(Runnable miseAJour) {
+            this.miseAJour = miseAJour;
+        }
+
+        public void marquer() {
+            if (marquee) return;
+            marquee = true;
+            armer();
+        }
+    }
+
+    /** Messages d'un même genre : le premier s'il est seul, sinon le pluriel compté. */
+    private static final class Genre {
+        final String message, pluriel;
+        int nombre;
+
+        Genre(String message, String pluriel) {
+            this.message = message;
+            this.pluriel = pluriel;
+        }
+
+        String texte() {
+            return nombre == 1 || pluriel == null ? message : String.format(pluriel, nombre);
+        }
+    }
+
+    private final StackPane racine;
+    private final List<Tache> taches = new ArrayList<>(); // ordre d'enregistrement = ordre d'exécution
+    private final Map<String, Genre> genres = new LinkedHashMap<>(); // bandeau affiché ou à afficher
+    private boolean bandeauAJour = true;
+    private boolean arme;
+    private Label bandeau;
+    private FadeTransition fondu;
+    private final AnimationTimer trame = new AnimationTimer() {
+        @Override public void handle(long maintenant) {
+            stop();
+            vider();
+        }
+    };
+
+    public PlanificateurAffichage(StackPane racine) {
+        this.racine = racine;
+    }
+
+    /** Enregistre une vue ; les vues marquées dans la même image sont rafraîchies dans cet ordre. */
+    public Tache enregistrer(Runnable miseAJour) {
+        Tache t = new Tache(miseAJour);
+        taches.add(t);
+        return t;
+    }
+
+    /** Message seul (deux messages identiques de suite n'en font qu'un). */
+    public void notifier(String message) {
+        notifier(message, null);
+    }
+
+    /**
+     * Message d'un genre comptable : plusieurs avant la disparition du bandeau deviennent
+     * pluriel formaté avec leur nombre (ex. "%d produits supprimés.").
+     */
+    public void notifier(String message, String pluriel) {
+        notifier(message, pluriel, 1);
+    }
+
+    /** Même chose pour nombre évènements d'un coup (opération groupée). */
+    public void notifier(String message, String pluriel, int nombre) {
+        genres.computeIfAbsent(pluriel != null ? pluriel : message, k -> new Genre(message, pluriel)).nombre += nombre;
+        bandeauAJour = false;
+        armer();
+    }
+
+    private void armer() {
+        if (arme) return;
+        arme = true;
+        trame.start();
+    }
+
+    private void vider() {
+        arme = false;
+        long t0 = Mesures.debut();
+        for (Tache t : taches) {
+            if (!t.marquee) continue;
+            t.marquee = false; // une mise à jour qui re-marque une vue la reporte à l'image suivante
+            t.miseAJour.run();
+        }
+        if (!bandeauAJour) afficherBandeau();
+        Mesures.fin(Mesures.Operation.IMAGE, t0);
+    }
+
+    /** Un seul bandeau : texte remplacé et disparition repoussée s'il est déjà affiché. */
+    private void afficherBandeau() {
+        bandeauAJour = true;
+        if (racine == null) {
+            genres.clear();
+            return;
+        }
+        if (bandeau == null) {
+            bandeau = new Label();
+            bandeau.getStyleClass().addAll("snackbar", "snackbar-label");
+            fondu = new FadeTransition(Duration.millis(1800), bandeau);
+            fondu.setFromValue(1);
+            fondu.setToValue(0);
+            fondu.setDelay(Duration.millis(1200));
+            fondu.setOnFinished(e -> {
+                racine.getChildren().remove(bandeau);
+                genres.clear();
+            });
+        }
+        StringBuilder texte = new StringBuilder();
+        for (Genre g : genres.values()) {
+            if (texte.length() > 0) texte.append('\n');
+            texte.append(g.texte());
+        }
+        bandeau.setText(texte.toString());
+        if (!racine.getChildren().contains(bandeau)) racine.getChildren().add(bandeau);
+        fondu.playFromStart();
+    }
+}
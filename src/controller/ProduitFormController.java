@@ -8,49 +8,44 @@ import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import model.Produit;
+import service.Taxonomie;
+import service.ValidationProduit;
 import util.Utils;
 
-import java.util.Arrays;
-import java.util.List;
-
 public class ProduitFormController {
 
     @FXML private StackPane formRoot;
     @FXML private Label modalTitle;
     @FXML private TextField txtNom;                    // Nom du produit (ex. Sable fin, Ciment…)
-    @FXML private ComboBox<String> categorieComboBox;  // "Granulats" | "Liants"
+    @FXML private ComboBox<String> categorieComboBox;  // catégories de la taxonomie
     @FXML private TextField txtPrix;
     @FXML private TextField txtQuantite;
     @FXML private ComboBox<String> uniteComboBox;
     @FXML private TextField txtFournisseur;
     @FXML private Button btnEnregistrer;
 
+    private FadeTransition apparition;
     private FormCallback callback;
     private Produit produitExistant;
+    private int versionLue;
 
     public interface FormCallback {
         void onProduitAjoute(Produit produit);
-        void onProduitModifie();
+        /** @return false si le produit a changé depuis l'ouverture du formulaire (rien n'est appliqué) */
+        boolean onProduitModifie(Produit produit, int versionLue, ValidationProduit.Resultat saisie);
     }
 
-    // Référentiels
-    private static final List<String> CATEGORIES = Arrays.asList("Granulats", "Liants");
-    private static final List<String> PRODUITS_GRANULATS = Arrays.asList(
-            "Sable fin", "Gravillon", "Gros sable", "Brique", "Moellon", "4/7"
-    );
-    private static final List<String> PRODUITS_LIANTS = Arrays.asList("Fer", "Ciment");
-
     @FXML
     private void initialize() {
-        // Apparition douce
-        FadeTransition fade = new FadeTransition(Duration.millis(220), formRoot);
-        fade.setFromValue(0); fade.setToValue(1); fade.play();
+        // Apparition douce (rejouée à chaque ouverture, voir initialiser)
+        apparition = new FadeTransition(Duration.millis(220), formRoot);
+        apparition.setFromValue(0); apparition.setToValue(1);
 
-        // Catégories valides
-        categorieComboBox.getItems().setAll(CATEGORIES);
+        // Catégories valides : celles de la taxonomie, sous-catégories indentées
+        ListeCategories.installer(categorieComboBox, Taxonomie.standard());
 
         // Unités proposées
-        uniteComboBox.getItems().setAll("m³", "tonnes", "sacs", "pièces");
+        uniteComboBox.getItems().setAll(ValidationProduit.UNITES);
 
         // Filtre de saisie
         txtPrix.setTextFormatter(Utils.textFormatterDecimal());
@@ -66,15 +61,27 @@ public class ProduitFormController {
     }
 
     /**
-     * Initialisation :
+     * Initialisation, à chaque ouverture (le formulaire est chargé une fois puis réutilisé) :
+     * - champs remis à blanc
      * - Ajout : titre/bouton adaptés
-     * - Modification : remplit les champs + remapping éventuel catégorie héritée
+     * - Modification : remplit les champs, catégorie ramenée à son libellé dans la taxonomie
      */
     public void initialiser(FormCallback callback, Produit produit) {
         this.callback = callback;
         this.produitExistant = produit;
 
+        txtNom.clear();
+        txtPrix.clear();
+        txtQuantite.clear();
+        txtFournisseur.clear();
+        uniteComboBox.setValue(null);
+        categorieComboBox.setValue(null);
+        txtNom.requestFocus();
+        formRoot.setOpacity(0);
+        apparition.playFromStart();
+
         if (produit != null) {
+            versionLue = produit.getVersion();
             modalTitle.setText("Modifier un produit");
             btnEnregistrer.setText("Modifier");
 
@@ -84,16 +91,10 @@ public class ProduitFormController {
             txtQuantite.setText(String.valueOf(produit.getQuantite()));
             txtFournisseur.setText(produit.getFournisseur());
 
-            // Cas de compatibilité : si l'ancienne "catégorie" est en fait un nom de produit
-            String cat = produit.getCategorie();
-            if (CATEGORIES.contains(cat)) {
-                categorieComboBox.setValue(cat);
-            } else {
-                // Remap : nom de produit => catégorie
-                if (isGranulat(cat)) categorieComboBox.setValue("Granulats");
-                else if (isLiant(cat)) categorieComboBox.setValue("Liants");
-                else categorieComboBox.getSelectionModel().clearSelection();
-            }
+            // Les anciennes "catégories" (noms de produits) sont des sous-catégories de la taxonomie
+            int noeud = Taxonomie.standard().resoudre(produit.getCategorie());
+            if (noeud >= 0) categorieComboBox.setValue(Taxonomie.standard().libelle(noeud));
+            else categorieComboBox.getSelectionModel().clearSelection();
         } else {
             modalTitle.setText("Ajouter un produit");
             btnEnregistrer.setText("Ajouter");
@@ -101,50 +102,34 @@ public class ProduitFormController {
         }
     }
 
-    private boolean isGranulat(String value) {
-        return PRODUITS_GRANULATS.stream().anyMatch(p -> p.equalsIgnoreCase(value));
-    }
-    private boolean isLiant(String value) {
-        return PRODUITS_LIANTS.stream().anyMatch(p -> p.equalsIgnoreCase(value));
-    }
-
     @FXML
     private void enregistrer() {
-        String nom = txtNom.getText().trim();                 // ex. "Sable fin"
-        String categorie = categorieComboBox.getValue();      // "Granulats" | "Liants"
-        String unite = uniteComboBox.getValue();              // ex. "m³"
-        String fournisseur = txtFournisseur.getText().trim();
-
-        if (nom.isEmpty() || categorie == null || unite == null || fournisseur.isEmpty()
-                || txtPrix.getText().isBlank() || txtQuantite.getText().isBlank()) {
-            Utils.afficherAlerte("Champs requis",
-                    "Veuillez renseigner : Nom, Catégorie, Prix, Quantité, Unité et Fournisseur.");
-            return;
-        }
-
-        double prix;
-        int quantite;
-        try {
-            prix = Double.parseDouble(txtPrix.getText());
-            quantite = Integer.parseInt(txtQuantite.getText());
-        } catch (NumberFormatException e) {
-            Utils.afficherAlerte("Saisie invalide", "Prix ou quantité invalide.");
+        // Règles communes avec l'import CSV (champs requis, nombres, unité)
+        ValidationProduit.Resultat saisie = ValidationProduit.valider(
+                txtNom.getText(),                 // ex. "Sable fin"
+                categorieComboBox.getValue(),     // ex. "Granulats", "Sable fin"
+                uniteComboBox.getValue(),         // ex. "m³"
+                txtFournisseur.getText(),
+                txtPrix.getText(),
+                txtQuantite.getText());
+
+        if (!saisie.estValide()) {
+            String titre = ValidationProduit.CHAMPS_REQUIS.equals(saisie.getErreur()) ? "Champs requis" : "Saisie invalide";
+            Utils.afficherAlerte(titre, saisie.getErreur());
             return;
         }
 
-        // Ajoute l’unité au nom affiché (compatibilité avec le modèle existant)
-        String nomComplet = nom + " (" + unite + ")";
-
+        // Le nom affiché porte l’unité (compatibilité avec le modèle existant)
         if (produitExistant != null) {
-            produitExistant.setNom(nomComplet);
-            produitExistant.setCategorie(categorie);
-            produitExistant.setPrix(prix);
-            produitExistant.setQuantite(quantite);
-            produitExistant.setFournisseur(fournisseur);
-            if (callback != null) callback.onProduitModifie();
+            // Modification optimiste : refusée si le produit a changé pendant la saisie
+            if (callback != null && !callback.onProduitModifie(produitExistant, versionLue, saisie)) {
+                Utils.afficherAlerte("Modification", "Ce produit a été modifié entre-temps : les valeurs actuelles ont été rechargées.");
+                initialiser(callback, produitExistant);
+                return;
+            }
         } else {
             if (callback != null) {
-                callback.onProduitAjoute(new Produit(nomComplet, categorie, prix, quantite, fournisseur));
+                callback.onProduitAjoute(saisie.creerProduit());
             }
         }
         annuler();
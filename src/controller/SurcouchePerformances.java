@@ -0,0 +1,109 @@
+package controller;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+import util.Histogramme;
+import util.Mesures;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Surcouche de performances (F12) : p50/p99 de la dernière seconde par opération mesurée,
+ * taille du catalogue, débit d'allocation, tas et blocages du thread FX. Rafraîchie chaque
+ * seconde tant qu'elle est visible ; rien n'est calculé lorsqu'elle est masquée.
+ */
+public class SurcouchePerformances extends VBox {
+
+    private final IntSupplier nbProduits;
+    private final Label[][] cellules = new Label[Mesures.Operation.values().length][3];
+    private final Label labelCatalogue = new Label();
+    private final Label labelMemoire = new Label();
+    private final Label labelBlocages = new Label();
+    private final Button btnEnregistrer = new Button("Enregistrer les mesures");
+    private final Timeline rafraichissement = new Timeline(new KeyFrame(Duration.seconds(1), e -> actualiser()));
+
+    private long octetsPrecedents = -1;
+    private long instantPrecedent;
+
+    public SurcouchePerformances(IntSupplier nbProduits) {
+        super(6);
+        this.nbProduits = nbProduits;
+        getStyleClass().add("surcouche-performances");
+        setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+        StackPane.setAlignment(this, Pos.TOP_RIGHT);
+        StackPane.setMargin(this, new Insets(12));
+
+        GridPane grille = new GridPane();
+        grille.setHgap(12);
+        grille.add(new Label("Dernière seconde"), 0, 0);
+        grille.add(new Label("p50 ms"), 1, 0);
+        grille.add(new Label("p99 ms"), 2, 0);
+        grille.add(new Label("n"), 3, 0);
+        Mesures.Operation[] ops = Mesures.Operation.values();
+        for (int i = 0; i < ops.length; i++) {
+            grille.add(new Label(ops[i].getLibelle()), 0, i + 1);
+            for (int j = 0; j < 3; j++) {
+                cellules[i][j] = new Label("—");
+                grille.add(cellules[i][j], j + 1, i + 1);
+            }
+        }
+        getChildren().addAll(grille, labelCatalogue, labelMemoire, labelBlocages, btnEnregistrer);
+
+        rafraichissement.setCycleCount(Animation.INDEFINITE);
+        setVisible(false);
+        setManaged(false);
+    }
+
+    /** Bouton « Enregistrer les mesures » (écriture du rapport, décidée par le contrôleur). */
+    public Button getBoutonEnregistrer() { return btnEnregistrer; }
+
+    public void basculer() {
+        boolean visible = !isVisible();
+        setVisible(visible);
+        setManaged(visible);
+        if (visible) {
+            octetsPrecedents = -1;
+            for (Mesures.Operation op : Mesures.Operation.values()) op.fenetre(); // repart d'une fenêtre vide
+            actualiser();
+            rafraichissement.play();
+        } else {
+            rafraichissement.stop();
+        }
+    }
+
+    private void actualiser() {
+        Mesures.Operation[] ops = Mesures.Operation.values();
+        for (int i = 0; i < ops.length; i++) {
+            Histogramme.Resume r = ops[i].fenetre();
+            boolean vide = r.getNombre() == 0;
+            cellules[i][0].setText(vide ? "—" : String.format("%.2f", r.percentile(50) / 1e6));
+            cellules[i][1].setText(vide ? "—" : String.format("%.2f", r.percentile(99) / 1e6));
+            cellules[i][2].setText(Long.toString(r.getNombre()));
+        }
+        labelCatalogue.setText("Catalogue : " + nbProduits.getAsInt() + " produits");
+
+        long maintenant = System.nanoTime(), octets = Mesures.octetsAlloues();
+        String allocation = "n/d";
+        if (octets >= 0 && octetsPrecedents >= 0) {
+            double parSeconde = Math.max(0, octets - octetsPrecedents) / ((maintenant - instantPrecedent) / 1e9);
+            allocation = String.format("%.1f Mo/s", parSeconde / (1 << 20));
+        }
+        octetsPrecedents = octets;
+        instantPrecedent = maintenant;
+        Runtime rt = Runtime.getRuntime();
+        labelMemoire.setText(String.format("Allocation : %s — tas %d / %d Mo", allocation,
+                (rt.totalMemory() - rt.freeMemory()) >> 20, rt.maxMemory() >> 20));
+        labelBlocages.setText(String.format("Blocages du thread FX (> 1 trame) : %d, max %.1f ms",
+                Mesures.getBlocages(), Mesures.getBlocageMaxNs() / 1e6));
+    }
+}
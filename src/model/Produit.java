@@ -1,39 +1,228 @@
 package model;
 
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.*;
+import javafx.beans.value.ChangeListener;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Produit du catalogue. Une fois ajouté au catalogue, c'est une vue légère sur une ligne
+ * de {@link StockColonnes} ; avant (formulaire) ou après retrait, il porte ses propres valeurs.
+ * Les propriétés JavaFX ne sont créées qu'au premier appel de xxxProperty().
+ * Au catalogue, les setters ne s'appellent que depuis le thread de publication du service
+ * (sinon IllegalStateException) ; les autres threads passent par ProduitService.modifier.
+ */
 public class Produit {
-    private final StringProperty nom = new SimpleStringProperty();
-    private final StringProperty categorie = new SimpleStringProperty();
-    private final DoubleProperty prix = new SimpleDoubleProperty();
-    private final IntegerProperty quantite = new SimpleIntegerProperty();
-    private final StringProperty fournisseur = new SimpleStringProperty();
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    /** Identifiant technique (stable, unique dans l'application) utilisé par les index. */
+    private final int id = SEQUENCE.incrementAndGet();
+
+    // Rattachement au stock en colonnes (null tant que le produit n'est pas au catalogue)
+    private StockColonnes stock;
+    private int slot;
+    // Valeurs propres, utilisées seulement hors catalogue
+    private Valeurs locales;
+    // Propriétés matérialisées à la demande
+    private Proprietes proprietes;
+    // Incrémentée à chaque modification de champ (modifications optimistes du formulaire) ;
+    // un seul écrivain (thread de publication une fois au catalogue), lue depuis tout thread
+    private volatile int version;
+    // Écouteurs (cellules, liaisons) inscrits sur les propriétés matérialisées
+    private int ecoutes;
 
     public Produit(String nom, String categorie, double prix, int quantite, String fournisseur) {
-        this.nom.set(nom);
-        this.categorie.set(categorie);
-        this.prix.set(prix);
-        this.quantite.set(quantite);
-        this.fournisseur.set(fournisseur);
+        this.locales = new Valeurs(nom, categorie, prix, quantite, fournisseur);
+    }
+
+    /** Vue créée directement rattachée (chargement en bloc du stock). */
+    Produit(StockColonnes stock, int slot) {
+        this.stock = stock;
+        this.slot = slot;
+    }
+
+    public int getId() { return id; }
+
+    /** Version des valeurs : une modification lue à la version v n'est appliquée que si elle n'a pas changé. */
+    public int getVersion() { return version; }
+
+    public String getNom() { return stock != null ? stock.nom(slot) : locales.nom; }
+    public void setNom(String nom) {
+        if (stock != null) { stock.modifierNom(slot, nom); return; }
+        locales.nom = nom;
+        version++;
+        synchroniserNom(nom);
+    }
+    public StringProperty nomProperty() { return proprietes().nom(); }
+
+    public String getCategorie() { return stock != null ? stock.categorie(slot) : locales.categorie; }
+    public void setCategorie(String categorie) {
+        if (stock != null) { stock.modifierCategorie(slot, categorie); return; }
+        locales.categorie = categorie;
+        version++;
+        synchroniserCategorie(categorie);
+    }
+    public StringProperty categorieProperty() { return proprietes().categorie(); }
+
+    public double getPrix() { return stock != null ? stock.prix(slot) : locales.prix; }
+    public void setPrix(double prix) {
+        if (stock != null) { stock.modifierPrix(slot, prix); return; }
+        locales.prix = prix;
+        version++;
+        synchroniserPrix(prix);
+    }
+    public DoubleProperty prixProperty() { return proprietes().prix(); }
+
+    public int getQuantite() { return stock != null ? stock.quantite(slot) : locales.quantite; }
+    public void setQuantite(int quantite) {
+        if (stock != null) { stock.modifierQuantite(slot, quantite); return; }
+        locales.quantite = quantite;
+        version++;
+        synchroniserQuantite(quantite);
     }
+    public IntegerProperty quantiteProperty() { return proprietes().quantite(); }
 
-    public String getNom() { return nom.get(); }
-    public void setNom(String nom) { this.nom.set(nom); }
-    public StringProperty nomProperty() { return nom; }
+    public String getFournisseur() { return stock != null ? stock.fournisseur(slot) : locales.fournisseur; }
+    public void setFournisseur(String fournisseur) {
+        if (stock != null) { stock.modifierFournisseur(slot, fournisseur); return; }
+        locales.fournisseur = fournisseur;
+        version++;
+        synchroniserFournisseur(fournisseur);
+    }
+    public StringProperty fournisseurProperty() { return proprietes().fournisseur(); }
+
+    /** Le nom contient-il la requête (déjà en minuscules) ? Lu dans l'arène, sans allouer de chaîne (thread de publication). */
+    public boolean nomContient(String requeteMinuscule) {
+        if (stock != null) return stock.nomContient(slot, requeteMinuscule);
+        String nom = locales.nom;
+        if (nom == null) return false;
+        int m = requeteMinuscule.length();
+        for (int i = 0, fin = nom.length() - m; i <= fin; i++) {
+            int k = 0;
+            while (k < m && Character.toLowerCase(nom.charAt(i + k)) == requeteMinuscule.charAt(k)) k++;
+            if (k == m) return true;
+        }
+        return false;
+    }
 
-    public String getCategorie() { return categorie.get(); }
-    public void setCategorie(String categorie) { this.categorie.set(categorie); }
-    public StringProperty categorieProperty() { return categorie; }
+    // ---------------- Rattachement (StockColonnes)
+    boolean estAuCatalogue() { return stock != null; }
 
-    public double getPrix() { return prix.get(); }
-    public void setPrix(double prix) { this.prix.set(prix); }
-    public DoubleProperty prixProperty() { return prix; }
+    boolean estDans(StockColonnes stock) { return stock != null && this.stock == stock; }
 
-    public int getQuantite() { return quantite.get(); }
-    public void setQuantite(int quantite) { this.quantite.set(quantite); }
-    public IntegerProperty quantiteProperty() { return quantite; }
+    void nouvelleVersion() { version++; }
+
+    void attacher(StockColonnes stock, int slot) {
+        this.stock = stock;
+        this.slot = slot;
+        this.locales = null;
+    }
 
-    public String getFournisseur() { return fournisseur.get(); }
-    public void setFournisseur(String fournisseur) { this.fournisseur.set(fournisseur); }
-    public StringProperty fournisseurProperty() { return fournisseur; }
+    void detacher(String nom, String categorie, double prix, int quantite, String fournisseur) {
+        this.locales = new Valeurs(nom, categorie, prix, quantite, fournisseur);
+        this.stock = null;
+    }
+
+    // Répercute une valeur sur la propriété si elle a été matérialisée
+    void synchroniserNom(String v) { if (proprietes != null && proprietes.nom != null) proprietes.nom.synchroniser(v); }
+    void synchroniserCategorie(String v) { if (proprietes != null && proprietes.categorie != null) proprietes.categorie.synchroniser(v); }
+    void synchroniserPrix(double v) { if (proprietes != null && proprietes.prix != null) proprietes.prix.synchroniser(v); }
+    void synchroniserQuantite(int v) { if (proprietes != null && proprietes.quantite != null) proprietes.quantite.synchroniser(v); }
+    void synchroniserFournisseur(String v) { if (proprietes != null && proprietes.fournisseur != null) proprietes.fournisseur.synchroniser(v); }
+
+    private Proprietes proprietes() {
+        if (proprietes == null) proprietes = new Proprietes();
+        return proprietes;
+    }
+
+    /**
+     * Oublie les propriétés matérialisées si plus rien ne les écoute (ligne sortie de l'écran) :
+     * elles seront re-créées au prochain xxxProperty(). Une propriété gardée sans écouteur ne
+     * suit plus le produit après cet appel. Renvoie faux si une propriété est encore écoutée.
+     */
+    public boolean oublierProprietes() {
+        if (ecoutes > 0) return false;
+        proprietes = null;
+        return true;
+    }
+
+    private static final class Valeurs {
+        String nom, categorie, fournisseur;
+        double prix;
+        int quantite;
+
+        Valeurs(String nom, String categorie, double prix, int quantite, String fournisseur) {
+            this.nom = nom; this.categorie = categorie; this.prix = prix;
+            this.quantite = quantite; this.fournisseur = fournisseur;
+        }
+    }
+
+    /**
+     * Propriétés créées à la demande. Un set() externe (ex. liaison bidirectionnelle) repasse
+     * par le setter du produit, donc par le stock ; le stock les met à jour via synchroniser().
+     * Leurs écouteurs sont comptés pour savoir si elles peuvent être oubliées.
+     */
+    private final class Proprietes {
+        private ProprieteTexte nom, categorie, fournisseur;
+        private ProprietePrix prix;
+        private ProprieteQuantite quantite;
+
+        ProprieteTexte nom() {
+            if (nom == null) nom = new ProprieteTexte("nom", getNom(), Produit.this::setNom);
+            return nom;
+        }
+        ProprieteTexte categorie() {
+            if (categorie == null) categorie = new ProprieteTexte("categorie", getCategorie(), Produit.this::setCategorie);
+            return categorie;
+        }
+        ProprieteTexte fournisseur() {
+            if (fournisseur == null) fournisseur = new ProprieteTexte("fournisseur", getFournisseur(), Produit.this::setFournisseur);
+            return fournisseur;
+        }
+        ProprietePrix prix() {
+            if (prix == null) prix = new ProprietePrix();
+            return prix;
+        }
+        ProprieteQuantite quantite() {
+            if (quantite == null) quantite = new ProprieteQuantite();
+            return quantite;
+        }
+    }
+
+    private final class ProprieteTexte extends SimpleStringProperty {
+        private final Consumer<String> ecriture;
+
+        ProprieteTexte(String nom, String valeur, Consumer<String> ecriture) {
+            super(Produit.this, nom, valeur);
+            this.ecriture = ecriture;
+        }
+        @Override public void set(String v) { ecriture.accept(v); }
+        void synchroniser(String v) { super.set(v); }
+        @Override public void addListener(InvalidationListener l) { super.addListener(l); ecoutes++; }
+        @Override public void removeListener(InvalidationListener l) { super.removeListener(l); if (ecoutes > 0) ecoutes--; }
+        @Override public void addListener(ChangeListener<? super String> l) { super.addListener(l); ecoutes++; }
+        @Override public void removeListener(ChangeListener<? super String> l) { super.removeListener(l); if (ecoutes > 0) ecoutes--; }
+    }
+
+    private final class ProprietePrix extends SimpleDoubleProperty {
+        ProprietePrix() { super(Produit.this, "prix", getPrix()); }
+        @Override public void set(double v) { setPrix(v); }
+        void synchroniser(double v) { super.set(v); }
+        @Override public void addListener(InvalidationListener l) { super.addListener(l); ecoutes++; }
+        @Override public void removeListener(InvalidationListener l) { super.removeListener(l); if (ecoutes > 0) ecoutes--; }
+        @Override public void addListener(ChangeListener<? super Number> l) { super.addListener(l); ecoutes++; }
+        @Override public void removeListener(ChangeListener<? super Number> l) { super.removeListener(l); if (ecoutes > 0) ecoutes--; }
+    }
+
+    private final class ProprieteQuantite extends SimpleIntegerProperty {
+        ProprieteQuantite() { super(Produit.this, "quantite", getQuantite()); }
+        @Override public void set(int v) { setQuantite(v); }
+        void synchroniser(int v) { super.set(v); }
+        @Override public void addListener(InvalidationListener l) { super.addListener(l); ecoutes++; }
+        @Override public void removeListener(InvalidationListener l) { super.removeListener(l); if (ecoutes > 0) ecoutes--; }
+        @Override public void addListener(ChangeListener<? super Number> l) { super.addListener(l); ecoutes++; }
+        @Override public void removeListener(ChangeListener<? super Number> l) { super.removeListener(l); if (ecoutes > 0) ecoutes--; }
+    }
 }
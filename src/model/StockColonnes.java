@@ -0,0 +1,467 @@
+package model;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Catalogue stocké en colonnes primitives : double[] prix, int[] quantite, identifiants
+ * de dictionnaire pour categorie/fournisseur et noms rangés bout à bout dans une arène de char.
+ * Chaque ligne a un emplacement (slot) fixe ; l'ordre de la liste n'est qu'un int[] de slots.
+ * Les Produit exposés sont des vues légères : leurs propriétés JavaFX ne sont créées que si
+ * une vue (TableView, formulaire) les demande.
+ */
+public class StockColonnes extends ModifiableObservableListBase<Produit> {
+
+    /** Changement de champ d'une ligne du stock (ancienne et nouvelle valeur, sans boxing). */
+    public interface Ecouteur {
+        default void nomModifie(Produit p, String ancien, String nouveau) {}
+        default void categorieModifiee(Produit p, String ancienne, String nouvelle) {}
+        default void prixModifie(Produit p, double ancien, double nouveau) {}
+        default void quantiteModifiee(Produit p, int ancienne, int nouvelle) {}
+        default void fournisseurModifie(Produit p, String ancien, String nouveau) {}
+    }
+
+    /**
+     * Copie en colonnes d'un stock (dans l'ordre de la liste), pour l'enregistrement et le
+     * rechargement en bloc. Les noms sont concaténés ; longueur -1 pour un nom null.
+     * Les identifiants de categories/fournisseurs renvoient aux dictionnaires (-1 : null).
+     */
+    public static final class Colonnes {
+        public int taille;
+        public double[] prix;
+        public int[] quantites;
+        public int[] categories;
+        public int[] fournisseurs;
+        public int[] longueursNoms;
+        public char[] noms;
+        public String[] dictCategories;
+        public String[] dictFournisseurs;
+    }
+
+    private static final int AUCUN = -1;
+
+    // Ordre de la liste -> slot
+    private int[] ordre = new int[64];
+    private int taille;
+
+    // Colonnes indexées par slot
+    private double[] prix = new double[64];
+    private int[] quantite = new int[64];
+    private int[] categorie = new int[64];
+    private int[] fournisseur = new int[64];
+    private int[] nomDebut = new int[64];
+    private int[] nomLongueur = new int[64];
+    private Produit[] vues = new Produit[64];
+
+    // Arène des noms (les anciens noms deviennent de l'espace mort, récupéré par compactage)
+    private char[] arene = new char[1024];
+    private int areneFin;
+    private int areneMorte;
+
+    private int nbSlots;
+    private int[] slotsLibres = new int[16];
+    private int nbLibres;
+
+    private final Dictionnaire categories = new Dictionnaire();
+    private final Dictionnaire fournisseurs = new Dictionnaire();
+    private final List<Ecouteur> ecouteurs = new CopyOnWriteArrayList<>();
+    // Compteur de changements (liste ou champ), lisible depuis tout thread
+    private volatile long revision;
+    // Seul thread autorisé à modifier les champs (setters des produits rattachés)
+    private BooleanSupplier surThreadProprietaire = () -> true;
+
+    public void ajouterEcouteur(Ecouteur e) { ecouteurs.add(e); }
+    public void retirerEcouteur(Ecouteur e) { ecouteurs.remove(e); }
+
+    /**
+     * Réserve les modifications de champ au thread propriétaire (thread de publication du
+     * service) : un setter appelé ailleurs lève IllegalStateException au lieu d'écrire dans
+     * les colonnes en concurrence avec lui.
+     */
+    public void setThreadProprietaire(BooleanSupplier surThreadProprietaire) {
+        this.surThreadProprietaire = Objects.requireNonNull(surThreadProprietaire);
+    }
+
+    /** Augmente à chaque ajout, retrait ou modification de champ. */
+    public long getRevision() { return revision; }
+
+    /** Le produit est-il une ligne de ce stock ? (O(1)) */
+    public boolean contient(Produit p) { return p.estDans(this); }
+
+    // ---------------- ObservableList
+    @Override public Produit get(int index) {
+        Objects.checkIndex(index, taille);
+        return vues[ordre[index]];
+    }
+
+    @Override public int size() { return taille; }
+
+    @Override protected void doAdd(int index, Produit p) {
+        if (p.estAuCatalogue()) throw new IllegalArgumentException("Produit déjà au catalogue : " + p.getNom());
+        Objects.checkIndex(index, taille + 1);
+        int slot = allouerSlot();
+        prix[slot] = p.getPrix();
+        quantite[slot] = p.getQuantite();
+        categorie[slot] = categories.id(p.getCategorie());
+        fournisseur[slot] = fournisseurs.id(p.getFournisseur());
+        ecrireNom(slot, p.getNom());
+        vues[slot] = p;
+        p.attacher(this, slot);
+        revision++;
+
+        if (taille == ordre.length) ordre = Arrays.copyOf(ordre, taille * 2);
+        System.arraycopy(ordre, index, ordre, index + 1, taille - index);
+        ordre[index] = slot;
+        taille++;
+    }
+
+    @Override protected Produit doSet(int index, Produit p) {
+        Produit ancien = doRemove(index);
+        doAdd(index, p);
+        return ancien;
+    }
+
+    @Override protected Produit doRemove(int index) {
+        Objects.checkIndex(index, taille);
+        Produit p = retirerSlot(ordre[index]);
+        System.arraycopy(ordre, index + 1, ordre, index, taille - index - 1);
+        taille--;
+        return p;
+    }
+
+    /**
+     * Retrait groupé en un seul passage sur l'ordre (le retrait un par un de la classe de base
+     * décale la fin de la liste à chaque élément) ; une seule notification, un sous-changement
+     * par suite d'éléments retirés consécutifs.
+     */
+    @Override public boolean removeAll(Collection<?> c) {
+        if (c.isEmpty() || taille == 0) return false;
+        Collection<?> cibles = c instanceof Set ? c : new HashSet<>(c);
+        beginChange();
+        try {
+            int garde = 0;
+            List<Produit> suite = null;
+            for (int i = 0; i < taille; i++) {
+                int slot = ordre[i];
+                if (cibles.contains(vues[slot])) {
+                    if (suite == null) suite = new ArrayList<>();
+                    suite.add(retirerSlot(slot));
+                    continue;
+                }
+                if (suite != null) {
+                    nextRemove(garde, suite);
+                    suite = null;
+                }
+                ordre[garde++] = slot;
+            }
+            if (suite != null) nextRemove(garde, suite);
+            boolean modifie = garde < taille;
+            taille = garde;
+            return modifie;
+        } finally {
+            endChange();
+        }
+    }
+
+    private Produit retirerSlot(int slot) {
+        Produit p = vues[slot];
+        // Le produit retiré garde ses valeurs (annulation, export, notifications de retrait)
+        p.detacher(nom(slot), categories.valeur(categorie[slot]), prix[slot], quantite[slot],
+                fournisseurs.valeur(fournisseur[slot]));
+        if (nomLongueur[slot] > 0) areneMorte += nomLongueur[slot];
+        vues[slot] = null;
+        libererSlot(slot);
+        revision++;
+        return p;
+    }
+
+    // ---------------- Échanges en bloc
+    /** Copie des colonnes dans l'ordre de la liste, sans matérialiser de chaîne par ligne. */
+    public Colonnes copierColonnes() {
+        Colonnes c = new Colonnes();
+        int n = c.taille = taille;
+        c.prix = new double[n];
+        c.quantites = new int[n];
+        c.categories = new int[n];
+        c.fournisseurs = new int[n];
+        c.longueursNoms = new int[n];
+        int nbCaracteres = 0;
+        for (int i = 0; i < n; i++) nbCaracteres += Math.max(0, nomLongueur[ordre[i]]);
+        c.noms = new char[nbCaracteres];
+        int fin = 0;
+        for (int i = 0; i < n; i++) {
+            int s = ordre[i];
+            c.prix[i] = prix[s];
+            c.quantites[i] = quantite[s];
+            c.categories[i] = categorie[s];
+            c.fournisseurs[i] = fournisseur[s];
+            int lg = c.longueursNoms[i] = nomLongueur[s];
+            if (lg > 0) {
+                System.arraycopy(arene, nomDebut[s], c.noms, fin, lg);
+                fin += lg;
+            }
+        }
+        c.dictCategories = categories.valeurs();
+        c.dictFournisseurs = fournisseurs.valeurs();
+        return c;
+    }
+
+    /**
+     * Chargement en bloc d'un stock vide : colonnes recopiées (le tableau des noms est repris
+     * tel quel comme arène), vues créées déjà rattachées, une seule notification d'ajout.
+     */
+    public void charger(Colonnes c) {
+        if (taille != 0) throw new IllegalStateException("Chargement en bloc sur un stock non vide");
+        int n = c.taille;
+        nbSlots = 0;
+        nbLibres = 0;
+        if (prix.length < n) agrandir(n);
+        if (ordre.length < n) ordre = new int[n];
+        System.arraycopy(c.prix, 0, prix, 0, n);
+        System.arraycopy(c.quantites, 0, quantite, 0, n);
+        recoder(c.categories, c.dictCategories, categories, categorie, n);
+        recoder(c.fournisseurs, c.dictFournisseurs, fournisseurs, fournisseur, n);
+
+        arene = c.noms.length > 0 ? c.noms : new char[1024];
+        areneFin = c.noms.length;
+        areneMorte = 0;
+        int debut = 0;
+        for (int i = 0; i < n; i++) {
+            int lg = c.longueursNoms[i];
+            nomDebut[i] = debut;
+            nomLongueur[i] = lg;
+            if (lg > 0) debut += lg;
+            vues[i] = new Produit(this, i);
+            ordre[i] = i;
+        }
+        nbSlots = n;
+        taille = n;
+
+        revision++;
+        beginChange();
+        nextAdd(0, n);
+        endChange();
+    }
+
+    /** Ré-identifie une colonne de dictionnaire externe dans le dictionnaire du stock. */
+    private static void recoder(int[] source, String[] dictSource, Dictionnaire dico, int[] cible, int n) {
+        int[] ids = new int[dictSource.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = dico.id(dictSource[i]);
+        for (int i = 0; i < n; i++) cible[i] = source[i] == AUCUN ? AUCUN : ids[source[i]];
+    }
+
+    // ---------------- Lecture des colonnes (slot)
+    String nom(int slot) {
+        int lg = nomLongueur[slot];
+        if (lg == AUCUN) return null;
+        int debut = nomDebut[slot];
+        return new String(arene, debut, lg);
+    }
+
+    String categorie(int slot) { return categories.valeur(categorie[slot]); }
+    String fournisseur(int slot) { return fournisseurs.valeur(fournisseur[slot]); }
+    double prix(int slot) { return prix[slot]; }
+    int quantite(int slot) { return quantite[slot]; }
+
+    /** Recherche insensible à la casse directement dans l'arène (requête déjà en minuscules). */
+    boolean nomContient(int slot, String q) {
+        int lg = nomLongueur[slot];
+        if (lg == AUCUN) return false;
+        int debut = nomDebut[slot];
+        char[] a = arene;
+        int m = q.length();
+        for (int i = debut, fin = debut + lg - m; i <= fin; i++) {
+            int k = 0;
+            while (k < m && Character.toLowerCase(a[i + k]) == q.charAt(k)) k++;
+            if (k == m) return true;
+        }
+        return false;
+    }
+
+    // ---------------- Écriture (appelée par les setters de Produit)
+    void modifierNom(int slot, String nouveau) {
+        verifierThread();
+        Produit p = vues[slot];
+        String ancien = nom(slot);
+        if (Objects.equals(ancien, nouveau)) return;
+        if (nomLongueur[slot] > 0) areneMorte += nomLongueur[slot];
+        ecrireNom(slot, nouveau);
+        p.nouvelleVersion();
+        revision++;
+        p.synchroniserNom(nouveau);
+        for (Ecouteur e : ecouteurs) e.nomModifie(p, ancien, nouveau);
+    }
+
+    void modifierCategorie(int slot, String nouvelle) {
+        verifierThread();
+        Produit p = vues[slot];
+        String ancienne = categories.valeur(categorie[slot]);
+        if (Objects.equals(ancienne, nouvelle)) return;
+        categorie[slot] = categories.id(nouvelle);
+        p.nouvelleVersion();
+        revision++;
+        p.synchroniserCategorie(nouvelle);
+        for (Ecouteur e : ecouteurs) e.categorieModifiee(p, ancienne, nouvelle);
+    }
+
+    void modifierPrix(int slot, double nouveau) {
+        verifierThread();
+        Produit p = vues[slot];
+        double ancien = prix[slot];
+        if (Double.compare(ancien, nouveau) == 0) return;
+        prix[slot] = nouveau;
+        p.nouvelleVersion();
+        revision++;
+        p.synchroniserPrix(nouveau);
+        for (Ecouteur e : ecouteurs) e.prixModifie(p, ancien, nouveau);
+    }
+
+    void modifierQuantite(int slot, int nouvelle) {
+        verifierThread();
+        Produit p = vues[slot];
+        int ancienne = quantite[slot];
+        if (ancienne == nouvelle) return;
+        quantite[slot] = nouvelle;
+        p.nouvelleVersion();
+        revision++;
+        p.synchroniserQuantite(nouvelle);
+        for (Ecouteur e : ecouteurs) e.quantiteModifiee(p, ancienne, nouvelle);
+    }
+
+    void modifierFournisseur(int slot, String nouveau) {
+        verifierThread();
+        Produit p = vues[slot];
+        String ancien = fournisseurs.valeur(fournisseur[slot]);
+        if (Objects.equals(ancien, nouveau)) return;
+        fournisseur[slot] = fournisseurs.id(nouveau);
+        p.nouvelleVersion();
+        revision++;
+        p.synchroniserFournisseur(nouveau);
+        for (Ecouteur e : ecouteurs) e.fournisseurModifie(p, ancien, nouveau);
+    }
+
+    private void verifierThread() {
+        if (!surThreadProprietaire.getAsBoolean()) {
+            throw new IllegalStateException("Produit du catalogue modifié hors du thread de publication "
+                    + "(passer par ProduitService.modifier) : " + Thread.currentThread().getName());
+        }
+    }
+
+    // ---------------- Agrégats en boucles primitives
+    /** Somme prix × quantité sur toutes les lignes. */
+    public double valeurTotale() {
+        double total = 0;
+        for (int i = 0; i < taille; i++) {
+            int s = ordre[i];
+            total += prix[s] * quantite[s];
+        }
+        return total;
+    }
+
+    /** Quantité totale par catégorie (clé dans l'ordre de première apparition). */
+    public Map<String, Long> quantitesParCategorie() {
+        return regrouper(categorie, categories);
+    }
+
+    /** Quantité totale par fournisseur. */
+    public Map<String, Long> quantitesParFournisseur() {
+        return regrouper(fournisseur, fournisseurs);
+    }
+
+    private Map<String, Long> regrouper(int[] colonne, Dictionnaire dico) {
+        long[] sommes = new long[dico.taille()];
+        int[] comptes = new int[dico.taille()];
+        for (int i = 0; i < taille; i++) {
+            int s = ordre[i];
+            int id = colonne[s];
+            if (id == AUCUN) continue;
+            sommes[id] += quantite[s];
+            comptes[id]++;
+        }
+        Map<String, Long> res = new LinkedHashMap<>();
+        for (int id = 0; id < sommes.length; id++) {
+            if (comptes[id] > 0) res.put(dico.valeur(id), sommes[id]);
+        }
+        return res;
+    }
+
+    // ---------------- Interne
+    private int allouerSlot() {
+        if (nbLibres > 0) return slotsLibres[--nbLibres];
+        if (nbSlots == prix.length) agrandir(nbSlots * 2);
+        return nbSlots++;
+    }
+
+    private void libererSlot(int slot) {
+        if (nbLibres == slotsLibres.length) slotsLibres = Arrays.copyOf(slotsLibres, nbLibres * 2);
+        slotsLibres[nbLibres++] = slot;
+    }
+
+    private void agrandir(int capacite) {
+        prix = Arrays.copyOf(prix, capacite);
+        quantite = Arrays.copyOf(quantite, capacite);
+        categorie = Arrays.copyOf(categorie, capacite);
+        fournisseur = Arrays.copyOf(fournisseur, capacite);
+        nomDebut = Arrays.copyOf(nomDebut, capacite);
+        nomLongueur = Arrays.copyOf(nomLongueur, capacite);
+        vues = Arrays.copyOf(vues, capacite);
+    }
+
+    private void ecrireNom(int slot, String nom) {
+        if (nom == null) {
+            nomLongueur[slot] = AUCUN;
+            return;
+        }
+        int lg = nom.length();
+        if (areneFin + lg > arene.length) {
+            if (areneMorte > areneFin / 2) compacter();
+            if (areneFin + lg > arene.length) arene = Arrays.copyOf(arene, Math.max(arene.length * 2, areneFin + lg));
+        }
+        nom.getChars(0, lg, arene, areneFin);
+        // Arène lue, agrandie et compactée sur le seul thread de publication : les autres threads
+        // cherchent dans une copie figée (copierColonnes)
+        nomDebut[slot] = areneFin;
+        nomLongueur[slot] = lg;
+        areneFin += lg;
+    }
+
+    /** Recopie les noms vivants dans une arène neuve, dans l'ordre des slots. */
+    private void compacter() {
+        char[] neuve = new char[Math.max(1024, (areneFin - areneMorte) * 2)];
+        int fin = 0;
+        for (int s = 0; s < nbSlots; s++) {
+            int lg = nomLongueur[s];
+            if (vues[s] == null || lg <= 0) continue;
+            System.arraycopy(arene, nomDebut[s], neuve, fin, lg);
+            nomDebut[s] = fin;
+            fin += lg;
+        }
+        arene = neuve;
+        areneFin = fin;
+        areneMorte = 0;
+    }
+
+    /** Dictionnaire chaîne <-> identifiant entier dense. */
+    private static final class Dictionnaire {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> valeurs = new ArrayList<>();
+
+        int id(String valeur) {
+            if (valeur == null) return AUCUN;
+            Integer id = ids.get(valeur);
+            if (id != null) return id;
+            valeurs.add(valeur);
+            ids.put(valeur, valeurs.size() - 1);
+            return valeurs.size() - 1;
+        }
+
+        String valeur(int id) { return id == AUCUN ? null : valeurs.get(id); }
+
+        int taille() { return valeurs.size(); }
+
+        String[] valeurs() { return valeurs.toArray(new String[0]); }
+    }
+}
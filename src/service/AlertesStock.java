@@ -0,0 +1,179 @@
+package service;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.*;
+
+/**
+ * Index des alertes de stock bas, ordonné par écart (quantite − seuil).
+ * Les seuils se définissent par défaut, par catégorie et par produit. Chaque changement
+ * de quantité/catégorie ne repositionne que le produit concerné ; la liste des alertes
+ * (écart ≤ 0, le plus critique en premier) est maintenue en O(k) sans re-parcourir le catalogue.
+ */
+public class AlertesStock extends ObservateurCatalogue {
+
+    /** Notifié quand un produit franchit son seuil (entrée ou sortie d'alerte). */
+    public interface EcouteurSeuil {
+        void seuilFranchi(Produit produit, boolean enAlerte, int seuil);
+    }
+
+    /** Position d'un produit dans l'index ; l'écart est figé ici car la propriété a déjà changé à la notification. */
+    private static final class Entree {
+        final Produit produit;
+        int ecart;
+        Entree(Produit produit) { this.produit = produit; }
+        boolean enAlerte() { return ecart <= 0; }
+    }
+
+    private static final Comparator<Entree> ORDRE = Comparator
+            .<Entree>comparingInt(e -> e.ecart)
+            .thenComparingInt(e -> e.produit.getId());
+
+    public static final int SEUIL_PAR_DEFAUT = 50;
+    /** Au-delà, un ajout/retrait groupé reconstruit la liste d'alertes au lieu d'insérer une à une. */
+    private static final int TAILLE_LOT = 256;
+
+    private final List<Produit> produitsSurveilles;
+    private final TreeSet<Entree> index = new TreeSet<>(ORDRE);
+    private final Map<Produit, Entree> entrees = new IdentityHashMap<>();
+    private final ObservableList<Produit> alertes = FXCollections.observableArrayList();
+    private final List<EcouteurSeuil> ecouteurs = new ArrayList<>();
+
+    private int seuilParDefaut;
+    private final Map<String, Integer> seuilsCategorie = new HashMap<>();
+    private final Map<Integer, Integer> seuilsProduit = new HashMap<>();
+
+    public AlertesStock(StockColonnes produits) {
+        this.produitsSurveilles = produits;
+        this.seuilParDefaut = SEUIL_PAR_DEFAUT;
+        surveiller(produits);
+    }
+
+    // ---------------- Seuils
+    public int seuil(Produit p) {
+        Integer s = seuilsProduit.get(p.getId());
+        if (s == null && p.getCategorie() != null) s = seuilsCategorie.get(p.getCategorie().toLowerCase());
+        return s != null ? s : seuilParDefaut;
+    }
+
+    public void definirSeuilParDefaut(int seuil) {
+        seuilParDefaut = seuil;
+        recalculerTout();
+    }
+
+    /** Point de commande d'une catégorie (ex. sacs de ciment vs m³ de sable) ; null pour revenir au défaut. */
+    public void definirSeuilCategorie(String categorie, Integer seuil) {
+        String cle = categorie.toLowerCase();
+        if (seuil == null) seuilsCategorie.remove(cle); else seuilsCategorie.put(cle, seuil);
+        recalculerTout();
+    }
+
+    /** Seuil propre à un produit, prioritaire sur celui de sa catégorie ; null pour le retirer. */
+    public void definirSeuilProduit(Produit p, Integer seuil) {
+        if (seuil == null) seuilsProduit.remove(p.getId()); else seuilsProduit.put(p.getId(), seuil);
+        Entree e = entrees.get(p);
+        if (e != null) repositionner(e, p.getQuantite());
+    }
+
+    /** Changement de configuration (rare) : seul cas où tout le catalogue est ré-évalué. */
+    private void recalculerTout() {
+        for (Produit p : produitsSurveilles) {
+            Entree e = entrees.get(p);
+            if (e != null) repositionner(e, p.getQuantite());
+        }
+    }
+
+    // ---------------- Abonnements
+    public void ajouterEcouteur(EcouteurSeuil ecouteur) { ecouteurs.add(ecouteur); }
+    public void retirerEcouteur(EcouteurSeuil ecouteur) { ecouteurs.remove(ecouteur); }
+
+    /** Produits sous leur seuil, du plus critique au moins critique (liste maintenue, à lier à tableAlertes). */
+    public ObservableList<Produit> getAlertes() { return alertes; }
+
+    // ---------------- Deltas
+    @Override protected void produitAjoute(Produit p) {
+        Entree e = indexer(p);
+        if (e.enAlerte()) {
+            alertes.add(positionAlerte(e), p);
+            notifier(p, true);
+        }
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        Entree e = entrees.remove(p);
+        if (e == null) return;
+        if (e.enAlerte()) alertes.remove(positionAlerte(e));
+        index.remove(e);
+    }
+
+    /** Gros lot (chargement) : index mis à jour seul, liste d'alertes reconstruite une fois. */
+    @Override protected void produitsAjoutes(List<? extends Produit> lot) {
+        if (lot.size() < TAILLE_LOT) { super.produitsAjoutes(lot); return; }
+        List<Produit> nouvelles = new ArrayList<>();
+        for (Produit p : lot) if (indexer(p).enAlerte()) nouvelles.add(p);
+        reconstruireAlertes();
+        for (Produit p : nouvelles) notifier(p, true);
+    }
+
+    @Override protected void produitsRetires(List<? extends Produit> lot) {
+        if (lot.size() < TAILLE_LOT) { super.produitsRetires(lot); return; }
+        for (Produit p : lot) {
+            Entree e = entrees.remove(p);
+            if (e != null) index.remove(e);
+        }
+        reconstruireAlertes();
+    }
+
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        Entree e = entrees.get(p);
+        if (e != null) repositionner(e, nouvelle);
+    }
+
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) {
+        Entree e = entrees.get(p);
+        if (e != null) repositionner(e, p.getQuantite());
+    }
+
+    private void repositionner(Entree e, int quantite) {
+        int ecart = quantite - seuil(e.produit);
+        if (ecart == e.ecart) return;
+        boolean avant = e.enAlerte();
+        if (avant) alertes.remove(positionAlerte(e));
+        index.remove(e);
+        e.ecart = ecart;
+        index.add(e);
+        if (e.enAlerte()) alertes.add(positionAlerte(e), e.produit);
+        if (avant != e.enAlerte()) notifier(e.produit, e.enAlerte());
+    }
+
+    private Entree indexer(Produit p) {
+        Entree e = new Entree(p);
+        e.ecart = p.getQuantite() - seuil(p);
+        entrees.put(p, e);
+        index.add(e);
+        return e;
+    }
+
+    private void reconstruireAlertes() {
+        List<Produit> liste = new ArrayList<>();
+        for (Entree e : index) {
+            if (!e.enAlerte()) break;
+            liste.add(e.produit);
+        }
+        alertes.setAll(liste);
+    }
+
+    /** Rang de l'entrée parmi les alertes : nombre d'entrées qui la précèdent (toutes en alerte). */
+    private int positionAlerte(Entree e) {
+        return index.headSet(e, false).size();
+    }
+
+    private void notifier(Produit p, boolean enAlerte) {
+        if (ecouteurs.isEmpty()) return;
+        int s = seuil(p);
+        for (EcouteurSeuil ec : new ArrayList<>(ecouteurs)) ec.seuilFranchi(p, enAlerte, s);
+    }
+}
@@ -0,0 +1,160 @@
+package service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Ensemble d'identifiants compressé, sur le modèle des Roaring bitmaps : les ids sont rangés par
+ * tranches de 65 536 ; une tranche peu remplie est un tableau trié de char (2 octets par id),
+ * une tranche dense un bitmap de 1 024 mots (8 Ko). Un fournisseur ou une tranche de prix ne
+ * coûte ainsi que la place de ses produits, et l'union dans un bitmap plat se fait mot à mot.
+ */
+final class BitmapCompresse {
+
+    /** Au-delà, la tranche passe en bitmap (4 096 × 2 octets = la taille du bitmap). */
+    private static final int MAX_TABLEAU = 4096;
+    /** En deçà, retour au tableau (écart avec MAX_TABLEAU : pas d'aller-retour à chaque id). */
+    private static final int MIN_BITMAP = 2048;
+
+    private char[] cles = new char[2];           // id >>> 16, triées
+    private Tranche[] tranches = new Tranche[2];
+    private int nbTranches;
+    private int cardinalite;
+
+    int cardinalite() { return cardinalite; }
+
+    boolean estVide() { return cardinalite == 0; }
+
+    void ajouter(int id) {
+        int k = chercher((char) (id >>> 16));
+        if (k < 0) {
+            k = -k - 1;
+            if (nbTranches == cles.length) {
+                cles = Arrays.copyOf(cles, nbTranches * 2);
+                tranches = Arrays.copyOf(tranches, nbTranches * 2);
+            }
+            System.arraycopy(cles, k, cles, k + 1, nbTranches - k);
+            System.arraycopy(tranches, k, tranches, k + 1, nbTranches - k);
+            cles[k] = (char) (id >>> 16);
+            tranches[k] = new Tranche();
+            nbTranches++;
+        }
+        if (tranches[k].ajouter((char) id)) cardinalite++;
+    }
+
+    void retirer(int id) {
+        int k = chercher((char) (id >>> 16));
+        if (k < 0 || !tranches[k].retirer((char) id)) return;
+        cardinalite--;
+        if (tranches[k].taille == 0) {
+            System.arraycopy(cles, k + 1, cles, k, nbTranches - k - 1);
+            System.arraycopy(tranches, k + 1, tranches, k, nbTranches - k - 1);
+            tranches[--nbTranches] = null;
+        }
+    }
+
+    boolean contient(int id) {
+        int k = chercher((char) (id >>> 16));
+        return k >= 0 && tranches[k].contient((char) id);
+    }
+
+    /** mots |= ensemble (mots : bitmap plat, bit id = id du produit ; ids hors de mots ignorés). */
+    void ouDans(long[] mots) {
+        for (int k = 0; k < nbTranches; k++) {
+            Tranche t = tranches[k];
+            int base = cles[k] << 16;
+            if (t.mots != null) {
+                int premier = base >>> 6;
+                for (int i = 0, n = Math.min(1024, mots.length - premier); i < n; i++) mots[premier + i] |= t.mots[i];
+            } else {
+                for (int i = 0; i < t.taille; i++) {
+                    int id = base | t.valeurs[i];
+                    if ((id >>> 6) < mots.length) mots[id >>> 6] |= 1L << id;
+                }
+            }
+        }
+    }
+
+    /** Ids de l'ensemble, croissants. */
+    void pourChaque(IntConsumer action) {
+        for (int k = 0; k < nbTranches; k++) {
+            Tranche t = tranches[k];
+            int base = cles[k] << 16;
+            if (t.mots != null) {
+                for (int i = 0; i < 1024; i++) {
+                    for (long m = t.mots[i]; m != 0; m &= m - 1) action.accept(base | (i << 6) | Long.numberOfTrailingZeros(m));
+                }
+            } else {
+                for (int i = 0; i < t.taille; i++) action.accept(base | t.valeurs[i]);
+            }
+        }
+    }
+
+    private int chercher(char cle) {
+        return Arrays.binarySearch(cles, 0, nbTranches, cle);
+    }
+
+    /** 65 536 ids consécutifs : tableau trié (valeurs) ou bitmap (mots), jamais les deux. */
+    private static final class Tranche {
+        char[] valeurs = new char[4];
+        long[] mots;
+        int taille;
+
+        boolean contient(char v) {
+            if (mots != null) return (mots[v >>> 6] & (1L << v)) != 0;
+            return Arrays.binarySearch(valeurs, 0, taille, v) >= 0;
+        }
+
+        boolean ajouter(char v) {
+            if (mots != null) {
+                long bit = 1L << v;
+                if ((mots[v >>> 6] & bit) != 0) return false;
+                mots[v >>> 6] |= bit;
+                taille++;
+                return true;
+            }
+            int i = Arrays.binarySearch(valeurs, 0, taille, v);
+            if (i >= 0) return false;
+            i = -i - 1;
+            if (taille == MAX_TABLEAU) {
+                versBitmap();
+                return ajouter(v);
+            }
+            if (taille == valeurs.length) valeurs = Arrays.copyOf(valeurs, Math.min(MAX_TABLEAU, taille * 2));
+            System.arraycopy(valeurs, i, valeurs, i + 1, taille - i);
+            valeurs[i] = v;
+            taille++;
+            return true;
+        }
+
+        boolean retirer(char v) {
+            if (mots != null) {
+                long bit = 1L << v;
+                if ((mots[v >>> 6] & bit) == 0) return false;
+                mots[v >>> 6] &= ~bit;
+                if (--taille < MIN_BITMAP) versTableau();
+                return true;
+            }
+            int i = Arrays.binarySearch(valeurs, 0, taille, v);
+            if (i < 0) return false;
+            System.arraycopy(valeurs, i + 1, valeurs, i, taille - i - 1);
+            taille--;
+            return true;
+        }
+
+        private void versBitmap() {
+            mots = new long[1024];
+            for (int i = 0; i < taille; i++) mots[valeurs[i] >>> 6] |= 1L << valeurs[i];
+            valeurs = null;
+        }
+
+        private void versTableau() {
+            valeurs = new char[Math.max(4, taille)];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                for (long m = mots[i]; m != 0; m &= m - 1) valeurs[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(m));
+            }
+            mots = null;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package service;
+
+import model.Produit;
+import service.FluxChangements.Changement;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Vue « tous dépôts » : catalogue d'un {@link ProduitService} alimenté par les flux de
+ * changements de plusieurs dépôts ({@link ServeurReplication}), un thread de lecture par source.
+ * Chaque produit y est repéré par (dépôt, clé) ; un changement n'est appliqué que s'il est plus
+ * récent que le dernier appliqué à ce produit, ce qui rend l'application idempotente : un lot
+ * reçu deux fois après une reconnexion, ou un retrait suivi d'une modification tardive, ne
+ * change rien. Après une coupure, chaque source reprend à la dernière séquence reçue.
+ * <p>
+ * La vue est en lecture seule et sans conflit : seuls les flux l'écrivent, et chaque produit n'a
+ * qu'un écrivain, son dépôt. Les horodatages ne sont donc comparés qu'à l'intérieur d'un même
+ * dépôt (même horloge) ; un même article tenu par deux dépôts reste deux produits distincts,
+ * comptés chacun dans le total de son dépôt, et n'est jamais fusionné entre dépôts. Les lots sont appliqués sur le thread de publication du service,
+ * ajouts et retraits groupés en un seul changement de liste.
+ */
+public final class CatalogueConsolide {
+
+    private static final long ATTENTE_RECONNEXION_MAX_MS = 5_000;
+
+    /** État d'un produit répliqué ; produit null : retiré (pierre tombale, garde son horodatage). */
+    private static final class Entree {
+        Produit produit;
+        long horodatage;
+
+        Entree(Produit produit, long horodatage) {
+            this.produit = produit;
+            this.horodatage = horodatage;
+        }
+    }
+
+    /** Produits d'un dépôt, pour une époque de son flux (les clés ne valent que pour elle). */
+    private static final class Depot {
+        long epoque;
+        final Map<Long, Entree> entrees = new HashMap<>();
+    }
+
+    /** Totaux d'un dépôt dans la vue consolidée. */
+    public static final class Total {
+        private final String depot;
+        private final int nbProduits;
+        private final long quantite;
+        private final double valeur;
+
+        Total(String depot, int nbProduits, long quantite, double valeur) {
+            this.depot = depot;
+            this.nbProduits = nbProduits;
+            this.quantite = quantite;
+            this.valeur = valeur;
+        }
+
+        public String getDepot() { return depot; }
+        public int getNbProduits() { return nbProduits; }
+        public long getQuantite() { return quantite; }
+        public double getValeur() { return valeur; }
+    }
+
+    /** Connexion à un dépôt : position de reprise et fraîcheur (lues depuis n'importe quel thread). */
+    public final class Source {
+        private final InetSocketAddress adresse;
+        private volatile String depot;
+        private volatile long epoque, seq;
+        private volatile boolean connectee;
+        private volatile long derniereTrame; // System.currentTimeMillis()
+        private volatile Socket socket;
+
+        Source(InetSocketAddress adresse) {
+            this.adresse = adresse;
+        }
+
+        public InetSocketAddress getAdresse() { return adresse; }
+        public String getDepot() { return depot; }
+        public long getSeq() { return seq; }
+        public boolean isConnectee() { return connectee; }
+
+        /** Âge de la copie : temps écoulé depuis la dernière trame reçue (-1 : jamais reçue). */
+        public long getAgeMs() {
+            return derniereTrame == 0 ? -1 : System.currentTimeMillis() - derniereTrame;
+        }
+
+        private void suivre() {
+            long attente = 100;
+            while (actif) {
+                try (Socket s = new Socket()) {
+                    socket = s;
+                    s.connect(adresse, 2_000);
+                    s.setTcpNoDelay(true);
+                    // Trois veilles manquées : dépôt considéré injoignable, on se reconnecte
+                    s.setSoTimeout((int) (3 * ServeurReplication.VEILLE_MS + 1_000));
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    out.writeInt(TrameReplication.MAGIE);
+                    out.writeLong(epoque);
+                    out.writeLong(seq);
+                    out.flush();
+                    lire(new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16)));
+                } catch (IOException e) {
+                    if (!actif) return;
+                    if (connectee) {
+                        System.err.println("Réplication : dépôt " + (depot != null ? depot : adresse) + " perdu : "
+                                + (e.getMessage() != null ? e.getMessage() : "connexion fermée"));
+                        attente = 100;
+                    } else {
+                        attente = Math.min(ATTENTE_RECONNEXION_MAX_MS, attente * 2);
+                    }
+                } finally {
+                    connectee = false;
+                }
+                if (!actif) return;
+                try {
+                    Thread.sleep(attente);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void lire(DataInputStream in) throws IOException {
+            TrameReplication bonjour = TrameReplication.lire(in);
+            if (bonjour.genre != TrameReplication.BONJOUR) throw new IOException("trame BONJOUR attendue");
+            String nom = bonjour.depot;
+            if (depot != null && !depot.equals(nom)) throw new IOException("l'adresse sert maintenant le dépôt " + nom);
+            depot = nom;
+            connectee = true;
+            derniereTrame = System.currentTimeMillis();
+            List<Changement> instantane = new ArrayList<>();
+            while (actif) {
+                TrameReplication t = TrameReplication.lire(in);
+                derniereTrame = System.currentTimeMillis();
+                switch (t.genre) {
+                    case TrameReplication.CHANGEMENTS -> {
+                        appliquer(() -> appliquerChangements(nom, t.changements));
+                        epoque = t.epoque;
+                        seq = t.seq;
+                    }
+                    case TrameReplication.INSTANTANE -> {
+                        instantane.addAll(t.changements);
+                        if (t.dernier) {
+                            List<Changement> complet = new ArrayList<>(instantane);
+                            instantane.clear();
+                            appliquer(() -> appliquerInstantane(nom, t.epoque, complet));
+                            epoque = t.epoque;
+                            seq = t.seq;
+                        }
+                    }
+                    default -> { } // veille
+                }
+            }
+        }
+    }
+
+    private final ProduitService service;
+    private final List<Source> sources = new CopyOnWriteArrayList<>();
+    private final Map<String, Depot> depots = new LinkedHashMap<>(); // thread de publication
+    private final Map<Produit, String> depotParProduit = new HashMap<>(); // thread de publication
+    private volatile boolean actif = true;
+
+    /** @param service catalogue consolidé, distinct de celui du dépôt local */
+    public CatalogueConsolide(ProduitService service) {
+        this.service = service;
+    }
+
+    public ProduitService getService() {
+        return service;
+    }
+
+    /** Suit le flux du dépôt servi à cette adresse (reconnexion automatique). */
+    public Source ajouterSource(InetSocketAddress adresse) {
+        Source s = new Source(adresse);
+        sources.add(s);
+        ServeurReplication.demon("consolidation-" + adresse, s::suivre).start();
+        return s;
+    }
+
+    public List<Source> getSources() {
+        return List.copyOf(sources);
+    }
+
+    public void arreter() {
+        actif = false;
+        for (Source s : sources) {
+            Socket socket = s.socket;
+            if (socket != null) ServeurReplication.fermer(socket);
+        }
+    }
+
+    /** Totaux par dépôt (produits, quantités, valeur). À appeler sur le thread de publication. */
+    public List<Total> totaux() {
+        List<Total> totaux = new ArrayList<>(depots.size());
+        for (Map.Entry<String, Depot> e : depots.entrySet()) {
+            int n = 0;
+            long quantite = 0;
+            double valeur = 0;
+            for (Entree entree : e.getValue().entrees.values()) {
+                Produit p = entree.produit;
+                if (p == null) continue;
+                n++;
+                quantite += p.getQuantite();
+                valeur += p.getPrix() * p.getQuantite();
+            }
+            totaux.add(new Total(e.getKey(), n, quantite, valeur));
+        }
+        return totaux;
+    }
+
+    /** Dépôt d'origine d'un produit de la vue consolidée (thread de publication). */
+    public String depotDe(Produit p) {
+        return depotParProduit.get(p);
+    }
+
+    // ---------------- Application (thread de publication)
+
+    private void appliquer(Runnable tache) {
+        service.executer(tache).exceptionally(e -> {
+            System.err.println("Réplication : changements non appliqués à la vue consolidée : "
+                    + (e.getCause() != null ? e.getCause() : e));
+            return null;
+        });
+    }
+
+    private void appliquerChangements(String nom, List<Changement> lot) {
+        Depot d = depots.computeIfAbsent(nom, k -> new Depot());
+        List<Produit> ajouts = new ArrayList<>();
+        Set<Produit> retraits = new HashSet<>();
+        for (Changement c : lot) {
+            Entree e = d.entrees.get(c.cle);
+            if (e != null && c.horodatage <= e.horodatage) continue; // déjà appliqué ou dépassé (horloge du dépôt)
+            if (c.type == FluxChangements.AJOUT) {
+                if (e != null) continue; // clé déjà vue : un ajout n'est jamais rejoué plus tard
+                Produit p = new Produit(c.nom, c.categorie, c.prix, c.quantite, c.fournisseur);
+                d.entrees.put(c.cle, new Entree(p, c.horodatage));
+                depotParProduit.put(p, nom);
+                ajouts.add(p);
+                continue;
+            }
+            if (e == null) continue; // modification d'un produit jamais reçu
+            e.horodatage = c.horodatage;
+            Produit p = e.produit;
+            if (p == null) continue;
+            switch (c.type) {
+                case FluxChangements.RETRAIT -> {
+                    e.produit = null;
+                    depotParProduit.remove(p);
+                    if (!ajouts.remove(p)) retraits.add(p);
+                }
+                case FluxChangements.NOM -> p.setNom(c.nom);
+                case FluxChangements.CATEGORIE -> p.setCategorie(c.categorie);
+                case FluxChangements.PRIX -> p.setPrix(c.prix);
+                case FluxChangements.QUANTITE -> p.setQuantite(c.quantite);
+                case FluxChangements.FOURNISSEUR -> p.setFournisseur(c.fournisseur);
+                default -> { }
+            }
+        }
+        if (!retraits.isEmpty()) service.getStock().removeAll(retraits);
+        if (!ajouts.isEmpty()) service.getStock().addAll(ajouts);
+    }
+
+    /**
+     * Instantané d'un dépôt : fait foi à sa séquence. Même époque : seuls les écarts sont appliqués ;
+     * nouvelle époque (dépôt redémarré, clés renumérotées) : les produits du dépôt sont remplacés.
+     */
+    private void appliquerInstantane(String nom, long epoque, List<Changement> ajouts) {
+        Depot d = depots.computeIfAbsent(nom, k -> new Depot());
+        Map<Long, Entree> anciennes = d.epoque == epoque ? new HashMap<>(d.entrees) : new HashMap<>();
+        Set<Produit> retraits = new HashSet<>();
+        if (d.epoque != epoque) {
+            for (Entree e : d.entrees.values()) if (e.produit != null) retraits.add(e.produit);
+        }
+        d.epoque = epoque;
+        d.entrees.clear();
+        List<Produit> nouveaux = new ArrayList<>();
+        for (Changement c : ajouts) {
+            Entree e = anciennes.remove(c.cle);
+            if (e != null && e.produit != null) {
+                Produit p = e.produit;
+                if (c.horodatage > e.horodatage) { // même dépôt, même horloge : pas de conflit possible
+                    if (!Objects.equals(p.getNom(), c.nom)) p.setNom(c.nom);
+                    if (!Objects.equals(p.getCategorie(), c.categorie)) p.setCategorie(c.categorie);
+                    if (p.getPrix() != c.prix) p.setPrix(c.prix);
+                    if (p.getQuantite() != c.quantite) p.setQuantite(c.quantite);
+                    if (!Objects.equals(p.getFournisseur(), c.fournisseur)) p.setFournisseur(c.fournisseur);
+                    e.horodatage = c.horodatage;
+                }
+                d.entrees.put(c.cle, e);
+                continue;
+            }
+            Produit p = new Produit(c.nom, c.categorie, c.prix, c.quantite, c.fournisseur);
+            d.entrees.put(c.cle, new Entree(p, c.horodatage));
+            depotParProduit.put(p, nom);
+            nouveaux.add(p);
+        }
+        // Absents de l'instantané : retirés entre-temps
+        for (Entree e : anciennes.values()) if (e.produit != null) retraits.add(e.produit);
+        for (Produit p : retraits) depotParProduit.remove(p);
+        if (!retraits.isEmpty()) service.getStock().removeAll(retraits);
+        if (!nouveaux.isEmpty()) service.getStock().addAll(nouveaux);
+    }
+}
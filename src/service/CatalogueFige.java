@@ -0,0 +1,94 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.Arrays;
+
+/**
+ * Copie immuable du catalogue à une révision donnée, lisible depuis n'importe quel thread
+ * sans bloquer les écritures (agrégations, export, API). Les valeurs sont des colonnes
+ * primitives dans l'ordre de la liste ; obtenue par {@link ProduitService#instantane()},
+ * partagée tant que le catalogue ne change pas.
+ */
+public final class CatalogueFige {
+
+    private final long revision;
+    private final StockColonnes.Colonnes colonnes;
+    private final int[] debutsNoms;
+    // Vues vivantes, seulement comme poignées pour soumettre des écritures
+    private final Produit[] produits;
+    private volatile int[] indexParId; // construit au premier accès par identifiant
+
+    CatalogueFige(long revision, StockColonnes.Colonnes colonnes, Produit[] produits) {
+        this.revision = revision;
+        this.colonnes = colonnes;
+        this.produits = produits;
+        this.debutsNoms = new int[colonnes.taille + 1];
+        for (int i = 0; i < colonnes.taille; i++) {
+            debutsNoms[i + 1] = debutsNoms[i] + Math.max(0, colonnes.longueursNoms[i]);
+        }
+    }
+
+    /** Révision du catalogue copiée ({@link StockColonnes#getRevision()}). */
+    public long getRevision() { return revision; }
+
+    public int taille() { return colonnes.taille; }
+
+    public int getId(int i) { return produits[i].getId(); }
+
+    /** Position du produit d'identifiant id, -1 s'il n'est pas dans cette copie. */
+    public int indexDe(int id) {
+        int[] index = indexParId;
+        if (index == null) {
+            int max = 0;
+            for (Produit p : produits) max = Math.max(max, p.getId());
+            index = new int[max + 1];
+            Arrays.fill(index, -1);
+            for (int i = 0; i < produits.length; i++) index[produits[i].getId()] = i;
+            indexParId = index;
+        }
+        return id >= 0 && id < index.length ? index[id] : -1;
+    }
+
+    Produit produit(int i) { return produits[i]; }
+
+    public String getNom(int i) {
+        int lg = colonnes.longueursNoms[i];
+        return lg < 0 ? null : new String(colonnes.noms, debutsNoms[i], lg);
+    }
+
+    public String getCategorie(int i) { return valeur(colonnes.dictCategories, colonnes.categories[i]); }
+    public double getPrix(int i) { return colonnes.prix[i]; }
+    public int getQuantite(int i) { return colonnes.quantites[i]; }
+    public String getFournisseur(int i) { return valeur(colonnes.dictFournisseurs, colonnes.fournisseurs[i]); }
+
+    /** Le nom contient-il la requête (déjà en minuscules) ? Lu dans les colonnes, sans allouer. */
+    public boolean nomContient(int i, String requeteMinuscule) {
+        int lg = colonnes.longueursNoms[i], m = requeteMinuscule.length();
+        char[] a = colonnes.noms;
+        for (int j = debutsNoms[i], fin = debutsNoms[i] + lg - m; j <= fin; j++) {
+            int k = 0;
+            while (k < m && Character.toLowerCase(a[j + k]) == requeteMinuscule.charAt(k)) k++;
+            if (k == m) return true;
+        }
+        return false;
+    }
+
+    /** Identifiants de dictionnaire : utiles pour filtrer une colonne sans comparer de chaînes. */
+    int idCategorie(int i) { return colonnes.categories[i]; }
+    int idFournisseur(int i) { return colonnes.fournisseurs[i]; }
+    String[] dictionnaireCategories() { return colonnes.dictCategories; }
+    String[] dictionnaireFournisseurs() { return colonnes.dictFournisseurs; }
+
+    /** Somme prix × quantité. */
+    public double valeurTotale() {
+        double total = 0;
+        for (int i = 0; i < colonnes.taille; i++) total += colonnes.prix[i] * colonnes.quantites[i];
+        return total;
+    }
+
+    private static String valeur(String[] dictionnaire, int id) {
+        return id < 0 ? null : dictionnaire[id];
+    }
+}
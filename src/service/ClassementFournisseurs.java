@@ -0,0 +1,201 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.*;
+
+/**
+ * Classement des fournisseurs par quantité totale, maintenu à chaque changement
+ * de quantite/fournisseur. Arbre d'ordre statistique (treap augmenté des tailles
+ * de sous-arbres) : top K en O(K + log n), rang d'un fournisseur en O(log n).
+ */
+public class ClassementFournisseurs extends ObservateurCatalogue {
+
+    /** Position d'un fournisseur dans le classement (nœud de l'arbre). */
+    public static final class Entree {
+        private final String fournisseur;
+        private long quantite;
+        private int nbProduits;
+
+        private final int priorite;
+        private Entree gauche, droite;
+        private int taille = 1;
+
+        private Entree(String fournisseur, int priorite) {
+            this.fournisseur = fournisseur;
+            this.priorite = priorite;
+        }
+
+        public String getFournisseur() { return fournisseur; }
+        public long getQuantite() { return quantite; }
+        public int getNbProduits() { return nbProduits; }
+    }
+
+    private final Map<String, Entree> parFournisseur = new HashMap<>();
+    private final Random aleatoire = new Random();
+    private Entree racine;
+    private Entree coupeGauche, coupeDroite;
+
+    public ClassementFournisseurs(StockColonnes produits) {
+        surveiller(produits);
+    }
+
+    // ---------------- Deltas
+    @Override protected void produitAjoute(Produit p) {
+        ajuster(p.getFournisseur(), p.getQuantite(), 1);
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        ajuster(p.getFournisseur(), -p.getQuantite(), -1);
+    }
+
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        ajuster(p.getFournisseur(), nouvelle - ancienne, 0);
+    }
+
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) {
+        ajuster(ancien, -p.getQuantite(), -1);
+        ajuster(nouveau, p.getQuantite(), 1);
+    }
+
+    /** Retire l'entrée de l'arbre, applique le delta et la réinsère à sa nouvelle place. */
+    private void ajuster(String fournisseur, long deltaQuantite, int deltaProduits) {
+        String cle = fournisseur == null ? "" : fournisseur;
+        Entree e = parFournisseur.get(cle);
+        if (e == null) {
+            e = new Entree(cle, aleatoire.nextInt());
+            parFournisseur.put(cle, e);
+        } else {
+            if (deltaQuantite == 0 && deltaProduits == 0) return;
+            racine = supprimer(racine, e);
+        }
+        e.quantite += deltaQuantite;
+        e.nbProduits += deltaProduits;
+        if (e.nbProduits <= 0) {
+            parFournisseur.remove(cle);
+            return;
+        }
+        e.gauche = e.droite = null;
+        e.taille = 1;
+        racine = inserer(racine, e);
+    }
+
+    // ---------------- Requêtes
+    /** Les k premiers fournisseurs (quantité décroissante), parcours infixe arrêté après k nœuds. */
+    public List<Entree> top(int k) {
+        List<Entree> res = new ArrayList<>(Math.min(k, taille(racine)));
+        Deque<Entree> pile = new ArrayDeque<>();
+        Entree n = racine;
+        while ((n != null || !pile.isEmpty()) && res.size() < k) {
+            while (n != null) { pile.push(n); n = n.gauche; }
+            n = pile.pop();
+            res.add(n);
+            n = n.droite;
+        }
+        return res;
+    }
+
+    /** Rang (0 = premier) d'un fournisseur, ou -1 s'il est inconnu. */
+    public int rang(String fournisseur) {
+        Entree cible = parFournisseur.get(fournisseur == null ? "" : fournisseur);
+        if (cible == null) return -1;
+        int rang = 0;
+        Entree n = racine;
+        while (n != null) {
+            int c = comparer(cible, n);
+            if (c == 0) return rang + taille(n.gauche);
+            if (c < 0) n = n.gauche;
+            else { rang += taille(n.gauche) + 1; n = n.droite; }
+        }
+        return -1;
+    }
+
+    /** i-ème fournisseur du classement en O(log n). */
+    public Entree get(int index) {
+        Entree n = racine;
+        while (n != null) {
+            int g = taille(n.gauche);
+            if (index == g) return n;
+            if (index < g) n = n.gauche;
+            else { index -= g + 1; n = n.droite; }
+        }
+        throw new IndexOutOfBoundsException(index);
+    }
+
+    public int size() { return taille(racine); }
+
+    /** Vue ordonnée complète, non matérialisée (chaque accès descend l'arbre). */
+    public List<Entree> vue() {
+        return new AbstractList<>() {
+            @Override public Entree get(int index) { return ClassementFournisseurs.this.get(index); }
+            @Override public int size() { return ClassementFournisseurs.this.size(); }
+            @Override public Iterator<Entree> iterator() { return top(Integer.MAX_VALUE).iterator(); }
+        };
+    }
+
+    // ---------------- Treap
+    /** Quantité décroissante, puis nom croissant pour un ordre total. */
+    private static int comparer(Entree a, Entree b) {
+        int c = Long.compare(b.quantite, a.quantite);
+        return c != 0 ? c : a.fournisseur.compareTo(b.fournisseur);
+    }
+
+    private static int taille(Entree n) { return n == null ? 0 : n.taille; }
+
+    private static void maj(Entree n) { n.taille = 1 + taille(n.gauche) + taille(n.droite); }
+
+    private Entree inserer(Entree t, Entree n) {
+        if (t == null) return n;
+        if (n.priorite > t.priorite) {
+            couper(t, n);
+            n.gauche = coupeGauche;
+            n.droite = coupeDroite;
+            maj(n);
+            return n;
+        }
+        if (comparer(n, t) < 0) t.gauche = inserer(t.gauche, n);
+        else t.droite = inserer(t.droite, n);
+        maj(t);
+        return t;
+    }
+
+    private Entree supprimer(Entree t, Entree n) {
+        if (t == null) return null;
+        int c = comparer(n, t);
+        if (c == 0) return fusionner(t.gauche, t.droite);
+        if (c < 0) t.gauche = supprimer(t.gauche, n);
+        else t.droite = supprimer(t.droite, n);
+        maj(t);
+        return t;
+    }
+
+    /** Sépare t en (clés < pivot) -> coupeGauche et (clés >= pivot) -> coupeDroite. */
+    private void couper(Entree t, Entree pivot) {
+        if (t == null) { coupeGauche = coupeDroite = null; return; }
+        if (comparer(t, pivot) < 0) {
+            couper(t.droite, pivot);
+            t.droite = coupeGauche;
+            maj(t);
+            coupeGauche = t;
+        } else {
+            couper(t.gauche, pivot);
+            t.gauche = coupeDroite;
+            maj(t);
+            coupeDroite = t;
+        }
+    }
+
+    private static Entree fusionner(Entree g, Entree d) {
+        if (g == null) return d;
+        if (d == null) return g;
+        if (g.priorite > d.priorite) {
+            g.droite = fusionner(g.droite, d);
+            maj(g);
+            return g;
+        }
+        d.gauche = fusionner(g, d.gauche);
+        maj(d);
+        return d;
+    }
+}
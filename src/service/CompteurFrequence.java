@@ -0,0 +1,61 @@
+package service;
+
+import java.util.*;
+
+/**
+ * Compteur d'occurrences avec accès O(1) à la clé la plus fréquente.
+ * Les clés sont rangées par "seaux" de même fréquence : un incrément/décrément
+ * ne déplace une clé que d'un seau, et le maximum ne bouge que d'une unité.
+ */
+public class CompteurFrequence {
+
+    private final Map<String, Integer> comptes = new LinkedHashMap<>();
+    private final Map<Integer, Set<String>> seaux = new HashMap<>();
+    private int max;
+
+    public void incrementer(String cle) {
+        int ancien = comptes.getOrDefault(cle, 0);
+        deplacer(cle, ancien, ancien + 1);
+        if (ancien + 1 > max) max = ancien + 1;
+    }
+
+    public void decrementer(String cle) {
+        Integer ancien = comptes.get(cle);
+        if (ancien == null) return;
+        deplacer(cle, ancien, ancien - 1);
+        // La clé est descendue d'un seau : si le seau max est vide, le nouveau max est juste en dessous.
+        if (ancien == max && !seaux.containsKey(max)) max--;
+    }
+
+    private void deplacer(String cle, int de, int vers) {
+        if (de > 0) {
+            Set<String> s = seaux.get(de);
+            if (s.size() == 1 && vers > 0 && !seaux.containsKey(vers)) {
+                // Clé seule dans son seau : on renomme le seau au lieu d'en recréer un
+                seaux.remove(de);
+                seaux.put(vers, s);
+                comptes.put(cle, vers);
+                return;
+            }
+            s.remove(cle);
+            if (s.isEmpty()) seaux.remove(de);
+        }
+        if (vers > 0) {
+            comptes.put(cle, vers);
+            seaux.computeIfAbsent(vers, k -> new LinkedHashSet<>()).add(cle);
+        } else {
+            comptes.remove(cle);
+        }
+    }
+
+    /** Clé la plus fréquente, ou "-" si vide. */
+    public String plusFrequente() {
+        Set<String> s = seaux.get(max);
+        return s == null || s.isEmpty() ? "-" : s.iterator().next();
+    }
+
+    public int compte(String cle) { return comptes.getOrDefault(cle, 0); }
+
+    /** Clés distinctes, dans l'ordre de première apparition. */
+    public Set<String> cles() { return Collections.unmodifiableSet(comptes.keySet()); }
+}
@@ -0,0 +1,111 @@
+package service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Critères combinés de l'écran Produits : recherche texte, catégorie (sous-catégories comprises),
+ * ensemble de fournisseurs (l'un ou l'autre), fourchettes de prix et de quantité (bornes incluses).
+ * Un critère null ou vide ne filtre pas. Les critères se cumulent.
+ */
+public final class CritereFiltres {
+
+    public static final CritereFiltres AUCUN = new CritereFiltres(null, null, Set.of(), null, null, null, null);
+
+    private static final char SEPARATEUR = '\t';
+    private static final char SEPARATEUR_LISTE = '\u001F';
+
+    private final String recherche, categorie;
+    private final Set<String> fournisseurs;
+    private final Double prixMin, prixMax;
+    private final Integer quantiteMin, quantiteMax;
+
+    public CritereFiltres(String recherche, String categorie, Set<String> fournisseurs,
+                          Double prixMin, Double prixMax, Integer quantiteMin, Integer quantiteMax) {
+        this.recherche = recherche == null || recherche.isBlank() ? null : recherche;
+        this.categorie = categorie == null || categorie.isBlank() ? null : categorie;
+        this.fournisseurs = fournisseurs == null ? Set.of() : Collections.unmodifiableSet(new LinkedHashSet<>(fournisseurs));
+        this.prixMin = prixMin;
+        this.prixMax = prixMax;
+        this.quantiteMin = quantiteMin;
+        this.quantiteMax = quantiteMax;
+    }
+
+    public String getRecherche() { return recherche; }
+    public String getCategorie() { return categorie; }
+    /** Vide : tous les fournisseurs. */
+    public Set<String> getFournisseurs() { return fournisseurs; }
+    public Double getPrixMin() { return prixMin; }
+    public Double getPrixMax() { return prixMax; }
+    public Integer getQuantiteMin() { return quantiteMin; }
+    public Integer getQuantiteMax() { return quantiteMax; }
+
+    public boolean filtrePrix() { return prixMin != null || prixMax != null; }
+    public boolean filtreQuantite() { return quantiteMin != null || quantiteMax != null; }
+
+    /** Vrai si aucun critère n'est posé (tout le catalogue). */
+    public boolean estVide() {
+        return recherche == null && categorie == null && fournisseurs.isEmpty() && !filtrePrix() && !filtreQuantite();
+    }
+
+    /** Mêmes critères (ordre des fournisseurs indifférent). */
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CritereFiltres)) return false;
+        CritereFiltres c = (CritereFiltres) o;
+        return Objects.equals(recherche, c.recherche) && Objects.equals(categorie, c.categorie)
+                && fournisseurs.equals(c.fournisseurs) && Objects.equals(prixMin, c.prixMin)
+                && Objects.equals(prixMax, c.prixMax) && Objects.equals(quantiteMin, c.quantiteMin)
+                && Objects.equals(quantiteMax, c.quantiteMax);
+    }
+
+    @Override public int hashCode() {
+        return Objects.hash(recherche, categorie, fournisseurs, prixMin, prixMax, quantiteMin, quantiteMax);
+    }
+
+    // ---------------- Forme enregistrée (une ligne, voir FiltresEnregistres)
+
+    /** Champs séparés par des tabulations, fournisseurs par U+001F ; champ vide : pas de critère. */
+    String encoder() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(texte(recherche)).append(SEPARATEUR).append(texte(categorie)).append(SEPARATEUR);
+        boolean premier = true;
+        for (String f : fournisseurs) {
+            if (!premier) sb.append(SEPARATEUR_LISTE);
+            sb.append(texte(f));
+            premier = false;
+        }
+        sb.append(SEPARATEUR).append(nombre(prixMin)).append(SEPARATEUR).append(nombre(prixMax))
+          .append(SEPARATEUR).append(nombre(quantiteMin)).append(SEPARATEUR).append(nombre(quantiteMax));
+        return sb.toString();
+    }
+
+    /** @throws IllegalArgumentException ligne mal formée */
+    static CritereFiltres decoder(String ligne) {
+        String[] champs = ligne.split(String.valueOf(SEPARATEUR), -1);
+        if (champs.length != 7) throw new IllegalArgumentException("7 champs attendus, " + champs.length + " lus");
+        try {
+            Set<String> fournisseurs = champs[2].isEmpty() ? Set.of()
+                    : new LinkedHashSet<>(Arrays.asList(champs[2].split(String.valueOf(SEPARATEUR_LISTE))));
+            return new CritereFiltres(champs[0], champs[1], fournisseurs,
+                    champs[3].isEmpty() ? null : Double.valueOf(champs[3]),
+                    champs[4].isEmpty() ? null : Double.valueOf(champs[4]),
+                    champs[5].isEmpty() ? null : Integer.valueOf(champs[5]),
+                    champs[6].isEmpty() ? null : Integer.valueOf(champs[6]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("borne invalide : " + e.getMessage());
+        }
+    }
+
+    private static String texte(String s) {
+        if (s == null) return "";
+        return s.replace(SEPARATEUR, ' ').replace(SEPARATEUR_LISTE, ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String nombre(Number n) {
+        return n == null ? "" : n.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package service;
+
+import util.FormateurNombres;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.BooleanSupplier;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Export en flux d'une vue du catalogue (ex. la liste filtrée/triée de l'écran Produits) en CSV
+ * ou JSON : la vue est une suite d'identifiants lue dans une copie figée ({@link CatalogueFige}),
+ * jamais dans le stock vivant, donc sans concurrence avec les écritures. Chaque ligne est écrite
+ * depuis les colonnes dans un tampon réutilisé, encodée en UTF-8 dans un ByteBuffer de 256 Ko
+ * vidé sur un FileChannel. Mémoire constante, quelle que soit la taille de la vue.
+ *
+ * Le fichier est écrit à côté (".part") puis renommé : une annulation ou une erreur ne laisse
+ * jamais de fichier partiel.
+ */
+public final class ExportCatalogue {
+
+    public enum Format { CSV, JSON }
+
+    /** Avancement, appelé depuis le thread d'export. */
+    public interface Progression {
+        void avancer(long lignesEcrites, long total);
+    }
+
+    private static final int TAILLE_TAMPON = 256 << 10;
+    private static final int PAS_PROGRESSION = 16_384;
+    private static final int PAS_ANNULATION = 1_024;
+    private static final char SEPARATEUR = ';';
+
+    private final Format format;
+    private final ByteBuffer tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+    private final StringBuilder ligne = new StringBuilder(256);
+    private FileChannel canal;
+
+    private ExportCatalogue(Format format) {
+        this.format = format;
+    }
+
+    /** Format déduit de l'extension (.json, sinon CSV). */
+    public static Format formatPour(Path fichier) {
+        return fichier.getFileName().toString().toLowerCase().endsWith(".json") ? Format.JSON : Format.CSV;
+    }
+
+    /**
+     * Écrit la vue dans le fichier ; bloque le thread appelant (à lancer hors thread FX).
+     * @param ids identifiants des produits de la vue, dans l'ordre, relevés avec catalogue
+     * @param annule consulté régulièrement : true interrompt l'export (InterruptedIOException)
+     * @return nombre de lignes écrites
+     */
+    public static long exporter(CatalogueFige catalogue, int[] ids, Path fichier, Format format,
+                                Progression progression, BooleanSupplier annule) throws IOException {
+        Path partiel = fichier.resolveSibling(fichier.getFileName() + ".part");
+        ExportCatalogue export = new ExportCatalogue(format);
+        long n;
+        try (FileChannel canal = FileChannel.open(partiel, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            export.canal = canal;
+            n = export.ecrire(catalogue, ids, progression, annule);
+            canal.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partiel);
+            throw e;
+        }
+        Files.move(partiel, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return n;
+    }
+
+    private long ecrire(CatalogueFige c, int[] ids, Progression progression, BooleanSupplier annule) throws IOException {
+        int total = ids.length, ecrites = 0;
+        debut();
+        for (int k = 0; k < total; k++) {
+            if (k % PAS_ANNULATION == 0 && annule != null && annule.getAsBoolean()) {
+                throw new InterruptedIOException("Export annulé");
+            }
+            int i = c.indexDe(ids[k]);
+            if (i < 0) continue; // absent de la copie (relevé après elle)
+            ligne.setLength(0);
+            if (format == Format.CSV) ligneCsv(c, i); else ligneJson(c, i, ecrites == 0);
+            encoder(ligne);
+            ecrites++;
+            if (progression != null && (k + 1) % PAS_PROGRESSION == 0) progression.avancer(k + 1, total);
+        }
+        ligne.setLength(0);
+        if (format == Format.JSON) ligne.append(ecrites == 0 ? "]\n" : "\n]\n");
+        encoder(ligne);
+        vider();
+        if (progression != null) progression.avancer(total, total);
+        return ecrites;
+    }
+
+    private void debut() throws IOException {
+        ligne.setLength(0);
+        if (format == Format.CSV) {
+            ligne.append('\uFEFF'); // BOM : accents lus correctement par les tableurs
+            ligne.append("Nom;Catégorie;Prix (Ar);Quantité;Fournisseur;Valeur (Ar)\r\n");
+        } else {
+            ligne.append('[');
+        }
+        encoder(ligne);
+    }
+
+    // ---------------- Lignes
+    /** Montants rendus comme à l'écran ("1 500 000"), sans suffixe pour rester exploitables. */
+    private void ligneCsv(CatalogueFige c, int i) {
+        champCsv(c.getNom(i));
+        ligne.append(SEPARATEUR);
+        champCsv(c.getCategorie(i));
+        ligne.append(SEPARATEUR);
+        FormateurNombres.ajouterMontant(ligne, c.getPrix(i));
+        ligne.append(SEPARATEUR).append(c.getQuantite(i)).append(SEPARATEUR);
+        champCsv(c.getFournisseur(i));
+        ligne.append(SEPARATEUR);
+        FormateurNombres.ajouterMontant(ligne, c.getPrix(i) * c.getQuantite(i));
+        ligne.append("\r\n");
+    }
+
+    private void champCsv(String s) {
+        if (s == null) return;
+        boolean guillemets = false;
+        for (int i = 0; i < s.length() && !guillemets; i++) {
+            char c = s.charAt(i);
+            guillemets = c == SEPARATEUR || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!guillemets) {
+            ligne.append(s);
+            return;
+        }
+        ligne.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') ligne.append('"');
+            ligne.append(c);
+        }
+        ligne.append('"');
+    }
+
+    /** JSON : nombres bruts (prix exact), plus les montants tels qu'affichés. */
+    private void ligneJson(CatalogueFige c, int i, boolean premier) {
+        ligne.append(premier ? "\n" : ",\n");
+        ligne.append("{\"nom\":");
+        texteJson(c.getNom(i));
+        ligne.append(",\"categorie\":");
+        texteJson(c.getCategorie(i));
+        ligne.append(",\"prix\":").append(c.getPrix(i));
+        ligne.append(",\"quantite\":").append(c.getQuantite(i));
+        ligne.append(",\"fournisseur\":");
+        texteJson(c.getFournisseur(i));
+        ligne.append(",\"prixAffiche\":\"");
+        FormateurNombres.ajouterMontant(ligne, c.getPrix(i)).append(" Ar\"");
+        ligne.append(",\"valeurAffichee\":\"");
+        FormateurNombres.ajouterMontant(ligne, c.getPrix(i) * c.getQuantite(i)).append(" Ar\"}");
+    }
+
+    private void texteJson(String s) {
+        ajouterTexteJson(ligne, s);
+    }
+
+    /** Chaîne JSON échappée (null : littéral null) ; partagé avec l'API HTTP. */
+    static StringBuilder ajouterTexteJson(StringBuilder sb, String s) {
+        if (s == null) return sb.append("null");
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    // ---------------- Encodage UTF-8 direct dans le tampon
+    private void encoder(CharSequence s) throws IOException {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            if (tampon.remaining() < 4) vider();
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                tampon.put((byte) c);
+            } else if (c < 0x800) {
+                tampon.put((byte) (0xC0 | (c >> 6)));
+                tampon.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                tampon.put((byte) (0xF0 | (cp >> 18)));
+                tampon.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                tampon.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                tampon.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                tampon.put((byte) '?'); // demi-paire isolée
+            } else {
+                tampon.put((byte) (0xE0 | (c >> 12)));
+                tampon.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                tampon.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private void vider() throws IOException {
+        tampon.flip();
+        while (tampon.hasRemaining()) canal.write(tampon);
+        tampon.clear();
+    }
+}
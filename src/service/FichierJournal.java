@@ -0,0 +1,93 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Format commun des journaux en ajout seul : chaque enregistrement est
+ * [int longueur du corps][int CRC32C du corps][corps]. Textes : int longueur (-1 : null) + chars.
+ */
+final class FichierJournal {
+
+    static final int ENTETE = 8;
+
+    private FichierJournal() {}
+
+    /** Tampon prêt à recevoir un corps de la taille donnée. */
+    static ByteBuffer nouveau(int tailleCorps) {
+        ByteBuffer b = ByteBuffer.allocate(ENTETE + tailleCorps);
+        b.position(ENTETE);
+        return b;
+    }
+
+    /** Termine l'enregistrement (longueur + CRC) ; le tampon est prêt à être écrit. */
+    static ByteBuffer sceller(ByteBuffer b) {
+        b.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(b.duplicate().position(ENTETE));
+        b.putInt(0, b.limit() - ENTETE);
+        b.putInt(4, (int) crc.getValue());
+        return b;
+    }
+
+    /**
+     * Relit les enregistrements valides dans l'ordre. Une fin tronquée ou corrompue (arrêt
+     * brutal pendant une écriture) est coupée : le journal repart du dernier enregistrement complet.
+     */
+    static void relire(Path fichier, Consumer<ByteBuffer> lecteur) throws IOException {
+        if (!Files.exists(fichier)) return;
+        try (FileChannel ch = FileChannel.open(fichier, READ, WRITE)) {
+            long taille = ch.size();
+            if (taille == 0) return;
+            if (taille > Integer.MAX_VALUE) throw new IOException("Journal trop volumineux : " + fichier);
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, taille);
+            int valide = 0;
+            CRC32C crc = new CRC32C();
+            while (b.remaining() >= ENTETE) {
+                int debut = b.position();
+                int lg = b.getInt();
+                int somme = b.getInt();
+                if (lg <= 0 || lg > b.remaining()) break;
+                ByteBuffer corps = b.slice(debut + ENTETE, lg);
+                crc.reset();
+                crc.update(corps.duplicate());
+                if ((int) crc.getValue() != somme) break;
+                lecteur.accept(corps);
+                b.position(debut + ENTETE + lg);
+                valide = b.position();
+            }
+            if (valide < taille) ch.truncate(valide);
+        }
+    }
+
+    // ---------------- Textes
+    static int taille(String s) {
+        return 4 + (s == null ? 0 : 2 * s.length());
+    }
+
+    static void ecrireTexte(ByteBuffer b, String s) {
+        if (s == null) {
+            b.putInt(-1);
+            return;
+        }
+        b.putInt(s.length());
+        for (int i = 0; i < s.length(); i++) b.putChar(s.charAt(i));
+    }
+
+    static String lireTexte(ByteBuffer b) {
+        int lg = b.getInt();
+        if (lg < 0) return null;
+        char[] c = new char[lg];
+        for (int i = 0; i < lg; i++) c[i] = b.getChar();
+        return new String(c);
+    }
+}
@@ -0,0 +1,73 @@
+package service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filtres nommés de l'écran Produits, enregistrés dans un fichier texte du dossier des données :
+ * une ligne par filtre, « nom &lt;tab&gt; critères » (voir {@link CritereFiltres#encoder()}).
+ * Le fichier est réécrit en entier (copie puis renommage) à chaque changement.
+ */
+public final class FiltresEnregistres {
+
+    private final Path fichier;
+    private final Map<String, CritereFiltres> filtres = new LinkedHashMap<>();
+
+    /** Charge le fichier s'il existe ; une ligne illisible est ignorée (signalée sur la sortie d'erreur). */
+    public FiltresEnregistres(Path fichier) {
+        this.fichier = fichier;
+        if (!Files.exists(fichier)) return;
+        try {
+            int numero = 0;
+            for (String ligne : Files.readAllLines(fichier, StandardCharsets.UTF_8)) {
+                numero++;
+                int tab = ligne.indexOf('\t');
+                if (ligne.isBlank() || tab <= 0) continue;
+                try {
+                    filtres.put(ligne.substring(0, tab), CritereFiltres.decoder(ligne.substring(tab + 1)));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Filtre enregistré ignoré (" + fichier.getFileName() + ", ligne " + numero + ") : " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Filtres enregistrés illisibles : " + e.getMessage());
+        }
+    }
+
+    /** Noms, dans l'ordre d'enregistrement. */
+    public List<String> noms() {
+        return new ArrayList<>(filtres.keySet());
+    }
+
+    public CritereFiltres obtenir(String nom) {
+        return filtres.get(nom);
+    }
+
+    /** Ajoute ou remplace le filtre nom. */
+    public void enregistrer(String nom, CritereFiltres critere) throws IOException {
+        String cle = nom.strip().replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        if (cle.isEmpty()) throw new IllegalArgumentException("Nom de filtre vide");
+        filtres.put(cle, critere);
+        ecrire();
+    }
+
+    public void supprimer(String nom) throws IOException {
+        if (filtres.remove(nom) != null) ecrire();
+    }
+
+    private void ecrire() throws IOException {
+        List<String> lignes = new ArrayList<>(filtres.size());
+        for (Map.Entry<String, CritereFiltres> e : filtres.entrySet()) lignes.add(e.getKey() + '\t' + e.getValue().encoder());
+        Files.createDirectories(fichier.toAbsolutePath().getParent());
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        Files.write(temporaire, lignes, StandardCharsets.UTF_8);
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,31 @@
+package service;
+
+import model.Produit;
+
+import java.util.function.Predicate;
+
+/**
+ * Critères de filtrage du catalogue, partagés par l'écran Produits et les benchmarks.
+ */
+public final class FiltresProduits {
+
+    private FiltresProduits() {}
+
+    /**
+     * Filtre par catégorie de la taxonomie, sous-catégories comprises (null ou vide = tout).
+     * Les anciens enregistrements dont la « catégorie » est un nom de produit (Sable fin, Ciment…)
+     * correspondent à la sous-catégorie du même nom, donc à sa catégorie parente.
+     * Sans index : la catégorie de chaque produit est résolue à chaque test
+     * (voir IndexFiltres pour la version indexée, utilisée par ProduitService.filtre).
+     */
+    public static Predicate<Produit> categorie(String catFiltre) {
+        if (catFiltre == null || catFiltre.isEmpty()) return p -> true;
+        Taxonomie taxonomie = Taxonomie.standard();
+        int c = taxonomie.resoudre(catFiltre);
+        if (c < 0) return p -> false;
+        return p -> {
+            int n = taxonomie.resoudre(p.getCategorie());
+            return n >= 0 && taxonomie.contient(c, n);
+        };
+    }
+}
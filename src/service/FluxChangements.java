@@ -0,0 +1,230 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flux de changements du catalogue (capture des modifications) pour la réplication entre dépôts :
+ * chaque ajout, retrait et modification de champ devient un {@link Changement} numéroté
+ * (séquence continue), horodaté et porté par une clé de produit propre au dépôt.
+ * Les derniers changements sont gardés en mémoire dans un anneau ; un lecteur reprend à la
+ * séquence qui suit la dernière reçue, ou repart d'un instantané s'il est trop en retard
+ * ou si le dépôt a redémarré (nouvelle époque : séquences et clés repartent de zéro).
+ * La capture se fait sur le thread de publication ; la lecture depuis n'importe quel thread.
+ */
+public final class FluxChangements extends ObservateurCatalogue {
+
+    static final byte AJOUT = 1, RETRAIT = 2, NOM = 3, CATEGORIE = 4, PRIX = 5, QUANTITE = 6, FOURNISSEUR = 7;
+
+    /** Changements gardés pour la reprise (puissance de 2) : au-delà, le lecteur repart d'un instantané. */
+    static final int RETENTION = 1 << 17;
+
+    /** Changement immuable : seuls les champs de son type sont renseignés (tous pour un ajout). */
+    public static final class Changement {
+        final byte type;
+        final long cle, horodatage;
+        final String nom, categorie, fournisseur;
+        final double prix;
+        final int quantite;
+
+        Changement(byte type, long cle, long horodatage, String nom, String categorie, double prix, int quantite, String fournisseur) {
+            this.type = type;
+            this.cle = cle;
+            this.horodatage = horodatage;
+            this.nom = nom;
+            this.categorie = categorie;
+            this.prix = prix;
+            this.quantite = quantite;
+            this.fournisseur = fournisseur;
+        }
+
+        static Changement ajout(long cle, long horodatage, Produit p) {
+            return new Changement(AJOUT, cle, horodatage, p.getNom(), p.getCategorie(), p.getPrix(), p.getQuantite(), p.getFournisseur());
+        }
+    }
+
+    /** Changements lus : suite continue après une séquence, ou instantané complet (voir {@link #lire}). */
+    static final class Lecture {
+        final boolean instantane;
+        final long dernierSeq;
+        final List<Changement> changements;
+
+        Lecture(boolean instantane, long dernierSeq, List<Changement> changements) {
+            this.instantane = instantane;
+            this.dernierSeq = dernierSeq;
+            this.changements = changements;
+        }
+    }
+
+    private final String depot;
+    /** Instant de démarrage : distingue les séquences et clés d'un redémarrage à l'autre. */
+    private final long epoque = System.currentTimeMillis();
+
+    // Clé et horodatage du dernier changement, par Produit.id (thread de publication)
+    private long[] cleParId = new long[64];
+    private long[] horodatageParId = new long[64];
+    private long prochaineCle;
+    private long dernierHorodatage;
+
+    private final Changement[] anneau = new Changement[RETENTION];
+    private long dernierSeq; // protégé par anneau
+
+    public FluxChangements(StockColonnes produits, String depot) {
+        this.depot = depot;
+        surveiller(produits);
+    }
+
+    public String getDepot() { return depot; }
+
+    public long getEpoque() { return epoque; }
+
+    public long getDernierSeq() {
+        synchronized (anneau) {
+            return dernierSeq;
+        }
+    }
+
+    // ---------------- Capture (thread de publication)
+    @Override protected void produitAjoute(Produit p) {
+        long cle = ++prochaineCle;
+        long h = horodater();
+        attribuer(p, cle, h);
+        publier(Changement.ajout(cle, h, p));
+    }
+
+    @Override protected void produitsAjoutes(List<? extends Produit> lot) {
+        List<Changement> changements = new ArrayList<>(lot.size());
+        for (Produit p : lot) {
+            long cle = ++prochaineCle;
+            long h = horodater();
+            attribuer(p, cle, h);
+            changements.add(Changement.ajout(cle, h, p));
+        }
+        publier(changements);
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        long cle = cle(p);
+        if (cle == 0) return;
+        cleParId[p.getId()] = 0;
+        publier(new Changement(RETRAIT, cle, horodater(), null, null, 0, 0, null));
+    }
+
+    @Override protected void produitsRetires(List<? extends Produit> lot) {
+        List<Changement> changements = new ArrayList<>(lot.size());
+        for (Produit p : lot) {
+            long cle = cle(p);
+            if (cle == 0) continue;
+            cleParId[p.getId()] = 0;
+            changements.add(new Changement(RETRAIT, cle, horodater(), null, null, 0, 0, null));
+        }
+        publier(changements);
+    }
+
+    @Override protected void nomModifie(Produit p, String ancien, String nouveau) {
+        modifie(p, NOM, nouveau, null, 0, 0, null);
+    }
+
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) {
+        modifie(p, CATEGORIE, null, nouvelle, 0, 0, null);
+    }
+
+    @Override protected void prixModifie(Produit p, double ancien, double nouveau) {
+        modifie(p, PRIX, null, null, nouveau, 0, null);
+    }
+
+    // Valeur absolue (pas le delta) : rejouer le changement deux fois ne change rien
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        modifie(p, QUANTITE, null, null, 0, nouvelle, null);
+    }
+
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) {
+        modifie(p, FOURNISSEUR, null, null, 0, 0, nouveau);
+    }
+
+    private void modifie(Produit p, byte type, String nom, String categorie, double prix, int quantite, String fournisseur) {
+        long cle = cle(p);
+        if (cle == 0) return;
+        long h = horodater();
+        horodatageParId[p.getId()] = h;
+        publier(new Changement(type, cle, h, nom, categorie, prix, quantite, fournisseur));
+    }
+
+    /** Horloge du dépôt : millisecondes × 1000, strictement croissante même dans la même milliseconde. */
+    private long horodater() {
+        dernierHorodatage = Math.max(System.currentTimeMillis() * 1000, dernierHorodatage + 1);
+        return dernierHorodatage;
+    }
+
+    private long cle(Produit p) {
+        int id = p.getId();
+        return id < cleParId.length ? cleParId[id] : 0;
+    }
+
+    private void attribuer(Produit p, long cle, long horodatage) {
+        int id = p.getId();
+        if (id >= cleParId.length) {
+            int n = Math.max(id + 1, cleParId.length * 2);
+            cleParId = Arrays.copyOf(cleParId, n);
+            horodatageParId = Arrays.copyOf(horodatageParId, n);
+        }
+        cleParId[id] = cle;
+        horodatageParId[id] = horodatage;
+    }
+
+    private void publier(Changement c) {
+        synchronized (anneau) {
+            anneau[(int) (++dernierSeq & (RETENTION - 1))] = c;
+            anneau.notifyAll();
+        }
+    }
+
+    private void publier(List<Changement> changements) {
+        if (changements.isEmpty()) return;
+        synchronized (anneau) {
+            for (Changement c : changements) anneau[(int) (++dernierSeq & (RETENTION - 1))] = c;
+            anneau.notifyAll();
+        }
+    }
+
+    // ---------------- Lecture (tout thread)
+
+    /**
+     * Au plus max changements qui suivent la séquence depuis, en attendant au plus attenteMs
+     * qu'il y en ait. Null si le lecteur doit repartir d'un instantané : autre époque, ou
+     * changements suivants déjà sortis de l'anneau. Liste vide : rien de nouveau.
+     */
+    Lecture lire(long epoqueLecteur, long depuis, int max, long attenteMs) throws InterruptedException {
+        synchronized (anneau) {
+            if (epoqueLecteur != epoque || depuis > dernierSeq || depuis < dernierSeq - RETENTION) return null;
+            long limite = System.currentTimeMillis() + attenteMs;
+            while (depuis == dernierSeq) {
+                long reste = limite - System.currentTimeMillis();
+                if (reste <= 0) return new Lecture(false, depuis, List.of());
+                anneau.wait(reste);
+            }
+            if (depuis < dernierSeq - RETENTION) return null; // dépassé pendant l'attente
+            int n = (int) Math.min(max, dernierSeq - depuis);
+            List<Changement> changements = new ArrayList<>(n);
+            for (long s = depuis + 1; s <= depuis + n; s++) changements.add(anneau[(int) (s & (RETENTION - 1))]);
+            return new Lecture(false, depuis + n, changements);
+        }
+    }
+
+    /**
+     * Catalogue courant sous forme d'ajouts, avec la séquence qu'il couvre : un lecteur qui
+     * l'applique reprend ensuite au changement suivant. À appeler sur le thread de publication.
+     */
+    Lecture instantane(StockColonnes produits) {
+        List<Changement> changements = new ArrayList<>(produits.size());
+        for (Produit p : produits) {
+            long cle = cle(p);
+            if (cle != 0) changements.add(Changement.ajout(cle, horodatageParId[p.getId()], p));
+        }
+        return new Lecture(true, getDernierSeq(), changements);
+    }
+}
@@ -0,0 +1,290 @@
+package service;
+
+import model.Produit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Import CSV en masse (listes de prix fournisseurs) :
+ * - lecture NIO par blocs de 4 Mo coupés sur un saut de ligne, sans charger le fichier entier ;
+ * - analyse et validation des blocs en parallèle, avec les règles du formulaire ({@link ValidationProduit}) ;
+ * - résultats rassemblés dans l'ordre du fichier, lignes rejetées rapportées avec leur numéro.
+ * Aucun produit n'est ajouté ici : l'appelant insère le lot en une seule fois
+ * ({@link ProduitService#ajouterTous}).
+ *
+ * En-tête requis (ordre libre, casse et accents ignorés) : nom, categorie, prix, quantite, unite,
+ * fournisseur. Séparateur ';' ou ',' (détecté sur l'en-tête), champs entre guillemets acceptés
+ * hors sauts de ligne. Avec ';', le prix peut utiliser la virgule décimale.
+ */
+public final class ImportCsv {
+
+    /** Avancement, appelé depuis le thread d'import (à relayer vers le thread FX par l'appelant). */
+    public interface Progression {
+        void avancer(long octetsLus, long octetsTotal, long lignesValides, long lignesRejetees);
+    }
+
+    /** Ligne rejetée (numéro dans le fichier, en-tête = 1). */
+    public static final class ErreurLigne {
+        private final long ligne;
+        private final String message;
+
+        ErreurLigne(long ligne, String message) {
+            this.ligne = ligne;
+            this.message = message;
+        }
+
+        public long getLigne() { return ligne; }
+        public String getMessage() { return message; }
+        @Override public String toString() { return "Ligne " + ligne + " : " + message; }
+    }
+
+    /** Produits valides dans l'ordre du fichier + lignes rejetées (détail limité aux premières). */
+    public static final class Resultat {
+        private final List<Produit> produits = new ArrayList<>();
+        private final List<ErreurLigne> erreurs = new ArrayList<>();
+        private long lignesRejetees;
+
+        public List<Produit> getProduits() { return produits; }
+        public List<ErreurLigne> getErreurs() { return erreurs; }
+        public long getLignesRejetees() { return lignesRejetees; }
+    }
+
+    static final int TAILLE_BLOC = 4 << 20;
+    private static final int MAX_ERREURS_DETAILLEES = 1000;
+    private static final String[] COLONNES = {"nom", "categorie", "prix", "quantite", "unite", "fournisseur"};
+    private static final int NOM = 0, CATEGORIE = 1, PRIX = 2, QUANTITE = 3, UNITE = 4, FOURNISSEUR = 5;
+
+    private ImportCsv() {}
+
+    /** Lit et valide tout le fichier ; bloque le thread appelant (à lancer hors thread FX). */
+    public static Resultat lire(Path fichier, Progression progression) throws IOException {
+        int nbThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService analyse = Executors.newFixedThreadPool(nbThreads, r -> {
+            Thread t = new Thread(r, "import-csv");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel ch = FileChannel.open(fichier)) {
+            return lire(ch, analyse, 2 * nbThreads, progression);
+        } finally {
+            analyse.shutdownNow();
+        }
+    }
+
+    private static Resultat lire(FileChannel ch, ExecutorService analyse, int maxEnVol, Progression progression) throws IOException {
+        long total = ch.size();
+        Resultat resultat = new Resultat();
+        Deque<Future<Lot>> enVol = new ArrayDeque<>();
+        Format format = null;
+
+        byte[] report = new byte[0];
+        int nbReport = 0;
+        long ligneSuivante = 1;
+        boolean fin = false;
+        while (!fin) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Import annulé");
+            byte[] bloc = new byte[nbReport + TAILLE_BLOC];
+            System.arraycopy(report, 0, bloc, 0, nbReport);
+            ByteBuffer tampon = ByteBuffer.wrap(bloc, nbReport, TAILLE_BLOC);
+            while (tampon.hasRemaining()) {
+                if (ch.read(tampon) < 0) {
+                    fin = true;
+                    break;
+                }
+            }
+            int taille = tampon.position();
+            int coupe = fin ? taille : dernierSautDeLigne(bloc, taille) + 1;
+            int debut = 0;
+
+            if (format == null && coupe > 0) {
+                // En-tête : première ligne du premier bloc (BOM UTF-8 ignoré)
+                if (taille >= 3 && (bloc[0] & 0xFF) == 0xEF && (bloc[1] & 0xFF) == 0xBB && (bloc[2] & 0xFF) == 0xBF) debut = 3;
+                int finEntete = indexSautDeLigne(bloc, debut, coupe);
+                format = Format.depuisEntete(new String(bloc, debut, finEntete - debut, StandardCharsets.UTF_8));
+                debut = Math.min(coupe, finEntete + 1);
+                ligneSuivante++;
+            }
+
+            if (coupe > debut) {
+                Format f = format;
+                long premiereLigne = ligneSuivante;
+                int d = debut;
+                long lus = ch.position();
+                enVol.add(analyse.submit(() -> Lot.analyser(f, bloc, d, coupe, premiereLigne, lus)));
+                ligneSuivante += compterSautsDeLigne(bloc, debut, coupe);
+                while (enVol.size() >= maxEnVol) rassembler(enVol.poll(), resultat, total, progression);
+            }
+            // Ligne incomplète : recopiée en tête du bloc suivant (le bloc courant appartient à l'analyse)
+            report = Arrays.copyOfRange(bloc, coupe, taille);
+            nbReport = report.length;
+        }
+        if (format == null) throw new IOException("Fichier vide : en-tête attendu");
+        while (!enVol.isEmpty()) rassembler(enVol.poll(), resultat, total, progression);
+        return resultat;
+    }
+
+    private static void rassembler(Future<Lot> f, Resultat resultat, long total, Progression progression) throws IOException {
+        Lot lot;
+        try {
+            lot = f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import annulé");
+        } catch (ExecutionException e) {
+            throw new IOException("Échec de l'analyse CSV", e.getCause());
+        }
+        resultat.produits.addAll(lot.produits);
+        resultat.lignesRejetees += lot.erreurs.size();
+        for (ErreurLigne e : lot.erreurs) {
+            if (resultat.erreurs.size() >= MAX_ERREURS_DETAILLEES) break;
+            resultat.erreurs.add(e);
+        }
+        if (progression != null) {
+            progression.avancer(lot.octetsLus, total, resultat.produits.size(), resultat.lignesRejetees);
+        }
+    }
+
+    // ---------------- Analyse d'un bloc (thread d'analyse)
+    private static final class Lot {
+        final List<Produit> produits = new ArrayList<>();
+        final List<ErreurLigne> erreurs = new ArrayList<>();
+        long octetsLus;
+
+        static Lot analyser(Format format, byte[] bloc, int debut, int fin, long premiereLigne, long octetsLus) {
+            Lot lot = new Lot();
+            lot.octetsLus = octetsLus;
+            String texte = new String(bloc, debut, fin - debut, StandardCharsets.UTF_8);
+            String[] champs = new String[format.nbColonnes];
+            long numero = premiereLigne;
+            int i = 0;
+            while (i < texte.length()) {
+                int j = texte.indexOf('\n', i);
+                if (j < 0) j = texte.length();
+                int k = j > i && texte.charAt(j - 1) == '\r' ? j - 1 : j;
+                if (!estBlanc(texte, i, k)) lot.ligne(format, texte, i, k, champs, numero);
+                i = j + 1;
+                numero++;
+            }
+            return lot;
+        }
+
+        private static boolean estBlanc(String texte, int debut, int fin) {
+            for (int i = debut; i < fin; i++) if (!Character.isWhitespace(texte.charAt(i))) return false;
+            return true;
+        }
+
+        private void ligne(Format format, String texte, int debut, int fin, String[] champs, long numero) {
+            int n = decouper(texte, debut, fin, format.separateur, champs);
+            if (n != format.nbColonnes) {
+                erreurs.add(new ErreurLigne(numero, "Nombre de colonnes incorrect (" + n + " au lieu de " + format.nbColonnes + ")"));
+                return;
+            }
+            String prix = champs[format.position[PRIX]];
+            if (format.separateur == ';' && prix != null) prix = prix.replace(',', '.');
+            ValidationProduit.Resultat r = ValidationProduit.valider(
+                    champs[format.position[NOM]], champs[format.position[CATEGORIE]], champs[format.position[UNITE]],
+                    champs[format.position[FOURNISSEUR]], prix, champs[format.position[QUANTITE]]);
+            if (r.estValide()) produits.add(r.creerProduit());
+            else erreurs.add(new ErreurLigne(numero, r.getErreur()));
+        }
+    }
+
+    /** Découpe une ligne en champs (guillemets doublés = guillemet littéral) ; renvoie le nombre de champs lus. */
+    static int decouper(String texte, int debut, int fin, char separateur, String[] champs) {
+        int n = 0;
+        int i = debut;
+        StringBuilder sb = null;
+        while (true) {
+            String champ;
+            if (i < fin && texte.charAt(i) == '"') {
+                if (sb == null) sb = new StringBuilder();
+                sb.setLength(0);
+                i++;
+                while (i < fin) {
+                    char c = texte.charAt(i++);
+                    if (c == '"') {
+                        if (i < fin && texte.charAt(i) == '"') { sb.append('"'); i++; }
+                        else break;
+                    } else {
+                        sb.append(c);
+                    }
+                }
+                champ = sb.toString();
+                while (i < fin && texte.charAt(i) != separateur) i++;
+            } else {
+                int s = i;
+                while (i < fin && texte.charAt(i) != separateur) i++;
+                champ = texte.substring(s, i);
+            }
+            if (n < champs.length) champs[n] = champ;
+            n++;
+            if (i >= fin) return n;
+            i++; // séparateur
+        }
+    }
+
+    // ---------------- En-tête
+    private static final class Format {
+        final char separateur;
+        final int nbColonnes;
+        final int[] position = new int[COLONNES.length];
+
+        private Format(char separateur, int nbColonnes) {
+            this.separateur = separateur;
+            this.nbColonnes = nbColonnes;
+        }
+
+        static Format depuisEntete(String entete) throws IOException {
+            entete = entete.strip();
+            char sep = compter(entete, ';') >= compter(entete, ',') ? ';' : ',';
+            String[] noms = new String[entete.length() + 1];
+            int n = decouper(entete, 0, entete.length(), sep, noms);
+            Format f = new Format(sep, n);
+            Arrays.fill(f.position, -1);
+            for (int i = 0; i < n; i++) {
+                int c = Arrays.asList(COLONNES).indexOf(normaliser(noms[i]));
+                if (c >= 0 && f.position[c] < 0) f.position[c] = i;
+            }
+            for (int c = 0; c < COLONNES.length; c++) {
+                if (f.position[c] < 0) throw new IOException("Colonne manquante dans l'en-tête : " + COLONNES[c]);
+            }
+            return f;
+        }
+
+        private static String normaliser(String nom) {
+            String s = Normalizer.normalize(nom.strip().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+            return s.replaceAll("\\p{M}", "");
+        }
+
+        private static int compter(String s, char c) {
+            int n = 0;
+            for (int i = 0; i < s.length(); i++) if (s.charAt(i) == c) n++;
+            return n;
+        }
+    }
+
+    // ---------------- Octets
+    private static int dernierSautDeLigne(byte[] b, int taille) {
+        for (int i = taille - 1; i >= 0; i--) if (b[i] == '\n') return i;
+        return -1;
+    }
+
+    private static int indexSautDeLigne(byte[] b, int debut, int fin) {
+        for (int i = debut; i < fin; i++) if (b[i] == '\n') return i;
+        return fin;
+    }
+
+    private static long compterSautsDeLigne(byte[] b, int debut, int fin) {
+        long n = 0;
+        for (int i = debut; i < fin; i++) if (b[i] == '\n') n++;
+        return n;
+    }
+}
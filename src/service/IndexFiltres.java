@@ -0,0 +1,369 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Index bitmap des critères de l'écran Produits : un {@link BitmapCompresse} par catégorie de la
+ * taxonomie et par fournisseur, et pour le prix et la quantité un bitmap par tranche de valeurs
+ * (bornes prises aux quantiles du catalogue). Un critère se compile en unions (catégorie et ses
+ * sous-catégories, fournisseurs choisis, tranches couvertes) puis en intersections, sans évaluer
+ * aucun produit ; seules les deux tranches aux bornes d'une fourchette sont vérifiées produit par produit.
+ * Maintenance sur le thread d'écriture (verrou d'écriture), évaluation depuis le pipeline des filtres :
+ * les valeurs vérifiées une à une sont lues dans une copie figée ({@link CatalogueFige}).
+ */
+public class IndexFiltres extends ObservateurCatalogue {
+
+    /** Au-delà, un ajout groupé recalcule les tranches de prix et de quantité une fois à la fin. */
+    private static final int TAILLE_LOT = 256;
+
+    private final Taxonomie taxonomie;
+    private final BitmapCompresse[] parCategorie;
+    private final Map<String, BitmapCompresse> parFournisseur = new HashMap<>();
+    private final Plage prix = new Plage(Produit::getPrix, CatalogueFige::getPrix);
+    private final Plage quantite = new Plage(Produit::getQuantite, CatalogueFige::getQuantite);
+    private Produit[] parId = new Produit[1024];
+    private final ReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    public IndexFiltres(StockColonnes produits, Taxonomie taxonomie) {
+        this.taxonomie = taxonomie;
+        this.parCategorie = new BitmapCompresse[taxonomie.taille()];
+        for (int i = 0; i < parCategorie.length; i++) parCategorie[i] = new BitmapCompresse();
+        surveiller(produits);
+    }
+
+    // ---------------- Maintenance
+    @Override protected void produitAjoute(Produit p) {
+        verrou.writeLock().lock();
+        try {
+            indexer(p);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override protected void produitsAjoutes(List<? extends Produit> lot) {
+        if (lot.size() < TAILLE_LOT) { super.produitsAjoutes(lot); return; }
+        verrou.writeLock().lock();
+        try {
+            prix.suspendu = quantite.suspendu = true;
+            for (Produit p : lot) indexer(p);
+            prix.reequilibrer();
+            quantite.reequilibrer();
+        } finally {
+            prix.suspendu = quantite.suspendu = false;
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void indexer(Produit p) {
+        int id = p.getId();
+        if (id >= parId.length) parId = Arrays.copyOf(parId, Math.max(id + 1, parId.length * 2));
+        parId[id] = p;
+        int c = taxonomie.resoudre(p.getCategorie());
+        if (c >= 0) parCategorie[c].ajouter(id);
+        if (p.getFournisseur() != null) parFournisseur.computeIfAbsent(p.getFournisseur(), f -> new BitmapCompresse()).ajouter(id);
+        prix.ajouter(id, p.getPrix());
+        quantite.ajouter(id, p.getQuantite());
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        // Produit détaché : il garde les valeurs qu'il avait au catalogue
+        int id = p.getId();
+        verrou.writeLock().lock();
+        try {
+            int c = taxonomie.resoudre(p.getCategorie());
+            if (c >= 0) parCategorie[c].retirer(id);
+            retirerFournisseur(p.getFournisseur(), id);
+            prix.retirer(id, p.getPrix());
+            quantite.retirer(id, p.getQuantite());
+            parId[id] = null;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) {
+        int a = taxonomie.resoudre(ancienne), n = taxonomie.resoudre(nouvelle);
+        if (a == n) return;
+        verrou.writeLock().lock();
+        try {
+            if (a >= 0) parCategorie[a].retirer(p.getId());
+            if (n >= 0) parCategorie[n].ajouter(p.getId());
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) {
+        verrou.writeLock().lock();
+        try {
+            retirerFournisseur(ancien, p.getId());
+            if (nouveau != null) parFournisseur.computeIfAbsent(nouveau, f -> new BitmapCompresse()).ajouter(p.getId());
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void retirerFournisseur(String fournisseur, int id) {
+        if (fournisseur == null) return;
+        BitmapCompresse b = parFournisseur.get(fournisseur);
+        if (b == null) return;
+        b.retirer(id);
+        if (b.estVide()) parFournisseur.remove(fournisseur);
+    }
+
+    @Override protected void prixModifie(Produit p, double ancien, double nouveau) {
+        verrou.writeLock().lock();
+        try {
+            prix.deplacer(p.getId(), ancien, nouveau);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        verrou.writeLock().lock();
+        try {
+            quantite.deplacer(p.getId(), ancienne, nouvelle);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    // ---------------- Lecture
+
+    /** Fournisseurs présents au catalogue, triés sans tenir compte de la casse. */
+    public List<String> fournisseurs() {
+        verrou.readLock().lock();
+        try {
+            List<String> l = new ArrayList<>(parFournisseur.keySet());
+            l.sort(String.CASE_INSENSITIVE_ORDER);
+            return l;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids des produits retenus par la catégorie, les fournisseurs et les fourchettes du critère
+     * (la recherche texte relève de {@link IndexRecherche}) ; null si aucun de ces critères n'est posé.
+     * Chaque critère devient l'union de ses bitmaps ; les critères sont intersectés du plus
+     * sélectif (cardinalité estimée) au moins sélectif, et l'évaluation s'arrête dès que le résultat est vide.
+     * Les bornes des fourchettes sont vérifiées dans fige (un produit ajouté après elle n'y est pas retenu).
+     */
+    public BitSet evaluer(CritereFiltres critere, CatalogueFige fige) {
+        verrou.readLock().lock();
+        try {
+            List<Terme> termes = compiler(critere, fige);
+            if (termes == null) return null;
+            termes.sort((a, b) -> Long.compare(a.estimation, b.estimation));
+            int nbMots = (parId.length + 63) >>> 6;
+            long[] resultat = null;
+            for (Terme t : termes) {
+                if (t.estimation == 0) return new BitSet();
+                long[] mots = new long[nbMots];
+                t.evaluer(mots);
+                if (resultat == null) {
+                    resultat = mots;
+                } else {
+                    boolean vide = true;
+                    for (int i = 0; i < nbMots; i++) if ((resultat[i] &= mots[i]) != 0) vide = false;
+                    if (vide) return new BitSet();
+                }
+            }
+            return BitSet.valueOf(resultat);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /** Un terme par critère posé (null : aucun), avec une estimation de sa cardinalité. */
+    private List<Terme> compiler(CritereFiltres c, CatalogueFige fige) {
+        List<Terme> termes = new ArrayList<>(4);
+        if (c.getCategorie() != null) {
+            int n = taxonomie.resoudre(c.getCategorie());
+            List<BitmapCompresse> union = new ArrayList<>();
+            // Préordre : la catégorie puis ses sous-catégories, consécutives
+            for (int k = n; n >= 0 && k < parCategorie.length && taxonomie.contient(n, k); k++) union.add(parCategorie[k]);
+            termes.add(new Union(union));
+        }
+        if (!c.getFournisseurs().isEmpty()) {
+            List<BitmapCompresse> union = new ArrayList<>();
+            for (String f : c.getFournisseurs()) {
+                BitmapCompresse b = parFournisseur.get(f);
+                if (b != null) union.add(b);
+            }
+            termes.add(new Union(union));
+        }
+        if (c.filtrePrix()) {
+            termes.add(prix.terme(c.getPrixMin() == null ? Double.NEGATIVE_INFINITY : c.getPrixMin(),
+                    c.getPrixMax() == null ? Double.POSITIVE_INFINITY : c.getPrixMax(), fige));
+        }
+        if (c.filtreQuantite()) {
+            termes.add(quantite.terme(c.getQuantiteMin() == null ? Double.NEGATIVE_INFINITY : c.getQuantiteMin(),
+                    c.getQuantiteMax() == null ? Double.POSITIVE_INFINITY : c.getQuantiteMax(), fige));
+        }
+        return termes.isEmpty() ? null : termes;
+    }
+
+    // ---------------- Termes compilés
+
+    private abstract static class Terme {
+        long estimation;
+
+        /** mots |= ids du terme. */
+        abstract void evaluer(long[] mots);
+    }
+
+    private static final class Union extends Terme {
+        private final List<BitmapCompresse> bitmaps;
+
+        Union(List<BitmapCompresse> bitmaps) {
+            this.bitmaps = bitmaps;
+            for (BitmapCompresse b : bitmaps) estimation += b.cardinalite();
+        }
+
+        @Override void evaluer(long[] mots) {
+            for (BitmapCompresse b : bitmaps) b.ouDans(mots);
+        }
+    }
+
+    // ---------------- Tranches de valeurs (prix, quantité)
+
+    /** Valeur de la ligne i d'une copie figée. */
+    private interface LectureFigee {
+        double valeur(CatalogueFige fige, int i);
+    }
+
+    /**
+     * Valeurs découpées en tranches [bornes[i-1], bornes[i]) d'effectifs voisins, un bitmap par tranche.
+     * Bornes recalculées après un gros lot, ou quand une tranche dépasse deux fois l'effectif visé
+     * et peut encore être coupée : une tranche d'une seule valeur (quantité 0 des produits épuisés)
+     * ne se coupe pas, et le seuil suit la plus grosse tranche pour ne pas redéclencher à chaque écriture.
+     */
+    private final class Plage {
+        private static final int NB_TRANCHES = 64;
+
+        private final ToDoubleFunction<Produit> valeur;
+        private final LectureFigee valeurFigee;
+        private double[] bornes = new double[0];
+        private BitmapCompresse[] tranches = {new BitmapCompresse()};
+        // Plus petite et plus grande valeur entrées dans chaque tranche depuis sa construction
+        private double[] mins = {Double.POSITIVE_INFINITY};
+        private double[] maxs = {Double.NEGATIVE_INFINITY};
+        private int seuil = 1024;
+        boolean suspendu; // lot en cours : rééquilibrage à la fin
+
+        Plage(ToDoubleFunction<Produit> valeur, LectureFigee valeurFigee) {
+            this.valeur = valeur;
+            this.valeurFigee = valeurFigee;
+        }
+
+        /** Tranche de v : nombre de bornes ≤ v. */
+        private int tranche(double v) {
+            int bas = 0, haut = bornes.length;
+            while (bas < haut) {
+                int m = (bas + haut) >>> 1;
+                if (bornes[m] <= v) bas = m + 1;
+                else haut = m;
+            }
+            return bas;
+        }
+
+        void ajouter(int id, double v) {
+            int k = tranche(v);
+            BitmapCompresse b = tranches[k];
+            b.ajouter(id);
+            if (v < mins[k]) mins[k] = v;
+            if (v > maxs[k]) maxs[k] = v;
+            if (!suspendu && b.cardinalite() > seuil && mins[k] < maxs[k]) reequilibrer();
+        }
+
+        void retirer(int id, double v) {
+            tranches[tranche(v)].retirer(id);
+        }
+
+        void deplacer(int id, double ancienne, double nouvelle) {
+            int a = tranche(ancienne);
+            if (a == tranche(nouvelle)) return;
+            tranches[a].retirer(id);
+            ajouter(id, nouvelle);
+        }
+
+        /** Bornes aux quantiles des valeurs actuelles, puis tranches reconstruites. */
+        void reequilibrer() {
+            int n = 0;
+            double[] valeurs = new double[parId.length];
+            for (Produit p : parId) if (p != null) valeurs[n++] = valeur.applyAsDouble(p);
+            Arrays.sort(valeurs, 0, n);
+            double[] b = new double[NB_TRANCHES - 1];
+            int nb = 0;
+            for (int i = 1; i < NB_TRANCHES && n > 0; i++) {
+                double q = valeurs[(int) ((long) i * n / NB_TRANCHES)];
+                if (nb == 0 || q > b[nb - 1]) b[nb++] = q; // valeurs répétées : une seule borne
+            }
+            double[] nouvelles = Arrays.copyOf(b, nb);
+            if (!Arrays.equals(nouvelles, bornes)) {
+                bornes = nouvelles;
+                tranches = new BitmapCompresse[nb + 1];
+                mins = new double[nb + 1];
+                maxs = new double[nb + 1];
+                Arrays.fill(mins, Double.POSITIVE_INFINITY);
+                Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+                for (int i = 0; i < tranches.length; i++) tranches[i] = new BitmapCompresse();
+                for (Produit p : parId) {
+                    if (p == null) continue;
+                    double v = valeur.applyAsDouble(p);
+                    int k = tranche(v);
+                    tranches[k].ajouter(p.getId());
+                    if (v < mins[k]) mins[k] = v;
+                    if (v > maxs[k]) maxs[k] = v;
+                }
+            }
+            long plusGrande = 0;
+            for (BitmapCompresse t : tranches) plusGrande = Math.max(plusGrande, t.cardinalite());
+            seuil = (int) Math.max(2L * n / NB_TRANCHES + 1024, 2 * plusGrande);
+        }
+
+        /** Produits de valeur dans [min, max] : tranches couvertes en entier unies, tranches des bornes vérifiées. */
+        Terme terme(double min, double max, CatalogueFige fige) {
+            int premiere = tranche(min), derniere = tranche(max);
+            List<BitmapCompresse> entieres = new ArrayList<>();
+            List<BitmapCompresse> aVerifier = new ArrayList<>();
+            long estimation = 0;
+            for (int k = premiere; k <= derniere && min <= max; k++) {
+                double bas = k == 0 ? Double.NEGATIVE_INFINITY : bornes[k - 1];
+                double haut = k == bornes.length ? Double.POSITIVE_INFINITY : bornes[k];
+                boolean couverte = bas >= min && (haut <= max || max == Double.POSITIVE_INFINITY);
+                (couverte ? entieres : aVerifier).add(tranches[k]);
+                estimation += tranches[k].cardinalite();
+            }
+            Terme t = new Terme() {
+                @Override void evaluer(long[] mots) {
+                    for (BitmapCompresse b : entieres) b.ouDans(mots);
+                    for (BitmapCompresse b : aVerifier) {
+                        b.pourChaque(id -> {
+                            int i = fige.indexDe(id);
+                            if (i < 0) return;
+                            double v = valeurFigee.valeur(fige, i);
+                            if (v >= min && v <= max) mots[id >>> 6] |= 1L << id;
+                        });
+                    }
+                }
+            };
+            t.estimation = estimation;
+            return t;
+        }
+    }
+}
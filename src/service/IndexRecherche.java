@@ -0,0 +1,338 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index inversé de trigrammes sur le nom et le fournisseur (casse repliée).
+ * Une recherche intersecte les listes d'identifiants de ses trigrammes, puis
+ * vérifie les seuls candidats par regionMatches (aucune chaîne allouée par produit).
+ * Maintenance sur le thread FX (verrou d'écriture), recherches possibles depuis un autre thread :
+ * les candidats sont vérifiés dans une copie figée du catalogue ({@link CatalogueFige}), jamais
+ * dans le stock vivant, que le thread FX peut modifier (arène des noms comprise) pendant la lecture.
+ */
+public class IndexRecherche extends ObservateurCatalogue {
+
+    private static final int[] AUCUN = new int[0];
+    /** À partir de ce nombre de produits retirés ensemble, les listes sont compactées une fois chacune. */
+    private static final int RETRAIT_GROUPE = 64;
+
+    private final TablePostings postings = new TablePostings();
+    private final ReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    public IndexRecherche(StockColonnes produits) {
+        surveiller(produits);
+    }
+
+    // ---------------- Maintenance
+    @Override protected void produitAjoute(Produit p) {
+        verrou.writeLock().lock();
+        try {
+            indexer(p);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void indexer(Produit p) {
+        int id = p.getId();
+        for (long t : trigrammes(p.getNom(), p.getFournisseur())) {
+            postings.obtenir(t).ajouter(id);
+        }
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        int id = p.getId();
+        long[] anciens = trigrammes(p.getNom(), p.getFournisseur());
+        verrou.writeLock().lock();
+        try {
+            for (long t : anciens) retirerPosting(t, id);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrait groupé : les identifiants retirés sont d'abord regroupés par trigramme, puis chaque
+     * liste touchée est compactée en un seul passage (au lieu d'un décalage par produit retiré).
+     */
+    @Override protected void produitsRetires(List<? extends Produit> lot) {
+        if (lot.size() < RETRAIT_GROUPE) {
+            super.produitsRetires(lot);
+            return;
+        }
+        BitSet retires = new BitSet();
+        long[] touches = new long[lot.size() * 8];
+        int n = 0;
+        for (Produit p : lot) {
+            retires.set(p.getId());
+            for (long t : trigrammes(p.getNom(), p.getFournisseur())) {
+                if (n == touches.length) touches = Arrays.copyOf(touches, n * 2);
+                touches[n++] = t;
+            }
+        }
+        Arrays.sort(touches, 0, n);
+        verrou.writeLock().lock();
+        try {
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && touches[i] == touches[i - 1]) continue;
+                ListeIds l = postings.chercher(touches[i]);
+                if (l == null) continue;
+                l.retirerTous(retires);
+                if (l.taille == 0) postings.supprimer(touches[i]);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    @Override protected void nomModifie(Produit p, String ancien, String nouveau) {
+        reindexer(p.getId(), trigrammes(ancien, p.getFournisseur()), trigrammes(nouveau, p.getFournisseur()));
+    }
+
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) {
+        reindexer(p.getId(), trigrammes(p.getNom(), ancien), trigrammes(p.getNom(), nouveau));
+    }
+
+    /** Applique uniquement la différence entre les deux ensembles (triés) de trigrammes. */
+    private void reindexer(int id, long[] anciens, long[] nouveaux) {
+        verrou.writeLock().lock();
+        try {
+            appliquerDifference(id, anciens, nouveaux);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void appliquerDifference(int id, long[] anciens, long[] nouveaux) {
+        int i = 0, j = 0;
+        while (i < anciens.length || j < nouveaux.length) {
+            if (j == nouveaux.length || (i < anciens.length && anciens[i] < nouveaux[j])) {
+                retirerPosting(anciens[i++], id);
+            } else if (i == anciens.length || nouveaux[j] < anciens[i]) {
+                postings.obtenir(nouveaux[j++]).ajouter(id);
+            } else {
+                i++; j++;
+            }
+        }
+    }
+
+    private void retirerPosting(long t, int id) {
+        ListeIds l = postings.chercher(t);
+        if (l == null) return;
+        l.retirer(id);
+        if (l.taille == 0) postings.supprimer(t);
+    }
+
+    // ---------------- Recherche
+    /**
+     * Identifiants des produits dont le nom ou le fournisseur contient la requête (null : pas de
+     * filtre), vérifiés dans la copie fige (un produit ajouté après elle n'est pas retenu).
+     */
+    public BitSet rechercher(String requete, CatalogueFige fige) {
+        String q = normaliser(requete);
+        if (q.isEmpty()) return null;
+        BitSet resultat = new BitSet();
+        if (q.length() < 3) {
+            // Pas de trigramme : vérification directe de la copie, toujours sans allocation par produit
+            for (int i = 0, n = fige.taille(); i < n; i++) if (correspond(fige, i, q)) resultat.set(fige.getId(i));
+            return resultat;
+        }
+        int[] candidats;
+        verrou.readLock().lock();
+        try {
+            candidats = candidats(q);
+        } finally {
+            verrou.readLock().unlock();
+        }
+        for (int id : candidats) {
+            int i = fige.indexDe(id);
+            if (i >= 0 && correspond(fige, i, q)) resultat.set(id);
+        }
+        return resultat;
+    }
+
+    private int[] candidats(String q) {
+        long[] trigrammes = trigrammes(q, null);
+        ListeIds[] listes = new ListeIds[trigrammes.length];
+        for (int i = 0; i < trigrammes.length; i++) {
+            listes[i] = postings.chercher(trigrammes[i]);
+            if (listes[i] == null) return AUCUN;
+        }
+        // La plus courte d'abord : chaque intersection ne peut que réduire l'ensemble.
+        Arrays.sort(listes, (a, b) -> Integer.compare(a.taille, b.taille));
+        int[] res = Arrays.copyOf(listes[0].ids, listes[0].taille);
+        int n = res.length;
+        for (int k = 1; k < listes.length && n > 0; k++) {
+            n = listes[k].intersecter(res, n);
+        }
+        return n == res.length ? res : Arrays.copyOf(res, n);
+    }
+
+    private static boolean correspond(CatalogueFige fige, int i, String q) {
+        return fige.nomContient(i, q) || contient(fige.getFournisseur(i), q);
+    }
+
+    private static boolean contient(String texte, String q) {
+        if (texte == null) return false;
+        for (int i = 0, fin = texte.length() - q.length(); i <= fin; i++) {
+            if (texte.regionMatches(true, i, q, 0, q.length())) return true;
+        }
+        return false;
+    }
+
+    /** Repli caractère par caractère, identique à celui des trigrammes indexés. */
+    static String normaliser(String requete) {
+        if (requete == null) return "";
+        String s = requete.trim();
+        char[] c = new char[s.length()];
+        for (int i = 0; i < c.length; i++) c[i] = Character.toLowerCase(s.charAt(i));
+        return new String(c);
+    }
+
+    /** Trigrammes distincts (triés) des textes, chaque caractère replié en minuscule sur 16 bits. */
+    private static long[] trigrammes(String a, String b) {
+        int max = Math.max(0, a == null ? 0 : a.length() - 2) + Math.max(0, b == null ? 0 : b.length() - 2);
+        long[] t = new long[max];
+        int n = ajouterTrigrammes(a, t, 0);
+        n = ajouterTrigrammes(b, t, n);
+        Arrays.sort(t, 0, n);
+        int u = 0;
+        for (int i = 0; i < n; i++) if (u == 0 || t[u - 1] != t[i]) t[u++] = t[i];
+        return u == t.length ? t : Arrays.copyOf(t, u);
+    }
+
+    private static int ajouterTrigrammes(String s, long[] t, int n) {
+        if (s == null) return n;
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            t[n++] = ((long) Character.toLowerCase(s.charAt(i)) << 32)
+                    | ((long) Character.toLowerCase(s.charAt(i + 1)) << 16)
+                    | Character.toLowerCase(s.charAt(i + 2));
+        }
+        return n;
+    }
+
+    /** Liste d'identifiants triée (insertion/retrait par recherche binaire). */
+    private static final class ListeIds {
+        int[] ids = new int[4];
+        int taille;
+
+        void ajouter(int id) {
+            if (taille == 0 || ids[taille - 1] < id) {
+                // Cas courant : ids croissants, ajout en fin de liste
+                if (taille == ids.length) ids = Arrays.copyOf(ids, taille * 2);
+                ids[taille++] = id;
+                return;
+            }
+            int pos = Arrays.binarySearch(ids, 0, taille, id);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            if (taille == ids.length) ids = Arrays.copyOf(ids, taille * 2);
+            System.arraycopy(ids, pos, ids, pos + 1, taille - pos);
+            ids[pos] = id;
+            taille++;
+        }
+
+        void retirer(int id) {
+            int pos = Arrays.binarySearch(ids, 0, taille, id);
+            if (pos < 0) return;
+            System.arraycopy(ids, pos + 1, ids, pos, taille - pos - 1);
+            taille--;
+        }
+
+        void retirerTous(BitSet retires) {
+            int garde = 0;
+            for (int i = 0; i < taille; i++) {
+                if (!retires.get(ids[i])) ids[garde++] = ids[i];
+            }
+            taille = garde;
+        }
+
+        /** Garde dans res[0..n) les ids présents ici ; fusion linéaire, ou dichotomie si la liste est bien plus longue. */
+        int intersecter(int[] res, int n) {
+            int m = 0;
+            if (taille > 8 * n) {
+                int debut = 0;
+                for (int i = 0; i < n; i++) {
+                    int pos = Arrays.binarySearch(ids, debut, taille, res[i]);
+                    if (pos >= 0) { res[m++] = res[i]; debut = pos + 1; }
+                    else debut = -pos - 1;
+                }
+                return m;
+            }
+            int j = 0;
+            for (int i = 0; i < n && j < taille; ) {
+                if (res[i] < ids[j]) i++;
+                else if (res[i] > ids[j]) j++;
+                else { res[m++] = res[i]; i++; j++; }
+            }
+            return m;
+        }
+    }
+
+    /** Table à adressage ouvert trigramme (long) -> liste d'ids, sans boxing des clés. */
+    private static final class TablePostings {
+        private long[] cles = new long[1 << 12];
+        private ListeIds[] valeurs = new ListeIds[1 << 12];
+        private int taille;
+
+        private int position(long cle) {
+            int masque = cles.length - 1;
+            long h = cle * 0x9E3779B97F4A7C15L;
+            int i = (int) (h ^ (h >>> 32)) & masque;
+            while (valeurs[i] != null && cles[i] != cle) i = (i + 1) & masque;
+            return i;
+        }
+
+        ListeIds chercher(long cle) {
+            return valeurs[position(cle)];
+        }
+
+        ListeIds obtenir(long cle) {
+            int i = position(cle);
+            if (valeurs[i] == null) {
+                cles[i] = cle;
+                valeurs[i] = new ListeIds();
+                if (++taille * 2 > cles.length) agrandir();
+                return chercher(cle);
+            }
+            return valeurs[i];
+        }
+
+        void supprimer(long cle) {
+            int masque = cles.length - 1;
+            int i = position(cle);
+            if (valeurs[i] == null) return;
+            valeurs[i] = null;
+            taille--;
+            // Décalage arrière : on replace les entrées suivantes de la même grappe
+            for (int j = (i + 1) & masque; valeurs[j] != null; j = (j + 1) & masque) {
+                long c = cles[j];
+                ListeIds v = valeurs[j];
+                valeurs[j] = null;
+                int k = position(c);
+                cles[k] = c;
+                valeurs[k] = v;
+            }
+        }
+
+        private void agrandir() {
+            long[] anciennesCles = cles;
+            ListeIds[] anciennesValeurs = valeurs;
+            cles = new long[anciennesCles.length * 2];
+            valeurs = new ListeIds[anciennesValeurs.length * 2];
+            for (int i = 0; i < anciennesCles.length; i++) {
+                if (anciennesValeurs[i] == null) continue;
+                int k = position(anciennesCles[i]);
+                cles[k] = anciennesCles[i];
+                valeurs[k] = anciennesValeurs[i];
+            }
+        }
+    }
+}
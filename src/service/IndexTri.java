@@ -0,0 +1,253 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Index de tri des colonnes triables : pour chacune, un tableau de produits ordonné par
+ * (valeur, id), construit au premier tri par cette colonne puis tenu à jour à chaque ajout,
+ * retrait ou changement de valeur (recherche dichotomique + décalage, jamais de re-tri).
+ * Trier une vue revient à parcourir l'index en ne gardant que les produits du filtre.
+ * Textes comparés avec le Collator de la langue (comme les colonnes d'un TableView), nulls en tête.
+ */
+public class IndexTri extends ObservateurCatalogue {
+
+    public enum Colonne { NOM, CATEGORIE, PRIX, QUANTITE, FOURNISSEUR }
+
+    /** Au-delà, un ajout groupé invalide les index (reconstruits au prochain tri) au lieu d'insérer un à un. */
+    private static final int TAILLE_LOT = 256;
+
+    private final StockColonnes produits;
+    private final Collator collator = Collator.getInstance();
+    private final Ordre[] ordres = {
+            new OrdreTexte(Produit::getNom, false),
+            new OrdreTexte(Produit::getCategorie, true),
+            new OrdrePrix(),
+            new OrdreQuantite(),
+            new OrdreTexte(Produit::getFournisseur, true)
+    };
+
+    public IndexTri(StockColonnes produits) {
+        this.produits = produits;
+        surveiller(produits);
+    }
+
+    // ---------------- Lecture
+
+    /** Produits retenus par le filtre (null : tous), dans l'ordre de la colonne. */
+    public Produit[] parcourir(Colonne colonne, boolean croissant, Predicate<? super Produit> filtre) {
+        Ordre o = ordre(colonne);
+        Produit[] t = o.elements;
+        int n = o.taille;
+        Produit[] res = new Produit[n];
+        int k = 0;
+        if (croissant) {
+            for (int i = 0; i < n; i++) if (filtre == null || filtre.test(t[i])) res[k++] = t[i];
+        } else {
+            for (int i = n - 1; i >= 0; i--) if (filtre == null || filtre.test(t[i])) res[k++] = t[i];
+        }
+        return k == n ? res : Arrays.copyOf(res, k);
+    }
+
+    /**
+     * Position de p dans t[0..n), trié par la colonne dans le sens donné : ≥ 0 s'il y est,
+     * sinon -(point d'insertion) - 1. p est comparé avec sa valeur actuelle.
+     */
+    public int chercher(Colonne colonne, boolean croissant, Produit[] t, int n, Produit p) {
+        Ordre o = ordres[colonne.ordinal()];
+        return o.chercher(t, n, p, o.cle(p), croissant ? 1 : -1);
+    }
+
+    /** Idem, p comparé avec valeur (sa valeur avant une modification qui vient d'être notifiée). */
+    public int chercher(Colonne colonne, boolean croissant, Produit[] t, int n, Produit p, Object valeur) {
+        return ordres[colonne.ordinal()].chercher(t, n, p, valeur, croissant ? 1 : -1);
+    }
+
+    /** Index de la colonne, construit s'il ne l'est pas encore (premier tri, ou après un gros lot). */
+    private Ordre ordre(Colonne colonne) {
+        Ordre o = ordres[colonne.ordinal()];
+        if (o.elements == null) {
+            Produit[] t = produits.toArray(new Produit[0]);
+            o.trier(t);
+            o.elements = t;
+            o.taille = t.length;
+        }
+        return o;
+    }
+
+    // ---------------- Deltas
+    @Override protected void produitAjoute(Produit p) {
+        for (Ordre o : ordres) if (o.elements != null) o.inserer(p);
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        // Produit détaché : il garde les valeurs qu'il avait au catalogue
+        for (Ordre o : ordres) if (o.elements != null) o.retirer(p, o.cle(p));
+    }
+
+    @Override protected void produitsAjoutes(List<? extends Produit> lot) {
+        if (lot.size() < TAILLE_LOT) { super.produitsAjoutes(lot); return; }
+        for (Ordre o : ordres) o.elements = null;
+    }
+
+    @Override protected void produitsRetires(List<? extends Produit> lot) {
+        if (lot.size() < TAILLE_LOT) { super.produitsRetires(lot); return; }
+        Set<Produit> retires = Collections.newSetFromMap(new IdentityHashMap<>());
+        retires.addAll(lot);
+        for (Ordre o : ordres) {
+            if (o.elements == null) continue;
+            int k = 0;
+            for (int i = 0; i < o.taille; i++) if (!retires.contains(o.elements[i])) o.elements[k++] = o.elements[i];
+            Arrays.fill(o.elements, k, o.taille, null);
+            o.taille = k;
+        }
+    }
+
+    @Override protected void nomModifie(Produit p, String ancien, String nouveau) {
+        ordres[Colonne.NOM.ordinal()].deplacer(p, ancien);
+    }
+
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) {
+        ordres[Colonne.CATEGORIE.ordinal()].deplacer(p, ancienne);
+    }
+
+    @Override protected void prixModifie(Produit p, double ancien, double nouveau) {
+        ordres[Colonne.PRIX.ordinal()].deplacer(p, ancien);
+    }
+
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        ordres[Colonne.QUANTITE.ordinal()].deplacer(p, ancienne);
+    }
+
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) {
+        ordres[Colonne.FOURNISSEUR.ordinal()].deplacer(p, ancien);
+    }
+
+    // ---------------- Index d'une colonne
+
+    /** Tableau trié par (clé, id) ; elements == null tant que l'index n'est pas construit. */
+    private abstract static class Ordre {
+        Produit[] elements;
+        int taille;
+
+        /** Valeur actuelle de p dans la colonne (boxée pour les nombres). */
+        abstract Object cle(Produit p);
+
+        /** Valeur actuelle de e comparée à une clé. */
+        abstract int comparer(Produit e, Object cle);
+
+        /** Tri complet (construction). */
+        abstract void trier(Produit[] t);
+
+        final int chercher(Produit[] t, int n, Produit cible, Object cle, int sens) {
+            int id = cible.getId();
+            int bas = 0, haut = n - 1;
+            while (bas <= haut) {
+                int milieu = (bas + haut) >>> 1;
+                Produit e = t[milieu];
+                int cmp = 0;
+                if (e != cible) {
+                    cmp = comparer(e, cle);
+                    if (cmp == 0) cmp = Integer.compare(e.getId(), id);
+                    cmp *= sens;
+                }
+                if (cmp < 0) bas = milieu + 1;
+                else if (cmp > 0) haut = milieu - 1;
+                else return milieu;
+            }
+            return -(bas + 1);
+        }
+
+        final void inserer(Produit p) {
+            int i = chercher(elements, taille, p, cle(p), 1);
+            if (i >= 0) return;
+            i = -i - 1;
+            if (taille == elements.length) elements = Arrays.copyOf(elements, Math.max(16, taille * 2));
+            System.arraycopy(elements, i, elements, i + 1, taille - i);
+            elements[i] = p;
+            taille++;
+        }
+
+        final void retirer(Produit p, Object cle) {
+            int i = chercher(elements, taille, p, cle, 1);
+            if (i < 0) return;
+            System.arraycopy(elements, i + 1, elements, i, taille - i - 1);
+            elements[--taille] = null;
+        }
+
+        /** Valeur changée : retiré à sa place d'avant, réinséré à sa nouvelle place. */
+        final void deplacer(Produit p, Object ancienne) {
+            if (elements == null) return;
+            retirer(p, ancienne);
+            inserer(p);
+        }
+    }
+
+    private static final class OrdrePrix extends Ordre {
+        @Override Object cle(Produit p) { return p.getPrix(); }
+        @Override int comparer(Produit e, Object cle) { return Double.compare(e.getPrix(), (Double) cle); }
+        @Override void trier(Produit[] t) {
+            Arrays.parallelSort(t, Comparator.comparingDouble(Produit::getPrix).thenComparingInt(Produit::getId));
+        }
+    }
+
+    private static final class OrdreQuantite extends Ordre {
+        @Override Object cle(Produit p) { return p.getQuantite(); }
+        @Override int comparer(Produit e, Object cle) { return Integer.compare(e.getQuantite(), (Integer) cle); }
+        @Override void trier(Produit[] t) {
+            Arrays.parallelSort(t, Comparator.comparingInt(Produit::getQuantite).thenComparingInt(Produit::getId));
+        }
+    }
+
+    private final class OrdreTexte extends Ordre {
+        private final Function<Produit, String> valeur;
+        private final boolean valeursRepetees; // catégorie, fournisseur : peu de valeurs distinctes
+
+        OrdreTexte(Function<Produit, String> valeur, boolean valeursRepetees) {
+            this.valeur = valeur;
+            this.valeursRepetees = valeursRepetees;
+        }
+
+        @Override Object cle(Produit p) { return valeur.apply(p); }
+
+        @Override int comparer(Produit e, Object cle) {
+            String a = valeur.apply(e), b = (String) cle;
+            if (a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+            return collator.compare(a, b);
+        }
+
+        /** Clés de collation calculées une fois par valeur (en parallèle pour les noms), puis tri. */
+        @Override void trier(Produit[] t) {
+            CollationKey[] cles = new CollationKey[t.length];
+            if (valeursRepetees) {
+                Map<String, CollationKey> parValeur = new HashMap<>();
+                for (int i = 0; i < t.length; i++) {
+                    String v = valeur.apply(t[i]);
+                    cles[i] = v == null ? null : parValeur.computeIfAbsent(v, collator::getCollationKey);
+                }
+            } else {
+                ThreadLocal<Collator> parThread = ThreadLocal.withInitial(() -> (Collator) collator.clone());
+                IntStream.range(0, t.length).parallel().forEach(i -> {
+                    String v = valeur.apply(t[i]);
+                    cles[i] = v == null ? null : parThread.get().getCollationKey(v);
+                });
+            }
+            Integer[] positions = new Integer[t.length];
+            for (int i = 0; i < t.length; i++) positions[i] = i;
+            Arrays.parallelSort(positions, (i, j) -> {
+                CollationKey a = cles[i], b = cles[j];
+                int c = a == null || b == null ? (a == null ? (b == null ? 0 : -1) : 1) : a.compareTo(b);
+                return c != 0 ? c : Integer.compare(t[i].getId(), t[j].getId());
+            });
+            Produit[] copie = t.clone();
+            for (int i = 0; i < t.length; i++) t[i] = copie[positions[i]];
+        }
+    }
+}
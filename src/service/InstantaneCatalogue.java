@@ -0,0 +1,162 @@
+package service;
+
+import model.StockColonnes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Instantané binaire du catalogue, rangé comme {@link StockColonnes} pour être relu par
+ * projection mémoire et copié en bloc dans les colonnes du stock.
+ *
+ * Format : en-tête (48 octets) puis long[] cles, double[] prix, int[] quantites,
+ * int[] categories, int[] fournisseurs, int[] longueurs des noms (-1 : null), char[] noms,
+ * et enfin les deux dictionnaires (int longueur + chars). Le CRC32C couvre tout le corps.
+ */
+final class InstantaneCatalogue {
+
+    private static final int MAGIC = 0x47505331; // "GPS1"
+    private static final int VERSION = 1;
+    private static final int TAILLE_ENTETE = 48;
+
+    /** Contenu d'un instantané : colonnes du stock + clé persistante de chaque ligne. */
+    static final class Contenu {
+        long dernierSeq;
+        long prochaineCle;
+        long[] cles;
+        StockColonnes.Colonnes colonnes;
+    }
+
+    private InstantaneCatalogue() {}
+
+    /** Écrit l'instantané dans un fichier temporaire puis le substitue atomiquement à l'ancien. */
+    static void ecrire(Path fichier, Contenu contenu) throws IOException {
+        StockColonnes.Colonnes c = contenu.colonnes;
+        int n = c.taille;
+        long taille = TAILLE_ENTETE + (long) n * (8 + 8 + 4 + 4 + 4 + 4) + 2L * c.noms.length
+                + tailleDictionnaire(c.dictCategories) + tailleDictionnaire(c.dictFournisseurs);
+        if (taille > Integer.MAX_VALUE) throw new IOException("Instantané trop volumineux : " + taille + " octets");
+
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(temporaire, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 0, taille);
+            b.position(TAILLE_ENTETE);
+            b.asLongBuffer().put(contenu.cles, 0, n);
+            avancer(b, 8L * n);
+            b.asDoubleBuffer().put(c.prix, 0, n);
+            avancer(b, 8L * n);
+            b.asIntBuffer().put(c.quantites, 0, n);
+            avancer(b, 4L * n);
+            b.asIntBuffer().put(c.categories, 0, n);
+            avancer(b, 4L * n);
+            b.asIntBuffer().put(c.fournisseurs, 0, n);
+            avancer(b, 4L * n);
+            b.asIntBuffer().put(c.longueursNoms, 0, n);
+            avancer(b, 4L * n);
+            b.asCharBuffer().put(c.noms);
+            avancer(b, 2L * c.noms.length);
+            ecrireDictionnaire(b, c.dictCategories);
+            ecrireDictionnaire(b, c.dictFournisseurs);
+
+            b.putInt(0, MAGIC);
+            b.putInt(4, VERSION);
+            b.putLong(8, contenu.dernierSeq);
+            b.putLong(16, contenu.prochaineCle);
+            b.putInt(24, n);
+            b.putInt(28, c.dictCategories.length);
+            b.putInt(32, c.dictFournisseurs.length);
+            b.putInt(36, c.noms.length);
+            b.putLong(40, crc(b));
+            b.force();
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Relit un instantané (null s'il n'existe pas encore). */
+    static Contenu lire(Path fichier) throws IOException {
+        if (!Files.exists(fichier)) return null;
+        try (FileChannel ch = FileChannel.open(fichier, READ)) {
+            long taille = ch.size();
+            if (taille < TAILLE_ENTETE || taille > Integer.MAX_VALUE) throw new IOException("Instantané illisible : " + fichier);
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, taille);
+            if (b.getInt(0) != MAGIC || b.getInt(4) != VERSION) throw new IOException("Instantané illisible : " + fichier);
+            if (b.getLong(40) != crc(b)) throw new IOException("Instantané corrompu (CRC) : " + fichier);
+
+            Contenu contenu = new Contenu();
+            StockColonnes.Colonnes c = contenu.colonnes = new StockColonnes.Colonnes();
+            contenu.dernierSeq = b.getLong(8);
+            contenu.prochaineCle = b.getLong(16);
+            int n = c.taille = b.getInt(24);
+            int nbCategories = b.getInt(28);
+            int nbFournisseurs = b.getInt(32);
+            contenu.cles = new long[n];
+            c.prix = new double[n];
+            c.quantites = new int[n];
+            c.categories = new int[n];
+            c.fournisseurs = new int[n];
+            c.longueursNoms = new int[n];
+            c.noms = new char[b.getInt(36)];
+
+            b.position(TAILLE_ENTETE);
+            b.asLongBuffer().get(contenu.cles);
+            avancer(b, 8L * n);
+            b.asDoubleBuffer().get(c.prix);
+            avancer(b, 8L * n);
+            b.asIntBuffer().get(c.quantites);
+            avancer(b, 4L * n);
+            b.asIntBuffer().get(c.categories);
+            avancer(b, 4L * n);
+            b.asIntBuffer().get(c.fournisseurs);
+            avancer(b, 4L * n);
+            b.asIntBuffer().get(c.longueursNoms);
+            avancer(b, 4L * n);
+            b.asCharBuffer().get(c.noms);
+            avancer(b, 2L * c.noms.length);
+            c.dictCategories = lireDictionnaire(b, nbCategories);
+            c.dictFournisseurs = lireDictionnaire(b, nbFournisseurs);
+            return contenu;
+        }
+    }
+
+    // ---------------- Interne
+    private static long crc(ByteBuffer b) {
+        CRC32C crc = new CRC32C();
+        crc.update(b.duplicate().position(TAILLE_ENTETE));
+        return crc.getValue();
+    }
+
+    private static void avancer(ByteBuffer b, long octets) {
+        b.position(b.position() + (int) octets);
+    }
+
+    private static long tailleDictionnaire(String[] dict) {
+        long t = 0;
+        for (String s : dict) t += 4 + 2L * s.length();
+        return t;
+    }
+
+    private static void ecrireDictionnaire(ByteBuffer b, String[] dict) {
+        for (String s : dict) {
+            b.putInt(s.length());
+            for (int i = 0; i < s.length(); i++) b.putChar(s.charAt(i));
+        }
+    }
+
+    private static String[] lireDictionnaire(ByteBuffer b, int taille) {
+        String[] dict = new String[taille];
+        for (int i = 0; i < taille; i++) {
+            char[] c = new char[b.getInt()];
+            for (int k = 0; k < c.length; k++) c[k] = b.getChar();
+            dict[i] = new String(c);
+        }
+        return dict;
+    }
+}
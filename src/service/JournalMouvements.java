@@ -0,0 +1,386 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Historique des mouvements de stock : chaque changement de quantité devient un mouvement
+ * (produit, delta, horodatage, fournisseur), cumulé à l'enregistrement dans des compteurs
+ * par jour, semaine (lundi) et mois, pour chaque produit, catégorie et fournisseur.
+ * Un produit est suivi par sa clé persistante ({@link PersistanceCatalogue}), pas par son nom :
+ * un renommage ne coupe pas son historique, deux homonymes ne le partagent pas.
+ * Une requête sur une période ne relit jamais les mouvements : une année se résout en
+ * quelques jours de bord et au plus douze mois, quel que soit le volume enregistré.
+ *
+ * Les ajouts et retraits de produits ne sont pas des mouvements (stock initial / fin de
+ * référence). Les mouvements sont ajoutés à un journal (mouvements-produits.journal, format
+ * {@link FichierJournal}) relu à l'ouverture pour reconstruire les cumuls ; les écritures
+ * disque se font sur un thread dédié, dans l'ordre des mouvements.
+ */
+public class JournalMouvements extends ObservateurCatalogue {
+
+    static final String FICHIER_JOURNAL = "mouvements-produits.journal";
+    /** Ancien journal, produits désignés par leur nom : converti à l'ouverture puis supprimé. */
+    static final String FICHIER_JOURNAL_NOMS = "mouvements.journal";
+
+    /** Regroupements par texte ; les produits ont leurs propres requêtes (par clé). */
+    public enum Dimension { CATEGORIE, FOURNISSEUR }
+
+    public enum Granularite { JOUR, SEMAINE, MOIS }
+
+    /** Entrées (deltas positifs) et sorties (deltas négatifs, en valeur absolue) sur une période. */
+    public static final class Cumul {
+        private final LocalDate debut;
+        private long entrees, sorties;
+
+        Cumul(LocalDate debut) {
+            this.debut = debut;
+        }
+
+        /** Premier jour de la période (point de tendance) ou de la plage demandée. */
+        public LocalDate getDebut() { return debut; }
+        public long getEntrees() { return entrees; }
+        public long getSorties() { return sorties; }
+        public long getNet() { return entrees - sorties; }
+    }
+
+    private final Clock horloge;
+    private final EnumMap<Dimension, Map<String, Serie>> series = new EnumMap<>(Dimension.class);
+    private final Map<Long, Serie> parProduit = new HashMap<>();
+    // Clé stable d'un produit : identifiant de session tant que le journal n'est pas ouvert
+    private ToLongFunction<Produit> cleProduit = Produit::getId;
+    private long nbMouvements;
+    private boolean suspendu;
+    private FileChannel canal;
+
+    private ExecutorService disque;
+    private final AtomicInteger enAttente = new AtomicInteger();
+    private volatile IOException erreur;
+
+    public JournalMouvements(StockColonnes produits) {
+        this(produits, Clock.systemDefaultZone());
+    }
+
+    public JournalMouvements(StockColonnes produits, Clock horloge) {
+        this.horloge = horloge;
+        for (Dimension d : Dimension.values()) series.put(d, new HashMap<>());
+        surveiller(produits);
+    }
+
+    // ---------------- Deltas
+    @Override protected void produitAjoute(Produit p) {}
+    @Override protected void produitRetire(Produit p) {}
+
+    @Override
+    protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        if (suspendu || ancienne == nouvelle) return;
+        long instant = horloge.millis();
+        int delta = nouvelle - ancienne;
+        long cle = cleProduit.applyAsLong(p);
+        cumuler(instant, delta, cle, p.getCategorie(), p.getFournisseur());
+        journaliser(instant, delta, cle, p.getCategorie(), p.getFournisseur());
+    }
+
+    /**
+     * Suspend l'enregistrement : les changements rejoués au chargement du catalogue
+     * ne sont pas de nouveaux mouvements.
+     */
+    public void suspendre(boolean suspendu) {
+        this.suspendu = suspendu;
+    }
+
+    private void cumuler(long instant, int delta, long produit, String categorie, String fournisseur) {
+        long jour = LocalDate.ofInstant(Instant.ofEpochMilli(instant), horloge.getZone()).toEpochDay();
+        if (produit != 0) parProduit.computeIfAbsent(produit, k -> new Serie()).ajouter(jour, delta);
+        serie(Dimension.CATEGORIE, categorie).ajouter(jour, delta);
+        serie(Dimension.FOURNISSEUR, fournisseur).ajouter(jour, delta);
+        nbMouvements++;
+    }
+
+    private Serie serie(Dimension d, String cle) {
+        return series.get(d).computeIfAbsent(cle(cle), k -> new Serie());
+    }
+
+    private static String cle(String s) {
+        return s == null ? "" : s;
+    }
+
+    // ---------------- Requêtes
+    public long getNbMouvements() {
+        return nbMouvements;
+    }
+
+    /** Clés ayant au moins un mouvement (catégories ou fournisseurs). */
+    public Set<String> cles(Dimension dimension) {
+        return Collections.unmodifiableSet(series.get(dimension).keySet());
+    }
+
+    /** Cumul sur la plage [debut, fin] (jours inclus) : jours de bord + mois complets. */
+    public Cumul cumul(Dimension dimension, String cle, LocalDate debut, LocalDate fin) {
+        return cumul(series.get(dimension).get(cle(cle)), debut, fin);
+    }
+
+    /** Cumul d'un produit du catalogue, sous tous ses noms successifs. */
+    public Cumul cumul(Produit produit, LocalDate debut, LocalDate fin) {
+        return cumul(parProduit.get(cleProduit.applyAsLong(produit)), debut, fin);
+    }
+
+    private static Cumul cumul(Serie s, LocalDate debut, LocalDate fin) {
+        Cumul c = new Cumul(debut);
+        if (s == null || fin.isBefore(debut)) return c;
+        LocalDate d = debut;
+        while (!d.isAfter(fin) && d.getDayOfMonth() != 1) {
+            s.jours.lire(d.toEpochDay(), c);
+            d = d.plusDays(1);
+        }
+        while (!d.isAfter(fin) && !d.with(TemporalAdjusters.lastDayOfMonth()).isAfter(fin)) {
+            s.mois.lire(mois(d), c);
+            d = d.plusMonths(1);
+        }
+        while (!d.isAfter(fin)) {
+            s.jours.lire(d.toEpochDay(), c);
+            d = d.plusDays(1);
+        }
+        return c;
+    }
+
+    /** Une période par point de debut à fin (incluses), y compris les périodes sans mouvement. */
+    public List<Cumul> tendance(Dimension dimension, String cle, Granularite granularite, LocalDate debut, LocalDate fin) {
+        return tendance(series.get(dimension).get(cle(cle)), granularite, debut, fin);
+    }
+
+    /** Tendance d'un produit du catalogue, sous tous ses noms successifs. */
+    public List<Cumul> tendance(Produit produit, Granularite granularite, LocalDate debut, LocalDate fin) {
+        return tendance(parProduit.get(cleProduit.applyAsLong(produit)), granularite, debut, fin);
+    }
+
+    private static List<Cumul> tendance(Serie s, Granularite granularite, LocalDate debut, LocalDate fin) {
+        List<Cumul> points = new ArrayList<>();
+        for (LocalDate d = debutPeriode(granularite, debut); !d.isAfter(fin); d = suivante(granularite, d)) {
+            Cumul c = new Cumul(d);
+            if (s != null) {
+                switch (granularite) {
+                    case JOUR -> s.jours.lire(d.toEpochDay(), c);
+                    case SEMAINE -> s.semaines.lire(semaine(d.toEpochDay()), c);
+                    case MOIS -> s.mois.lire(mois(d), c);
+                }
+            }
+            points.add(c);
+        }
+        return points;
+    }
+
+    public static LocalDate debutPeriode(Granularite granularite, LocalDate d) {
+        return switch (granularite) {
+            case JOUR -> d;
+            case SEMAINE -> d.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MOIS -> d.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate suivante(Granularite granularite, LocalDate d) {
+        return switch (granularite) {
+            case JOUR -> d.plusDays(1);
+            case SEMAINE -> d.plus(1, ChronoUnit.WEEKS);
+            case MOIS -> d.plusMonths(1);
+        };
+    }
+
+    /** Semaines numérotées depuis le lundi 29/12/1969 (le 01/01/1970 est un jeudi). */
+    private static long semaine(long jour) {
+        return Math.floorDiv(jour + 3, 7);
+    }
+
+    private static long mois(LocalDate d) {
+        return d.getYear() * 12L + d.getMonthValue() - 1;
+    }
+
+    // ---------------- Cumuls
+    /** Compteurs d'une clé aux trois granularités. */
+    private static final class Serie {
+        final Compteurs jours = new Compteurs();
+        final Compteurs semaines = new Compteurs();
+        final Compteurs mois = new Compteurs();
+
+        void ajouter(long jour, int delta) {
+            jours.ajouter(jour, delta);
+            semaines.ajouter(semaine(jour), delta);
+            mois.ajouter(mois(LocalDate.ofEpochDay(jour)), delta);
+        }
+    }
+
+    /** Entrées/sorties par période, tableaux denses couvrant [base, base + longueur). */
+    private static final class Compteurs {
+        long base;
+        long[] entrees = new long[0];
+        long[] sorties = new long[0];
+
+        void ajouter(long periode, int delta) {
+            if (entrees.length == 0) {
+                base = periode;
+                entrees = new long[8];
+                sorties = new long[8];
+            } else if (periode < base) {
+                int decalage = (int) Math.max(base - periode, entrees.length / 2);
+                long[] e = new long[entrees.length + decalage];
+                long[] s = new long[e.length];
+                System.arraycopy(entrees, 0, e, decalage, entrees.length);
+                System.arraycopy(sorties, 0, s, decalage, sorties.length);
+                entrees = e;
+                sorties = s;
+                base -= decalage;
+            } else if (periode - base >= entrees.length) {
+                int longueur = (int) Math.max(periode - base + 1, entrees.length * 2L);
+                entrees = Arrays.copyOf(entrees, longueur);
+                sorties = Arrays.copyOf(sorties, longueur);
+            }
+            int i = (int) (periode - base);
+            if (delta > 0) entrees[i] += delta;
+            else sorties[i] -= delta;
+        }
+
+        void lire(long periode, Cumul c) {
+            long i = periode - base;
+            if (i < 0 || i >= entrees.length) return;
+            c.entrees += entrees[(int) i];
+            c.sorties += sorties[(int) i];
+        }
+    }
+
+    // ---------------- Journal
+    /**
+     * Rejoue le journal du dossier (cumuls reconstruits), puis y ajoute chaque nouveau mouvement.
+     * @param produits catalogue déjà rechargé, pour convertir un ancien journal (produits par nom)
+     * @param cleProduit clé persistante d'un produit du catalogue (0 : aucune)
+     */
+    public void ouvrir(Path dossier, List<Produit> produits, ToLongFunction<Produit> cleProduit) throws IOException {
+        if (canal != null) throw new IllegalStateException("Journal des mouvements déjà ouvert");
+        Files.createDirectories(dossier);
+        this.cleProduit = cleProduit;
+        Path journal = dossier.resolve(FICHIER_JOURNAL);
+        Path ancien = dossier.resolve(FICHIER_JOURNAL_NOMS);
+        if (Files.exists(ancien)) {
+            if (!Files.exists(journal) || Files.size(journal) == 0) convertirJournalNoms(ancien, journal, produits);
+            Files.delete(ancien); // converti (éventuellement avant un arrêt brutal)
+        }
+        FichierJournal.relire(journal, b -> cumuler(b.getLong(), b.getInt(), b.getLong(),
+                FichierJournal.lireTexte(b), FichierJournal.lireTexte(b)));
+        canal = FileChannel.open(journal, CREATE, WRITE, APPEND);
+        disque = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "journal-mouvements");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Ancien format [instant][delta][nom][catégorie][fournisseur] : chaque mouvement est rattaché
+     * au produit de ce nom s'il est seul à le porter (sinon catégorie et fournisseur seulement).
+     * Écrit à côté puis renommé : le nouveau journal n'est jamais partiel.
+     */
+    private void convertirJournalNoms(Path ancien, Path journal, List<Produit> produits) throws IOException {
+        Map<String, Long> parNom = new HashMap<>();
+        for (Produit p : produits) parNom.merge(cle(p.getNom()), cleProduit.applyAsLong(p), (a, b) -> 0L);
+        Path partiel = journal.resolveSibling(journal.getFileName() + ".part");
+        try (FileChannel sortie = FileChannel.open(partiel, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            IOException[] echec = new IOException[1];
+            FichierJournal.relire(ancien, b -> {
+                long instant = b.getLong();
+                int delta = b.getInt();
+                long produit = parNom.getOrDefault(FichierJournal.lireTexte(b), 0L);
+                ByteBuffer e = enregistrement(instant, delta, produit, FichierJournal.lireTexte(b), FichierJournal.lireTexte(b));
+                try {
+                    while (e.hasRemaining() && echec[0] == null) sortie.write(e);
+                } catch (IOException ex) {
+                    echec[0] = ex;
+                }
+            });
+            if (echec[0] != null) throw echec[0];
+            sortie.force(false);
+        }
+        Files.move(partiel, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void journaliser(long instant, int delta, long produit, String categorie, String fournisseur) {
+        if (canal == null) return;
+        ByteBuffer b = enregistrement(instant, delta, produit, categorie, fournisseur);
+        soumettre(() -> {
+            while (b.hasRemaining()) canal.write(b);
+        });
+    }
+
+    /** Enregistrement : [long instant (ms)][int delta][long clé produit][catégorie][fournisseur]. */
+    private static ByteBuffer enregistrement(long instant, int delta, long produit, String categorie, String fournisseur) {
+        ByteBuffer b = FichierJournal.nouveau(8 + 4 + 8 + FichierJournal.taille(categorie) + FichierJournal.taille(fournisseur));
+        b.putLong(instant).putInt(delta).putLong(produit);
+        FichierJournal.ecrireTexte(b, categorie);
+        FichierJournal.ecrireTexte(b, fournisseur);
+        return FichierJournal.sceller(b);
+    }
+
+    private interface TacheDisque {
+        void executer() throws IOException;
+    }
+
+    /** File les écritures ; le journal est synchronisé sur disque quand la file se vide. */
+    private void soumettre(TacheDisque tache) {
+        enAttente.incrementAndGet();
+        disque.execute(() -> {
+            if (erreur == null) executer(tache);
+            if (enAttente.decrementAndGet() == 0 && erreur == null) executer(() -> canal.force(false));
+        });
+    }
+
+    /** Une erreur disque arrête la journalisation (les cumuls continuent) ; remontée à la fermeture. */
+    private void executer(TacheDisque tache) {
+        try {
+            tache.executer();
+        } catch (IOException e) {
+            if (erreur == null) {
+                erreur = e;
+                System.err.println("Journal des mouvements : écriture impossible, journalisation arrêtée : " + e.getMessage());
+            }
+        }
+    }
+
+    /** Première erreur d'écriture rencontrée (null si aucune). */
+    public IOException getErreur() {
+        return erreur;
+    }
+
+    /** Attend la fin des écritures, synchronise le journal sur disque et le ferme. */
+    public void fermer() {
+        if (canal == null) return;
+        disque.shutdown();
+        try (FileChannel c = canal) {
+            if (!disque.awaitTermination(1, TimeUnit.MINUTES)) throw new IOException("Écritures des mouvements non terminées");
+            if (erreur == null) c.force(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (erreur == null) erreur = e;
+        } finally {
+            canal = null;
+        }
+        if (erreur != null) throw new UncheckedIOException("Échec du journal des mouvements", erreur);
+    }
+}
@@ -0,0 +1,59 @@
+package service;
+
+import javafx.collections.ListChangeListener;
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base des index maintenus incrémentalement sur le catalogue.
+ * S'abonne aux ajouts/retraits de la liste et aux changements de champ émis par le stock
+ * en colonnes, puis transmet uniquement des deltas (ancienne/nouvelle valeur) aux sous-classes.
+ * Aucune propriété JavaFX n'est matérialisée pour cela.
+ */
+public abstract class ObservateurCatalogue {
+
+    /** À appeler en fin de constructeur de la sous-classe (ses champs doivent être prêts). */
+    protected final void surveiller(StockColonnes produits) {
+        produits.addListener((ListChangeListener<Produit>) c -> {
+            // Sous-changements regroupés : un retrait épars (removeAll) arrive en un seul lot
+            List<Produit> retires = new ArrayList<>(), ajoutes = new ArrayList<>();
+            while (c.next()) {
+                if (c.wasPermutated() || c.wasUpdated()) continue;
+                if (c.wasRemoved()) retires.addAll(c.getRemoved());
+                if (c.wasAdded()) ajoutes.addAll(c.getAddedSubList());
+            }
+            if (!retires.isEmpty()) produitsRetires(retires);
+            if (!ajoutes.isEmpty()) produitsAjoutes(ajoutes);
+        });
+        produits.ajouterEcouteur(new StockColonnes.Ecouteur() {
+            @Override public void nomModifie(Produit p, String a, String n) { ObservateurCatalogue.this.nomModifie(p, a, n); }
+            @Override public void categorieModifiee(Produit p, String a, String n) { ObservateurCatalogue.this.categorieModifiee(p, a, n); }
+            @Override public void prixModifie(Produit p, double a, double n) { ObservateurCatalogue.this.prixModifie(p, a, n); }
+            @Override public void quantiteModifiee(Produit p, int a, int n) { ObservateurCatalogue.this.quantiteModifiee(p, a, n); }
+            @Override public void fournisseurModifie(Produit p, String a, String n) { ObservateurCatalogue.this.fournisseurModifie(p, a, n); }
+        });
+        for (Produit p : produits) produitAjoute(p);
+    }
+
+    // ---------------- Deltas transmis aux sous-classes
+    protected abstract void produitAjoute(Produit p);
+    protected abstract void produitRetire(Produit p);
+
+    /** Ajout groupé (chargement, setAll) : par défaut produit par produit. */
+    protected void produitsAjoutes(List<? extends Produit> lot) {
+        for (Produit p : lot) produitAjoute(p);
+    }
+
+    protected void produitsRetires(List<? extends Produit> lot) {
+        for (Produit p : lot) produitRetire(p);
+    }
+
+    protected void nomModifie(Produit p, String ancien, String nouveau) {}
+    protected void categorieModifiee(Produit p, String ancienne, String nouvelle) {}
+    protected void prixModifie(Produit p, double ancien, double nouveau) {}
+    protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {}
+    protected void fournisseurModifie(Produit p, String ancien, String nouveau) {}
+}
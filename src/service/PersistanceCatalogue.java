@@ -0,0 +1,346 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Persistance locale du catalogue, sans base externe :
+ * - chaque ajout, retrait ou modification de champ est ajouté à un journal (catalogue.journal),
+ *   enregistrement par enregistrement, avec longueur + CRC32C ({@link FichierJournal}) et numéro de séquence ;
+ * - le journal est périodiquement compacté en un instantané en colonnes (catalogue.instantane),
+ *   relu par projection mémoire au démarrage ;
+ * - après un arrêt brutal, seuls les enregistrements postérieurs à l'instantané sont rejoués,
+ *   et une fin de journal tronquée (CRC invalide) est coupée.
+ * Les écritures disque se font sur un thread dédié, dans l'ordre des changements.
+ */
+public class PersistanceCatalogue extends ObservateurCatalogue {
+
+    static final String FICHIER_INSTANTANE = "catalogue.instantane";
+    static final String FICHIER_JOURNAL = "catalogue.journal";
+
+    /** Nombre minimal d'enregistrements de journal avant compaction en instantané. */
+    private static final int SEUIL_COMPACTAGE = 100_000;
+
+    private static final byte AJOUT = 1, RETRAIT = 2, NOM = 3, CATEGORIE = 4, PRIX = 5, QUANTITE = 6, FOURNISSEUR = 7;
+
+    private final StockColonnes produits;
+    private final Path instantane;
+    private final FileChannel canal;
+
+    // Clé persistante par Produit.id (0 : pas encore attribuée)
+    private long[] cleParId;
+    private long prochaineCle;
+    private long seq;
+    private int enregistrementsDepuisInstantane;
+    // Lot d'ajouts/retraits en cours de journalisation : le stock contient déjà tout le lot,
+    // un instantané pris maintenant compterait des produits sans clé (compaction reportée)
+    private boolean dansUnLot;
+
+    private final ExecutorService disque = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "persistance-catalogue");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger enAttente = new AtomicInteger();
+    private volatile IOException erreur;
+
+    /**
+     * Recharge le catalogue depuis le dossier dans la liste : instantané copié en bloc dans les
+     * colonnes (une seule notification), puis fin de journal rejouée ; journalise ensuite
+     * toutes les modifications.
+     */
+    public static PersistanceCatalogue ouvrir(Path dossier, StockColonnes produits) throws IOException {
+        if (!produits.isEmpty()) throw new IllegalStateException("Le catalogue doit être vide avant chargement");
+        Files.createDirectories(dossier);
+        Path instantane = dossier.resolve(FICHIER_INSTANTANE);
+        Path journal = dossier.resolve(FICHIER_JOURNAL);
+
+        Rechargement r = new Rechargement(produits, InstantaneCatalogue.lire(instantane));
+        r.rejouer(journal);
+        r.terminer();
+        return new PersistanceCatalogue(produits, instantane, journal, r);
+    }
+
+    private PersistanceCatalogue(StockColonnes produits, Path instantane, Path journal, Rechargement r) throws IOException {
+        this.produits = produits;
+        this.instantane = instantane;
+        this.cleParId = r.cleParId;
+        this.prochaineCle = r.prochaineCle;
+        this.seq = r.seq;
+        this.enregistrementsDepuisInstantane = r.rejoues;
+        this.canal = FileChannel.open(journal, CREATE, WRITE, APPEND);
+        surveiller(produits);
+    }
+
+    // ---------------- Deltas -> journal
+    @Override
+    protected void produitsAjoutes(List<? extends Produit> lot) {
+        dansUnLot = true;
+        try {
+            super.produitsAjoutes(lot);
+        } finally {
+            dansUnLot = false;
+        }
+        compacterSiNecessaire();
+    }
+
+    @Override
+    protected void produitsRetires(List<? extends Produit> lot) {
+        dansUnLot = true;
+        try {
+            super.produitsRetires(lot);
+        } finally {
+            dansUnLot = false;
+        }
+        compacterSiNecessaire();
+    }
+
+    @Override
+    protected void produitAjoute(Produit p) {
+        if (cle(p) != 0) return; // déjà persistant (chargé au démarrage)
+        long cle = ++prochaineCle;
+        attribuer(p, cle);
+        ByteBuffer b = debut(AJOUT, cle, 8 + 4 + FichierJournal.taille(p.getNom()) + FichierJournal.taille(p.getCategorie()) + FichierJournal.taille(p.getFournisseur()));
+        FichierJournal.ecrireTexte(b, p.getNom());
+        FichierJournal.ecrireTexte(b, p.getCategorie());
+        b.putDouble(p.getPrix());
+        b.putInt(p.getQuantite());
+        FichierJournal.ecrireTexte(b, p.getFournisseur());
+        journaliser(b);
+    }
+
+    @Override
+    protected void produitRetire(Produit p) {
+        long cle = cle(p);
+        if (cle == 0) return;
+        cleParId[p.getId()] = 0;
+        journaliser(debut(RETRAIT, cle, 0));
+    }
+
+    @Override protected void nomModifie(Produit p, String ancien, String nouveau) { texteModifie(p, NOM, nouveau); }
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) { texteModifie(p, CATEGORIE, nouvelle); }
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) { texteModifie(p, FOURNISSEUR, nouveau); }
+
+    @Override
+    protected void prixModifie(Produit p, double ancien, double nouveau) {
+        journaliser(debut(PRIX, cle(p), 8).putDouble(nouveau));
+    }
+
+    @Override
+    protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        journaliser(debut(QUANTITE, cle(p), 4).putInt(nouvelle));
+    }
+
+    private void texteModifie(Produit p, byte type, String valeur) {
+        ByteBuffer b = debut(type, cle(p), FichierJournal.taille(valeur));
+        FichierJournal.ecrireTexte(b, valeur);
+        journaliser(b);
+    }
+
+    // ---------------- Compaction / fermeture
+    /**
+     * Écrit un instantané du catalogue courant et vide le journal (en arrière-plan, dans l'ordre).
+     * Entre deux changements de liste seulement : chaque produit du stock doit avoir sa clé.
+     */
+    public void compacter() {
+        InstantaneCatalogue.Contenu c = new InstantaneCatalogue.Contenu();
+        c.colonnes = produits.copierColonnes();
+        c.cles = new long[c.colonnes.taille];
+        for (int i = 0; i < c.cles.length; i++) c.cles[i] = cle(produits.get(i));
+        c.dernierSeq = seq;
+        c.prochaineCle = prochaineCle;
+        enregistrementsDepuisInstantane = 0;
+        soumettre(() -> {
+            InstantaneCatalogue.ecrire(instantane, c);
+            // Les enregistrements suivants sont en file derrière cette tâche : le journal ne contient
+            // que des séquences couvertes par l'instantané, il peut être vidé.
+            canal.truncate(0);
+            canal.force(true);
+        });
+    }
+
+    /** Compacte, attend la fin des écritures et ferme le journal. */
+    public void fermer() {
+        if (enregistrementsDepuisInstantane > 0) compacter();
+        disque.shutdown();
+        try {
+            if (!disque.awaitTermination(1, TimeUnit.MINUTES)) throw new IOException("Écritures du catalogue non terminées");
+            canal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (erreur == null) erreur = e;
+        }
+        if (erreur != null) throw new UncheckedIOException("Échec de la persistance du catalogue", erreur);
+    }
+
+    /** Attend que les écritures déjà en file soient faites (tests : arrêt brutal simulé ensuite). */
+    void attendreEcritures() throws Exception {
+        disque.submit(() -> { }).get();
+    }
+
+    /** Première erreur d'écriture rencontrée (null si aucune). */
+    public IOException getErreur() {
+        return erreur;
+    }
+
+    // ---------------- Interne
+    private interface TacheDisque {
+        void executer() throws IOException;
+    }
+
+    /** Clé persistante du produit (0 : pas au catalogue), stable d'une exécution à l'autre. */
+    long cle(Produit p) {
+        int id = p.getId();
+        return id < cleParId.length ? cleParId[id] : 0;
+    }
+
+    private void attribuer(Produit p, long cle) {
+        int id = p.getId();
+        if (id >= cleParId.length) cleParId = Arrays.copyOf(cleParId, Math.max(id + 1, cleParId.length * 2));
+        cleParId[id] = cle;
+    }
+
+    /** Enregistrement : [int longueur corps][int CRC32C corps][long seq][byte type][long clé][charge]. */
+    private ByteBuffer debut(byte type, long cle, int tailleCharge) {
+        return FichierJournal.nouveau(8 + 1 + 8 + tailleCharge).putLong(++seq).put(type).putLong(cle);
+    }
+
+    private void journaliser(ByteBuffer b) {
+        FichierJournal.sceller(b);
+        soumettre(() -> {
+            while (b.hasRemaining()) canal.write(b);
+        });
+        enregistrementsDepuisInstantane++;
+        if (!dansUnLot) compacterSiNecessaire();
+    }
+
+    private void compacterSiNecessaire() {
+        if (enregistrementsDepuisInstantane > Math.max(SEUIL_COMPACTAGE, produits.size())) compacter();
+    }
+
+    /** File les écritures ; le journal est synchronisé sur disque quand la file se vide. */
+    private void soumettre(TacheDisque tache) {
+        enAttente.incrementAndGet();
+        disque.execute(() -> {
+            if (erreur == null) executer(tache);
+            if (enAttente.decrementAndGet() == 0 && erreur == null) executer(() -> canal.force(false));
+        });
+    }
+
+    /** Une erreur disque arrête la journalisation ; elle est conservée et remontée à la fermeture. */
+    private void executer(TacheDisque tache) {
+        try {
+            tache.executer();
+        } catch (IOException e) {
+            if (erreur == null) {
+                erreur = e;
+                System.err.println("Persistance du catalogue : écriture impossible, journalisation arrêtée : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reconstruction au démarrage : instantané chargé dans le stock, puis enregistrements de
+     * séquence postérieure. Les modifications s'appliquent directement aux produits ; ajouts et
+     * retraits sont regroupés pour ne notifier la liste qu'une fois chacun.
+     */
+    private static final class Rechargement {
+        final StockColonnes produits;
+        final long[] clesInstantane;
+        long[] cleParId = new long[64];
+        long prochaineCle;
+        long seq;
+        int rejoues;
+        private Map<Long, Produit> parCle; // construit seulement si le journal en a besoin
+        private final Map<Long, Produit> ajoutes = new LinkedHashMap<>();
+        private final Set<Produit> retires = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Rechargement(StockColonnes produits, InstantaneCatalogue.Contenu contenu) {
+            this.produits = produits;
+            if (contenu == null) {
+                clesInstantane = new long[0];
+                return;
+            }
+            produits.charger(contenu.colonnes);
+            clesInstantane = contenu.cles;
+            prochaineCle = contenu.prochaineCle;
+            seq = contenu.dernierSeq;
+        }
+
+        void rejouer(Path journal) throws IOException {
+            FichierJournal.relire(journal, this::appliquer);
+        }
+
+        /** Applique les retraits et ajouts regroupés, puis fixe la clé de chaque produit chargé. */
+        void terminer() {
+            if (!retires.isEmpty()) produits.removeAll(retires);
+            if (!ajoutes.isEmpty()) produits.addAll(ajoutes.values());
+            if (parCle == null) {
+                // Aucun enregistrement rejoué : le stock est dans l'ordre de l'instantané
+                for (int i = 0; i < clesInstantane.length; i++) attribuer(produits.get(i), clesInstantane[i]);
+            } else {
+                parCle.forEach((cle, p) -> attribuer(p, cle));
+            }
+        }
+
+        private void attribuer(Produit p, long cle) {
+            int id = p.getId();
+            if (id >= cleParId.length) cleParId = Arrays.copyOf(cleParId, Math.max(id + 1, cleParId.length * 2));
+            cleParId[id] = cle;
+        }
+
+        private void appliquer(ByteBuffer b) {
+            long s = b.getLong();
+            byte type = b.get();
+            long cle = b.getLong();
+            if (s <= seq) return; // déjà dans l'instantané
+            seq = s;
+            rejoues++;
+            if (type == AJOUT) {
+                Produit p = new Produit(FichierJournal.lireTexte(b), FichierJournal.lireTexte(b), b.getDouble(), b.getInt(), FichierJournal.lireTexte(b));
+                ajoutes.put(cle, p);
+                parCle().put(cle, p);
+                prochaineCle = Math.max(prochaineCle, cle);
+                return;
+            }
+            Produit p = parCle().get(cle);
+            if (p == null) return;
+            switch (type) {
+                case RETRAIT -> {
+                    parCle.remove(cle);
+                    if (ajoutes.remove(cle) == null) retires.add(p);
+                }
+                case NOM -> p.setNom(FichierJournal.lireTexte(b));
+                case CATEGORIE -> p.setCategorie(FichierJournal.lireTexte(b));
+                case PRIX -> p.setPrix(b.getDouble());
+                case QUANTITE -> p.setQuantite(b.getInt());
+                case FOURNISSEUR -> p.setFournisseur(FichierJournal.lireTexte(b));
+                default -> { }
+            }
+        }
+
+        /** Produits vivants par clé (instantané + ajouts du journal). */
+        private Map<Long, Produit> parCle() {
+            if (parCle == null) {
+                parCle = new HashMap<>(clesInstantane.length * 2);
+                for (int i = 0; i < clesInstantane.length; i++) parCle.put(clesInstantane[i], produits.get(i));
+            }
+            return parCle;
+        }
+    }
+}
@@ -1,21 +1,361 @@
 package service;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.chart.PieChart;
 import javafx.scene.chart.XYChart;
 import model.Produit;
+import model.StockColonnes;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+/**
+ * Catalogue et index associés. La liste observable appartient à un seul thread, le thread de
+ * publication (thread FX par défaut) : les écritures soumises depuis n'importe quel thread
+ * (ajouter, supprimer, modifier, ajusterQuantite) sont mises dans une file sans verrou et
+ * appliquées par lots sur ce thread, dans l'ordre de soumission ; aucune n'est perdue.
+ * Les autres threads lisent un {@link CatalogueFige}.
+ */
 public class ProduitService {
 
-    private List<Produit> produits = new ArrayList<>();
+    private static final byte AJOUT = 1, RETRAIT = 2, MODIFICATION = 3, AJUSTEMENT = 4;
 
-    // ✅ Ajouter un produit
+    /** Écriture en attente de publication. */
+    private static final class Ecriture {
+        final byte type;
+        final Collection<Produit> lot;
+        final Produit produit;
+        final int valeur; // version lue (MODIFICATION) ou delta de quantité (AJUSTEMENT)
+        final Consumer<Produit> modification;
+        final CompletableFuture<Boolean> resultat;
+
+        Ecriture(byte type, Collection<Produit> lot, Produit produit, int valeur,
+                 Consumer<Produit> modification, CompletableFuture<Boolean> resultat) {
+            this.type = type;
+            this.lot = lot;
+            this.produit = produit;
+            this.valeur = valeur;
+            this.modification = modification;
+            this.resultat = resultat;
+        }
+    }
+
+    private final BooleanSupplier surThreadPublication;
+    private final Executor publication;
+    private final ConcurrentLinkedQueue<Ecriture> enAttente = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean publicationPrevue = new AtomicBoolean();
+    private boolean enPublication; // écriture soumise par un écouteur pendant la publication
+    private volatile CatalogueFige fige;
+
+    private final StockColonnes produits = new StockColonnes();
+    private final StatistiquesCatalogue statistiques = new StatistiquesCatalogue(produits);
+    private final IndexRecherche indexRecherche = new IndexRecherche(produits);
+    private final ClassementFournisseurs classementFournisseurs = new ClassementFournisseurs(produits);
+    private final AlertesStock alertesStock = new AlertesStock(produits);
+    private final JournalMouvements mouvements = new JournalMouvements(produits);
+    private final Taxonomie taxonomie = Taxonomie.standard();
+    private final IndexFiltres indexFiltres = new IndexFiltres(produits, taxonomie);
+    private final IndexTri indexTri = new IndexTri(produits); // avant toute VueTriee (ordre des notifications)
+    private PersistanceCatalogue persistance;
+    private FluxChangements fluxChangements; // réplication vers les autres dépôts
+    private RepartitionVivante repartitionFournisseurs, repartitionCategories; // graphiques de l'accueil
+    private ObservableList<XYChart.Series<String, Number>> seriesFournisseurs;
+    // LineChart des sorties : séries tenues à jour, relues quand le journal ou la semaine change
+    private ObservableList<XYChart.Series<String, Number>> seriesSorties;
+    private long mouvementsSorties;
+    private LocalDate finSorties;
+    private int semainesSorties;
+
+    /** Dossier des données locales (catalogue, mouvements), modifiable avec -Dgestionnaire.donnees. */
+    public static final Path DOSSIER_DONNEES = Path.of(System.getProperty("gestionnaire.donnees",
+            System.getProperty("user.home") + "/.gestionnaire-produits"));
+
+    public ProduitService() {
+        this(Platform::isFxApplicationThread, Platform::runLater);
+    }
+
+    /**
+     * @param surThreadPublication vrai sur le thread propriétaire de la liste
+     * @param publication exécute une tâche sur ce thread (ex. Platform::runLater)
+     */
+    public ProduitService(BooleanSupplier surThreadPublication, Executor publication) {
+        this.surThreadPublication = surThreadPublication;
+        this.publication = publication;
+        produits.setThreadProprietaire(surThreadPublication);
+    }
+
+    // ✅ Catalogue observable (source unique pour les vues et les index)
+    public ObservableList<Produit> getProduits() {
+        return produits;
+    }
+
+    public StatistiquesCatalogue getStatistiques() {
+        return statistiques;
+    }
+
+    public ClassementFournisseurs getClassementFournisseurs() {
+        return classementFournisseurs;
+    }
+
+    // ✅ Alertes de stock bas (seuils par défaut / catégorie / produit)
+    public AlertesStock getAlertesStock() {
+        return alertesStock;
+    }
+
+    // ✅ Historique des mouvements de stock (cumuls jour / semaine / mois)
+    public JournalMouvements getMouvements() {
+        return mouvements;
+    }
+
+    // ✅ Top K fournisseurs par quantité (lecture du classement, sans group-by)
+    public List<ClassementFournisseurs.Entree> getTopFournisseurs(int k) {
+        return classementFournisseurs.top(k);
+    }
+
+    // ✅ Vue filtrée/triée pour l'affichage (tri par parcours des index de colonnes)
+    public VueTriee creerVueTriee() {
+        return new VueTriee(produits, indexTri);
+    }
+
+    public Taxonomie getTaxonomie() {
+        return taxonomie;
+    }
+
+    // ✅ Critères combinés : index bitmap (catégorie, fournisseurs, fourchettes) ∩ index de trigrammes
+    //    (tout thread) ; ce qui se vérifie produit par produit est lu dans la copie figée
+    public Predicate<Produit> filtre(CritereFiltres critere) {
+        if (critere.estVide()) return p -> true;
+        CatalogueFige fige = instantane();
+        BitSet ids = indexFiltres.evaluer(critere, fige);
+        BitSet texte = indexRecherche.rechercher(critere.getRecherche(), fige);
+        if (texte != null) {
+            if (ids == null) ids = texte;
+            else ids.and(texte);
+        }
+        if (ids == null) return p -> true;
+        BitSet retenus = ids;
+        return p -> retenus.get(p.getId());
+    }
+
+    /** Fournisseurs présents au catalogue (liste de choix des filtres). */
+    public List<String> getFournisseurs() {
+        return indexFiltres.fournisseurs();
+    }
+
+    // ✅ Persistance locale : recharge le catalogue enregistré puis journalise chaque changement
+    public void ouvrirPersistance(Path dossier) throws IOException {
+        if (persistance != null) throw new IllegalStateException("Persistance déjà ouverte");
+        // Quantités rejouées depuis le journal du catalogue : pas de nouveaux mouvements
+        mouvements.suspendre(true);
+        try {
+            persistance = PersistanceCatalogue.ouvrir(dossier, produits);
+        } finally {
+            mouvements.suspendre(false);
+        }
+        mouvements.ouvrir(dossier, produits, persistance::cle);
+    }
+
+    // ✅ Flux de changements numérotés pour la réplication (sur le thread de publication) ;
+    //    capture les changements suivants, le catalogue courant est servi en instantané
+    public FluxChangements ouvrirFluxChangements(String depot) {
+        if (fluxChangements != null) throw new IllegalStateException("Flux de changements déjà ouvert");
+        fluxChangements = new FluxChangements(produits, depot);
+        return fluxChangements;
+    }
+
+    public FluxChangements getFluxChangements() {
+        return fluxChangements;
+    }
+
+    // ✅ Fermer : compaction du journal, attente des écritures, mouvements synchronisés
+    public void fermer() {
+        try {
+            if (persistance != null) persistance.fermer();
+        } finally {
+            mouvements.fermer();
+        }
+    }
+
+    // ✅ Ajouter un produit (tout thread)
     public void ajouter(Produit produit) {
-        produits.add(produit);
+        soumettre(new Ecriture(AJOUT, List.of(produit), null, 0, null, null));
+    }
+
+    // ✅ Ajouter un lot (import, tout thread) : un seul changement de liste pour les index, filtres et KPI
+    public void ajouterTous(Collection<Produit> lot) {
+        soumettre(new Ecriture(AJOUT, new ArrayList<>(lot), null, 0, null, null));
+    }
+
+    // ✅ Supprimer un produit (tout thread)
+    public void supprimer(Produit produit) {
+        soumettre(new Ecriture(RETRAIT, null, produit, 0, null, null));
+    }
+
+    // ✅ Supprimer une sélection (tout thread) : un seul changement de liste
+    public void supprimerTous(Collection<Produit> lot) {
+        soumettre(new Ecriture(RETRAIT, new ArrayList<>(lot), null, 0, null, null));
+    }
+
+    // ✅ Modification optimiste (tout thread) : appliquée seulement si le produit est encore
+    //    au catalogue et à la version lue ; le résultat (false : conflit) est connu sur le
+    //    thread de publication, immédiatement si l'appel y est fait
+    public CompletableFuture<Boolean> modifier(Produit produit, int versionLue, Consumer<Produit> modification) {
+        CompletableFuture<Boolean> resultat = new CompletableFuture<>();
+        soumettre(new Ecriture(MODIFICATION, null, produit, versionLue, modification, resultat));
+        return resultat;
+    }
+
+    // ✅ Entrée / sortie de stock (tout thread) : relative, donc jamais en conflit
+    //    (false : produit retiré du catalogue entre-temps)
+    public CompletableFuture<Boolean> ajusterQuantite(Produit produit, int delta) {
+        CompletableFuture<Boolean> resultat = new CompletableFuture<>();
+        soumettre(new Ecriture(AJUSTEMENT, null, produit, delta, null, resultat));
+        return resultat;
+    }
+
+    // ✅ Révision courante du catalogue (tout thread) : change à chaque écriture publiée
+    public long getRevision() {
+        return produits.getRevision();
+    }
+
+    /** Lecture des index (non synchronisés) depuis un autre thread : exécutée sur le thread de publication. */
+    <T> CompletableFuture<T> lire(Supplier<T> lecture) {
+        if (surThreadPublication.getAsBoolean()) return CompletableFuture.completedFuture(lecture.get());
+        return CompletableFuture.supplyAsync(lecture, publication);
+    }
+
+    /** Tâche sur la liste et les index depuis un autre thread : exécutée sur le thread de publication. */
+    CompletableFuture<Void> executer(Runnable tache) {
+        return lire(() -> {
+            tache.run();
+            return null;
+        });
+    }
+
+    /** Le stock lui-même, pour les écritures groupées faites sur le thread de publication. */
+    StockColonnes getStock() {
+        return produits;
+    }
+
+    /** Persistance ouverte (null sinon). */
+    PersistanceCatalogue getPersistance() {
+        return persistance;
+    }
+
+    // ✅ Copie immuable du catalogue, partagée tant qu'il ne change pas ; hors thread de
+    //    publication, attend au plus la copie des colonnes (les écritures ne sont pas bloquées)
+    public CatalogueFige instantane() {
+        CatalogueFige f = fige;
+        if (f != null && f.getRevision() == produits.getRevision()) return f;
+        if (surThreadPublication.getAsBoolean()) return figer();
+        CompletableFuture<CatalogueFige> copie = new CompletableFuture<>();
+        publication.execute(() -> copie.complete(figer()));
+        return copie.join();
+    }
+
+    private CatalogueFige figer() {
+        CatalogueFige f = fige;
+        if (f == null || f.getRevision() != produits.getRevision()) {
+            fige = f = new CatalogueFige(produits.getRevision(), produits.copierColonnes(), produits.toArray(new Produit[0]));
+        }
+        return f;
+    }
+
+    // ---------------- Publication des écritures
+    private void soumettre(Ecriture e) {
+        enAttente.add(e);
+        if (surThreadPublication.getAsBoolean()) publier();
+        else if (publicationPrevue.compareAndSet(false, true)) publication.execute(this::publier);
+    }
+
+    /**
+     * Vide la file sur le thread de publication. Ajouts et retraits consécutifs sont regroupés
+     * en un seul changement de liste ; une modification applique d'abord les lots en cours
+     * pour garder l'ordre de soumission.
+     */
+    private void publier() {
+        publicationPrevue.set(false);
+        if (enPublication) return; // la boucle en cours la prendra
+        enPublication = true;
+        try {
+            vider();
+        } finally {
+            enPublication = false;
+        }
+    }
+
+    private void vider() {
+        Set<Produit> ajouts = new LinkedHashSet<>();
+        Set<Produit> retraits = new HashSet<>();
+        Ecriture e;
+        while ((e = enAttente.poll()) != null) {
+            switch (e.type) {
+                case AJOUT -> {
+                    appliquerRetraits(retraits);
+                    for (Produit p : e.lot) if (!produits.contient(p)) ajouts.add(p);
+                }
+                case RETRAIT -> {
+                    appliquerAjouts(ajouts);
+                    if (e.lot == null) {
+                        if (produits.contient(e.produit)) retraits.add(e.produit);
+                    } else {
+                        for (Produit p : e.lot) if (produits.contient(p)) retraits.add(p);
+                    }
+                }
+                default -> {
+                    appliquerAjouts(ajouts);
+                    appliquerRetraits(retraits);
+                    appliquer(e);
+                }
+            }
+        }
+        appliquerAjouts(ajouts);
+        appliquerRetraits(retraits);
+    }
+
+    private void appliquerAjouts(Set<Produit> ajouts) {
+        if (ajouts.isEmpty()) return;
+        produits.addAll(ajouts);
+        ajouts.clear();
+    }
+
+    private void appliquerRetraits(Set<Produit> retraits) {
+        if (retraits.isEmpty()) return;
+        produits.removeAll(retraits);
+        retraits.clear();
+    }
+
+    private void appliquer(Ecriture e) {
+        Produit p = e.produit;
+        if (e.type == AJUSTEMENT) {
+            boolean present = produits.contient(p);
+            if (present) p.setQuantite(p.getQuantite() + e.valeur);
+            e.resultat.complete(present);
+            return;
+        }
+        if (!produits.contient(p) || p.getVersion() != e.valeur) {
+            e.resultat.complete(false);
+            return;
+        }
+        try {
+            e.modification.accept(p);
+            e.resultat.complete(true);
+        } catch (RuntimeException ex) {
+            e.resultat.completeExceptionally(ex);
+        }
     }
 
     // ✅ Lister tous les produits
@@ -23,63 +363,114 @@ public class ProduitService {
         return new ArrayList<>(produits);
     }
 
-    // ✅ Calculer valeur totale
+    // ✅ Calculer valeur totale (maintenue par delta)
+    public double calculerValeurTotale() {
+        return statistiques.getValeurTotale();
+    }
+
+    // ✅ Calculer valeur totale d'une vue (ex. liste filtrée)
     public double calculerValeurTotale(ObservableList<Produit> produits) {
-        return produits.stream()
-                .mapToDouble(p -> p.getPrix() * p.getQuantite())
-                .sum();
+        if (produits == this.produits) return statistiques.getValeurTotale();
+        double total = 0;
+        for (int i = 0, n = produits.size(); i < n; i++) {
+            Produit p = produits.get(i);
+            total += p.getPrix() * p.getQuantite();
+        }
+        return total;
     }
 
     // ✅ Extraire toutes les catégories uniques
     public List<String> getToutesCategories() {
-        return produits.stream()
-                .map(Produit::getCategorie)
-                .distinct()
-                .collect(Collectors.toList());
+        return new ArrayList<>(statistiques.getCategories().cles());
     }
 
     // ✅ Catégorie la plus fréquente
     public String getCategorieLaPlusFrequente() {
-        return produits.stream()
-                .collect(Collectors.groupingBy(Produit::getCategorie, Collectors.counting()))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("-");
+        return statistiques.getCategorieLaPlusFrequente();
     }
 
     // ✅ Fournisseur principal
     public String getFournisseurPrincipal() {
-        return produits.stream()
-                .collect(Collectors.groupingBy(Produit::getFournisseur, Collectors.counting()))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("-");
+        return statistiques.getFournisseurPrincipal();
     }
 
-    // ✅ Données pour BarChart (Quantité par fournisseur)
+    /** Barres et parts affichées : les N premiers, puis « Autres ». */
+    public static final int NB_FOURNISSEURS_GRAPHIQUE = 10;
+    public static final int NB_CATEGORIES_GRAPHIQUE = 8;
+
+    // ✅ Données pour BarChart (quantité par fournisseur) : mêmes instances à chaque appel, mises à jour par deltas
     public ObservableList<XYChart.Series<String, Number>> getDataBarChart() {
-        Map<String, Integer> fournisseurQuantite = produits.stream()
-                .collect(Collectors.groupingBy(Produit::getFournisseur,
-                        Collectors.summingInt(Produit::getQuantite)));
+        if (seriesFournisseurs == null) {
+            seriesFournisseurs = FXCollections.observableArrayList();
+            seriesFournisseurs.add(getRepartitionFournisseurs().getSerie());
+        }
+        return seriesFournisseurs;
+    }
+
+    // ✅ Données pour PieChart (répartition des quantités par catégorie), idem
+    public ObservableList<PieChart.Data> getDataPieChart() {
+        return getRepartitionCategories().getParts();
+    }
 
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        for (Map.Entry<String, Integer> entry : fournisseurQuantite.entrySet()) {
-            series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
+    /** Modèle du BarChart des fournisseurs, construit (un parcours du catalogue) au premier appel. */
+    public RepartitionVivante getRepartitionFournisseurs() {
+        if (repartitionFournisseurs == null) {
+            repartitionFournisseurs = new RepartitionVivante(produits, RepartitionVivante.Dimension.FOURNISSEUR, NB_FOURNISSEURS_GRAPHIQUE);
         }
+        return repartitionFournisseurs;
+    }
 
-        return FXCollections.observableArrayList(series);
+    /** Modèle du PieChart des catégories, construit au premier appel. */
+    public RepartitionVivante getRepartitionCategories() {
+        if (repartitionCategories == null) {
+            repartitionCategories = new RepartitionVivante(produits, RepartitionVivante.Dimension.CATEGORIE, NB_CATEGORIES_GRAPHIQUE);
+        }
+        return repartitionCategories;
     }
 
-    // ✅ Données pour PieChart (Répartition par catégorie)
-    public ObservableList<PieChart.Data> getDataPieChart() {
-        Map<String, Integer> repartition = produits.stream()
-                .collect(Collectors.groupingBy(Produit::getCategorie,
-                        Collectors.summingInt(Produit::getQuantite)));
+    // ✅ Données pour LineChart (sorties de stock par catégorie, par semaine, lues dans les cumuls) :
+    //    mêmes instances à chaque appel, points relus seulement si le journal ou la semaine a changé
+    public ObservableList<XYChart.Series<String, Number>> getDataTendanceSorties(int semaines) {
+        LocalDate fin = LocalDate.now();
+        if (seriesSorties == null) seriesSorties = FXCollections.observableArrayList();
+        else if (mouvements.getNbMouvements() == mouvementsSorties && fin.equals(finSorties) && semaines == semainesSorties) {
+            return seriesSorties;
+        }
+        mouvementsSorties = mouvements.getNbMouvements();
+        finSorties = fin;
+        semainesSorties = semaines;
 
-        return repartition.entrySet().stream()
-                .map(entry -> new PieChart.Data(entry.getKey(), entry.getValue()))
-                .collect(Collectors.toCollection(FXCollections::observableArrayList));
+        LocalDate debut = JournalMouvements.debutPeriode(JournalMouvements.Granularite.SEMAINE, fin).minusWeeks(semaines - 1L);
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd/MM");
+        Set<String> categories = new TreeSet<>(mouvements.cles(JournalMouvements.Dimension.CATEGORIE));
+        seriesSorties.removeIf(serie -> !categories.contains(serie.getName()));
+        int rang = 0;
+        for (String categorie : categories) {
+            XYChart.Series<String, Number> serie;
+            if (rang < seriesSorties.size() && seriesSorties.get(rang).getName().equals(categorie)) {
+                serie = seriesSorties.get(rang);
+            } else {
+                serie = new XYChart.Series<>();
+                serie.setName(categorie);
+                seriesSorties.add(rang, serie);
+            }
+            rang++;
+            ObservableList<XYChart.Data<String, Number>> points = serie.getData();
+            int i = 0;
+            for (JournalMouvements.Cumul c : mouvements.tendance(JournalMouvements.Dimension.CATEGORIE, categorie,
+                    JournalMouvements.Granularite.SEMAINE, debut, fin)) {
+                String semaine = c.getDebut().format(format);
+                if (i == points.size()) {
+                    points.add(new XYChart.Data<>(semaine, c.getSorties()));
+                } else {
+                    XYChart.Data<String, Number> point = points.get(i);
+                    if (!point.getXValue().equals(semaine)) point.setXValue(semaine);
+                    if (point.getYValue().longValue() != c.getSorties()) point.setYValue(c.getSorties());
+                }
+                i++;
+            }
+            if (i < points.size()) points.remove(i, points.size());
+        }
+        return seriesSorties;
     }
 }
@@ -0,0 +1,211 @@
+package service;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Quantités par fournisseur ou par catégorie, tenues à jour par deltas et exposées en données de
+ * graphique qui restent attachées au graphique : les N premiers, puis « Autres » pour le reste.
+ * Les changements du catalogue sont regroupés et appliqués au plus une fois par image ; seuls
+ * les points dont le libellé ou la valeur a changé sont modifiés (ni nœud recréé ni animation
+ * repartie de zéro). Sur le thread FX l'application est planifiée à l'impulsion suivante ;
+ * ailleurs (benchmarks, tests), {@link #appliquer()} l'effectue à la demande.
+ */
+public class RepartitionVivante extends ObservateurCatalogue {
+
+    public enum Dimension { FOURNISSEUR, CATEGORIE }
+
+    public static final String AUTRES = "Autres";
+
+    private static final class Total {
+        final String cle;
+        long quantite;
+        int nbProduits;
+
+        Total(String cle) { this.cle = cle; }
+    }
+
+    private final Dimension dimension;
+    private final int nbPremiers;
+    private final Map<String, Total> totaux = new HashMap<>();
+    private long quantiteTotale;
+
+    private XYChart.Series<String, Number> serie;
+    private ObservableList<PieChart.Data> parts;
+    private boolean aAppliquer;
+    private AnimationTimer trame;
+
+    public RepartitionVivante(StockColonnes produits, Dimension dimension, int nbPremiers) {
+        this.dimension = dimension;
+        this.nbPremiers = nbPremiers;
+        surveiller(produits);
+    }
+
+    /** Série d'un BarChart (libellé en X, quantité en Y), construite au premier appel. */
+    public XYChart.Series<String, Number> getSerie() {
+        if (serie == null) {
+            serie = new XYChart.Series<>();
+            serie.setName(dimension == Dimension.FOURNISSEUR ? "Quantité par fournisseur" : "Quantité par catégorie");
+            appliquer();
+        }
+        return serie;
+    }
+
+    /** Parts d'un PieChart, construites au premier appel. */
+    public ObservableList<PieChart.Data> getParts() {
+        if (parts == null) {
+            parts = FXCollections.observableArrayList();
+            appliquer();
+        }
+        return parts;
+    }
+
+    // ---------------- Deltas
+    @Override protected void produitAjoute(Produit p) {
+        ajuster(cle(p), p.getQuantite(), 1);
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        ajuster(cle(p), -p.getQuantite(), -1);
+    }
+
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        ajuster(cle(p), nouvelle - ancienne, 0);
+    }
+
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) {
+        if (dimension != Dimension.FOURNISSEUR) return;
+        ajuster(ancien, -p.getQuantite(), -1);
+        ajuster(nouveau, p.getQuantite(), 1);
+    }
+
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) {
+        if (dimension != Dimension.CATEGORIE) return;
+        ajuster(ancienne, -p.getQuantite(), -1);
+        ajuster(nouvelle, p.getQuantite(), 1);
+    }
+
+    private String cle(Produit p) {
+        return dimension == Dimension.FOURNISSEUR ? p.getFournisseur() : p.getCategorie();
+    }
+
+    private void ajuster(String cle, long deltaQuantite, int deltaProduits) {
+        if (cle == null) cle = "";
+        Total t = totaux.computeIfAbsent(cle, Total::new);
+        t.quantite += deltaQuantite;
+        t.nbProduits += deltaProduits;
+        if (t.nbProduits <= 0) totaux.remove(cle);
+        quantiteTotale += deltaQuantite;
+        planifier();
+    }
+
+    /** Au plus une application par image : la première modification arme la prochaine impulsion. */
+    private void planifier() {
+        if (aAppliquer || (serie == null && parts == null)) return;
+        aAppliquer = true;
+        if (!Platform.isFxApplicationThread()) return;
+        if (trame == null) {
+            trame = new AnimationTimer() {
+                @Override public void handle(long maintenant) {
+                    stop();
+                    appliquer();
+                }
+            };
+        }
+        trame.start();
+    }
+
+    // ---------------- Application aux graphiques
+
+    /** Classement courant reporté sur la série et les parts : seuls les points changés sont touchés. */
+    public void appliquer() {
+        aAppliquer = false;
+        List<Total> premiers = premiers();
+        List<String> libelles = new ArrayList<>(premiers.size() + 1);
+        List<Long> valeurs = new ArrayList<>(premiers.size() + 1);
+        long somme = 0;
+        for (Total t : premiers) {
+            libelles.add(t.cle.isEmpty() ? "(sans)" : t.cle);
+            valeurs.add(t.quantite);
+            somme += t.quantite;
+        }
+        if (totaux.size() > premiers.size()) {
+            libelles.add(AUTRES);
+            valeurs.add(quantiteTotale - somme);
+        }
+        if (serie != null) reporterSerie(libelles, valeurs);
+        if (parts != null) reporterParts(libelles, valeurs);
+    }
+
+    /** Les nbPremiers plus grosses quantités (décroissantes, à égalité par libellé), sans trier tout le reste. */
+    private List<Total> premiers() {
+        PriorityQueue<Total> tas = new PriorityQueue<>(nbPremiers + 1, RepartitionVivante::comparer);
+        for (Total t : totaux.values()) {
+            if (tas.size() < nbPremiers) tas.add(t);
+            else if (comparer(t, tas.peek()) > 0) { tas.poll(); tas.add(t); }
+        }
+        List<Total> res = new ArrayList<>(tas);
+        res.sort((a, b) -> comparer(b, a));
+        return res;
+    }
+
+    /** Ordre croissant d'importance : quantité, puis libellé inverse. */
+    private static int comparer(Total a, Total b) {
+        int c = Long.compare(a.quantite, b.quantite);
+        return c != 0 ? c : b.cle.compareTo(a.cle);
+    }
+
+    /*
+     * Points repérés par leur libellé (le BarChart indexe ses barres par catégorie) : valeur changée
+     * en place, point retiré quand son libellé sort du classement, ajouté à son rang (avant « Autres »)
+     * quand il y entre.
+     */
+    private void reporterSerie(List<String> libelles, List<Long> valeurs) {
+        ObservableList<XYChart.Data<String, Number>> points = serie.getData();
+        Map<String, Integer> rangs = rangs(libelles);
+        points.removeIf(d -> !rangs.containsKey(d.getXValue()));
+        Map<String, XYChart.Data<String, Number>> presents = new HashMap<>();
+        for (XYChart.Data<String, Number> d : points) presents.put(d.getXValue(), d);
+        for (int i = 0; i < libelles.size(); i++) {
+            XYChart.Data<String, Number> d = presents.get(libelles.get(i));
+            if (d == null) {
+                int autres = points.isEmpty() || !AUTRES.equals(points.get(points.size() - 1).getXValue()) ? points.size() : points.size() - 1;
+                points.add(Math.min(i, autres), new XYChart.Data<>(libelles.get(i), valeurs.get(i)));
+            }
+            else if (d.getYValue().longValue() != valeurs.get(i)) d.setYValue(valeurs.get(i));
+        }
+    }
+
+    private void reporterParts(List<String> libelles, List<Long> valeurs) {
+        Map<String, Integer> rangs = rangs(libelles);
+        parts.removeIf(d -> !rangs.containsKey(d.getName()));
+        Map<String, PieChart.Data> presentes = new HashMap<>();
+        for (PieChart.Data d : parts) presentes.put(d.getName(), d);
+        for (int i = 0; i < libelles.size(); i++) {
+            PieChart.Data d = presentes.get(libelles.get(i));
+            if (d == null) {
+                int autres = parts.isEmpty() || !AUTRES.equals(parts.get(parts.size() - 1).getName()) ? parts.size() : parts.size() - 1;
+                parts.add(Math.min(i, autres), new PieChart.Data(libelles.get(i), valeurs.get(i)));
+            }
+            else if ((long) d.getPieValue() != valeurs.get(i)) d.setPieValue(valeurs.get(i));
+        }
+    }
+
+    private static Map<String, Integer> rangs(List<String> libelles) {
+        Map<String, Integer> rangs = new HashMap<>();
+        for (int i = 0; i < libelles.size(); i++) rangs.put(libelles.get(i), i);
+        return rangs;
+    }
+}
@@ -0,0 +1,406 @@
+package service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Produit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * API HTTP du catalogue (serveur HTTP du JDK), pour les lecteurs du dépôt et les scripts comptables :
+ * GET  /api/produits?page=&taille=&q=&categorie=   liste paginée, recherche nom/fournisseur, catégorie
+ *                                                  (sous-catégories de la taxonomie comprises)
+ * GET  /api/produits/{id}                          un produit
+ * POST /api/produits/{id}/quantite?delta=N         entrée (+) ou sortie (-) de stock
+ * GET  /api/indicateurs                            KPI de l'accueil
+ * GET  /api/depots                                 vue consolidée de la réplication : totaux par dépôt,
+ *                                                  séquence reçue et âge de la copie de chaque source
+ *
+ * Les lectures se font sur un {@link CatalogueFige} (aucun verrou, vieux d'au plus 50 ms) ;
+ * les écritures passent par la file de {@link ProduitService}. Chaque réponse de
+ * lecture porte un ETag tiré de la révision du catalogue : un client qui renvoie
+ * If-None-Match reçoit 304 sans que rien ne soit recalculé.
+ */
+public final class ServeurApi {
+
+    private static final int TAILLE_PAGE_DEFAUT = 50;
+    private static final int TAILLE_PAGE_MAX = 1000;
+    private static final int TOP_FOURNISSEURS = 5;
+    /**
+     * Âge maximal de la copie servie : sous un flux d'écritures, le catalogue est recopié au
+     * plus toutes les 50 ms au lieu de l'être à chaque lecture suivant une écriture.
+     */
+    private static final long FRAICHEUR_NS = 50_000_000L;
+
+    static {
+        // En-têtes et corps sont écrits séparément : sans TCP_NODELAY, Nagle + ACK retardé
+        // ajoutent ~40 ms à chaque réponse. Lu à l'initialisation du serveur HTTP du JDK.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ProduitService service;
+    private final CatalogueConsolide consolide; // null : pas de réplication
+    private final HttpServer serveur;
+    private final ExecutorService requetes;
+    // Les révisions repartent de zéro à chaque démarrage : le préfixe évite de valider un ancien ETag
+    private final String prefixeEtag = Long.toHexString(System.currentTimeMillis());
+    private volatile Reponse indicateurs; // dernier calcul, réutilisé tant que la révision ne change pas
+    private volatile CatalogueFige copie;
+    private volatile long copieLe;
+
+    private ServeurApi(ProduitService service, CatalogueConsolide consolide, InetSocketAddress adresse) throws IOException {
+        this.service = service;
+        this.consolide = consolide;
+        this.serveur = HttpServer.create(adresse, 1024);
+        this.requetes = executeurRequetes();
+        serveur.setExecutor(requetes);
+        serveur.createContext("/api/", this::traiter);
+    }
+
+    /** Démarre le serveur (port 0 : port libre choisi par le système). */
+    public static ServeurApi demarrer(ProduitService service, InetSocketAddress adresse) throws IOException {
+        return demarrer(service, null, adresse);
+    }
+
+    /** Idem, avec la vue consolidée des dépôts (null : /api/depots répond 404). */
+    public static ServeurApi demarrer(ProduitService service, CatalogueConsolide consolide, InetSocketAddress adresse) throws IOException {
+        ServeurApi api = new ServeurApi(service, consolide, adresse);
+        api.serveur.start();
+        return api;
+    }
+
+    public int getPort() {
+        return serveur.getAddress().getPort();
+    }
+
+    /** Arrête d'accepter des requêtes et laisse une seconde à celles en cours. */
+    public void arreter() {
+        serveur.stop(1);
+        requetes.shutdown();
+    }
+
+    /**
+     * Un thread virtuel par requête quand la JVM en dispose (Java 21+) ; sinon un pool borné,
+     * suffisant ici car aucune requête ne bloque longtemps.
+     */
+    private static ExecutorService executeurRequetes() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int n = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+            return Executors.newFixedThreadPool(n, r -> {
+                Thread t = new Thread(r, "api-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ---------------- Routage
+    private void traiter(HttpExchange echange) throws IOException {
+        try (echange) {
+            echange.getRequestBody().transferTo(OutputStream.nullOutputStream()); // paramètres dans l'URL
+            Reponse r;
+            try {
+                r = router(echange);
+            } catch (RuntimeException e) {
+                System.err.println("API : erreur interne sur " + echange.getRequestMethod() + " " + echange.getRequestURI() + " : " + e);
+                r = Reponse.erreur(500, "Erreur interne");
+            }
+            envoyer(echange, r);
+        }
+    }
+
+    private Reponse router(HttpExchange echange) {
+        String[] chemin = echange.getRequestURI().getPath().split("/");
+        Map<String, String> parametres = parametres(echange.getRequestURI().getRawQuery());
+        String methode = echange.getRequestMethod();
+        if (chemin.length == 3 && chemin[2].equals("produits") && methode.equals("GET")) {
+            return lireOuNonModifie(echange, c -> lister(c, parametres));
+        }
+        if (chemin.length == 4 && chemin[2].equals("produits") && methode.equals("GET")) {
+            int id = entier(chemin[3], -1);
+            return lireOuNonModifie(echange, c -> produit(c, id));
+        }
+        if (chemin.length == 5 && chemin[2].equals("produits") && chemin[4].equals("quantite")) {
+            return methode.equals("POST") ? ajuster(entier(chemin[3], -1), parametres.get("delta")) : Reponse.erreur(405, "POST attendu");
+        }
+        if (chemin.length == 3 && chemin[2].equals("indicateurs") && methode.equals("GET")) {
+            String etag = etag(service.getRevision());
+            if (etag.equals(echange.getRequestHeaders().getFirst("If-None-Match"))) return Reponse.nonModifie(etag);
+            return indicateurs();
+        }
+        if (chemin.length == 3 && chemin[2].equals("depots") && methode.equals("GET")) {
+            return consolide != null ? depots() : Reponse.erreur(404, "Réplication non configurée");
+        }
+        return Reponse.erreur(404, "Ressource inconnue");
+    }
+
+    private interface Lecture {
+        Reponse lire(CatalogueFige c);
+    }
+
+    /** 304 si le client a déjà la copie servie ; sinon réponse calculée, avec son ETag. */
+    private Reponse lireOuNonModifie(HttpExchange echange, Lecture lecture) {
+        CatalogueFige c = catalogue();
+        String etag = etag(c.getRevision());
+        if (etag.equals(echange.getRequestHeaders().getFirst("If-None-Match"))) return Reponse.nonModifie(etag);
+        return lecture.lire(c);
+    }
+
+    private CatalogueFige catalogue() {
+        CatalogueFige c = copie;
+        if (c != null && (c.getRevision() == service.getRevision() || System.nanoTime() - copieLe < FRAICHEUR_NS)) return c;
+        c = service.instantane();
+        copieLe = System.nanoTime();
+        copie = c;
+        return c;
+    }
+
+    private String etag(long revision) {
+        return "\"" + prefixeEtag + "-" + revision + "\"";
+    }
+
+    // ---------------- Lectures
+    private Reponse lister(CatalogueFige c, Map<String, String> parametres) {
+        int taille = Math.min(TAILLE_PAGE_MAX, Math.max(1, entier(parametres.get("taille"), TAILLE_PAGE_DEFAUT)));
+        int page = Math.max(1, entier(parametres.get("page"), 1));
+        String q = parametres.getOrDefault("q", "").trim().toLowerCase(Locale.ROOT);
+        String categorie = parametres.get("categorie");
+
+        // Critères résolus une fois sur les dictionnaires, puis colonnes parcourues sans allouer
+        boolean[] fournisseursRetenus = null;
+        if (!q.isEmpty()) {
+            String[] dict = c.dictionnaireFournisseurs();
+            fournisseursRetenus = new boolean[dict.length];
+            for (int i = 0; i < dict.length; i++) {
+                fournisseursRetenus[i] = dict[i] != null && dict[i].toLowerCase(Locale.ROOT).contains(q);
+            }
+        }
+        boolean[] categoriesRetenues = null; // sous-catégories de la taxonomie comprises
+        if (categorie != null && !categorie.isBlank()) {
+            Taxonomie taxonomie = Taxonomie.standard();
+            int filtre = taxonomie.resoudre(categorie);
+            String[] dict = c.dictionnaireCategories();
+            categoriesRetenues = new boolean[dict.length];
+            for (int i = 0; i < dict.length; i++) {
+                int n = taxonomie.resoudre(dict[i]);
+                categoriesRetenues[i] = filtre >= 0 ? n >= 0 && taxonomie.contient(filtre, n)
+                        : categorie.equalsIgnoreCase(dict[i]); // catégorie hors taxonomie : égalité seule
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(256 + 160 * taille);
+        sb.append("{\"page\":").append(page).append(",\"taille\":").append(taille).append(",\"produits\":[");
+        long debut = (long) (page - 1) * taille;
+        int total = 0;
+        if (categoriesRetenues == null && fournisseursRetenus == null) {
+            // Sans critère : la page est lue directement
+            total = c.taille();
+            for (long i = debut; i < Math.min(total, debut + taille); i++) {
+                if (i > debut) sb.append(',');
+                produitJson(sb, c, (int) i);
+            }
+        } else {
+            for (int i = 0, n = c.taille(); i < n; i++) {
+                if (categoriesRetenues != null) {
+                    int k = c.idCategorie(i);
+                    if (k < 0 || !categoriesRetenues[k]) continue;
+                }
+                if (fournisseursRetenus != null && !c.nomContient(i, q)) {
+                    int f = c.idFournisseur(i);
+                    if (f < 0 || !fournisseursRetenus[f]) continue;
+                }
+                if (total >= debut && total < debut + taille) {
+                    if (total > debut) sb.append(',');
+                    produitJson(sb, c, i);
+                }
+                total++;
+            }
+        }
+        sb.append("],\"total\":").append(total).append('}');
+        return Reponse.json(200, sb, etag(c.getRevision()));
+    }
+
+    private Reponse produit(CatalogueFige c, int id) {
+        int i = c.indexDe(id);
+        if (i < 0) return Reponse.erreur(404, "Produit inconnu : " + id);
+        return Reponse.json(200, produitJson(new StringBuilder(192), c, i), etag(c.getRevision()));
+    }
+
+    /** KPI lus dans les agrégats maintenus (sur le thread de publication), mis en cache par révision. */
+    private Reponse indicateurs() {
+        Reponse r = indicateurs;
+        long revision = service.getRevision();
+        if (r != null && r.etag.equals(etag(revision))) return r;
+        long[] lue = new long[1]; // révision lue avec les agrégats : fait foi pour l'ETag
+        StringBuilder sb = service.lire(() -> {
+            lue[0] = service.getRevision();
+            StringBuilder j = new StringBuilder(512);
+            j.append("{\"revision\":").append(lue[0]);
+            j.append(",\"nbProduits\":").append(service.getProduits().size());
+            j.append(",\"valeurTotale\":").append(service.calculerValeurTotale());
+            j.append(",\"categorieLaPlusFrequente\":");
+            ExportCatalogue.ajouterTexteJson(j, service.getCategorieLaPlusFrequente());
+            j.append(",\"fournisseurPrincipal\":");
+            ExportCatalogue.ajouterTexteJson(j, service.getFournisseurPrincipal());
+            j.append(",\"nbAlertes\":").append(service.getAlertesStock().getAlertes().size());
+            j.append(",\"topFournisseurs\":[");
+            boolean premier = true;
+            for (ClassementFournisseurs.Entree e : service.getTopFournisseurs(TOP_FOURNISSEURS)) {
+                if (!premier) j.append(',');
+                premier = false;
+                j.append("{\"fournisseur\":");
+                ExportCatalogue.ajouterTexteJson(j, e.getFournisseur());
+                j.append(",\"quantite\":").append(e.getQuantite()).append('}');
+            }
+            return j.append("]}");
+        }).join();
+        indicateurs = r = Reponse.json(200, sb, etag(lue[0]));
+        return r;
+    }
+
+    /** Totaux par dépôt lus sur le thread de publication, puis état des sources (jamais mis en cache). */
+    private Reponse depots() {
+        List<CatalogueConsolide.Total> totaux = consolide.getService().lire(consolide::totaux).join();
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"depots\":[");
+        long quantite = 0;
+        int nb = 0;
+        for (int i = 0; i < totaux.size(); i++) {
+            CatalogueConsolide.Total t = totaux.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"depot\":");
+            ExportCatalogue.ajouterTexteJson(sb, t.getDepot());
+            sb.append(",\"nbProduits\":").append(t.getNbProduits());
+            sb.append(",\"quantite\":").append(t.getQuantite());
+            sb.append(",\"valeurTotale\":").append(t.getValeur()).append('}');
+            quantite += t.getQuantite();
+            nb += t.getNbProduits();
+        }
+        sb.append("],\"nbProduits\":").append(nb).append(",\"quantite\":").append(quantite).append(",\"sources\":[");
+        boolean premier = true;
+        for (CatalogueConsolide.Source s : consolide.getSources()) {
+            if (!premier) sb.append(',');
+            premier = false;
+            sb.append("{\"adresse\":");
+            ExportCatalogue.ajouterTexteJson(sb, s.getAdresse().getHostString() + ":" + s.getAdresse().getPort());
+            sb.append(",\"depot\":");
+            ExportCatalogue.ajouterTexteJson(sb, s.getDepot());
+            sb.append(",\"connectee\":").append(s.isConnectee());
+            sb.append(",\"seq\":").append(s.getSeq());
+            sb.append(",\"ageMs\":").append(s.getAgeMs()).append('}');
+        }
+        return Reponse.json(200, sb.append("]}"), null);
+    }
+
+    private static StringBuilder produitJson(StringBuilder sb, CatalogueFige c, int i) {
+        sb.append("{\"id\":").append(c.getId(i)).append(",\"nom\":");
+        ExportCatalogue.ajouterTexteJson(sb, c.getNom(i));
+        sb.append(",\"categorie\":");
+        ExportCatalogue.ajouterTexteJson(sb, c.getCategorie(i));
+        sb.append(",\"prix\":").append(c.getPrix(i));
+        sb.append(",\"quantite\":").append(c.getQuantite(i));
+        sb.append(",\"fournisseur\":");
+        ExportCatalogue.ajouterTexteJson(sb, c.getFournisseur(i));
+        return sb.append('}');
+    }
+
+    // ---------------- Écriture
+    private Reponse ajuster(int id, String delta) {
+        int d;
+        try {
+            d = Integer.parseInt(delta == null ? "" : delta.trim());
+        } catch (NumberFormatException e) {
+            return Reponse.erreur(400, "Paramètre delta entier attendu");
+        }
+        CatalogueFige c = catalogue();
+        int i = c.indexDe(id);
+        if (i < 0) return Reponse.erreur(404, "Produit inconnu : " + id);
+        Produit p = c.produit(i);
+        boolean applique;
+        try {
+            applique = service.ajusterQuantite(p, d).join();
+        } catch (CompletionException e) {
+            return Reponse.erreur(500, "Ajustement impossible");
+        }
+        if (!applique) return Reponse.erreur(404, "Produit retiré : " + id);
+        StringBuilder sb = new StringBuilder(64).append("{\"id\":").append(id).append(",\"delta\":").append(d).append('}');
+        return Reponse.json(200, sb, null);
+    }
+
+    // ---------------- HTTP
+    private static final class Reponse {
+        final int statut;
+        final byte[] corps;
+        final String etag;
+
+        private Reponse(int statut, byte[] corps, String etag) {
+            this.statut = statut;
+            this.corps = corps;
+            this.etag = etag;
+        }
+
+        static Reponse json(int statut, CharSequence json, String etag) {
+            return new Reponse(statut, json.toString().getBytes(StandardCharsets.UTF_8), etag);
+        }
+
+        static Reponse nonModifie(String etag) {
+            return new Reponse(304, null, etag);
+        }
+
+        static Reponse erreur(int statut, String message) {
+            return json(statut, ExportCatalogue.ajouterTexteJson(new StringBuilder("{\"erreur\":"), message).append('}'), null);
+        }
+    }
+
+    private static void envoyer(HttpExchange echange, Reponse r) throws IOException {
+        if (r.etag != null) {
+            echange.getResponseHeaders().set("ETag", r.etag);
+            echange.getResponseHeaders().set("Cache-Control", "no-cache"); // toujours revalider
+        }
+        if (r.corps == null) {
+            echange.sendResponseHeaders(r.statut, -1);
+            return;
+        }
+        echange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        echange.sendResponseHeaders(r.statut, r.corps.length);
+        try (OutputStream out = echange.getResponseBody()) {
+            out.write(r.corps);
+        }
+    }
+
+    private static Map<String, String> parametres(String requete) {
+        Map<String, String> p = new HashMap<>();
+        if (requete == null || requete.isEmpty()) return p;
+        for (String paire : requete.split("&")) {
+            int egal = paire.indexOf('=');
+            if (egal <= 0) continue;
+            p.put(URLDecoder.decode(paire.substring(0, egal), StandardCharsets.UTF_8),
+                    URLDecoder.decode(paire.substring(egal + 1), StandardCharsets.UTF_8));
+        }
+        return p;
+    }
+
+    private static int entier(String s, int defaut) {
+        if (s == null) return defaut;
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return defaut;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sert le {@link FluxChangements} du dépôt aux autres instances, sur une socket TCP
+ * (boucle locale ou réseau du site), un thread par lecteur. Chaque lecteur annonce l'époque
+ * et la séquence où il s'est arrêté : il reçoit la suite par lots dès qu'elle existe, ou un
+ * instantané s'il ne peut pas reprendre ; une trame de veille part après {@link #VEILLE_MS}
+ * sans changement, ce qui permet au lecteur de savoir sa copie à jour.
+ */
+public final class ServeurReplication {
+
+    /** Attente maximale d'un changement avant d'envoyer une trame de veille. */
+    static final long VEILLE_MS = 500;
+    /** Changements par trame (lot) et produits par morceau d'instantané. */
+    private static final int LOT_MAX = 4096;
+    private static final int MORCEAU_INSTANTANE = 8192;
+
+    private final ProduitService service;
+    private final FluxChangements flux;
+    private final ServerSocket serveur;
+    private final Set<Socket> lecteurs = ConcurrentHashMap.newKeySet();
+    private volatile boolean arrete;
+
+    private ServeurReplication(ProduitService service, InetSocketAddress adresse) throws IOException {
+        this.service = service;
+        this.flux = service.getFluxChangements();
+        if (flux == null) throw new IllegalStateException("Flux de changements non ouvert");
+        this.serveur = new ServerSocket();
+        serveur.setReuseAddress(true);
+        serveur.bind(adresse, 64);
+    }
+
+    /** Démarre le serveur (port 0 : port libre choisi par le système). */
+    public static ServeurReplication demarrer(ProduitService service, InetSocketAddress adresse) throws IOException {
+        ServeurReplication r = new ServeurReplication(service, adresse);
+        demon("replication-accueil", r::accepter).start();
+        return r;
+    }
+
+    public int getPort() {
+        return serveur.getLocalPort();
+    }
+
+    /** Ferme la socket d'écoute et les connexions des lecteurs. */
+    public void arreter() {
+        arrete = true;
+        fermer(serveur);
+        for (Socket s : lecteurs) fermer(s);
+    }
+
+    private void accepter() {
+        while (!arrete) {
+            try {
+                Socket s = serveur.accept();
+                lecteurs.add(s);
+                demon("replication-" + s.getRemoteSocketAddress(), () -> servir(s)).start();
+            } catch (IOException e) {
+                if (!arrete) System.err.println("Réplication : connexion refusée : " + e.getMessage());
+            }
+        }
+    }
+
+    private void servir(Socket s) {
+        try (s) {
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(10_000); // pour la demande de reprise seulement
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            if (in.readInt() != TrameReplication.MAGIE) throw new IOException("lecteur inconnu");
+            long epoque = in.readLong();
+            long seq = in.readLong();
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 1 << 16);
+            envoyer(out, TrameReplication.bonjour(flux.getEpoque(), flux.getDernierSeq(), flux.getDepot()));
+            while (!arrete) {
+                FluxChangements.Lecture l = flux.lire(epoque, seq, LOT_MAX, VEILLE_MS);
+                if (l == null) {
+                    epoque = flux.getEpoque();
+                    seq = envoyerInstantane(out);
+                } else if (l.changements.isEmpty()) {
+                    envoyer(out, TrameReplication.veille(epoque, seq));
+                } else {
+                    envoyer(out, TrameReplication.changements(epoque, l.dernierSeq, l.changements));
+                    seq = l.dernierSeq;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (!arrete && !(e instanceof SocketException)) System.err.println("Réplication : lecteur " + s.getRemoteSocketAddress() + " : " + e.getMessage());
+        } finally {
+            lecteurs.remove(s);
+        }
+    }
+
+    /** Instantané pris sur le thread de publication, envoyé par morceaux ; renvoie la séquence couverte. */
+    private long envoyerInstantane(OutputStream out) throws IOException {
+        FluxChangements.Lecture inst = service.lire(() -> flux.instantane(service.getStock())).join();
+        List<FluxChangements.Changement> tout = inst.changements;
+        int debut = 0;
+        do {
+            int fin = Math.min(tout.size(), debut + MORCEAU_INSTANTANE);
+            out.write(TrameReplication.instantane(flux.getEpoque(), inst.dernierSeq, tout.subList(debut, fin), fin == tout.size()));
+            debut = fin;
+        } while (debut < tout.size());
+        out.flush();
+        return inst.dernierSeq;
+    }
+
+    private static void envoyer(OutputStream out, byte[] trame) throws IOException {
+        out.write(trame);
+        out.flush();
+    }
+
+    static Thread demon(String nom, Runnable tache) {
+        Thread t = new Thread(tache, nom);
+        t.setDaemon(true);
+        return t;
+    }
+
+    static void fermer(AutoCloseable c) {
+        try {
+            c.close();
+        } catch (Exception ignoree) {
+            // déjà fermée
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package service;
+
+import model.Produit;
+import model.StockColonnes;
+
+/**
+ * KPI du catalogue maintenus en O(1) par delta : nombre de produits, valeur totale,
+ * catégorie la plus fréquente et fournisseur principal. Aucune lecture ne parcourt la liste.
+ */
+public class StatistiquesCatalogue extends ObservateurCatalogue {
+
+    private final CompteurFrequence categories = new CompteurFrequence();
+    private final CompteurFrequence fournisseurs = new CompteurFrequence();
+    private int nbProduits;
+    private double valeurTotale;
+
+    public StatistiquesCatalogue(StockColonnes produits) {
+        surveiller(produits);
+    }
+
+    @Override protected void produitAjoute(Produit p) {
+        nbProduits++;
+        valeurTotale += p.getPrix() * p.getQuantite();
+        categories.incrementer(p.getCategorie());
+        fournisseurs.incrementer(p.getFournisseur());
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        nbProduits--;
+        // Catalogue vide : on repart de 0 pour ne pas garder d'erreur d'arrondi (ex. "-0 Ar").
+        valeurTotale = nbProduits == 0 ? 0 : valeurTotale - p.getPrix() * p.getQuantite();
+        categories.decrementer(p.getCategorie());
+        fournisseurs.decrementer(p.getFournisseur());
+    }
+
+    @Override protected void prixModifie(Produit p, double ancien, double nouveau) {
+        valeurTotale += (nouveau - ancien) * p.getQuantite();
+    }
+
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        valeurTotale += p.getPrix() * (nouvelle - ancienne);
+    }
+
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) {
+        categories.decrementer(ancienne);
+        categories.incrementer(nouvelle);
+    }
+
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) {
+        fournisseurs.decrementer(ancien);
+        fournisseurs.incrementer(nouveau);
+    }
+
+    public int getNbProduits() { return nbProduits; }
+    public double getValeurTotale() { return valeurTotale; }
+    public String getCategorieLaPlusFrequente() { return categories.plusFrequente(); }
+    public String getFournisseurPrincipal() { return fournisseurs.plusFrequente(); }
+    public CompteurFrequence getCategories() { return categories; }
+    public CompteurFrequence getFournisseurs() { return fournisseurs; }
+}
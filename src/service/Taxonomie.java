@@ -0,0 +1,164 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Arbre des catégories, chargé depuis un fichier texte indenté (voir /categories/taxonomie.txt).
+ * Les nœuds sont numérotés en préordre : les descendants de n occupent les numéros
+ * [n, fin[n]), si bien que « x est dans la catégorie n, sous-catégories comprises » est
+ * une comparaison d'entiers. Libellés résolus par table de hachage, casse repliée.
+ *
+ * Fichier utilisé : -Dgestionnaire.taxonomie=&lt;fichier&gt;, sinon taxonomie.txt du dossier
+ * des données s'il existe, sinon la taxonomie fournie avec l'application.
+ */
+public final class Taxonomie {
+
+    private static final String TAXONOMIE_PAR_DEFAUT = "/categories/taxonomie.txt";
+    /** Borne du cache de résolutions (les saisies de l'API ne doivent pas le faire grossir sans fin). */
+    private static final int MAX_RESOLUES = 4096;
+
+    private final String[] libelles;
+    private final int[] parent;      // -1 : racine
+    private final int[] profondeur;
+    private final int[] fin;         // fin (exclue) du sous-arbre
+    private final Map<String, Integer> parCle = new HashMap<>();
+    /** Résolutions déjà faites, par chaîne exacte (les catégories des produits sont partagées par le dictionnaire). */
+    private final Map<String, Integer> resolues = new ConcurrentHashMap<>();
+
+    private Taxonomie(List<String> libelles, List<Integer> parents) {
+        int n = libelles.size();
+        this.libelles = libelles.toArray(new String[0]);
+        this.parent = new int[n];
+        this.profondeur = new int[n];
+        this.fin = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = parents.get(i);
+            profondeur[i] = parent[i] < 0 ? 0 : profondeur[parent[i]] + 1;
+            fin[i] = i + 1;
+        }
+        // Préordre : un parent précède ses descendants, on remonte la fin de chaque sous-arbre
+        for (int i = n - 1; i >= 0; i--) if (parent[i] >= 0) fin[parent[i]] = Math.max(fin[parent[i]], fin[i]);
+        for (int i = 0; i < n; i++) parCle.put(cle(this.libelles[i]), i);
+    }
+
+    // ---------------- Chargement
+
+    private static final class Standard {
+        static final Taxonomie INSTANCE = charger();
+    }
+
+    /** Taxonomie de l'application, chargée au premier usage. */
+    public static Taxonomie standard() {
+        return Standard.INSTANCE;
+    }
+
+    private static Taxonomie charger() {
+        String option = System.getProperty("gestionnaire.taxonomie");
+        Path fichier = option != null ? Path.of(option) : ProduitService.DOSSIER_DONNEES.resolve("taxonomie.txt");
+        if (option != null || Files.exists(fichier)) {
+            try (Reader r = Files.newBufferedReader(fichier, StandardCharsets.UTF_8)) {
+                return lire(r);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Taxonomie " + fichier + " ignorée : " + e.getMessage());
+            }
+        }
+        try (InputStream in = Taxonomie.class.getResourceAsStream(TAXONOMIE_PAR_DEFAUT)) {
+            if (in == null) throw new IllegalStateException("Ressource absente : " + TAXONOMIE_PAR_DEFAUT);
+            return lire(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Taxonomie par défaut illisible", e);
+        }
+    }
+
+    /**
+     * Une catégorie par ligne ; une ligne plus indentée que la précédente en est une sous-catégorie.
+     * Lignes vides et commentaires (#) ignorés.
+     * @throws IllegalArgumentException libellé en double
+     */
+    public static Taxonomie lire(Reader source) throws IOException {
+        List<String> libelles = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        Map<String, Integer> vus = new HashMap<>();
+        int[] indentations = new int[8], noeuds = new int[8];
+        int hauteur = 0, numero = 0;
+        BufferedReader lignes = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        for (String ligne; (ligne = lignes.readLine()) != null; ) {
+            numero++;
+            String libelle = ligne.strip();
+            if (libelle.isEmpty() || libelle.startsWith("#")) continue;
+            int indentation = ligne.indexOf(libelle.charAt(0));
+            while (hauteur > 0 && indentations[hauteur - 1] >= indentation) hauteur--;
+            Integer doublon = vus.putIfAbsent(cle(libelle), libelles.size());
+            if (doublon != null) {
+                throw new IllegalArgumentException("ligne " + numero + " : « " + libelle + " » figure déjà dans la taxonomie");
+            }
+            if (hauteur == indentations.length) {
+                indentations = Arrays.copyOf(indentations, hauteur * 2);
+                noeuds = Arrays.copyOf(noeuds, hauteur * 2);
+            }
+            parents.add(hauteur == 0 ? -1 : noeuds[hauteur - 1]);
+            indentations[hauteur] = indentation;
+            noeuds[hauteur++] = libelles.size();
+            libelles.add(libelle);
+        }
+        return new Taxonomie(libelles, parents);
+    }
+
+    // ---------------- Lecture
+
+    /** Nœud du libellé (casse indifférente, espaces de bord ignorés), ou -1 s'il est inconnu ou null. */
+    public int resoudre(String libelle) {
+        if (libelle == null) return -1;
+        Integer n = resolues.get(libelle);
+        if (n == null) {
+            n = parCle.getOrDefault(cle(libelle), -1);
+            if (resolues.size() < MAX_RESOLUES) resolues.put(libelle, n);
+        }
+        return n;
+    }
+
+    /** Vrai si noeud est categorie ou l'une de ses sous-catégories (temps constant). */
+    public boolean contient(int categorie, int noeud) {
+        return noeud >= categorie && noeud < fin[categorie];
+    }
+
+    /** Libellé tel qu'écrit dans la taxonomie (forme canonique). */
+    public String libelle(int noeud) { return libelles[noeud]; }
+
+    public int parent(int noeud) { return parent[noeud]; }
+
+    /** 0 pour une catégorie racine. */
+    public int profondeur(int noeud) { return profondeur[noeud]; }
+
+    public int taille() { return libelles.length; }
+
+    /** Tous les libellés, chaque catégorie suivie de ses sous-catégories (ordre du fichier). */
+    public List<String> libelles() {
+        return Collections.unmodifiableList(Arrays.asList(libelles));
+    }
+
+    /** Profondeur du libellé (0 s'il est inconnu), pour indenter une liste déroulante. */
+    public int profondeur(String libelle) {
+        int n = resoudre(libelle);
+        return n < 0 ? 0 : profondeur[n];
+    }
+
+    private static String cle(String libelle) {
+        return libelle.strip().toLowerCase(Locale.ROOT);
+    }
+}
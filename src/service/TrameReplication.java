@@ -0,0 +1,244 @@
+package service;
+
+import service.FluxChangements.Changement;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Format binaire de la réplication. Le lecteur ouvre la connexion par [int MAGIE][long époque][long
+ * séquence] (époque 0 : jamais synchronisé) ; le dépôt répond par des trames au format des
+ * journaux ({@link FichierJournal} : longueur + CRC32C + corps), corps [byte genre][long époque]
+ * [long séquence couverte][contenu] :
+ * - BONJOUR : nom du dépôt ;
+ * - CHANGEMENTS : lot de changements consécutifs ;
+ * - INSTANTANE : morceau d'instantané (byte dernier morceau), ajouts seulement ;
+ * - VEILLE : rien (connexion vivante, pas de changement).
+ * Entiers en longueur variable, horodatages en écart au précédent, textes en UTF-8.
+ */
+final class TrameReplication {
+
+    static final int MAGIE = 0x47505246; // « GPRF »
+    static final byte BONJOUR = 1, CHANGEMENTS = 2, INSTANTANE = 3, VEILLE = 4;
+
+    /** Corps au-delà duquel la trame est refusée (flux corrompu ou étranger). */
+    private static final int TAILLE_MAX = 64 << 20;
+
+    final byte genre;
+    final long epoque, seq;
+    final String depot;
+    final boolean dernier;
+    final List<Changement> changements;
+
+    private TrameReplication(byte genre, long epoque, long seq, String depot, boolean dernier, List<Changement> changements) {
+        this.genre = genre;
+        this.epoque = epoque;
+        this.seq = seq;
+        this.depot = depot;
+        this.dernier = dernier;
+        this.changements = changements;
+    }
+
+    // ---------------- Écriture
+    static byte[] bonjour(long epoque, long seq, String depot) {
+        Tampon t = new Tampon(64).entete(BONJOUR, epoque, seq);
+        t.texte(depot);
+        return t.sceller();
+    }
+
+    static byte[] veille(long epoque, long seq) {
+        return new Tampon(32).entete(VEILLE, epoque, seq).sceller();
+    }
+
+    static byte[] changements(long epoque, long seq, List<Changement> lot) {
+        Tampon t = new Tampon(32 + 24 * lot.size()).entete(CHANGEMENTS, epoque, seq);
+        t.varlong(lot.size());
+        long precedent = 0;
+        for (Changement c : lot) {
+            t.changement(c, precedent);
+            precedent = c.horodatage;
+        }
+        return t.sceller();
+    }
+
+    static byte[] instantane(long epoque, long seq, List<Changement> morceau, boolean dernier) {
+        Tampon t = new Tampon(32 + 64 * morceau.size()).entete(INSTANTANE, epoque, seq);
+        t.octet(dernier ? 1 : 0);
+        t.varlong(morceau.size());
+        long precedent = 0;
+        for (Changement c : morceau) {
+            t.changement(c, precedent);
+            precedent = c.horodatage;
+        }
+        return t.sceller();
+    }
+
+    // ---------------- Lecture
+
+    /** Trame suivante du flux ; IOException si elle est tronquée ou corrompue. */
+    static TrameReplication lire(DataInputStream in) throws IOException {
+        int lg = in.readInt();
+        int somme = in.readInt();
+        if (lg <= 0 || lg > TAILLE_MAX) throw new IOException("Trame de réplication invalide (" + lg + " octets)");
+        byte[] corps = new byte[lg];
+        in.readFully(corps);
+        CRC32C crc = new CRC32C();
+        crc.update(corps);
+        if ((int) crc.getValue() != somme) throw new IOException("Trame de réplication corrompue (CRC)");
+        try {
+            return decoder(ByteBuffer.wrap(corps));
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Trame de réplication incomplète");
+        }
+    }
+
+    private static TrameReplication decoder(ByteBuffer b) throws IOException {
+        byte genre = b.get();
+        long epoque = b.getLong();
+        long seq = b.getLong();
+        return switch (genre) {
+            case BONJOUR -> new TrameReplication(genre, epoque, seq, texte(b), false, List.of());
+            case CHANGEMENTS -> new TrameReplication(genre, epoque, seq, null, false, changements(b));
+            case INSTANTANE -> {
+                boolean dernier = b.get() != 0;
+                yield new TrameReplication(genre, epoque, seq, null, dernier, changements(b));
+            }
+            case VEILLE -> new TrameReplication(genre, epoque, seq, null, false, List.of());
+            default -> throw new IOException("Genre de trame inconnu : " + genre);
+        };
+    }
+
+    private static List<Changement> changements(ByteBuffer b) throws IOException {
+        int n = (int) varlong(b);
+        if (n < 0 || n > b.remaining()) throw new EOFException("Lot de changements tronqué");
+        List<Changement> lot = new ArrayList<>(n);
+        long precedent = 0;
+        for (int i = 0; i < n; i++) {
+            byte type = b.get();
+            long cle = varlong(b);
+            long h = precedent + zigzag(varlong(b));
+            precedent = h;
+            lot.add(switch (type) {
+                case FluxChangements.AJOUT -> new Changement(type, cle, h, texte(b), texte(b), b.getDouble(), (int) zigzag(varlong(b)), texte(b));
+                case FluxChangements.RETRAIT -> new Changement(type, cle, h, null, null, 0, 0, null);
+                case FluxChangements.NOM -> new Changement(type, cle, h, texte(b), null, 0, 0, null);
+                case FluxChangements.CATEGORIE -> new Changement(type, cle, h, null, texte(b), 0, 0, null);
+                case FluxChangements.PRIX -> new Changement(type, cle, h, null, null, b.getDouble(), 0, null);
+                case FluxChangements.QUANTITE -> new Changement(type, cle, h, null, null, 0, (int) zigzag(varlong(b)), null);
+                case FluxChangements.FOURNISSEUR -> new Changement(type, cle, h, null, null, 0, 0, texte(b));
+                default -> throw new IOException("Type de changement inconnu : " + type);
+            });
+        }
+        return lot;
+    }
+
+    private static long varlong(ByteBuffer b) {
+        long v = 0;
+        for (int decalage = 0; ; decalage += 7) {
+            byte o = b.get();
+            v |= (long) (o & 0x7F) << decalage;
+            if (o >= 0) return v;
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static String texte(ByteBuffer b) {
+        int lg = (int) varlong(b) - 1;
+        if (lg < 0) return null;
+        if (lg > b.remaining()) throw new BufferUnderflowException();
+        String s = new String(b.array(), b.arrayOffset() + b.position(), lg, StandardCharsets.UTF_8);
+        b.position(b.position() + lg);
+        return s;
+    }
+
+    /** Tampon extensible d'une trame ; l'en-tête (longueur + CRC) est réservé puis rempli au scellement. */
+    private static final class Tampon {
+        private byte[] octets;
+        private int taille = FichierJournal.ENTETE;
+
+        Tampon(int capacite) {
+            octets = new byte[FichierJournal.ENTETE + capacite];
+        }
+
+        Tampon entete(byte genre, long epoque, long seq) {
+            octet(genre);
+            long64(epoque);
+            long64(seq);
+            return this;
+        }
+
+        void changement(Changement c, long horodatagePrecedent) {
+            octet(c.type);
+            varlong(c.cle);
+            long ecart = c.horodatage - horodatagePrecedent;
+            varlong((ecart << 1) ^ (ecart >> 63));
+            switch (c.type) {
+                case FluxChangements.AJOUT -> {
+                    texte(c.nom);
+                    texte(c.categorie);
+                    long64(Double.doubleToLongBits(c.prix));
+                    varlong(((long) c.quantite << 1) ^ (c.quantite >> 31));
+                    texte(c.fournisseur);
+                }
+                case FluxChangements.NOM -> texte(c.nom);
+                case FluxChangements.CATEGORIE -> texte(c.categorie);
+                case FluxChangements.PRIX -> long64(Double.doubleToLongBits(c.prix));
+                case FluxChangements.QUANTITE -> varlong(((long) c.quantite << 1) ^ (c.quantite >> 31));
+                case FluxChangements.FOURNISSEUR -> texte(c.fournisseur);
+                default -> { }
+            }
+        }
+
+        void octet(int v) {
+            reserver(1);
+            octets[taille++] = (byte) v;
+        }
+
+        void long64(long v) {
+            reserver(8);
+            for (int i = 56; i >= 0; i -= 8) octets[taille++] = (byte) (v >>> i);
+        }
+
+        void varlong(long v) {
+            reserver(10);
+            while ((v & ~0x7FL) != 0) {
+                octets[taille++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            octets[taille++] = (byte) v;
+        }
+
+        void texte(String s) {
+            if (s == null) {
+                varlong(0);
+                return;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varlong(utf8.length + 1L);
+            reserver(utf8.length);
+            System.arraycopy(utf8, 0, octets, taille, utf8.length);
+            taille += utf8.length;
+        }
+
+        private void reserver(int n) {
+            if (taille + n > octets.length) octets = Arrays.copyOf(octets, Math.max(taille + n, octets.length * 2));
+        }
+
+        /** Trame prête à écrire : longueur et CRC32C du corps en tête. */
+        byte[] sceller() {
+            FichierJournal.sceller(ByteBuffer.wrap(octets, 0, taille).position(taille));
+            return taille == octets.length ? octets : Arrays.copyOf(octets, taille);
+        }
+    }
+}
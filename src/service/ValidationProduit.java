@@ -0,0 +1,114 @@
+package service;
+
+import model.Produit;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Règles de saisie d'un produit, partagées par le formulaire et l'import CSV :
+ * champs requis, prix décimal et quantité entière positifs, catégorie (de la taxonomie) et unité connues.
+ * Le nom enregistré porte l'unité : "Sable fin (m³)".
+ */
+public final class ValidationProduit {
+
+    public static final List<String> UNITES = Arrays.asList("m³", "tonnes", "sacs", "pièces");
+
+    public static final String CHAMPS_REQUIS = "Veuillez renseigner : Nom, Catégorie, Prix, Quantité, Unité et Fournisseur.";
+    public static final String NOMBRE_INVALIDE = "Prix ou quantité invalide.";
+
+    /** Saisie validée (valeurs prêtes à enregistrer) ou message d'erreur. */
+    public static final class Resultat {
+        private final String erreur;
+        private final String nomComplet, categorie, fournisseur;
+        private final double prix;
+        private final int quantite;
+
+        private Resultat(String erreur, String nomComplet, String categorie, double prix, int quantite, String fournisseur) {
+            this.erreur = erreur;
+            this.nomComplet = nomComplet;
+            this.categorie = categorie;
+            this.prix = prix;
+            this.quantite = quantite;
+            this.fournisseur = fournisseur;
+        }
+
+        private static Resultat erreur(String message) {
+            return new Resultat(message, null, null, 0, 0, null);
+        }
+
+        public boolean estValide() { return erreur == null; }
+        public String getErreur() { return erreur; }
+        public String getNomComplet() { return nomComplet; }
+        public String getCategorie() { return categorie; }
+        public double getPrix() { return prix; }
+        public int getQuantite() { return quantite; }
+        public String getFournisseur() { return fournisseur; }
+
+        public Produit creerProduit() {
+            return new Produit(nomComplet, categorie, prix, quantite, fournisseur);
+        }
+
+        /** Recopie les valeurs sur un produit existant (modification). */
+        public void appliquer(Produit p) {
+            p.setNom(nomComplet);
+            p.setCategorie(categorie);
+            p.setPrix(prix);
+            p.setQuantite(quantite);
+            p.setFournisseur(fournisseur);
+        }
+    }
+
+    private ValidationProduit() {}
+
+    public static Resultat valider(String nom, String categorie, String unite, String fournisseur,
+                                   String prix, String quantite) {
+        nom = nom == null ? "" : nom.trim();
+        fournisseur = fournisseur == null ? "" : fournisseur.trim();
+        if (nom.isEmpty() || categorie == null || categorie.isBlank() || unite == null || unite.isBlank()
+                || fournisseur.isEmpty() || prix == null || prix.isBlank() || quantite == null || quantite.isBlank()) {
+            return Resultat.erreur(CHAMPS_REQUIS);
+        }
+
+        Taxonomie taxonomie = Taxonomie.standard();
+        int noeud = taxonomie.resoudre(categorie);
+        if (noeud < 0) return Resultat.erreur("Catégorie inconnue : " + categorie.trim());
+        String cat = taxonomie.libelle(noeud);
+        String u = canonique(UNITES, unite.trim());
+        if (u == null) return Resultat.erreur("Unité inconnue : " + unite.trim());
+
+        // Même syntaxe que les champs du formulaire : chiffres, point décimal pour le prix
+        String p = prix.trim(), q = quantite.trim();
+        if (!estDecimal(p) || !estEntier(q)) return Resultat.erreur(NOMBRE_INVALIDE);
+        double valeurPrix;
+        int valeurQuantite;
+        try {
+            valeurPrix = Double.parseDouble(p);
+            valeurQuantite = Integer.parseInt(q);
+        } catch (NumberFormatException e) {
+            return Resultat.erreur(NOMBRE_INVALIDE);
+        }
+        return new Resultat(null, nom + " (" + u + ")", cat, valeurPrix, valeurQuantite, fournisseur);
+    }
+
+    private static String canonique(List<String> valeurs, String saisie) {
+        for (String v : valeurs) if (v.equalsIgnoreCase(saisie)) return v;
+        return null;
+    }
+
+    private static boolean estEntier(String s) {
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) < '0' || s.charAt(i) > '9') return false;
+        return !s.isEmpty();
+    }
+
+    private static boolean estDecimal(String s) {
+        boolean point = false, chiffre = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.' && !point) point = true;
+            else if (c >= '0' && c <= '9') chiffre = true;
+            else return false;
+        }
+        return chiffre;
+    }
+}
@@ -0,0 +1,222 @@
+package service;
+
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import model.Produit;
+import model.StockColonnes;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Vue filtrée et triée du catalogue (tableProduits, grille, export), à la place du couple
+ * FilteredList + SortedList : un changement de filtre ou de tri parcourt l'index de la colonne
+ * ({@link IndexTri}) en ne gardant que les produits du filtre, sans comparer ni re-trier.
+ * Ajouts, retraits et changements de la valeur triée ne déplacent que le produit concerné.
+ * Comme avec une FilteredList, le filtre n'est pas ré-évalué quand un champ change.
+ * La valeur du stock des produits de la vue est tenue à jour par les mêmes deltas.
+ */
+public class VueTriee extends ObservateurCatalogue {
+
+    /** Au-delà, un ajout/retrait groupé reconstruit la vue au lieu de l'ajuster produit par produit. */
+    private static final int TAILLE_LOT = 256;
+
+    private final StockColonnes produits;
+    private final IndexTri index;
+    private final Liste liste = new Liste();
+    private Predicate<? super Produit> filtre;   // null : tout le catalogue
+    private IndexTri.Colonne colonne;            // null : ordre du catalogue
+    private boolean croissant = true;
+    private boolean prete;
+    // Produits présents (par Produit.id) et leur valeur de stock cumulée
+    private final BitSet presents = new BitSet();
+    private double valeur;
+
+    VueTriee(StockColonnes produits, IndexTri index) {
+        this.produits = produits;
+        this.index = index;
+        surveiller(produits);
+        prete = true;
+        reconstruire();
+    }
+
+    /** Liste à présenter ; ne se modifie que par la vue. */
+    public ObservableList<Produit> getListe() { return liste; }
+
+    public IndexTri.Colonne getColonne() { return colonne; }
+
+    public boolean isCroissant() { return croissant; }
+
+    /** Valeur du stock (prix × quantité) des produits de la vue, sans parcours. */
+    public double getValeur() { return valeur; }
+
+    /** Recopie dans fenetre les lignes de la vue (déjà toutes en mémoire) à partir de debut ; renvoie le nombre de lignes copiées. */
+    public int lire(int debut, Produit[] fenetre) {
+        int n = Math.max(0, Math.min(fenetre.length, liste.taille - debut));
+        System.arraycopy(liste.elements, debut, fenetre, 0, n);
+        return n;
+    }
+
+    /** Nouveau filtre (null : tout) : un parcours de l'ordre courant. */
+    public void filtrer(Predicate<? super Produit> filtre) {
+        this.filtre = filtre;
+        reconstruire();
+    }
+
+    /** Nouveau tri (colonne null : ordre du catalogue) : un parcours de l'index de la colonne. */
+    public void trier(IndexTri.Colonne colonne, boolean croissant) {
+        if (colonne == this.colonne && croissant == this.croissant) return;
+        this.colonne = colonne;
+        this.croissant = croissant;
+        reconstruire();
+    }
+
+    private void reconstruire() {
+        Produit[] t;
+        if (colonne != null) {
+            t = index.parcourir(colonne, croissant, filtre);
+        } else {
+            t = new Produit[produits.size()];
+            int k = 0;
+            for (Produit p : produits) if (filtre == null || filtre.test(p)) t[k++] = p;
+            if (k < t.length) t = Arrays.copyOf(t, k);
+        }
+        presents.clear();
+        double total = 0;
+        for (Produit p : t) {
+            presents.set(p.getId());
+            total += p.getPrix() * p.getQuantite();
+        }
+        valeur = total;
+        liste.remplacer(t);
+    }
+
+    private void entrer(Produit p) {
+        presents.set(p.getId());
+        valeur += p.getPrix() * p.getQuantite();
+    }
+
+    /** Position de p dans la vue (p comparé avec sa valeur actuelle), ou < 0. */
+    private int position(Produit p) {
+        if (colonne != null) return index.chercher(colonne, croissant, liste.elements, liste.taille, p);
+        for (int i = 0; i < liste.taille; i++) if (liste.elements[i] == p) return i;
+        return -1;
+    }
+
+    // ---------------- Deltas
+    @Override protected void produitAjoute(Produit p) {
+        if (!prete || (filtre != null && !filtre.test(p))) return;
+        if (colonne == null) {
+            entrer(p);
+            liste.inserer(liste.taille, p);
+            return;
+        }
+        int i = position(p);
+        if (i >= 0) return;
+        entrer(p);
+        liste.inserer(-i - 1, p);
+    }
+
+    @Override protected void produitRetire(Produit p) {
+        if (!presents.get(p.getId())) return;
+        int i = position(p);
+        if (i < 0) return;
+        // Produit détaché : il garde les valeurs qu'il avait au catalogue
+        presents.clear(p.getId());
+        valeur -= p.getPrix() * p.getQuantite();
+        liste.retirer(i);
+    }
+
+    @Override protected void produitsAjoutes(List<? extends Produit> lot) {
+        if (lot.size() < TAILLE_LOT || !prete) super.produitsAjoutes(lot);
+        else reconstruire();
+    }
+
+    @Override protected void produitsRetires(List<? extends Produit> lot) {
+        if (lot.size() < TAILLE_LOT) super.produitsRetires(lot);
+        else reconstruire();
+    }
+
+    @Override protected void nomModifie(Produit p, String ancien, String nouveau) { deplacer(IndexTri.Colonne.NOM, p, ancien); }
+    @Override protected void categorieModifiee(Produit p, String ancienne, String nouvelle) { deplacer(IndexTri.Colonne.CATEGORIE, p, ancienne); }
+    @Override protected void prixModifie(Produit p, double ancien, double nouveau) {
+        if (presents.get(p.getId())) valeur += (nouveau - ancien) * p.getQuantite();
+        deplacer(IndexTri.Colonne.PRIX, p, ancien);
+    }
+    @Override protected void quantiteModifiee(Produit p, int ancienne, int nouvelle) {
+        if (presents.get(p.getId())) valeur += p.getPrix() * ((long) nouvelle - ancienne);
+        deplacer(IndexTri.Colonne.QUANTITE, p, ancienne);
+    }
+    @Override protected void fournisseurModifie(Produit p, String ancien, String nouveau) { deplacer(IndexTri.Colonne.FOURNISSEUR, p, ancien); }
+
+    /** La valeur triée de p a changé : retiré à sa place d'avant, réinséré à la nouvelle (deux recherches). */
+    private void deplacer(IndexTri.Colonne modifiee, Produit p, Object ancienne) {
+        if (modifiee != colonne) return;
+        int de = index.chercher(colonne, croissant, liste.elements, liste.taille, p, ancienne);
+        if (de < 0) return; // hors filtre
+        liste.deplacer(de, p, () -> -position(p) - 1);
+    }
+
+    /** Tableau de produits exposé en ObservableList ; chaque opération émet un seul changement. */
+    private static final class Liste extends ObservableListBase<Produit> {
+        Produit[] elements = new Produit[0];
+        int taille;
+
+        @Override public Produit get(int i) {
+            Objects.checkIndex(i, taille);
+            return elements[i];
+        }
+
+        @Override public int size() { return taille; }
+
+        void remplacer(Produit[] nouveaux) {
+            Produit[] anciens = elements;
+            int ancienneTaille = taille;
+            elements = nouveaux;
+            taille = nouveaux.length;
+            if (ancienneTaille == 0 && taille == 0) return;
+            beginChange();
+            nextReplace(0, taille, Collections.unmodifiableList(Arrays.asList(anciens).subList(0, ancienneTaille)));
+            endChange();
+        }
+
+        void inserer(int i, Produit p) {
+            if (taille == elements.length) elements = Arrays.copyOf(elements, Math.max(16, taille * 2));
+            System.arraycopy(elements, i, elements, i + 1, taille - i);
+            elements[i] = p;
+            taille++;
+            beginChange();
+            nextAdd(i, i + 1);
+            endChange();
+        }
+
+        void retirer(int i) {
+            Produit p = elements[i];
+            System.arraycopy(elements, i + 1, elements, i, taille - i - 1);
+            elements[--taille] = null;
+            beginChange();
+            nextRemove(i, p);
+            endChange();
+        }
+
+        /** Retire l'élément de, puis le réinsère à la position calculée sur le tableau sans lui. */
+        void deplacer(int de, Produit p, IntSupplier vers) {
+            System.arraycopy(elements, de + 1, elements, de, taille - de - 1);
+            taille--;
+            int a = vers.getAsInt();
+            System.arraycopy(elements, a, elements, a + 1, taille - a);
+            elements[a] = p;
+            taille++;
+            if (a == de) return; // même place : les cellules suivent déjà la propriété
+            beginChange();
+            nextRemove(de, p);
+            nextAdd(a, a + 1);
+            endChange();
+        }
+    }
+}
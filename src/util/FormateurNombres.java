@@ -0,0 +1,117 @@
+package util;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Rendu des montants ("1 500 000 Ar") et quantités sans allocation par appel :
+ * chiffres écrits dans un tampon réutilisé par thread, chaînes finales gardées dans
+ * un cache à correspondance directe (une valeur répétée renvoie la même chaîne).
+ * Arrondi et groupement identiques à l'ancien DecimalFormat("#,##0") : demi-pair, espace.
+ */
+public final class FormateurNombres {
+
+    private static final int TAILLE_CACHE = 1 << 12;
+    /** Au-delà de 2^53, DecimalFormat n'affiche plus la valeur exacte : on lui délègue. */
+    private static final double LIMITE_EXACTE = 9_007_199_254_740_992d;
+
+    private static final Entree[] CACHE_MONTANTS = new Entree[TAILLE_CACHE];
+    private static final Entree[] CACHE_QUANTITES = new Entree[TAILLE_CACHE];
+
+    private static final ThreadLocal<char[]> TAMPON = ThreadLocal.withInitial(() -> new char[32]);
+    private static final ThreadLocal<DecimalFormat> SECOURS = ThreadLocal.withInitial(() -> {
+        DecimalFormatSymbols sym = new DecimalFormatSymbols(Locale.FRANCE);
+        sym.setGroupingSeparator(' ');
+        sym.setDecimalSeparator(',');
+        return new DecimalFormat("#,##0", sym);
+    });
+
+    /** Entrée immuable : publiée d'un bloc, lisible sans verrou depuis n'importe quel thread. */
+    private static final class Entree {
+        final long valeur;
+        final String prefixe, suffixe, texte;
+        Entree(long valeur, String prefixe, String suffixe, String texte) {
+            this.valeur = valeur; this.prefixe = prefixe; this.suffixe = suffixe; this.texte = texte;
+        }
+    }
+
+    private FormateurNombres() {}
+
+    /** Montant arrondi, groupé par milliers. Exemple : 1 500 000 */
+    public static String montant(double montant) {
+        return montant(montant, "", "");
+    }
+
+    /** Montant encadré d'un libellé (ex. "Prix : ", " Ar"), mis en cache avec lui. */
+    public static String montant(double montant, String prefixe, String suffixe) {
+        if (!(Math.abs(montant) < LIMITE_EXACTE)) return prefixe + SECOURS.get().format(montant) + suffixe;
+        double arrondi = Math.rint(montant); // demi-pair, comme DecimalFormat
+        long v = (long) arrondi;
+        // "-0" (ex. -0,3) : même sortie que DecimalFormat, codé hors de la plage des longs utilisée
+        long cle = v == 0 && Double.doubleToRawLongBits(arrondi) < 0 ? Long.MIN_VALUE : v;
+        Entree e = lire(CACHE_MONTANTS, cle, prefixe, suffixe);
+        if (e != null) return e.texte;
+
+        char[] t = TAMPON.get();
+        int n = ecrire(t, v, true, cle == Long.MIN_VALUE);
+        String texte = prefixe.isEmpty() && suffixe.isEmpty() ? new String(t, t.length - n, n)
+                : prefixe.concat(new String(t, t.length - n, n)).concat(suffixe);
+        CACHE_MONTANTS[indice(cle, prefixe, suffixe)] = new Entree(cle, prefixe, suffixe, texte);
+        return texte;
+    }
+
+    /** Quantité sans groupement (rendu historique), avec libellé/unité. Exemple : "120 unités" */
+    public static String quantite(long quantite, String prefixe, String suffixe) {
+        Entree e = lire(CACHE_QUANTITES, quantite, prefixe, suffixe);
+        if (e != null) return e.texte;
+        char[] t = TAMPON.get();
+        int n = ecrire(t, quantite, false, false);
+        String texte = prefixe.concat(new String(t, t.length - n, n)).concat(suffixe);
+        CACHE_QUANTITES[indice(quantite, prefixe, suffixe)] = new Entree(quantite, prefixe, suffixe, texte);
+        return texte;
+    }
+
+    /** Écrit le montant directement dans un tampon appelant (export, concaténations longues). */
+    public static StringBuilder ajouterMontant(StringBuilder sb, double montant) {
+        if (!(Math.abs(montant) < LIMITE_EXACTE)) return sb.append(SECOURS.get().format(montant));
+        double arrondi = Math.rint(montant);
+        long v = (long) arrondi;
+        char[] t = TAMPON.get();
+        int n = ecrire(t, v, true, v == 0 && Double.doubleToRawLongBits(arrondi) < 0);
+        return sb.append(t, t.length - n, n);
+    }
+
+    // ---------------- Interne
+    /** Écrit les chiffres en partant de la fin du tampon ; renvoie le nombre de caractères écrits. */
+    private static int ecrire(char[] t, long v, boolean grouper, boolean zeroNegatif) {
+        int i = t.length;
+        boolean negatif = v < 0 || zeroNegatif;
+        // Travail en négatif : couvre aussi Long.MIN_VALUE sans débordement
+        long r = v > 0 ? -v : v;
+        int chiffres = 0;
+        do {
+            if (grouper && chiffres > 0 && chiffres % 3 == 0) t[--i] = ' ';
+            t[--i] = (char) ('0' - (r % 10));
+            r /= 10;
+            chiffres++;
+        } while (r != 0);
+        if (negatif) t[--i] = '-';
+        return t.length - i;
+    }
+
+    private static Entree lire(Entree[] cache, long cle, String prefixe, String suffixe) {
+        Entree e = cache[indice(cle, prefixe, suffixe)];
+        if (e != null && e.valeur == cle && memeTexte(e.prefixe, prefixe) && memeTexte(e.suffixe, suffixe)) return e;
+        return null;
+    }
+
+    private static boolean memeTexte(String a, String b) {
+        return a == b || a.equals(b);
+    }
+
+    private static int indice(long cle, String prefixe, String suffixe) {
+        long h = (cle ^ (31L * prefixe.hashCode() + suffixe.hashCode())) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 52) & (TAILLE_CACHE - 1);
+    }
+}
@@ -0,0 +1,76 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de durées (ns) à classes log-linéaires : 8 sous-classes par puissance de 2,
+ * soit une erreur relative d'au plus 12,5 % sur les percentiles. Enregistrement sans verrou
+ * ni allocation (un incrément atomique), utilisable depuis tout thread.
+ */
+public final class Histogramme {
+
+    private static final int BITS_SOUS_CLASSES = 3;
+    private static final int SOUS_CLASSES = 1 << BITS_SOUS_CLASSES;
+    private static final int NB_CLASSES = (64 - BITS_SOUS_CLASSES + 1) * SOUS_CLASSES;
+
+    private final AtomicLongArray compteurs = new AtomicLongArray(NB_CLASSES);
+
+    public void enregistrer(long valeur) {
+        compteurs.incrementAndGet(classe(Math.max(0, valeur)));
+    }
+
+    /** Copie des compteurs ; avec vider, remet l'histogramme à zéro (fenêtre glissante). */
+    public Resume resumer(boolean vider) {
+        long[] c = new long[NB_CLASSES];
+        for (int i = 0; i < NB_CLASSES; i++) c[i] = vider ? compteurs.getAndSet(i, 0) : compteurs.get(i);
+        return new Resume(c);
+    }
+
+    static int classe(long v) {
+        if (v < SOUS_CLASSES) return (int) v;
+        int exposant = 63 - Long.numberOfLeadingZeros(v);
+        int sous = (int) (v >>> (exposant - BITS_SOUS_CLASSES)) & (SOUS_CLASSES - 1);
+        return (exposant - BITS_SOUS_CLASSES + 1) * SOUS_CLASSES + sous;
+    }
+
+    /** Borne haute de la classe (valeur rapportée pour un percentile). */
+    static long borneHaute(int classe) {
+        if (classe < SOUS_CLASSES) return classe;
+        int exposant = classe / SOUS_CLASSES + BITS_SOUS_CLASSES - 1;
+        long sous = classe % SOUS_CLASSES;
+        long largeur = 1L << (exposant - BITS_SOUS_CLASSES);
+        return ((SOUS_CLASSES + sous) << (exposant - BITS_SOUS_CLASSES)) + largeur - 1;
+    }
+
+    /** Photographie d'un histogramme : nombre, percentiles, maximum. */
+    public static final class Resume {
+        private final long[] compteurs;
+        private final long nombre;
+
+        private Resume(long[] compteurs) {
+            this.compteurs = compteurs;
+            long n = 0;
+            for (long c : compteurs) n += c;
+            this.nombre = n;
+        }
+
+        public long getNombre() { return nombre; }
+
+        /** Percentile (0..100) en ns ; 0 si vide. */
+        public long percentile(double p) {
+            if (nombre == 0) return 0;
+            long rang = Math.max(1, (long) Math.ceil(nombre * p / 100.0));
+            long cumul = 0;
+            for (int i = 0; i < compteurs.length; i++) {
+                cumul += compteurs[i];
+                if (cumul >= rang) return borneHaute(i);
+            }
+            return borneHaute(compteurs.length - 1);
+        }
+
+        public long max() {
+            for (int i = compteurs.length - 1; i >= 0; i--) if (compteurs[i] > 0) return borneHaute(i);
+            return 0;
+        }
+    }
+}
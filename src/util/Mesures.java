@@ -0,0 +1,247 @@
+package util;
+
+import javafx.application.Platform;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Mesures des chemins chauds de l'interface : pour chaque opération, un histogramme cumulé,
+ * un histogramme de fenêtre (vidé à chaque lecture de la surcouche) et un évènement JFR
+ * « gestionnaire.Operation » ; plus un chien de garde du thread FX qui compte les blocages
+ * de plus d'une trame (évènement « gestionnaire.BlocageFx », avec la pile du thread FX).
+ *
+ * Usage : long t0 = Mesures.debut(); ... Mesures.fin(Mesures.Operation.ACCUEIL, t0);
+ * Coût hors enregistrement JFR : deux System.nanoTime() et deux incréments atomiques.
+ */
+public final class Mesures {
+
+    public enum Operation {
+        FILTRES("Filtres (demande → publication)"),
+        PUBLICATION_FILTRES("Publication des filtres"),
+        ACCUEIL("Mise à jour de l'accueil"),
+        IMAGE("Mises à jour regroupées (par image)"),
+        GRILLE("Affichage de la grille"),
+        FORMULAIRE("Ouverture du formulaire"),
+        ONGLET_PRODUITS("Construction de l'onglet Produits"),
+        CELLULE("Rendu de cellule"),
+        THREAD_FX("Latence du thread FX");
+
+        private final String libelle;
+        private final Histogramme cumul = new Histogramme();
+        private final Histogramme fenetre = new Histogramme();
+
+        Operation(String libelle) { this.libelle = libelle; }
+
+        public String getLibelle() { return libelle; }
+
+        /** Depuis le démarrage. */
+        public Histogramme.Resume cumul() { return cumul.resumer(false); }
+
+        /** Depuis la lecture précédente de la fenêtre (qui est remise à zéro). */
+        public Histogramme.Resume fenetre() { return fenetre.resumer(true); }
+    }
+
+    /** Durée d'une trame à 60 Hz : au-delà, le thread FX a sauté au moins une image. */
+    public static final long TRAME_NS = 16_666_667L;
+    /** Blocage assez long pour mériter la capture de la pile du thread FX. */
+    private static final long SEUIL_PILE_NS = 100_000_000L;
+    private static final long PERIODE_SURVEILLANCE_NS = 20_000_000L;
+    private static final int PILES_CONSERVEES = 5;
+
+    private static final LongAdder blocages = new LongAdder();
+    private static final AtomicLong blocageMax = new AtomicLong();
+    private static final ArrayDeque<String> dernieresPiles = new ArrayDeque<>();
+    private static volatile Thread surveillance;
+
+    private Mesures() {}
+
+    public static long debut() {
+        return System.nanoTime();
+    }
+
+    public static void fin(Operation op, long debut) {
+        enregistrer(op, System.nanoTime() - debut);
+    }
+
+    public static void enregistrer(Operation op, long dureeNs) {
+        op.cumul.enregistrer(dureeNs);
+        op.fenetre.enregistrer(dureeNs);
+        EvenementOperation e = new EvenementOperation();
+        if (e.isEnabled()) {
+            e.operation = op.name();
+            e.duree = dureeNs;
+            e.commit();
+        }
+    }
+
+    public static long getBlocages() { return blocages.sum(); }
+
+    public static long getBlocageMaxNs() { return blocageMax.get(); }
+
+    // ---------------- Chien de garde du thread FX
+
+    /**
+     * Démarre (une fois) le chien de garde : toutes les 20 ms, un Platform.runLater dont on
+     * mesure le délai de prise en charge. Au-delà d'une trame, c'est un blocage ; au-delà de
+     * 100 ms, la pile du thread FX est capturée pendant qu'il est encore bloqué.
+     */
+    public static synchronized void surveillerThreadFx() {
+        if (surveillance != null) return;
+        Thread fx = Thread.currentThread();
+        if (!Platform.isFxApplicationThread()) throw new IllegalStateException("À appeler depuis le thread FX");
+        surveillance = new Thread(() -> surveiller(fx), "surveillance-thread-fx");
+        surveillance.setDaemon(true);
+        surveillance.start();
+    }
+
+    private static void surveiller(Thread fx) {
+        Thread moi = Thread.currentThread();
+        AtomicLong recu = new AtomicLong();
+        while (!moi.isInterrupted()) {
+            long envoi = System.nanoTime();
+            recu.set(0);
+            try {
+                Platform.runLater(() -> {
+                    recu.set(System.nanoTime());
+                    LockSupport.unpark(moi);
+                });
+            } catch (IllegalStateException toolkitArrete) {
+                return;
+            }
+            StackTraceElement[] pile = null;
+            while (recu.get() == 0) {
+                long ecoule = System.nanoTime() - envoi;
+                if (pile == null && ecoule >= SEUIL_PILE_NS) pile = fx.getStackTrace();
+                LockSupport.parkNanos(pile == null ? SEUIL_PILE_NS - ecoule : SEUIL_PILE_NS);
+                if (moi.isInterrupted()) return;
+            }
+            long latence = recu.get() - envoi;
+            enregistrer(Operation.THREAD_FX, latence);
+            if (latence > TRAME_NS) signalerBlocage(latence, pile);
+            LockSupport.parkNanos(PERIODE_SURVEILLANCE_NS);
+        }
+    }
+
+    private static void signalerBlocage(long dureeNs, StackTraceElement[] pile) {
+        blocages.increment();
+        blocageMax.accumulateAndGet(dureeNs, Math::max);
+        String texte = pile == null ? null : formaterPile(pile);
+        if (texte != null) {
+            synchronized (dernieresPiles) {
+                if (dernieresPiles.size() == PILES_CONSERVEES) dernieresPiles.removeFirst();
+                dernieresPiles.addLast(String.format("%.1f ms%n%s", dureeNs / 1e6, texte));
+            }
+        }
+        EvenementBlocageFx e = new EvenementBlocageFx();
+        if (e.isEnabled()) {
+            e.duree = dureeNs;
+            e.pileThreadFx = texte;
+            e.commit();
+        }
+    }
+
+    private static String formaterPile(StackTraceElement[] pile) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(pile.length, 24); i++) sb.append("    at ").append(pile[i]).append('\n');
+        return sb.toString();
+    }
+
+    // ---------------- Allocation
+
+    /**
+     * Octets alloués jusqu'ici par les threads vivants (compteurs par thread de HotSpot),
+     * -1 si la JVM ne les fournit pas. La différence entre deux lectures donne un débit.
+     */
+    public static long octetsAlloues() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemoryEnabled()) return -1;
+        long total = 0;
+        for (long o : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) if (o > 0) total += o;
+        return total;
+    }
+
+    // ---------------- Rapport
+
+    /**
+     * Écrit un rapport texte (percentiles cumulés par opération, blocages et dernières piles)
+     * dans dossier/mesures-AAAAMMJJ-HHMMSS.txt ; si un enregistrement JFR est actif, ses données
+     * sont aussi copiées dans un .jfr de même nom. Rend les fichiers écrits.
+     */
+    public static List<Path> ecrireRapport(Path dossier, int nbProduits) throws IOException {
+        Files.createDirectories(dossier);
+        String nom = "mesures-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path texte = dossier.resolve(nom + ".txt");
+        List<Path> ecrits = new ArrayList<>();
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(texte, StandardCharsets.UTF_8))) {
+            Runtime rt = Runtime.getRuntime();
+            out.printf("Mesures du %s — %d produits, tas %d / %d Mo%n%n", LocalDateTime.now(), nbProduits,
+                    (rt.totalMemory() - rt.freeMemory()) >> 20, rt.maxMemory() >> 20);
+            out.printf("%-34s %10s %10s %10s %10s %10s%n", "Opération", "n", "p50 ms", "p90 ms", "p99 ms", "max ms");
+            for (Operation op : Operation.values()) {
+                Histogramme.Resume r = op.cumul();
+                out.printf("%-34s %10d %10.3f %10.3f %10.3f %10.3f%n", op.libelle, r.getNombre(),
+                        r.percentile(50) / 1e6, r.percentile(90) / 1e6, r.percentile(99) / 1e6, r.max() / 1e6);
+            }
+            out.printf("%nBlocages du thread FX (> 1 trame) : %d, le plus long %.1f ms%n",
+                    getBlocages(), getBlocageMaxNs() / 1e6);
+            synchronized (dernieresPiles) {
+                for (String p : dernieresPiles) out.printf("%n%s", p);
+            }
+        }
+        ecrits.add(texte);
+
+        for (Recording r : FlightRecorder.isAvailable() ? FlightRecorder.getFlightRecorder().getRecordings() : List.<Recording>of()) {
+            if (r.getState() == jdk.jfr.RecordingState.RUNNING) {
+                Path jfr = dossier.resolve(nom + ".jfr");
+                try (Recording copie = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+                    copie.dump(jfr);
+                }
+                ecrits.add(jfr);
+                break;
+            }
+        }
+        return ecrits;
+    }
+
+    // ---------------- Évènements JFR
+
+    @Name("gestionnaire.Operation")
+    @Label("Opération de l'interface")
+    @Category("Gestionnaire de produits")
+    @Description("Durée d'un chemin chaud : filtres, accueil, grille, ouverture du formulaire, cellule")
+    public static final class EvenementOperation extends Event {
+        @Label("Opération") String operation;
+        @Label("Durée") @Timespan(Timespan.NANOSECONDS) long duree;
+    }
+
+    @Name("gestionnaire.BlocageFx")
+    @Label("Blocage du thread FX")
+    @Category("Gestionnaire de produits")
+    @Description("Le thread FX n'a pas traité de tâche pendant plus d'une trame")
+    public static final class EvenementBlocageFx extends Event {
+        @Label("Durée") @Timespan(Timespan.NANOSECONDS) long duree;
+        @Label("Pile du thread FX") String pileThreadFx;
+    }
+}